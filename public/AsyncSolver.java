@@ -0,0 +1,108 @@
+import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a solve in the background with a deadline and hands back a CompletableFuture, for
+ * callers that can't wait on a search that might take forever.
+ *
+ * When the deadline comes the solver gets cancelled (see CubeSolver.cancel) and the future
+ * completes with whatever the solver had when it stopped: the best solution so far for
+ * TwoPhaseSolver, a solution only if one was already found for the others, otherwise null.
+ * Cancelling the future cancels the solver the same way, from any thread, and the solver's
+ * thread is freed as soon as it notices.
+ *
+ * How soon a solver notices is how late the future can be. The search solvers check a
+ * volatile flag every node (TwoPhaseSolver every thousand or so), so it's well under a
+ * millisecond. ReductionSolver checks between 3-cycles. Building TwoPhaseSolver's tables
+ * or a cube size's CommutatorLibrary the first time can't be stopped, and can take seconds,
+ * so solve something once up front (or call TwoPhaseSolver.prepareTables) when that matters.
+ */
+public class AsyncSolver {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    // one daemon thread that does nothing but cancel solvers whose time is up
+    private static final ScheduledExecutorService DEADLINES = createDeadlineThread();
+
+    private AsyncSolver() {
+    }
+
+    /**
+     * Solves a copy of cube on the common ForkJoinPool
+     * @see #solve(CubeSolver, RubiksCube, int, long, Executor)
+     */
+    public static CompletableFuture<Stack<int[]>> solve(CubeSolver solver, RubiksCube cube, int depthLimit,
+                                                        long timeBudgetMillis) {
+        return solve(solver, cube, depthLimit, timeBudgetMillis, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Solves a copy of cube on executor, so cube can still be used while the solve runs.
+     * @param CubeSolver solver a solver only this solve uses, it gets cancelled when the time
+     * is up and stays cancelled
+     * @param RubiksCube cube The cube to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param long timeBudgetMillis how long after this call to cancel the solver, NO_DEADLINE
+     * to let it run until it finishes or the future gets cancelled
+     * @param Executor executor where to run the solve
+     * @return a future for the solution, {axis, layer, numTurns} moves with the first move at
+     * the bottom, or null if none was found in time. It completes exceptionally if the
+     * solver throws or executor won't take the solve.
+     */
+    public static CompletableFuture<Stack<int[]>> solve(CubeSolver solver, RubiksCube cube, int depthLimit,
+                                                        long timeBudgetMillis, Executor executor) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Time budget can't be negative");
+        }
+        RubiksCube work = new RubiksCube(cube);
+        CompletableFuture<Stack<int[]>> future = new CompletableFuture<Stack<int[]>>();
+
+        ScheduledFuture<?> deadline = null;
+        if (timeBudgetMillis != NO_DEADLINE) {
+            deadline = DEADLINES.schedule(solver::cancel, timeBudgetMillis, TimeUnit.MILLISECONDS);
+        }
+        ScheduledFuture<?> pendingDeadline = deadline;
+        future.whenComplete((solution, error) -> {
+            if (pendingDeadline != null) {
+                pendingDeadline.cancel(false);
+            }
+            if (future.isCancelled()) {
+                solver.cancel();
+            }
+        });
+
+        try {
+            executor.execute(() -> {
+                // cancelled before it even started
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(solver.solve(work, depthLimit, false));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static ScheduledExecutorService createDeadlineThread() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "solver-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // deadlines that got cancelled because the solve finished first shouldn't pile up
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
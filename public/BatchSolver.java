@@ -0,0 +1,380 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Solves a stream of cubes on a fixed pool of worker threads.
+ *
+ * Records are read one line at a time and at most maxInFlight of them are ever being
+ * solved or waiting to be, so reading blocks until a worker frees up and memory stays the
+ * same no matter how big the input is. Each result is written out as soon as its solve
+ * finishes, which means results come out in the order they finish and not the order they
+ * went in; every result starts with the line number of its record so they can be matched up.
+ *
+ * Input records, one per line (blank lines and lines starting with # are skipped):
+ *   scramble <cubeSize> <axis>,<layer>,<numTurns> ...   moves made on a solved cube
+ *   state <cubeSize> <stickers>                         6 * cubeSize * cubeSize digits 0-5,
+ *                                                       side by side, row by row, like
+ *                                                       the gameStateArr constructor
+ * Output records:
+ *   <line> solved <numMoves> <axis>,<layer>,<numTurns> ...
+ *   <line> unsolved                no solution within the depth limit
+ *   <line> error <message>         the record couldn't be read or solved
+ *
+ * Usage: java BatchSolver [ida|bidirectional|twophase|reduction|lookup] [depth limit]
+ *                         [threads] [input] [output] [metrics] [cache] [pdbs=<directory>]
+ * e.g.   java BatchSolver bidirectional 11 8 scrambles.txt solutions.txt
+ * Cube sizes go up to MAX_CUBE_SIZE, a record for a bigger cube is an error. Input and
+ * output default to stdin and stdout, "-" means the same. Given pdbs=<directory>, ida
+ * guides its search with the corner and edge pattern databases in that directory, loading
+ * the ones for a cube size when the first record of that size turns up and building any
+ * that are missing (the 3x3 edge tables take a minute or two each), which helps on 2x2s
+ * and 3x3s. Without it ida only uses the StickerHeuristic. bidirectional gives each worker
+ * an equal share of half the heap, a record whose search needs more is an error. twophase
+ * only takes 3x3s and its depth limit defaults to TwoPhaseSolver.MAX_LENGTH, reduction
+ * takes any size and has no depth limit by default, lookup only takes 2x2s and reads their
+ * shortest solution off of corners.pdb in the pdbs directory, building it the first time,
+ * or off of a table built in memory without one. Adding "metrics" keeps SolverMetrics for
+ * every solve, shows them over JMX under the solver's name while the batch runs and prints
+ * them to stderr at the end. Adding "cache" answers records whose state (in any
+ * orientation or color scheme) has been solved already from a SolutionCache of up to
+ * DEFAULT_CACHE_SIZE solutions and prints its hit rate to stderr at the end.
+ */
+public class BatchSolver {
+    public static final int DEFAULT_DEPTH_LIMIT = 11;
+    // the biggest cube a record can have. Every size's MoveTable is kept for good, and a
+    // few hundred is already seconds and hundreds of MB before anything is solved
+    public static final int MAX_CUBE_SIZE = 100;
+    public static final int DEFAULT_CACHE_SIZE = 100000;
+
+    // how many records can wait for a worker on top of the ones being solved
+    private static final int QUEUED_PER_THREAD = 4;
+
+    private Supplier<CubeSolver> solverFactory;
+    private int depthLimit;
+    private int numThreads;
+    private int maxInFlight;
+
+    /**
+     * @param Supplier<CubeSolver> solverFactory makes a new solver for each record, so the
+     * solvers don't have to be thread safe
+     * @param int depthLimit Max number of moves a solution can have
+     * @param int numThreads how many records to solve at once
+     */
+    public BatchSolver(Supplier<CubeSolver> solverFactory, int depthLimit, int numThreads) {
+        this(solverFactory, depthLimit, numThreads, numThreads * QUEUED_PER_THREAD);
+    }
+
+    /**
+     * @param int maxInFlight how many records can be read but not written yet at one time
+     */
+    public BatchSolver(Supplier<CubeSolver> solverFactory, int depthLimit, int numThreads,
+                       int maxInFlight) {
+        if (numThreads < 1 || maxInFlight < numThreads) {
+            throw new IllegalArgumentException("Need at least one thread and one record per thread");
+        }
+        this.solverFactory = solverFactory;
+        this.depthLimit = depthLimit;
+        this.numThreads = numThreads;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String solverName = args.length > 0 ? args[0] : "ida";
+        int defaultDepthLimit = solverName.equals("twophase") ? TwoPhaseSolver.MAX_LENGTH
+                              : solverName.equals("reduction") ? Integer.MAX_VALUE : DEFAULT_DEPTH_LIMIT;
+        int depthLimit = args.length > 1 ? Integer.parseInt(args[1]) : defaultDepthLimit;
+        int numThreads = args.length > 2 ? Integer.parseInt(args[2])
+                                         : Runtime.getRuntime().availableProcessors();
+        String inputName = args.length > 3 ? args[3] : "-";
+        String outputName = args.length > 4 ? args[4] : "-";
+        boolean keepMetrics = false;
+        boolean useCache = false;
+        Path pdbDirectory = null;
+        for (int i = 5; i < args.length; i++) {
+            keepMetrics |= args[i].equals("metrics");
+            useCache |= args[i].equals("cache");
+            if (args[i].startsWith("pdbs=")) {
+                pdbDirectory = Paths.get(args[i].substring("pdbs=".length()));
+            }
+        }
+
+        Supplier<CubeSolver> solverFactory;
+        if (solverName.equals("ida")) {
+            if (pdbDirectory == null) {
+                solverFactory = () -> new IDAStarSolver();
+            } else {
+                Path directory = pdbDirectory;
+                Map<Integer, CubeHeuristic> heuristics = new ConcurrentHashMap<Integer, CubeHeuristic>();
+                solverFactory = () -> new IDAStarSolver(new SizedHeuristic(directory, heuristics));
+            }
+        } else if (solverName.equals("bidirectional")) {
+            long maxMemoryBytes = Runtime.getRuntime().maxMemory() / 2 / numThreads;
+            solverFactory = () -> new BidirectionalSolver(CubeSymmetry.ROTATIONS_AND_REFLECTIONS, maxMemoryBytes);
+        } else if (solverName.equals("twophase")) {
+            TwoPhaseSolver.prepareTables();
+            solverFactory = () -> new TwoPhaseSolver();
+        } else if (solverName.equals("reduction")) {
+            solverFactory = () -> new ReductionSolver();
+        } else if (solverName.equals("lookup")) {
+            PatternDatabase distances = pdbDirectory == null
+                                      ? PatternDatabase.buildCorners()
+                                      : PatternDatabaseHeuristic.loadOrBuild(
+                                            pdbDirectory.resolve(PatternDatabaseHeuristic.CORNER_FILE_NAME), null);
+            LookupSolver solver = new LookupSolver(distances);
+            solverFactory = () -> solver;
+        } else {
+            throw new IllegalArgumentException("Unknown solver " + solverName + ", use ida, bidirectional, twophase, reduction or lookup");
+        }
+
+        SolverMetrics metrics = null;
+        if (keepMetrics) {
+            metrics = new SolverMetrics();
+            metrics.register(solverName);
+            Supplier<CubeSolver> unmeasuredFactory = solverFactory;
+            SolverMetrics solverMetrics = metrics;
+            solverFactory = () -> {
+                CubeSolver solver = unmeasuredFactory.get();
+                solver.setMetrics(solverMetrics);
+                return solver;
+            };
+        }
+
+        SolutionCache cache = null;
+        if (useCache) {
+            cache = new SolutionCache(DEFAULT_CACHE_SIZE, SolutionCache.NO_EXPIRY);
+            Supplier<CubeSolver> uncachedFactory = solverFactory;
+            SolutionCache solverCache = cache;
+            solverFactory = () -> new CachingSolver(uncachedFactory.get(), solverCache);
+        }
+
+        try (BufferedReader in = openInput(inputName); Writer out = openOutput(outputName)) {
+            new BatchSolver(solverFactory, depthLimit, numThreads).run(in, out);
+        }
+        if (metrics != null) {
+            System.err.println(metrics);
+        }
+        if (cache != null) {
+            System.err.println(cache);
+        }
+    }
+
+    /**
+     * Solves every record in input and writes the results to output. Returns once every
+     * result has been written, output is flushed but not closed.
+     * @return the number of records read
+     * @throws IOException if reading or writing fails, in which case the records still
+     * running are left to finish but nothing more is read
+     */
+    public long run(BufferedReader input, Writer output) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(this.numThreads);
+        Semaphore slots = new Semaphore(this.maxInFlight);
+        AtomicReference<IOException> writeError = new AtomicReference<IOException>();
+        long numRecords = 0;
+
+        try {
+            int lineNumber = 0;
+            String line;
+            while ((line = input.readLine()) != null) {
+                lineNumber++;
+                String record = line.trim();
+                if (record.isEmpty() || record.startsWith("#")) {
+                    continue;
+                }
+                if (writeError.get() != null) {
+                    break;
+                }
+
+                slots.acquire();
+                numRecords++;
+                final int recordLine = lineNumber;
+                pool.execute(() -> {
+                    try {
+                        String result = recordLine + " " + this.solveRecord(record);
+                        synchronized (output) {
+                            output.write(result);
+                            output.write('\n');
+                            output.flush();
+                        }
+                    } catch (IOException e) {
+                        writeError.compareAndSet(null, e);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        if (writeError.get() != null) {
+            throw writeError.get();
+        }
+        return numRecords;
+    }
+
+    /**
+     * Solves one record and returns its result without the line number
+     */
+    private String solveRecord(String record) {
+        RubiksCube cube;
+        try {
+            cube = parseRecord(record);
+        } catch (Exception e) {
+            return "error " + e.getMessage();
+        }
+
+        Stack<int[]> solution;
+        try {
+            solution = this.solverFactory.get().solve(cube, this.depthLimit, false);
+        } catch (RuntimeException e) {
+            // one bad record shouldn't take the whole batch down
+            return "error " + e;
+        }
+        if (solution == null) {
+            return "unsolved";
+        }
+        StringBuilder result = new StringBuilder("solved ").append(solution.size());
+        for (int[] move : solution) {
+            result.append(' ').append(move[0]).append(',').append(move[1]).append(',').append(move[2]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Makes the cube a scramble or state record describes
+     * @throws Exception if the record isn't in one of the two formats or isn't a real cube
+     */
+    static RubiksCube parseRecord(String record) throws Exception {
+        String[] fields = record.trim().split("\\s+");
+        if (fields.length < 2) {
+            throw new Exception("Record needs a type and a cube size");
+        }
+        int cs;
+        try {
+            cs = Integer.parseInt(fields[1]);
+        } catch (NumberFormatException e) {
+            throw new Exception("Cube size " + fields[1] + " isn't a number");
+        }
+        if (cs < 1 || cs > MAX_CUBE_SIZE) {
+            throw new Exception("Cube size must be from 1 to " + MAX_CUBE_SIZE);
+        }
+
+        if (fields[0].equals("scramble")) {
+            RubiksCube cube = new RubiksCube(cs, false);
+            for (int i = 2; i < fields.length; i++) {
+                int[] move = parseMove(fields[i], cs);
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+            return cube;
+        } else if (fields[0].equals("state")) {
+            if (fields.length != 3 || fields[2].length() != 6 * cs * cs) {
+                throw new Exception("State needs " + 6 * cs * cs + " sticker digits");
+            }
+            int[][][] gameStateArr = new int[6][cs][cs];
+            String stickers = fields[2];
+            for (int i = 0; i < stickers.length(); i++) {
+                int color = stickers.charAt(i) - '0';
+                if (color < 0 || color > 5) {
+                    throw new Exception("Sticker " + stickers.charAt(i) + " isn't a color from 0 to 5");
+                }
+                gameStateArr[i / (cs * cs)][(i / cs) % cs][i % cs] = color;
+            }
+            return new RubiksCube(cs, gameStateArr);
+        } else {
+            throw new Exception("Unknown record type " + fields[0]);
+        }
+    }
+
+    private static int[] parseMove(String text, int cs) throws Exception {
+        String[] parts = text.split(",");
+        if (parts.length != 3) {
+            throw new Exception("Move " + text + " isn't axis,layer,numTurns");
+        }
+        int[] move = new int[3];
+        try {
+            for (int i = 0; i < 3; i++) {
+                move[i] = Integer.parseInt(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new Exception("Move " + text + " isn't axis,layer,numTurns");
+        }
+        if (move[0] < 0 || move[0] > 2 || move[1] < 0 || move[1] >= cs || move[2] < 1 || move[2] > 3) {
+            throw new Exception("Move " + text + " is out of range");
+        }
+        return move;
+    }
+
+    /**
+     * The heuristic ida uses with pdbs=<directory>. The pattern databases for a cube size are
+     * loaded (or built) the first time any solver sees a cube of that size and then shared
+     * by all of them through heuristics. A new one is made for every solver, so it can
+     * remember the last size's heuristic without a map lookup on every estimate.
+     */
+    private static class SizedHeuristic implements CubeHeuristic {
+        private Path directory;
+        private Map<Integer, CubeHeuristic> heuristics;
+        private int cubeSize;
+        private CubeHeuristic heuristic;
+
+        SizedHeuristic(Path directory, Map<Integer, CubeHeuristic> heuristics) {
+            this.directory = directory;
+            this.heuristics = heuristics;
+        }
+
+        /**
+         * @throws UncheckedIOException if the pattern databases can't be loaded or built
+         */
+        public int estimate(RubiksCube cube) {
+            if (cube.getCubeSize() != this.cubeSize) {
+                this.heuristic = this.heuristics.computeIfAbsent(cube.getCubeSize(), this::load);
+                this.cubeSize = cube.getCubeSize();
+            }
+            return this.heuristic.estimate(cube);
+        }
+
+        private CubeHeuristic load(int cubeSize) {
+            // every size past 1x1 uses the same corner table, so two sizes mustn't build it
+            // into the same file at once
+            synchronized (this.heuristics) {
+                try {
+                    return PatternDatabaseHeuristic.loadOrBuild(this.directory, cubeSize);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+
+    private static BufferedReader openInput(String name) throws IOException {
+        if (name.equals("-")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(name), StandardCharsets.UTF_8);
+    }
+
+    private static Writer openOutput(String name) throws IOException {
+        if (name.equals("-")) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedWriter(Paths.get(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,375 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Breadth first search that grows one frontier out from the scrambled cube and one out
+ * from the solved cube, a whole layer at a time (always the smaller of the two), until
+ * they meet. A solution of n moves only needs both sides to reach about n/2 moves deep,
+ * so it explores roughly the square root of what a one sided search does. The first
+ * meeting always gives a shortest solution.
+ *
+ * The visited sets are LongHashSets keyed on CubeSymmetry.canonicalKey, which is the same
+ * for every state that only differs by turning or mirroring the whole cube or swapping
+ * colors around. None of those change how far a state is from solved, so each side only
+ * has to visit one state out of each group, and all 24 ways of holding a solved cube share
+ * one key. The tag stored with each key is the move that first reached it, translated into
+ * the frame of the canonical form, which is all that's needed to walk the path back out.
+ * Keys are 64 bit hashes, so every solution gets checked before it's returned in case two
+ * states ever hash the same.
+ *
+ * Frontiers are stored as packed stickers back to back in one byte array, 24 bytes a
+ * state on a 2x2 and 54 on a 3x3. Meant for 2x2s (at most 11 moves from solved) and 3x3
+ * scrambles up to around 10 moves, after that the frontiers outgrow memory. A solver can be
+ * given a memory budget, then a search that would grow past it fails instead of taking the
+ * whole heap.
+ */
+public class BidirectionalSolver implements CubeSolver {
+    // tag of the state a search started from, move indexes always fit below this
+    private static final int ROOT_TAG = 0xFF;
+    // what one visited state can cost at worst: its stickers in a frontier that has just
+    // doubled and is being copied (3 times over), and up to 4 slots of 9 bytes in a seen set
+    // that is growing
+    private static final int SEEN_BYTES_PER_STATE = 4 * 9;
+    private static final int FRONTIER_COPIES = 3;
+
+    public static final long NO_MEMORY_LIMIT = Long.MAX_VALUE;
+
+    private int numSymmetries;
+    private long maxMemoryBytes;
+    // how many states fit in maxMemoryBytes for the cube being solved
+    private long maxStates;
+
+    private MoveTable moveTable;
+    private CubeSymmetry symmetry;
+    private int[] moves;
+    private RubiksCube scratch;
+    private byte[] keyBuffer;
+    // the symmetry the last stateKey call took the state through
+    private int keySymmetry;
+
+    private volatile boolean cancelled;
+
+    // both null unless metrics are being kept
+    private SolverMetrics metrics;
+    private SolverMetrics.Recorder recorder;
+
+    /**
+     * Creates a solver that reduces states by all 48 symmetries
+     */
+    public BidirectionalSolver() {
+        this(CubeSymmetry.ROTATIONS_AND_REFLECTIONS);
+    }
+
+    /**
+     * @param int numSymmetries how many symmetries to reduce states by, one of the
+     * CubeSymmetry constants. IDENTITY_ONLY still merges states that only differ by color.
+     */
+    public BidirectionalSolver(int numSymmetries) {
+        this(numSymmetries, NO_MEMORY_LIMIT);
+    }
+
+    /**
+     * @param int numSymmetries how many symmetries to reduce states by, one of the
+     * CubeSymmetry constants
+     * @param long maxMemoryBytes about how much memory a search can take for its frontiers
+     * and seen sets. A search that needs more throws an IllegalStateException.
+     */
+    public BidirectionalSolver(int numSymmetries, long maxMemoryBytes) {
+        if (numSymmetries != CubeSymmetry.IDENTITY_ONLY && numSymmetries != CubeSymmetry.ROTATIONS
+                && numSymmetries != CubeSymmetry.ROTATIONS_AND_REFLECTIONS) {
+            throw new IllegalArgumentException("numSymmetries must be 1, 24 or 48");
+        }
+        if (maxMemoryBytes <= 0) {
+            throw new IllegalArgumentException("maxMemoryBytes must be positive");
+        }
+        this.numSymmetries = numSymmetries;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Searches for a shortest solution that is at most depthLimit moves long.
+     * @param RubiksCube cube The cube to solve, it's only changed if leaveCubeSolved is set
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the solution should be made on cube afterwards
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if there is no solution within depthLimit moves.
+     * @throws IllegalStateException if the search needs more memory than the solver was given
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        Stack<int[]> solution;
+        if (this.metrics == null) {
+            solution = this.findSolution(cube, depthLimit);
+        } else {
+            long startNanos = System.nanoTime();
+            this.recorder = this.metrics.newRecorder();
+            try {
+                solution = this.findSolution(cube, depthLimit);
+            } finally {
+                long elapsedNanos = System.nanoTime() - startNanos;
+                this.recorder.flush();
+                this.recorder = null;
+                this.metrics.addPhaseNanos("bidirectional.search", elapsedNanos);
+                this.metrics.solveFinished("bidirectional", elapsedNanos);
+            }
+        }
+        if (solution != null && leaveCubeSolved) {
+            for (int[] move : solution) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return solution;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can. It returns no solution unless the frontiers
+     * it had grown so far already met, in which case the solution is still a shortest one.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    private Stack<int[]> findSolution(RubiksCube cube, int depthLimit) {
+        if (cube.isSolved()) {
+            return new Stack<int[]>();
+        }
+        int cs = cube.getCubeSize();
+        if (CubieGeometry.normalizingRelabel(cube) == null) {
+            // the corners don't make a real cube, so no amount of moves solves it
+            return null;
+        }
+        this.setUp(cs);
+
+        LongHashSet forwardSeen = new LongHashSet();
+        LongHashSet backwardSeen = new LongHashSet();
+        Frontier forward = new Frontier(this.keyBuffer.length);
+        Frontier backward = new Frontier(this.keyBuffer.length);
+
+        forwardSeen.add(this.stateKey(cube), ROOT_TAG);
+        forward.add(cube);
+        RubiksCube solved = new RubiksCube(cs, false);
+        backwardSeen.add(this.stateKey(solved), ROOT_TAG);
+        backward.add(solved);
+
+        int depth = 0;
+        int forwardDepth = 0;
+        int backwardDepth = 0;
+        while (depth < depthLimit && forward.count > 0 && backward.count > 0 && !this.cancelled) {
+            depth++;
+            Stack<int[]> solution;
+            if (forward.count <= backward.count) {
+                forward = this.expand(forward, forwardDepth++, forwardSeen, backwardSeen);
+                solution = this.meet(cube, forward, forwardSeen, backwardSeen);
+            } else {
+                backward = this.expand(backward, backwardDepth++, backwardSeen, forwardSeen);
+                solution = this.meet(cube, backward, forwardSeen, backwardSeen);
+            }
+            if (solution != null) {
+                return solution;
+            }
+        }
+        return null;
+    }
+
+    private void setUp(int cs) {
+        if (9 * cs > ROOT_TAG) {
+            throw new IllegalArgumentException("Cube is too big for a bidirectional search");
+        }
+        this.moveTable = MoveTable.forSize(cs);
+        this.symmetry = CubeSymmetry.forSize(cs, this.numSymmetries);
+        this.scratch = new RubiksCube(cs, false);
+        this.keyBuffer = new byte[6 * cs * cs];
+        this.maxStates = this.maxMemoryBytes / (FRONTIER_COPIES * this.keyBuffer.length + SEEN_BYTES_PER_STATE);
+
+        // every move a search would try first, which leaves out the moves on a 2x2 that
+        // only ever reach states the others already do
+        List<Integer> moveList = new ArrayList<Integer>();
+        for (int move = 0; move < this.moveTable.getNumMoves(); move++) {
+            int axis = this.moveTable.getAxis(move);
+            int layer = this.moveTable.getLayer(move);
+            if (MoveOrdering.canFollow(cs, -1, -1, axis, layer)) {
+                moveList.add(move);
+            }
+        }
+        this.moves = new int[moveList.size()];
+        for (int i = 0; i < this.moves.length; i++) {
+            this.moves[i] = moveList.get(i);
+        }
+    }
+
+    /**
+     * Makes every move from every state in frontier and returns the states that haven't been
+     * seen from this side yet. States the other side has already seen get listed in the
+     * returned frontier's meetings. If the solver gets cancelled it stops partway and the
+     * frontier it returns is missing states.
+     * @param int depth how many moves from its side's start the frontier's states are
+     */
+    private Frontier expand(Frontier frontier, int depth, LongHashSet seen, LongHashSet otherSeen) {
+        Frontier next = new Frontier(frontier.stateSize);
+        for (int i = 0; i < frontier.count && !this.cancelled; i++) {
+            if (this.recorder != null) {
+                this.recorder.expanded(depth);
+            }
+            // load the state once and undo each move after it, instead of loading it again
+            // (and working its hash and color counts out again) for every move
+            frontier.load(i, this.scratch);
+            for (int move : this.moves) {
+                this.makeMove(this.scratch, move);
+                long key = this.stateKey(this.scratch);
+                if (seen.add(key, this.symmetry.conjugateMove(this.keySymmetry, move))) {
+                    if ((long) seen.size() + otherSeen.size() > this.maxStates) {
+                        throw new IllegalStateException("Search needs more than " + this.maxMemoryBytes
+                                                        + " bytes");
+                    }
+                    boolean met = otherSeen.contains(key);
+                    if (this.recorder != null) {
+                        this.recorder.tableProbe(met);
+                    }
+                    if (met) {
+                        next.meetings.add(next.count);
+                    }
+                    next.add(this.scratch);
+                } else if (this.recorder != null) {
+                    this.recorder.duplicatePrune();
+                }
+                this.makeMove(this.scratch, this.moveTable.getInverse(move));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Tries every state of a freshly expanded frontier that the other side has also reached,
+     * and returns the first one that gives a real solution (null if none of them do).
+     */
+    private Stack<int[]> meet(RubiksCube start, Frontier frontier, LongHashSet forwardSeen,
+                              LongHashSet backwardSeen) {
+        for (int index : frontier.meetings) {
+            RubiksCube meeting = new RubiksCube(start);
+            frontier.load(index, meeting);
+            Stack<int[]> solution = this.buildSolution(start, meeting, forwardSeen, backwardSeen);
+            if (solution != null) {
+                return solution;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walks both halves of a path back out of the seen sets' tags, starting from a state both
+     * sides reached. The walks follow keys, not exact states, which works because making a
+     * move on two symmetric states gives two symmetric states as long as the move gets
+     * translated (see CubeSymmetry.conjugateMove).
+     * @return the solution, or null if it doesn't solve start (only when two keys collide)
+     */
+    private Stack<int[]> buildSolution(RubiksCube start, RubiksCube meeting,
+                                       LongHashSet forwardSeen, LongHashSet backwardSeen) {
+        List<Integer> toStart = this.walkBack(new RubiksCube(meeting), forwardSeen);
+        List<Integer> toSolved = this.walkBack(new RubiksCube(meeting), backwardSeen);
+        if (toStart == null || toSolved == null) {
+            return null;
+        }
+        List<Integer> path = new ArrayList<Integer>();
+        for (int i = toStart.size() - 1; i >= 0; i--) {
+            path.add(this.moveTable.getInverse(toStart.get(i)));
+        }
+        path.addAll(toSolved);
+
+        // path solves a state symmetric to start, find the symmetry that makes it solve start
+        for (int s = 0; s < this.symmetry.getNumSymmetries(); s++) {
+            RubiksCube cube = new RubiksCube(start);
+            Stack<int[]> solution = new Stack<int[]>();
+            for (int move : path) {
+                int translated = this.symmetry.conjugateMove(s, move);
+                this.makeMove(cube, translated);
+                solution.push(this.toMoveArray(translated));
+            }
+            if (cube.isSolved()) {
+                return solution;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follows the tags in seen from cube until it gets to a state with a root's key, making
+     * every move on cube along the way.
+     * @return the moves made, or null if a key along the way isn't in seen
+     */
+    private List<Integer> walkBack(RubiksCube cube, LongHashSet seen) {
+        List<Integer> moves = new ArrayList<Integer>();
+        int tag = seen.getTag(this.stateKey(cube));
+        while (tag != ROOT_TAG) {
+            if (tag == -1) {
+                return null;
+            }
+            // tags are stored in the canonical frame, turn the undo back into cube's frame
+            int move = this.symmetry.conjugateMove(this.symmetry.getInverse(this.keySymmetry),
+                                                   this.moveTable.getInverse(tag));
+            this.makeMove(cube, move);
+            moves.add(move);
+            tag = seen.getTag(this.stateKey(cube));
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the canonical key of a state and leaves the symmetry it used in keySymmetry
+     */
+    private long stateKey(RubiksCube cube) {
+        cube.copyStickersTo(this.keyBuffer, 0);
+        this.keySymmetry = this.symmetry.canonicalSymmetry(this.keyBuffer);
+        return this.symmetry.key(this.keyBuffer, this.keySymmetry);
+    }
+
+    private void makeMove(RubiksCube cube, int move) {
+        cube.makeMove(this.moveTable.getAxis(move), this.moveTable.getLayer(move),
+                      this.moveTable.getNumTurns(move));
+    }
+
+    private int[] toMoveArray(int move) {
+        return new int[] {this.moveTable.getAxis(move), this.moveTable.getLayer(move),
+                          this.moveTable.getNumTurns(move)};
+    }
+
+    /**
+     * One layer of the search, packed stickers of every state back to back
+     */
+    private static class Frontier {
+        private int stateSize;
+        private byte[] states;
+        private int count;
+        // indexes of states the other side has seen too
+        private List<Integer> meetings = new ArrayList<Integer>();
+
+        Frontier(int stateSize) {
+            this.stateSize = stateSize;
+            this.states = new byte[stateSize * 16];
+        }
+
+        void add(RubiksCube cube) {
+            if ((this.count + 1) * this.stateSize > this.states.length) {
+                long newLength = Math.min(2L * this.states.length, Integer.MAX_VALUE - 8);
+                if (newLength < (long) (this.count + 1) * this.stateSize) {
+                    throw new IllegalStateException("Frontier too big for one array");
+                }
+                this.states = Arrays.copyOf(this.states, (int) newLength);
+            }
+            cube.copyStickersTo(this.states, this.count * this.stateSize);
+            this.count++;
+        }
+
+        void load(int index, RubiksCube cube) {
+            cube.copyStickersFrom(this.states, index * this.stateSize);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+import java.util.Stack;
+
+/**
+ * Puts a SolutionCache in front of another solver. A state the cache has a solution for,
+ * in any orientation, mirror image or color scheme, is answered from the cache in
+ * microseconds, anything else is solved by the wrapped solver and its solution cached for
+ * next time.
+ *
+ * Cached solutions are whatever the wrapped solver found the first time, so they're only
+ * as short as its solutions are. One that's longer than a later solve's depthLimit counts
+ * as a miss and the state is solved again.
+ *
+ * Safe to share between threads if the wrapped solver is, and the cache always is, so a
+ * CachingSolver per thread around one shared cache works for anything.
+ */
+public class CachingSolver implements CubeSolver {
+    private CubeSolver solver;
+    private SolutionCache cache;
+
+    /**
+     * @param CubeSolver solver what solves states the cache doesn't have
+     * @param SolutionCache cache where solutions are looked up and remembered
+     */
+    public CachingSolver(CubeSolver solver, SolutionCache cache) {
+        this.solver = solver;
+        this.cache = cache;
+    }
+
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        Stack<int[]> solution = this.cache.get(cube, depthLimit);
+        if (solution == null) {
+            solution = this.solver.solve(cube, depthLimit, false);
+            if (solution == null) {
+                return null;
+            }
+            this.cache.put(cube, solution);
+        }
+
+        if (leaveCubeSolved) {
+            for (int[] move : solution) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return solution;
+    }
+
+    public SolutionCache getCache() {
+        return this.cache;
+    }
+
+    public void cancel() {
+        this.solver.cancel();
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.solver.setMetrics(metrics);
+    }
+}
@@ -0,0 +1,450 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Move sequences that 3-cycle three pieces of a big cube and leave every other sticker
+ * where it was, for the inner pieces a 3x3 doesn't have: the center pieces off the middle
+ * of each side, and the edge "wings" off the middle of each edge.
+ *
+ * They're all commutators A B A' B' where A is an inner slice turn and B is a move
+ * conjugated by a face turn (X M X'). When the stickers A moves and the stickers B moves
+ * have exactly one piece in common, A B A' B' moves that piece and two others around in a
+ * 3-cycle and puts everything else back. Those are found by trying every combination, and
+ * the rest are made by doing setup moves before and undoing them after, which just moves
+ * the 3-cycle somewhere else. Every 3-cycle of every orbit ends up in the library.
+ *
+ * Pieces are grouped into orbits, the sets of positions a sticker can ever be moved to.
+ * A center orbit is 24 stickers, four to a side. A wing has two stickers that can never
+ * swap, so each set of 24 wings is two sticker orbits, and only the first of the two is
+ * used to say where a wing is; its other sticker is its partner. 3-cycles are stored as
+ * positions in their orbit.
+ *
+ * Libraries are immutable and shared, get them with forSize.
+ */
+class CommutatorLibrary {
+    private static final int NUM_AXES = 3;
+    private static final int NUM_SIDES = 6;
+
+    private static final int KIND_OTHER = 0;
+    private static final int KIND_CENTER = 1;
+    private static final int KIND_WING = 2;
+
+    private static final ConcurrentHashMap<Integer, CommutatorLibrary> LIBRARIES =
+        new ConcurrentHashMap<Integer, CommutatorLibrary>();
+
+    private int cubeSize;
+    private MoveTable moveTable;
+    // sources[move][i] is the sticker that ends up at i after the move
+    private int[][] sources;
+
+    private int[] partner;
+    private int[][] orbitStickers;
+    private boolean[] wingOrbit;
+    // cycles[orbit] holds {from, to, next} position triples back to back, the piece at from
+    // moves to to, the one at to moves to next and the one at next moves to from
+    private int[][] cycles;
+    private int[][][] sequences;
+
+    private CommutatorLibrary(int cubeSize) {
+        this.cubeSize = cubeSize;
+        this.moveTable = MoveTable.forSize(cubeSize);
+        this.sources = new int[this.moveTable.getNumMoves()][];
+        for (int move = 0; move < this.sources.length; move++) {
+            this.sources[move] = this.moveTable.getSources(move);
+        }
+
+        int numStickers = NUM_SIDES * cubeSize * cubeSize;
+        int[] pieceOf = new int[numStickers];
+        int[] kind = new int[numStickers];
+        this.partner = new int[numStickers];
+        this.findPieces(pieceOf, kind);
+
+        List<int[]> orbits = new ArrayList<int[]>();
+        List<Boolean> wings = new ArrayList<Boolean>();
+        int[] orbitOf = this.findOrbits(kind, orbits, wings);
+        this.orbitStickers = orbits.toArray(new int[orbits.size()][]);
+        this.wingOrbit = new boolean[wings.size()];
+        for (int orbit = 0; orbit < wings.size(); orbit++) {
+            this.wingOrbit[orbit] = wings.get(orbit);
+        }
+
+        List<Map<Integer, int[]>> found = new ArrayList<Map<Integer, int[]>>();
+        for (int orbit = 0; orbit < this.orbitStickers.length; orbit++) {
+            found.add(new HashMap<Integer, int[]>());
+        }
+        this.findCommutators(pieceOf, orbitOf, found);
+        this.addSetups(found);
+
+        this.cycles = new int[found.size()][];
+        this.sequences = new int[found.size()][][];
+        for (int orbit = 0; orbit < found.size(); orbit++) {
+            Map<Integer, int[]> orbitCycles = found.get(orbit);
+            this.cycles[orbit] = new int[orbitCycles.size() * 3];
+            this.sequences[orbit] = new int[orbitCycles.size()][];
+            int entry = 0;
+            for (Map.Entry<Integer, int[]> cycle : orbitCycles.entrySet()) {
+                int key = cycle.getKey();
+                int numPositions = this.orbitStickers[orbit].length;
+                this.cycles[orbit][entry * 3] = key / numPositions / numPositions;
+                this.cycles[orbit][entry * 3 + 1] = key / numPositions % numPositions;
+                this.cycles[orbit][entry * 3 + 2] = key % numPositions;
+                this.sequences[orbit][entry] = cycle.getValue();
+                entry++;
+            }
+        }
+    }
+
+    /**
+     * Returns the shared library for a cube size, building it the first time it's asked for.
+     * Cubes under 4x4 don't have any pieces it covers.
+     */
+    static CommutatorLibrary forSize(int cubeSize) {
+        CommutatorLibrary library = LIBRARIES.get(cubeSize);
+        if (library == null) {
+            library = LIBRARIES.computeIfAbsent(cubeSize, size -> new CommutatorLibrary(size));
+        }
+        return library;
+    }
+
+    int getNumOrbits() {
+        return this.orbitStickers.length;
+    }
+
+    boolean isWingOrbit(int orbit) {
+        return this.wingOrbit[orbit];
+    }
+
+    /**
+     * Returns the packed sticker index of every position in an orbit
+     */
+    int[] getOrbitStickers(int orbit) {
+        return this.orbitStickers[orbit];
+    }
+
+    /**
+     * Returns the other sticker of the wing a sticker belongs to
+     */
+    int getPartner(int sticker) {
+        return this.partner[sticker];
+    }
+
+    int getNumCycles(int orbit) {
+        return this.cycles[orbit].length / 3;
+    }
+
+    /**
+     * Returns the {from, to, next} positions of a 3-cycle, see cycles
+     */
+    void getCycle(int orbit, int cycle, int[] positions) {
+        System.arraycopy(this.cycles[orbit], cycle * 3, positions, 0, 3);
+    }
+
+    /**
+     * Returns the move indexes (see MoveTable) that make a 3-cycle
+     */
+    int[] getSequence(int orbit, int cycle) {
+        return this.sequences[orbit][cycle];
+    }
+
+    /**
+     * Works out which piece each sticker is on, what kind of piece that is and the partner
+     * of every wing sticker
+     */
+    private void findPieces(int[] pieceOf, int[] kind) {
+        int cs = this.cubeSize;
+        Map<Integer, Integer> firstSticker = new HashMap<Integer, Integer>();
+        for (int x = 0; x < cs; x++) {
+            for (int y = 0; y < cs; y++) {
+                for (int z = 0; z < cs; z++) {
+                    int[] sides = sidesAt(cs, x, y, z);
+                    for (int side : sides) {
+                        int sticker = CubieGeometry.stickerIndex(cs, side, x, y, z);
+                        int piece = (x * cs + y) * cs + z;
+                        pieceOf[sticker] = piece;
+                        kind[sticker] = this.kindOf(x, y, z, sides.length);
+                        Integer other = firstSticker.putIfAbsent(piece, sticker);
+                        if (other != null) {
+                            this.partner[sticker] = other;
+                            this.partner[other] = sticker;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Centers and wings the 3x3 part of the cube doesn't already cover
+     */
+    private int kindOf(int x, int y, int z, int numSides) {
+        int mid = this.cubeSize % 2 == 1 ? this.cubeSize / 2 : -1;
+        int numMiddle = (x == mid ? 1 : 0) + (y == mid ? 1 : 0) + (z == mid ? 1 : 0);
+        if (numSides == 1 && numMiddle < 2) {
+            return KIND_CENTER;
+        }
+        if (numSides == 2 && numMiddle == 0) {
+            return KIND_WING;
+        }
+        return KIND_OTHER;
+    }
+
+    private static int[] sidesAt(int cs, int x, int y, int z) {
+        int[] sides = new int[3];
+        int count = 0;
+        if (y == cs - 1) {
+            sides[count++] = CubieGeometry.TOP;
+        } else if (y == 0) {
+            sides[count++] = CubieGeometry.BOTTOM;
+        }
+        if (z == 0) {
+            sides[count++] = CubieGeometry.FRONT;
+        } else if (z == cs - 1) {
+            sides[count++] = CubieGeometry.BACK;
+        }
+        if (x == 0) {
+            sides[count++] = CubieGeometry.LEFT;
+        } else if (x == cs - 1) {
+            sides[count++] = CubieGeometry.RIGHT;
+        }
+        return Arrays.copyOf(sides, count);
+    }
+
+    /**
+     * Groups the center and wing stickers into orbits by joining every sticker with
+     * wherever each quarter turn takes it. Of the two sticker orbits of a set of wings,
+     * only the one with the lowest sticker is kept.
+     * @return int[] the orbit of every sticker, -1 for stickers that aren't in one
+     */
+    private int[] findOrbits(int[] kind, List<int[]> orbits, List<Boolean> wings) {
+        int numStickers = kind.length;
+        int[] parent = new int[numStickers];
+        for (int i = 0; i < numStickers; i++) {
+            parent[i] = i;
+        }
+        for (int axis = 0; axis < NUM_AXES; axis++) {
+            for (int layer = 0; layer < this.cubeSize; layer++) {
+                int[] src = this.sources[this.moveTable.getMoveIndex(axis, layer, 1)];
+                for (int i = 0; i < numStickers; i++) {
+                    int a = find(parent, i);
+                    int b = find(parent, src[i]);
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+
+        int[] orbitOf = new int[numStickers];
+        Arrays.fill(orbitOf, -1);
+        Map<Integer, List<Integer>> byRoot = new TreeMap<Integer, List<Integer>>();
+        for (int i = 0; i < numStickers; i++) {
+            if (kind[i] == KIND_OTHER) {
+                continue;
+            }
+            int root = find(parent, i);
+            // the roots are the lowest sticker of each orbit
+            if (kind[i] == KIND_WING && find(parent, this.partner[root]) < root) {
+                continue;
+            }
+            byRoot.computeIfAbsent(root, r -> new ArrayList<Integer>()).add(i);
+        }
+        for (List<Integer> members : byRoot.values()) {
+            int[] stickers = new int[members.size()];
+            for (int i = 0; i < stickers.length; i++) {
+                stickers[i] = members.get(i);
+                orbitOf[stickers[i]] = orbits.size();
+            }
+            wings.add(kind[stickers[0]] == KIND_WING);
+            orbits.add(stickers);
+        }
+        return orbitOf;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Tries every A (an inner slice quarter turn) against every B (a quarter turn of any
+     * layer, conjugated by a face turn) and keeps the pairs whose moved stickers only
+     * overlap on one piece
+     */
+    private void findCommutators(int[] pieceOf, int[] orbitOf, List<Map<Integer, int[]>> found) {
+        int cs = this.cubeSize;
+        MoveTable mt = this.moveTable;
+        int[] faceLayers = {0, cs - 1};
+        int[] overlap = new int[2];
+
+        for (int axisA = 0; axisA < NUM_AXES; axisA++) {
+            for (int layerA = 1; layerA < cs - 1; layerA++) {
+                int a = mt.getMoveIndex(axisA, layerA, 1);
+                int[] movedByA = this.movedStickers(a);
+
+                for (int axisX = 0; axisX < NUM_AXES; axisX++) {
+                    for (int faceLayer : faceLayers) {
+                        for (int turnsX = 1; turnsX <= 3; turnsX += 2) {
+                            int x = mt.getMoveIndex(axisX, faceLayer, turnsX);
+                            int xInverse = mt.getInverse(x);
+
+                            for (int axisM = 0; axisM < NUM_AXES; axisM++) {
+                                for (int layerM = 0; layerM < cs; layerM++) {
+                                    int m = mt.getMoveIndex(axisM, layerM, 1);
+                                    int[] b = {x, m, xInverse};
+                                    int numOverlap = 0;
+                                    for (int sticker : movedByA) {
+                                        if (this.track(b, sticker) != sticker) {
+                                            if (numOverlap == overlap.length) {
+                                                numOverlap++;
+                                                break;
+                                            }
+                                            overlap[numOverlap++] = sticker;
+                                        }
+                                    }
+                                    boolean onePiece = numOverlap == 1
+                                        || (numOverlap == 2 && pieceOf[overlap[0]] == pieceOf[overlap[1]]);
+                                    if (!onePiece) {
+                                        continue;
+                                    }
+
+                                    int start = orbitOf[overlap[0]] >= 0 ? overlap[0] : overlap[numOverlap - 1];
+                                    int[] sequence = {a, x, m, xInverse, mt.getInverse(a), x, mt.getInverse(m), xInverse};
+                                    this.addCycle(orbitOf, found, start, sequence);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills in the rest of each orbit's 3-cycles by doing the ones already found one move
+     * away: a setup move, the 3-cycle, then the setup move undone. It goes breadth first,
+     * so every 3-cycle gets as few setup moves as it can.
+     */
+    private void addSetups(List<Map<Integer, int[]>> found) {
+        MoveTable mt = this.moveTable;
+        for (int orbit = 0; orbit < found.size(); orbit++) {
+            Map<Integer, int[]> orbitCycles = found.get(orbit);
+            int[] members = this.orbitStickers[orbit];
+            int numPositions = members.length;
+            ArrayDeque<Integer> queue = new ArrayDeque<Integer>(orbitCycles.keySet());
+            while (!queue.isEmpty()) {
+                int key = queue.poll();
+                int[] sequence = orbitCycles.get(key);
+                int from = members[key / numPositions / numPositions];
+                int to = members[key / numPositions % numPositions];
+                int next = members[key % numPositions];
+
+                for (int setup = 0; setup < mt.getNumMoves(); setup++) {
+                    // the setup move takes whatever is at src[i] to i
+                    int[] src = this.sources[setup];
+                    int[] positions = this.positionsInOrbit(orbit, src[from], src[to], src[next]);
+                    int setupKey = this.cycleKey(orbit, positions[0], positions[1], positions[2]);
+                    if (orbitCycles.containsKey(setupKey)) {
+                        continue;
+                    }
+                    int[] withSetup = new int[sequence.length + 2];
+                    withSetup[0] = setup;
+                    System.arraycopy(sequence, 0, withSetup, 1, sequence.length);
+                    withSetup[withSetup.length - 1] = mt.getInverse(setup);
+                    orbitCycles.put(setupKey, withSetup);
+                    queue.add(setupKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows start through sequence and stores the 3-cycle it makes, along with the
+     * opposite 3-cycle (the sequence backwards), unless a sequence at least as short is
+     * already stored for them
+     */
+    private void addCycle(int[] orbitOf, List<Map<Integer, int[]>> found, int start, int[] sequence) {
+        int orbit = orbitOf[start];
+        if (orbit < 0) {
+            return;
+        }
+        int second = this.track(sequence, start);
+        int third = this.track(sequence, second);
+        if (second == start || third == start || this.track(sequence, third) != start) {
+            return;
+        }
+
+        int[] positionOf = this.positionsInOrbit(orbit, start, second, third);
+        int[] reversed = new int[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            reversed[i] = this.moveTable.getInverse(sequence[sequence.length - 1 - i]);
+        }
+        putShortest(found.get(orbit), this.cycleKey(orbit, positionOf[0], positionOf[1], positionOf[2]), sequence);
+        putShortest(found.get(orbit), this.cycleKey(orbit, positionOf[0], positionOf[2], positionOf[1]), reversed);
+    }
+
+    private int[] positionsInOrbit(int orbit, int... stickers) {
+        int[] members = this.orbitStickers[orbit];
+        int[] positions = new int[stickers.length];
+        for (int i = 0; i < stickers.length; i++) {
+            positions[i] = Arrays.binarySearch(members, stickers[i]);
+        }
+        return positions;
+    }
+
+    /**
+     * The same 3-cycle can start at any of its three positions, so start it at the lowest
+     */
+    private int cycleKey(int orbit, int from, int to, int next) {
+        while (from > to || from > next) {
+            int first = from;
+            from = to;
+            to = next;
+            next = first;
+        }
+        int numPositions = this.orbitStickers[orbit].length;
+        return (from * numPositions + to) * numPositions + next;
+    }
+
+    private static void putShortest(Map<Integer, int[]> cycles, int key, int[] sequence) {
+        int[] existing = cycles.get(key);
+        if (existing == null || existing.length > sequence.length) {
+            cycles.put(key, sequence);
+        }
+    }
+
+    /**
+     * Returns where whatever is on sticker ends up after the moves in sequence
+     */
+    private int track(int[] sequence, int sticker) {
+        for (int move : sequence) {
+            // the inverse move's sources say where each sticker goes
+            sticker = this.sources[this.moveTable.getInverse(move)][sticker];
+        }
+        return sticker;
+    }
+
+    private int[] movedStickers(int move) {
+        int[] src = this.sources[move];
+        int count = 0;
+        for (int i = 0; i < src.length; i++) {
+            if (src[i] != i) {
+                count++;
+            }
+        }
+        int[] moved = new int[count];
+        count = 0;
+        for (int i = 0; i < src.length; i++) {
+            if (src[i] != i) {
+                moved[count++] = i;
+            }
+        }
+        return moved;
+    }
+}
@@ -0,0 +1,324 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * A fixed sequence of moves worked out once into the single sticker permutation it adds up
+ * to, so replaying it on a cube costs one pass over the stickers it moves (at most
+ * 6 * cubeSize^2) however long the sequence is. Made for algorithms and scrambles that get
+ * replayed over and over, see RubiksCube.makeMoves.
+ *
+ * Compiling first simplifies the moves: moves on the same axis all commute, so a move on
+ * the same layer as an earlier one in the same run of axis moves merges into it, and if
+ * they add up to nothing both go. The permutation is then stored like a MoveTable move, as
+ * its cycles over the packed stickers, along with how each moved sticker changes the
+ * Zobrist hash, so applying it never allocates anything. Immutable and thread safe.
+ */
+public class CompiledAlgorithm {
+    private static final int NUM_COLORS = 6;
+
+    private int cubeSize;
+    // the simplified moves, as move indexes
+    private int[] moves;
+
+    // every cycle back to back, cycleEnds[c] is where cycle c stops
+    private int[] cycles;
+    private int[] cycleEnds;
+    // cycleKeys[i * NUM_COLORS + color] is how the hash changes when a sticker of that color
+    // gets moved into cycles[i], like MoveTable's move keys
+    private long[] cycleKeys;
+    // stickers that change their side's color counts, see findCrossings
+    private int[] crossings;
+
+    private CompiledAlgorithm(int cubeSize, int[] moves) {
+        this.cubeSize = cubeSize;
+        this.moves = moves;
+        MoveTable moveTable = MoveTable.forSize(cubeSize);
+
+        // src[i] is where the sticker that ends up at i starts
+        int numStickers = NUM_COLORS * cubeSize * cubeSize;
+        int[] src = new int[numStickers];
+        for (int i = 0; i < numStickers; i++) {
+            src[i] = i;
+        }
+        int[][] moveSources = new int[moveTable.getNumMoves()][];
+        int[] composed = new int[numStickers];
+        for (int move : moves) {
+            if (moveSources[move] == null) {
+                moveSources[move] = moveTable.getSources(move);
+            }
+            int[] step = moveSources[move];
+            for (int i = 0; i < numStickers; i++) {
+                composed[i] = src[step[i]];
+            }
+            int[] temp = src;
+            src = composed;
+            composed = temp;
+        }
+        this.findCycles(src, moveTable);
+        this.crossings = findCrossings(src, cubeSize);
+    }
+
+    /**
+     * Compiles a list of {axis, layer, numTurns} moves, like a solution Stack, first move first
+     * @throws IllegalArgumentException if a move doesn't exist on a cube of cubeSize
+     */
+    public static CompiledAlgorithm compile(int cubeSize, List<int[]> moves) {
+        MoveTable moveTable = MoveTable.forSize(cubeSize);
+        int[] codes = new int[moves.size()];
+        for (int i = 0; i < codes.length; i++) {
+            int[] move = moves.get(i);
+            if (move[0] < 0 || move[0] > 2 || move[1] < 0 || move[1] >= cubeSize || move[2] < 1 || move[2] > 3) {
+                throw new IllegalArgumentException("Move " + move[0] + "," + move[1] + "," + move[2]
+                                                   + " doesn't exist on a cube of size " + cubeSize);
+            }
+            codes[i] = moveTable.getMoveIndex(move[0], move[1], move[2]);
+        }
+        return new CompiledAlgorithm(cubeSize, simplify(moveTable, codes));
+    }
+
+    public static CompiledAlgorithm compile(MovePath path) {
+        int[] codes = new int[path.getLength()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = path.getCode(i);
+        }
+        return new CompiledAlgorithm(path.getCubeSize(), simplify(MoveTable.forSize(path.getCubeSize()), codes));
+    }
+
+    /**
+     * Compiles moves written in standard notation, like "R U R' U'" (see MoveNotation.parse)
+     * @throws IllegalArgumentException if the notation can't be read
+     */
+    public static CompiledAlgorithm compile(int cubeSize, String notation) {
+        return compile(cubeSize, MoveNotation.parse(cubeSize, notation));
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns how many moves are left after simplifying
+     */
+    public int getNumMoves() {
+        return this.moves.length;
+    }
+
+    /**
+     * Returns how many stickers the algorithm moves, which is how much applying it costs
+     */
+    public int getNumStickersMoved() {
+        return this.cycles.length;
+    }
+
+    /**
+     * Returns the simplified moves as a Stack of {axis, layer, numTurns}, first move at the
+     * bottom
+     */
+    public Stack<int[]> getMoves() {
+        MoveTable moveTable = MoveTable.forSize(this.cubeSize);
+        Stack<int[]> moveStack = new Stack<int[]>();
+        for (int move : this.moves) {
+            moveStack.push(new int[] {moveTable.getAxis(move), moveTable.getLayer(move), moveTable.getNumTurns(move)});
+        }
+        return moveStack;
+    }
+
+    /**
+     * Returns the algorithm as a full permutation of the packed stickers
+     * @return int[] src where afterwards, sticker i holds what sticker src[i] held before
+     */
+    public int[] getSources() {
+        int[] src = new int[NUM_COLORS * this.cubeSize * this.cubeSize];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i;
+        }
+        int start = 0;
+        for (int end : this.cycleEnds) {
+            for (int i = start; i < end; i++) {
+                src[this.cycles[i]] = this.cycles[i + 1 < end ? i + 1 : start];
+            }
+            start = end;
+        }
+        return src;
+    }
+
+    /**
+     * Returns every cycle back to back, each sticker in a cycle taking the color of the
+     * next one, like MoveTable.getCycles. Shared, don't change it.
+     */
+    int[] getCycles() {
+        return this.cycles;
+    }
+
+    /**
+     * Returns where each cycle in getCycles stops. Shared, don't change it.
+     */
+    int[] getCycleEnds() {
+        return this.cycleEnds;
+    }
+
+    /**
+     * Returns the algorithm that undoes this one
+     */
+    public CompiledAlgorithm inverse() {
+        MoveTable moveTable = MoveTable.forSize(this.cubeSize);
+        int[] inverseMoves = new int[this.moves.length];
+        for (int i = 0; i < this.moves.length; i++) {
+            inverseMoves[i] = moveTable.getInverse(this.moves[this.moves.length - 1 - i]);
+        }
+        return new CompiledAlgorithm(this.cubeSize, inverseMoves);
+    }
+
+    /**
+     * Returns the algorithm that does this one and then next
+     */
+    public CompiledAlgorithm then(CompiledAlgorithm next) {
+        if (next.cubeSize != this.cubeSize) {
+            throw new IllegalArgumentException("Can't join algorithms for different cube sizes");
+        }
+        int[] joined = Arrays.copyOf(this.moves, this.moves.length + next.moves.length);
+        System.arraycopy(next.moves, 0, joined, this.moves.length, next.moves.length);
+        return new CompiledAlgorithm(this.cubeSize, simplify(MoveTable.forSize(this.cubeSize), joined));
+    }
+
+    /**
+     * Returns the moves in standard notation
+     */
+    @Override
+    public String toString() {
+        return MoveNotation.format(this.cubeSize, this.getMoves());
+    }
+
+    /**
+     * Applies the algorithm to packed stickers in place and updates their Zobrist hash
+     * @param byte[] stickers packed stickers of a cube this algorithm's size
+     * @param long hash zobristHash of stickers before
+     * @return zobristHash of stickers after
+     */
+    long apply(byte[] stickers, long hash) {
+        int[] cycles = this.cycles;
+        long[] keys = this.cycleKeys;
+        int start = 0;
+        for (int end : this.cycleEnds) {
+            byte first = stickers[cycles[start]];
+            for (int i = start; i < end - 1; i++) {
+                byte color = stickers[cycles[i + 1]];
+                hash ^= keys[i * NUM_COLORS + color];
+                stickers[cycles[i]] = color;
+            }
+            hash ^= keys[(end - 1) * NUM_COLORS + first];
+            stickers[cycles[end - 1]] = first;
+            start = end;
+        }
+        return hash;
+    }
+
+    /**
+     * Updates how many stickers of each color each side has for the algorithm, before it's
+     * applied
+     * @param long[] faceColorCounts packed counts from MoveTable.countFaceColors
+     */
+    void updateFaceColorCounts(byte[] stickers, long[] faceColorCounts) {
+        int[] crossings = this.crossings;
+        for (int i = 0; i < crossings.length; i += 3) {
+            faceColorCounts[crossings[i + 2]] += MoveTable.countChange(stickers[crossings[i]], stickers[crossings[i + 1]]);
+        }
+    }
+
+    /**
+     * Removes moves that cancel out and merges moves on the same layer, looking back through
+     * the run of moves on the same axis since they all commute
+     */
+    private static int[] simplify(MoveTable moveTable, int[] codes) {
+        int[] simplified = new int[codes.length];
+        int length = 0;
+        for (int move : codes) {
+            int axis = moveTable.getAxis(move);
+            int layer = moveTable.getLayer(move);
+            int j = length - 1;
+            while (j >= 0 && moveTable.getAxis(simplified[j]) == axis && moveTable.getLayer(simplified[j]) != layer) {
+                j--;
+            }
+            if (j < 0 || moveTable.getAxis(simplified[j]) != axis) {
+                simplified[length++] = move;
+                continue;
+            }
+            int numTurns = (moveTable.getNumTurns(simplified[j]) + moveTable.getNumTurns(move)) % 4;
+            if (numTurns != 0) {
+                simplified[j] = moveTable.getMoveIndex(axis, layer, numTurns);
+            } else {
+                System.arraycopy(simplified, j + 1, simplified, j, length - j - 1);
+                length--;
+            }
+        }
+        return Arrays.copyOf(simplified, length);
+    }
+
+    /**
+     * Picks out the stickers updateFaceColorCounts has to look at, as (to, from, side of to)
+     * triples. A side whose stickers all come from that same side keeps its
+     * colors, so only the moved stickers of the other sides are listed.
+     */
+    private static int[] findCrossings(int[] src, int cubeSize) {
+        int sideSize = cubeSize * cubeSize;
+        int[] found = new int[src.length * 3];
+        int count = 0;
+        for (int side = 0; side < NUM_COLORS; side++) {
+            int start = side * sideSize;
+            boolean keepsColors = true;
+            for (int to = start; to < start + sideSize; to++) {
+                keepsColors &= src[to] / sideSize == side;
+            }
+            if (keepsColors) {
+                continue;
+            }
+            for (int to = start; to < start + sideSize; to++) {
+                if (src[to] != to) {
+                    found[count++] = to;
+                    found[count++] = src[to];
+                    found[count++] = side;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Splits src into its cycles, leaving out stickers that don't move, and works out the
+     * hash keys for them
+     */
+    private void findCycles(int[] src, MoveTable moveTable) {
+        boolean[] visited = new boolean[src.length];
+        int[] allCycles = new int[src.length];
+        int[] ends = new int[src.length];
+        int count = 0;
+        int numCycles = 0;
+        for (int start = 0; start < src.length; start++) {
+            if (visited[start] || src[start] == start) {
+                continue;
+            }
+            for (int i = start; !visited[i]; i = src[i]) {
+                visited[i] = true;
+                allCycles[count++] = i;
+            }
+            ends[numCycles++] = count;
+        }
+        this.cycles = Arrays.copyOf(allCycles, count);
+        this.cycleEnds = Arrays.copyOf(ends, numCycles);
+
+        this.cycleKeys = new long[count * NUM_COLORS];
+        int start = 0;
+        for (int end : this.cycleEnds) {
+            for (int i = start; i < end; i++) {
+                int to = this.cycles[i];
+                int from = this.cycles[i + 1 < end ? i + 1 : start];
+                for (int color = 0; color < NUM_COLORS; color++) {
+                    this.cycleKeys[i * NUM_COLORS + color] = moveTable.getZobristKey(to, color)
+                                                           ^ moveTable.getZobristKey(from, color);
+                }
+            }
+            start = end;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Something a search can aim for instead of the whole cube being solved, like the cross
+ * or the first layer, so a solve can be split up into stages that are each a short
+ * search (see StageGoal for the usual ones and StageSolver for searching them in turn).
+ *
+ * estimate works like CubeHeuristic.estimate but for reaching the goal: it must never be
+ * more than the number of moves the goal is really away, otherwise IDAStarSolver's
+ * answers are no longer the shortest. The default of 0 is always safe, it just makes the
+ * search a plain iterative deepening one.
+ */
+public interface CubeGoal {
+
+    /**
+     * The goal every solver has without one, every side one color
+     */
+    CubeGoal SOLVED = new CubeGoal() {
+        public boolean isReached(RubiksCube cube) {
+            return cube.isSolved();
+        }
+
+        public boolean isOrientationInvariant() {
+            return true;
+        }
+    };
+
+    /**
+     * Returns whether cube has reached the goal.
+     * @param RubiksCube cube The cube to check. Must not be modified.
+     */
+    boolean isReached(RubiksCube cube);
+
+    /**
+     * Returns a lower bound on the number of moves needed to reach the goal.
+     * @param RubiksCube cube The cube to estimate. Must not be modified.
+     */
+    default int estimate(RubiksCube cube) {
+        return 0;
+    }
+
+    /**
+     * Returns whether turning the whole cube can never change whether the goal is reached.
+     * Only then can a 2x2 search leave out the turns of the DBL layer (see MoveOrdering),
+     * so a goal that's tied to particular sides has to say false, which is the default.
+     */
+    default boolean isOrientationInvariant() {
+        return false;
+    }
+}
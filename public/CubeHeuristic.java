@@ -0,0 +1,16 @@
+/**
+ * A heuristic gives a lower bound on the number of moves a cube needs before it is solved.
+ * Every move counts as one no matter the layer or the number of turns, the same way
+ * solveDFS counts them.
+ *
+ * Implementations handed to IDAStarSolver must be admissible (never overestimate),
+ * otherwise the solutions it returns are no longer guaranteed to be the shortest.
+ */
+public interface CubeHeuristic {
+
+    /**
+     * Returns a lower bound on the number of moves needed to solve cube.
+     * @param RubiksCube cube The cube to estimate. Must not be modified.
+     */
+    int estimate(RubiksCube cube);
+}
@@ -0,0 +1,277 @@
+import java.util.Arrays;
+
+/**
+ * Lots of cubes of one size kept sticker by sticker instead of cube by cube, for making the
+ * same moves on all of them at once (data generation, population based searches).
+ *
+ * There's one byte array per packed sticker position, holding that sticker's color for
+ * every cube in the population. A move only ever sends whole positions to other positions,
+ * so making it on the whole population is just moving those arrays around, a couple of
+ * dozen reference swaps whether there are ten cubes or a million. Making it on only some of
+ * the cubes copies their part of each moved array with System.arraycopy.
+ *
+ * isSolved and zobristHashes go over the arrays one position at a time in plain loops over
+ * a block of cubes, which the JIT turns into vector instructions where it can, and which
+ * read memory front to back instead of jumping from cube to cube.
+ *
+ * Hashes aren't kept up to date as moves are made, since that would take a pass over every
+ * cube per move, they're worked out when asked for. Not thread safe.
+ */
+public class CubePopulation {
+    private static final int NUM_SIDES = 6;
+    private static final int NUM_COLORS = 6;
+    // how many cubes isSolved and zobristHashes do at a time, few enough that what they
+    // keep per cube stays in the L1 cache while they go through every position
+    private static final int BLOCK_SIZE = 2048;
+
+    private int cubeSize;
+    private int size;
+    private MoveTable moveTable;
+    // stickers[position][cube] is the color of packed sticker position on cube
+    private byte[][] stickers;
+    private byte[] temp;
+    // one cube's packed stickers, for get
+    private byte[] cubeStickers;
+
+    /**
+     * Creates a population of solved cubes, each colored like RubiksCube(cubeSize, false)
+     * @param int cubeSize size of the cubes
+     * @param int size how many cubes there are
+     */
+    public CubePopulation(int cubeSize, int size) {
+        if (cubeSize < 1) {
+            throw new IllegalArgumentException("Cube size must be at least 1");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Population size can't be negative");
+        }
+        this.cubeSize = cubeSize;
+        this.size = size;
+        this.moveTable = MoveTable.forSize(cubeSize);
+        int sideLength = cubeSize * cubeSize;
+        this.stickers = new byte[NUM_SIDES * sideLength][];
+        for (int position = 0; position < this.stickers.length; position++) {
+            this.stickers[position] = new byte[size];
+            Arrays.fill(this.stickers[position], (byte) (position / sideLength));
+        }
+        this.temp = new byte[size];
+        this.cubeStickers = new byte[this.stickers.length];
+    }
+
+    /**
+     * Returns a population holding copies of cubes, in the same order
+     * @throws IllegalArgumentException if there are no cubes or they aren't all one size
+     */
+    public static CubePopulation of(RubiksCube... cubes) {
+        if (cubes.length == 0) {
+            throw new IllegalArgumentException("Can't tell the cube size without any cubes");
+        }
+        CubePopulation population = new CubePopulation(cubes[0].getCubeSize(), cubes.length);
+        for (int i = 0; i < cubes.length; i++) {
+            population.set(i, cubes[i]);
+        }
+        return population;
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns how many cubes there are
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Copies cube into the population at index
+     * @throws IllegalArgumentException if cube isn't the population's size
+     */
+    public void set(int index, RubiksCube cube) {
+        this.checkSize(cube);
+        for (int position = 0; position < this.stickers.length; position++) {
+            this.stickers[position][index] = (byte) cube.getPackedSticker(position);
+        }
+    }
+
+    /**
+     * Returns a copy of the cube at index
+     */
+    public RubiksCube get(int index) {
+        RubiksCube cube = new RubiksCube(this.cubeSize, false);
+        this.get(index, cube);
+        return cube;
+    }
+
+    /**
+     * Copies the cube at index into cube, so lots of them can be read out without making a
+     * cube for each
+     * @throws IllegalArgumentException if cube isn't the population's size
+     */
+    public void get(int index, RubiksCube cube) {
+        this.checkSize(cube);
+        byte[] cubeStickers = this.cubeStickers;
+        for (int position = 0; position < this.stickers.length; position++) {
+            cubeStickers[position] = this.stickers[position][index];
+        }
+        cube.copyStickersFrom(cubeStickers, 0);
+    }
+
+    /**
+     * Returns the color of packed sticker position on the cube at index
+     */
+    public int getSticker(int index, int position) {
+        return this.stickers[position][index];
+    }
+
+    /**
+     * Makes a move on every cube, see RubiksCube.makeMove
+     * @throws IllegalArgumentException if the layer isn't on the cubes
+     */
+    public void makeMove(int axis, int layer, int numTurns) {
+        this.apply(this.moveIndex(axis, layer, numTurns));
+    }
+
+    /**
+     * Makes a move on every cube
+     * @param int moveIndex from MoveTable.getMoveIndex
+     */
+    public void apply(int moveIndex) {
+        int[] cycles = this.moveTable.getCycles(moveIndex);
+        int length = this.moveTable.getCycleLength(moveIndex);
+        byte[][] stickers = this.stickers;
+        for (int start = 0; start < cycles.length; start += length) {
+            byte[] first = stickers[cycles[start]];
+            for (int i = start; i < start + length - 1; i++) {
+                stickers[cycles[i]] = stickers[cycles[i + 1]];
+            }
+            stickers[cycles[start + length - 1]] = first;
+        }
+    }
+
+    /**
+     * Makes a move on the cubes from index from up to but not including index to
+     * @param int moveIndex from MoveTable.getMoveIndex
+     */
+    public void apply(int moveIndex, int from, int to) {
+        if (from < 0 || to > this.size || from > to) {
+            throw new IndexOutOfBoundsException("Cubes " + from + " to " + to + " of " + this.size);
+        }
+        if (from == 0 && to == this.size) {
+            this.apply(moveIndex);
+            return;
+        }
+        int[] cycles = this.moveTable.getCycles(moveIndex);
+        int length = this.moveTable.getCycleLength(moveIndex);
+        int count = to - from;
+        for (int start = 0; start < cycles.length; start += length) {
+            System.arraycopy(this.stickers[cycles[start]], from, this.temp, from, count);
+            for (int i = start; i < start + length - 1; i++) {
+                System.arraycopy(this.stickers[cycles[i + 1]], from, this.stickers[cycles[i]], from, count);
+            }
+            System.arraycopy(this.temp, from, this.stickers[cycles[start + length - 1]], from, count);
+        }
+    }
+
+    /**
+     * Makes every move of a compiled algorithm on every cube
+     * @throws IllegalArgumentException if the algorithm is for another cube size
+     */
+    public void apply(CompiledAlgorithm algorithm) {
+        if (algorithm.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Algorithm is for cubes of size " + algorithm.getCubeSize());
+        }
+        int[] cycles = algorithm.getCycles();
+        byte[][] stickers = this.stickers;
+        int start = 0;
+        for (int end : algorithm.getCycleEnds()) {
+            byte[] first = stickers[cycles[start]];
+            for (int i = start; i < end - 1; i++) {
+                stickers[cycles[i]] = stickers[cycles[i + 1]];
+            }
+            stickers[cycles[end - 1]] = first;
+            start = end;
+        }
+    }
+
+    /**
+     * Works out which cubes are solved, see RubiksCube.isSolved
+     * @param boolean[] solved filled with whether each cube is solved, at least size() long
+     * @return how many are solved
+     */
+    public int isSolved(boolean[] solved) {
+        int sideLength = this.cubeSize * this.cubeSize;
+        // any bit set means some sticker didn't match its side's first one
+        byte[] mismatch = this.temp;
+        Arrays.fill(mismatch, 0, this.size, (byte) 0);
+        for (int from = 0; from < this.size; from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, this.size);
+            for (int side = 0; side < NUM_SIDES; side++) {
+                byte[] first = this.stickers[side * sideLength];
+                for (int position = side * sideLength + 1; position < (side + 1) * sideLength; position++) {
+                    orMismatch(mismatch, this.stickers[position], first, from, to);
+                }
+            }
+        }
+        int numSolved = 0;
+        for (int i = 0; i < this.size; i++) {
+            solved[i] = mismatch[i] == 0;
+            if (solved[i]) {
+                numSolved++;
+            }
+        }
+        return numSolved;
+    }
+
+    // written out without |= since the JIT only vectorizes it this way
+    private static void orMismatch(byte[] mismatch, byte[] colors, byte[] first, int from, int to) {
+        for (int i = from; i < to; i++) {
+            mismatch[i] = (byte) (mismatch[i] | colors[i] ^ first[i]);
+        }
+    }
+
+    /**
+     * Works out every cube's Zobrist hash, the same as RubiksCube.getZobristHash would give
+     * @param long[] hashes filled with each cube's hash, at least size() long
+     */
+    public void zobristHashes(long[] hashes) {
+        Arrays.fill(hashes, 0, this.size, 0L);
+        long[] keys = new long[NUM_COLORS];
+        for (int from = 0; from < this.size; from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, this.size);
+            for (int position = 0; position < this.stickers.length; position++) {
+                for (int color = 0; color < NUM_COLORS; color++) {
+                    keys[color] = this.moveTable.getZobristKey(position, color);
+                }
+                byte[] colors = this.stickers[position];
+                for (int i = from; i < to; i++) {
+                    hashes[i] ^= keys[colors[i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the move index the way RubiksCube.makeMove reads its arguments
+     * @throws IllegalArgumentException if the layer isn't on the cubes
+     */
+    private int moveIndex(int axis, int layer, int numTurns) {
+        if (layer < 0 || layer >= this.cubeSize) {
+            throw new IllegalArgumentException("Layer " + layer + " isn't on cubes of size " + this.cubeSize);
+        }
+        if (axis != 0 && axis != 1) {
+            axis = 2;
+        }
+        if (numTurns != 1 && numTurns != 2) {
+            numTurns = 3;
+        }
+        return this.moveTable.getMoveIndex(axis, layer, numTurns);
+    }
+
+    private void checkSize(RubiksCube cube) {
+        if (cube.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Population is of cubes of size " + this.cubeSize);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Draws cubes as text without building the picture up one String at a time.
+ *
+ * The unfolded picture toString prints is the same for every cube of a size apart from the
+ * sticker letters, so it's worked out once per size as a template along with where each
+ * sticker's letter goes in it. Drawing a cube is then copying the template and filling in
+ * 6 * cubeSize^2 letters, straight into the caller's StringBuilder, Writer or other
+ * Appendable.
+ *
+ * Facelets are the one line version for logs and sending cubes around: every sticker as
+ * the letter of the face its color belongs on, faces in the order U R F D L B, each read
+ * row by row the way cubeMap.txt lays them out. For a 3x3 that's the usual 54 character
+ * format other solvers read, like UUUUUUUUURRRRRRRRRFFFFFFFFFDDDDDDDDDLLLLLLLLLBBBBBBBBB
+ * for a solved cube. Colors are matched to faces by the color scheme of
+ * RubiksCube(cubeSize, false) (color n belongs on side n), not by the centers, so
+ * parseFacelets gives back exactly the cube that was written even after slice moves.
+ *
+ * Renderers are immutable and thread safe.
+ */
+public class CubeRenderer {
+    private static final int NUM_SIDES = 6;
+    private static final int FRONT = 0;
+    private static final int BACK = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int TOP = 4;
+    private static final int BOTTOM = 5;
+
+    // letters toString uses for colors 0 to 5, red orange blue green yellow white
+    private static final char[] COLOR_CHARS = {'R', 'O', 'B', 'G', 'Y', 'W'};
+    // face letter of each side, which is also the letter for the color that belongs there
+    private static final char[] FACE_LETTERS = {'F', 'B', 'L', 'R', 'U', 'D'};
+    // sides in facelet order
+    private static final int[] FACELET_SIDES = {TOP, RIGHT, FRONT, BOTTOM, LEFT, BACK};
+
+    private static final ConcurrentHashMap<Integer, CubeRenderer> RENDERERS = new ConcurrentHashMap<Integer, CubeRenderer>();
+
+    private int cubeSize;
+    private char[] template;
+    // the k-th letter in the template goes at charPositions[k] and shows packed sticker
+    // stickerIndexes[k], in the order they come in the template
+    private int[] charPositions;
+    private int[] stickerIndexes;
+    // where the top, middle and bottom parts start and end, in template chars and in
+    // letters, so getTopString and friends can draw just their part
+    private int[] sectionChars = new int[4];
+    private int[] sectionStickers = new int[4];
+
+    private CubeRenderer(int cubeSize) {
+        this.cubeSize = cubeSize;
+        this.buildTemplate();
+    }
+
+    /**
+     * Returns the renderer for cubeSize, making it the first time it's asked for
+     */
+    public static CubeRenderer forSize(int cubeSize) {
+        if (cubeSize < 1) {
+            throw new IllegalArgumentException("Cube size must be at least 1");
+        }
+        return RENDERERS.computeIfAbsent(cubeSize, CubeRenderer::new);
+    }
+
+    /**
+     * Returns the unfolded picture of cube, what RubiksCube.toString prints
+     */
+    public String render(RubiksCube cube) {
+        StringBuilder picture = new StringBuilder(this.template.length);
+        this.render(cube, picture);
+        return picture.toString();
+    }
+
+    /**
+     * Appends the unfolded picture of cube to out
+     */
+    public void render(RubiksCube cube, StringBuilder out) {
+        this.renderSections(cube, 0, 3, out);
+    }
+
+    /**
+     * Writes the unfolded picture of cube to out, in one write if out is a Writer
+     * @throws IOException if out does
+     */
+    public void render(RubiksCube cube, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            this.render(cube, (StringBuilder) out);
+            return;
+        }
+        this.checkSize(cube);
+        char[] picture = this.template.clone();
+        for (int k = 0; k < this.charPositions.length; k++) {
+            picture[this.charPositions[k]] = COLOR_CHARS[cube.getPackedSticker(this.stickerIndexes[k])];
+        }
+        if (out instanceof Writer) {
+            ((Writer) out).write(picture);
+        } else {
+            out.append(CharBuffer.wrap(picture));
+        }
+    }
+
+    String renderTop(RubiksCube cube) {
+        return this.renderSection(cube, 0);
+    }
+
+    String renderMiddle(RubiksCube cube) {
+        return this.renderSection(cube, 1);
+    }
+
+    String renderBottom(RubiksCube cube) {
+        return this.renderSection(cube, 2);
+    }
+
+    /**
+     * Returns cube as a facelet string, 6 * cubeSize^2 face letters
+     */
+    public static String facelets(RubiksCube cube) {
+        StringBuilder facelets = new StringBuilder(NUM_SIDES * cube.getCubeSize() * cube.getCubeSize());
+        appendFacelets(cube, facelets);
+        return facelets.toString();
+    }
+
+    /**
+     * Appends cube's facelet string to out
+     */
+    public static void appendFacelets(RubiksCube cube, StringBuilder out) {
+        int sideSize = cube.getCubeSize() * cube.getCubeSize();
+        out.ensureCapacity(out.length() + NUM_SIDES * sideSize);
+        for (int side : FACELET_SIDES) {
+            int start = side * sideSize;
+            for (int i = start; i < start + sideSize; i++) {
+                out.append(FACE_LETTERS[cube.getPackedSticker(i)]);
+            }
+        }
+    }
+
+    /**
+     * Reads a facelet string back into a cube, working out the size from the length
+     * @throws IllegalArgumentException if the length isn't 6 times a square or there's a
+     * letter that isn't a face
+     * @throws Exception if the stickers aren't a cube the RubiksCube constructor takes
+     */
+    public static RubiksCube parseFacelets(String facelets) throws Exception {
+        int cs = (int) Math.round(Math.sqrt(facelets.length() / (double) NUM_SIDES));
+        if (cs < 1 || NUM_SIDES * cs * cs != facelets.length()) {
+            throw new IllegalArgumentException("A facelet string of length " + facelets.length()
+                                               + " isn't 6 square faces");
+        }
+        String faces = new String(FACE_LETTERS);
+        int[][][] gameStateArr = new int[NUM_SIDES][cs][cs];
+        int index = 0;
+        for (int side : FACELET_SIDES) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    char letter = facelets.charAt(index++);
+                    int color = faces.indexOf(letter);
+                    if (color < 0) {
+                        throw new IllegalArgumentException("Unknown face " + letter + " at facelet " + (index - 1));
+                    }
+                    gameStateArr[side][row][col] = color;
+                }
+            }
+        }
+        return new RubiksCube(cs, gameStateArr);
+    }
+
+    private String renderSection(RubiksCube cube, int section) {
+        StringBuilder picture = new StringBuilder(this.sectionChars[section + 1] - this.sectionChars[section]);
+        this.renderSections(cube, section, section + 1, picture);
+        return picture.toString();
+    }
+
+    /**
+     * Appends the template from the start of section first to the end of section last - 1
+     * and fills its letters in where they landed
+     */
+    private void renderSections(RubiksCube cube, int first, int last, StringBuilder out) {
+        this.checkSize(cube);
+        int charStart = this.sectionChars[first];
+        int base = out.length() - charStart;
+        out.append(this.template, charStart, this.sectionChars[last] - charStart);
+        for (int k = this.sectionStickers[first]; k < this.sectionStickers[last]; k++) {
+            out.setCharAt(base + this.charPositions[k], COLOR_CHARS[cube.getPackedSticker(this.stickerIndexes[k])]);
+        }
+    }
+
+    private void checkSize(RubiksCube cube) {
+        if (cube.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Renderer is for cubes of size " + this.cubeSize);
+        }
+    }
+
+    /**
+     * Lays out the picture the way toString always has: the top face above the front, the
+     * left, front, right and back faces in a row, and the bottom face under the front
+     */
+    private void buildTemplate() {
+        int cs = this.cubeSize;
+        int repeatLength = cs * 4;
+        StringBuilder picture = new StringBuilder();
+        int numStickers = NUM_SIDES * cs * cs;
+        this.charPositions = new int[numStickers];
+        this.stickerIndexes = new int[numStickers];
+        int[] count = new int[1];
+
+        repeat(picture, ' ', repeatLength);
+        repeat(picture, '_', repeatLength + 1);
+        for (int row = 0; row < cs - 1; row++) {
+            picture.append('\n');
+            repeat(picture, ' ', repeatLength);
+            this.appendRow(picture, count, TOP, row);
+            picture.append('|');
+        }
+        picture.append('\n');
+        repeat(picture, '_', repeatLength);
+        this.appendRow(picture, count, TOP, cs - 1);
+        picture.append('|');
+        repeat(picture, '_', repeatLength * 2);
+        this.sectionChars[1] = picture.length();
+        this.sectionStickers[1] = count[0];
+
+        for (int row = 0; row < cs; row++) {
+            picture.append('\n');
+            this.appendRow(picture, count, LEFT, row);
+            this.appendRow(picture, count, FRONT, row);
+            this.appendRow(picture, count, RIGHT, row);
+            this.appendRow(picture, count, BACK, row);
+            picture.append('|');
+        }
+        this.sectionChars[2] = picture.length();
+        this.sectionStickers[2] = count[0];
+
+        for (int row = 0; row < cs; row++) {
+            picture.append('\n');
+            repeat(picture, ' ', repeatLength);
+            this.appendRow(picture, count, BOTTOM, row);
+            picture.append('|');
+        }
+        picture.append('\n');
+        this.sectionChars[3] = picture.length();
+        this.sectionStickers[3] = count[0];
+
+        this.template = new char[picture.length()];
+        picture.getChars(0, picture.length(), this.template, 0);
+    }
+
+    /**
+     * Appends one row of a side, |_X_ a sticker, with X left as a space to fill in later
+     */
+    private void appendRow(StringBuilder picture, int[] count, int side, int row) {
+        int cs = this.cubeSize;
+        for (int col = 0; col < cs; col++) {
+            picture.append("|_");
+            this.charPositions[count[0]] = picture.length();
+            this.stickerIndexes[count[0]] = side * cs * cs + row * cs + col;
+            count[0]++;
+            picture.append(" _");
+        }
+    }
+
+    private static void repeat(StringBuilder picture, char c, int n) {
+        for (int i = 0; i < n; i++) {
+            picture.append(c);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+import java.util.Stack;
+
+/**
+ * Something that finds a sequence of moves that solves a cube, so callers like BatchSolver
+ * can run any of the solvers the same way.
+ *
+ * Solutions use the same {axis, layer, numTurns} moves as solveDFS, with the first move at
+ * the bottom of the stack. Solvers don't print anything. Unless an implementation says so
+ * an instance is only meant to be used by one thread at a time.
+ */
+public interface CubeSolver {
+
+    /**
+     * Searches for a solution that is at most depthLimit moves long.
+     * @param RubiksCube cube The cube to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether cube should be left solved or the way it was
+     * @return Stack<int[]> of moves with the first move at the bottom, or null if there is
+     * no solution within depthLimit moves.
+     */
+    Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved);
+
+    /**
+     * Makes a solve running on another thread stop as soon as it can and return the best
+     * solution it has found so far, which for most solvers is none, so null. It's only meant
+     * to be called once, a cancelled solver stays cancelled. Solvers that can't be stopped
+     * early ignore it and finish normally.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * Makes the solver count what its solves do into metrics, null to stop counting. Solvers
+     * that don't keep metrics ignore it.
+     */
+    default void setMetrics(SolverMetrics metrics) {
+    }
+}
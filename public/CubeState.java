@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * Compact snapshot of a cube of any size: one byte per sticker in a single flat array, the
+ * same layout RubiksCube keeps its stickers in, without the move table, hash and color
+ * counts that come with a whole cube. Meant for things that hold a lot of states at once,
+ * like search frontiers and visited sets.
+ *
+ * Stickers are packed as side * cubeSize * cubeSize + row * cubeSize + col, with sides in the
+ * same order as the gameStateArr constructor (front, back, left, right, top, bottom).
+ *
+ * CubeStates are values: they never change after being made and two states with the same
+ * stickers are equal.
+ */
+public class CubeState {
+    private static final int NUM_SIDES = 6;
+
+    private int cubeSize;
+    private byte[] stickers;
+    private int hash;
+
+    private CubeState(int cubeSize, byte[] stickers) {
+        this.cubeSize = cubeSize;
+        this.stickers = stickers;
+        this.hash = 31 * cubeSize + Arrays.hashCode(stickers);
+    }
+
+    /**
+     * Takes a snapshot of cube's current state
+     */
+    public static CubeState fromCube(RubiksCube cube) {
+        int cs = cube.getCubeSize();
+        byte[] stickers = new byte[NUM_SIDES * cs * cs];
+        int index = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    stickers[index++] = (byte) cube.getSticker(side, row, col);
+                }
+            }
+        }
+        return new CubeState(cs, stickers);
+    }
+
+    /**
+     * Makes a state out of the same int[6][cubeSize][cubeSize] format the RubiksCube
+     * constructor takes.
+     * @throws Exception if gameStateArr isn't a valid game state for cubeSize
+     */
+    public static CubeState fromGameState(int cubeSize, int[][][] gameStateArr) throws Exception {
+        return fromCube(new RubiksCube(cubeSize, gameStateArr));
+    }
+
+    /**
+     * Makes a state out of packed stickers (see the class comment for the layout). The
+     * array is copied.
+     * @throws Exception if stickers isn't a valid game state for cubeSize
+     */
+    public static CubeState fromStickers(int cubeSize, byte[] stickers) throws Exception {
+        if (stickers.length != NUM_SIDES * cubeSize * cubeSize) {
+            throw new Exception("Game state given is not valid");
+        }
+        CubeState state = new CubeState(cubeSize, stickers.clone());
+        // let the RubiksCube constructor check the colors
+        state.toCube();
+        return state;
+    }
+
+    /**
+     * Returns the state in the gameStateArr format the RubiksCube constructor takes
+     */
+    public int[][][] toGameState() {
+        int cs = this.cubeSize;
+        int[][][] gameStateArr = new int[NUM_SIDES][cs][cs];
+        int index = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    gameStateArr[side][row][col] = this.stickers[index++];
+                }
+            }
+        }
+        return gameStateArr;
+    }
+
+    /**
+     * Returns a new RubiksCube in this state
+     */
+    public RubiksCube toCube() throws Exception {
+        return new RubiksCube(this.cubeSize, this.toGameState());
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    public int getSticker(int side, int row, int col) {
+        int cs = this.cubeSize;
+        return this.stickers[side * cs * cs + row * cs + col];
+    }
+
+    /**
+     * Returns a copy of the packed stickers
+     */
+    public byte[] getStickers() {
+        return this.stickers.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CubeState)) {
+            return false;
+        }
+        CubeState otherState = (CubeState) other;
+        return this.hash == otherState.hash
+            && this.cubeSize == otherState.cubeSize
+            && Arrays.equals(this.stickers, otherState.stickers);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+}
@@ -0,0 +1,190 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Turns cubes into fixed size binary records and back, for storing lots of them (see
+ * CubeStateWriter and CubeStateReader for files of them).
+ *
+ * There are two encodings:
+ * - stickers: 3 bits per sticker in packed sticker order, rounded up to whole bytes. Works
+ *   for any cube, 21 bytes for a 3x3.
+ * - cubies: CubieCube's corner word and then (3x3 only) its edge word, 8 bytes each, 16
+ *   bytes for a 3x3. Only 2x2s and 3x3s in the color scheme of RubiksCube(cubeSize, false)
+ *   can be written this way, which is every cube made by scrambling one.
+ *
+ * Multi byte values are big endian like the rest of this project's files. A codec has no
+ * state besides its scratch stickers, so it isn't thread safe, use one per thread.
+ */
+public class CubeStateCodec {
+    public static final int ENCODING_STICKERS = 0;
+    public static final int ENCODING_CUBIES = 1;
+
+    private static final int NUM_SIDES = 6;
+    private static final int NUM_COLORS = 6;
+    private static final int BITS_PER_STICKER = 3;
+    private static final int STICKER_MASK = (1 << BITS_PER_STICKER) - 1;
+
+    private int cubeSize;
+    private int encoding;
+    private int recordSize;
+    private byte[] stickers;
+
+    /**
+     * @param int cubeSize size of the cubes to encode
+     * @param int encoding ENCODING_STICKERS or ENCODING_CUBIES
+     * @throws IllegalArgumentException if the encoding doesn't exist or is cubies on a cube
+     * that isn't a 2x2 or 3x3
+     */
+    public CubeStateCodec(int cubeSize, int encoding) {
+        if (cubeSize < 1) {
+            throw new IllegalArgumentException("Cube size must be at least 1");
+        }
+        int numStickers = NUM_SIDES * cubeSize * cubeSize;
+        if (encoding == ENCODING_STICKERS) {
+            this.recordSize = (numStickers * BITS_PER_STICKER + 7) / 8;
+        } else if (encoding == ENCODING_CUBIES) {
+            if (cubeSize != 2 && cubeSize != 3) {
+                throw new IllegalArgumentException("Only 2x2 and 3x3 cubes can be encoded as cubies");
+            }
+            this.recordSize = cubeSize == 3 ? 2 * Long.BYTES : Long.BYTES;
+        } else {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        this.cubeSize = cubeSize;
+        this.encoding = encoding;
+        this.stickers = new byte[numStickers];
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    public int getEncoding() {
+        return this.encoding;
+    }
+
+    /**
+     * Returns how many bytes every encoded cube takes
+     */
+    public int getRecordSize() {
+        return this.recordSize;
+    }
+
+    /**
+     * Writes cube at out's position and moves the position past it
+     * @throws IllegalArgumentException if cube is the wrong size or can't be encoded as
+     * cubies
+     * @throws java.nio.BufferOverflowException if out doesn't have getRecordSize() bytes left
+     */
+    public void encode(RubiksCube cube, ByteBuffer out) {
+        if (cube.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Codec is for cubes of size " + this.cubeSize);
+        }
+        if (this.encoding == ENCODING_CUBIES) {
+            CubieCube cubies;
+            try {
+                cubies = CubieCube.fromCube(cube);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Cube can't be encoded as cubies", e);
+            }
+            out.putLong(cubies.getCornerWord());
+            if (this.cubeSize == 3) {
+                out.putLong(cubies.getEdgeWord());
+            }
+            return;
+        }
+
+        // fill a long up from the bottom and write out whole bytes from the top of it
+        long bits = 0;
+        int numBits = 0;
+        for (int i = 0; i < this.stickers.length; i++) {
+            bits = (bits << BITS_PER_STICKER) | cube.getPackedSticker(i);
+            numBits += BITS_PER_STICKER;
+            if (numBits >= 8) {
+                numBits -= 8;
+                out.put((byte) (bits >>> numBits));
+            }
+        }
+        if (numBits > 0) {
+            out.put((byte) (bits << (8 - numBits)));
+        }
+    }
+
+    /**
+     * Reads the cube at in's position into cube, moving the position past it. Skips the
+     * checks the RubiksCube constructor makes beyond every sticker being a color and every
+     * cubie being there once, so it's the fast way to go through lots of trusted states.
+     * @throws IllegalArgumentException if cube is the wrong size
+     * @throws Exception if the bytes aren't a cube in this encoding
+     */
+    public void decode(ByteBuffer in, RubiksCube cube) throws Exception {
+        if (cube.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Codec is for cubes of size " + this.cubeSize);
+        }
+        this.decodeStickers(in);
+        cube.copyStickersFrom(this.stickers, 0);
+    }
+
+    /**
+     * Reads the cube at in's position into a new RubiksCube, moving the position past it
+     * @throws Exception if the bytes aren't a valid cube in this encoding
+     */
+    public RubiksCube decode(ByteBuffer in) throws Exception {
+        this.decodeStickers(in);
+        return CubeState.fromStickers(this.cubeSize, this.stickers).toCube();
+    }
+
+    private void decodeStickers(ByteBuffer in) throws Exception {
+        if (this.encoding == ENCODING_CUBIES) {
+            long cornerWord = in.getLong();
+            long edgeWord = this.cubeSize == 3 ? in.getLong() : 0;
+            CubieCube cubies = CubieCube.fromWords(this.cubeSize, cornerWord, edgeWord);
+            checkCubies(cubies);
+            cubies.toStickers(this.stickers);
+            return;
+        }
+
+        long bits = 0;
+        int numBits = 0;
+        for (int i = 0; i < this.stickers.length; i++) {
+            if (numBits < BITS_PER_STICKER) {
+                bits = (bits << 8) | (in.get() & 0xFF);
+                numBits += 8;
+            }
+            numBits -= BITS_PER_STICKER;
+            int color = (int) (bits >>> numBits) & STICKER_MASK;
+            if (color >= NUM_COLORS) {
+                throw new Exception("Game state given is not valid");
+            }
+            this.stickers[i] = (byte) color;
+        }
+    }
+
+    /**
+     * Makes sure decoded words have every cubie once and nothing out of range, so
+     * toStickers can't go out of bounds on a corrupt record
+     */
+    private static void checkCubies(CubieCube cubies) throws Exception {
+        int corners = 0;
+        for (int slot = 0; slot < CubieGeometry.NUM_CORNERS; slot++) {
+            corners |= 1 << cubies.getCornerCubie(slot);
+            if (cubies.getCornerTwist(slot) > 2) {
+                throw new Exception("Game state given is not valid");
+            }
+        }
+        int edges = 0;
+        if (cubies.getCubeSize() == 3) {
+            for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                edges |= 1 << cubies.getEdgeCubie(slot);
+            }
+            for (int side = 0; side < NUM_SIDES; side++) {
+                if (cubies.getCenterColor(side) >= NUM_COLORS) {
+                    throw new Exception("Game state given is not valid");
+                }
+            }
+        }
+        int allEdges = cubies.getCubeSize() == 3 ? (1 << CubieGeometry.NUM_EDGES) - 1 : 0;
+        if (corners != (1 << CubieGeometry.NUM_CORNERS) - 1 || edges != allEdges) {
+            throw new Exception("Game state given is not valid");
+        }
+    }
+}
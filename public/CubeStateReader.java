@@ -0,0 +1,204 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams cubes back out of a state file written by CubeStateWriter, a buffer's worth of
+ * records at a time through a FileChannel, so files far bigger than the heap can be gone
+ * through. next(RubiksCube) reads into a cube the caller already has, which is the way to
+ * go through millions of states without making millions of cubes.
+ *
+ * Not thread safe.
+ */
+public class CubeStateReader implements Closeable {
+    private Path path;
+    private CubeStateCodec codec;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long numStates;
+    private long numRead;
+
+    /**
+     * Opens a state file and reads its header
+     * @throws IOException if the file can't be read or isn't a state file
+     */
+    public CubeStateReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(CubeStateWriter.HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining()) {
+                if (this.channel.read(header) < 0) {
+                    break;
+                }
+            }
+            if (header.hasRemaining() || header.getInt(0) != CubeStateWriter.MAGIC) {
+                throw new IOException(path + " is not a state file");
+            }
+            if (header.getInt(4) != CubeStateWriter.VERSION) {
+                throw new IOException(path + " has unsupported version " + header.getInt(4));
+            }
+            try {
+                this.codec = new CubeStateCodec(header.getInt(8), header.getInt(12));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + " has a bad header: " + e.getMessage(), e);
+            }
+            int recordSize = this.codec.getRecordSize();
+            if (header.getInt(16) != recordSize) {
+                throw new IOException(path + " has records of " + header.getInt(16) + " bytes, expected " + recordSize);
+            }
+            this.numStates = (this.channel.size() - CubeStateWriter.HEADER_SIZE) / recordSize;
+
+            int bufferRecords = Math.max(1, CubeStateWriter.BUFFER_SIZE / recordSize);
+            this.buffer = ByteBuffer.allocateDirect(bufferRecords * recordSize).order(ByteOrder.BIG_ENDIAN);
+            this.buffer.limit(0);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    public int getCubeSize() {
+        return this.codec.getCubeSize();
+    }
+
+    public int getEncoding() {
+        return this.codec.getEncoding();
+    }
+
+    /**
+     * Returns how many whole records the file holds
+     */
+    public long getNumStates() {
+        return this.numStates;
+    }
+
+    /**
+     * Returns how many states have been read so far
+     */
+    public long getNumRead() {
+        return this.numRead;
+    }
+
+    /**
+     * Reads the next state into cube, see CubeStateCodec.decode(ByteBuffer, RubiksCube) for
+     * what's checked
+     * @return false if there are no states left
+     * @throws IOException if the file can't be read or a record isn't a cube
+     */
+    public boolean next(RubiksCube cube) throws IOException {
+        if (!this.fill()) {
+            return false;
+        }
+        try {
+            this.codec.decode(this.buffer, cube);
+        } catch (Exception e) {
+            throw new IOException("State " + this.numRead + " of " + this.path + " is not a cube", e);
+        }
+        this.numRead++;
+        return true;
+    }
+
+    /**
+     * Reads the next state into a new cube, checked the same way the RubiksCube
+     * constructor checks
+     * @return the cube, or null if there are no states left
+     * @throws IOException if the file can't be read or a record isn't a valid cube
+     */
+    public RubiksCube next() throws IOException {
+        if (!this.fill()) {
+            return null;
+        }
+        RubiksCube cube;
+        try {
+            cube = this.codec.decode(this.buffer);
+        } catch (Exception e) {
+            throw new IOException("State " + this.numRead + " of " + this.path + " is not a valid cube", e);
+        }
+        this.numRead++;
+        return cube;
+    }
+
+    /**
+     * Reads up to length states into cubes[offset] onwards, reusing those cubes
+     * @return how many were read, less than length only at the end of the file
+     * @throws IOException if the file can't be read or a record isn't a cube
+     */
+    public int read(RubiksCube[] cubes, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length && this.next(cubes[offset + count])) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the states left in the file as a stream of new cubes, read as the stream is
+     * pulled. The stream reads from this reader, so it's sequential only and closing
+     * either one closes the file. Read errors come out as UncheckedIOException.
+     */
+    public Stream<RubiksCube> stream() {
+        long remaining = this.numStates - this.numRead;
+        Spliterator<RubiksCube> states = new Spliterators.AbstractSpliterator<RubiksCube>(
+                remaining, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED) {
+            @Override
+            public boolean tryAdvance(Consumer<? super RubiksCube> action) {
+                RubiksCube cube;
+                try {
+                    cube = CubeStateReader.this.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (cube == null) {
+                    return false;
+                }
+                action.accept(cube);
+                return true;
+            }
+        };
+        return StreamSupport.stream(states, false).onClose(() -> {
+            try {
+                this.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Makes sure a whole record is buffered, reading the next chunk of the file if needed
+     * @return false if the file has no whole records left
+     */
+    private boolean fill() throws IOException {
+        if (this.numRead >= this.numStates) {
+            return false;
+        }
+        if (this.buffer.remaining() >= this.codec.getRecordSize()) {
+            return true;
+        }
+        this.buffer.compact();
+        while (this.buffer.position() < this.codec.getRecordSize()) {
+            if (this.channel.read(this.buffer) < 0) {
+                this.buffer.flip();
+                return false;
+            }
+        }
+        this.buffer.flip();
+        return true;
+    }
+}
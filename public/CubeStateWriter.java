@@ -0,0 +1,134 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams cubes into a state file through a FileChannel, for datasets too big to keep
+ * around as RubiksCubes. Only a buffer's worth of records is ever held in memory, so a
+ * file can be far bigger than the heap.
+ *
+ * A state file is a header followed by fixed size records from a CubeStateCodec:
+ *   0  int magic "RCST"
+ *   4  int version
+ *   8  int cube size
+ *   12 int encoding (CubeStateCodec.ENCODING_*)
+ *   16 int record size in bytes
+ *   the rest of the 32 header bytes are 0
+ * The number of states isn't stored, it's however many records fit after the header, so
+ * a file that got cut off still reads up to its last whole record. Read them back with
+ * CubeStateReader.
+ *
+ * Not thread safe.
+ */
+public class CubeStateWriter implements Closeable {
+    static final int MAGIC = 0x52435354; // "RCST"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    // about how much gets written per FileChannel call
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private CubeStateCodec codec;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long numWritten;
+
+    /**
+     * Creates (or empties) a state file at path and writes its header
+     * @param Path path where to write
+     * @param int cubeSize size of the cubes that will be written
+     * @param int encoding CubeStateCodec.ENCODING_STICKERS or ENCODING_CUBIES
+     * @throws IOException if the file can't be written
+     */
+    public CubeStateWriter(Path path, int cubeSize, int encoding) throws IOException {
+        this.codec = new CubeStateCodec(cubeSize, encoding);
+        int recordSize = this.codec.getRecordSize();
+        int bufferRecords = Math.max(1, BUFFER_SIZE / recordSize);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(HEADER_SIZE, bufferRecords * recordSize));
+        this.buffer.order(ByteOrder.BIG_ENDIAN);
+
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer.putInt(MAGIC);
+        this.buffer.putInt(VERSION);
+        this.buffer.putInt(cubeSize);
+        this.buffer.putInt(encoding);
+        this.buffer.putInt(recordSize);
+        this.buffer.put(new byte[HEADER_SIZE - this.buffer.position()]);
+        this.flush();
+    }
+
+    /**
+     * Adds cube to the file
+     * @throws IllegalArgumentException if the codec can't encode cube
+     * @throws IOException if the file can't be written
+     */
+    public void write(RubiksCube cube) throws IOException {
+        if (this.buffer.remaining() < this.codec.getRecordSize()) {
+            this.flush();
+        }
+        this.codec.encode(cube, this.buffer);
+        this.numWritten++;
+    }
+
+    /**
+     * Adds cubes[offset] to cubes[offset + length - 1] to the file
+     * @throws IOException if the file can't be written
+     */
+    public void write(RubiksCube[] cubes, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            this.write(cubes[i]);
+        }
+    }
+
+    /**
+     * Adds every cube in a stream to the file in order, pulling them one at a time so the
+     * stream can be far longer than would fit on the heap
+     * @throws IOException if the file can't be written
+     */
+    public void writeAll(Stream<RubiksCube> cubes) throws IOException {
+        Iterator<RubiksCube> iterator = cubes.sequential().iterator();
+        while (iterator.hasNext()) {
+            this.write(iterator.next());
+        }
+    }
+
+    /**
+     * Returns how many cubes have been written so far
+     */
+    public long getNumWritten() {
+        return this.numWritten;
+    }
+
+    /**
+     * Writes out everything buffered so far
+     * @throws IOException if the file can't be written
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Flushes and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (!this.channel.isOpen()) {
+            return;
+        }
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Whole cube symmetries for symmetry reduced lookups.
+ *
+ * A symmetry is one of the 24 ways of turning the whole cube, optionally followed by a
+ * mirror image through the plane between left and right (48 in total). Both are stored as
+ * permutations of the packed stickers, the same format as MoveTable.getSources. Turning or
+ * mirroring a cube doesn't change how many moves it is from solved, and neither does
+ * swapping its colors around, so canonicalKey gives the same key to every state that only
+ * differs by one of those. A visited set or cache keyed on it holds one entry where it
+ * would otherwise hold up to 48 * 720.
+ *
+ * Moves have to be translated when a path found for one state is used on a symmetric one,
+ * see conjugateMove. A mirrored move turns the mirrored layer the other way.
+ *
+ * Tables are immutable and shared, get them with forSize.
+ */
+public class CubeSymmetry {
+    public static final int IDENTITY_ONLY = 1;
+    public static final int ROTATIONS = 24;
+    public static final int ROTATIONS_AND_REFLECTIONS = 48;
+
+    private static final int NUM_SIDES = 6;
+    // sticker colors are 0-5, so 21 of them fit in a long 3 bits each
+    private static final int STICKERS_PER_WORD = 21;
+    private static final int UNASSIGNED = 7;
+
+    private static final ConcurrentHashMap<Integer, CubeSymmetry> TABLES = new ConcurrentHashMap<Integer, CubeSymmetry>();
+
+    private int cubeSize;
+    private MoveTable moveTable;
+
+    // sources[s][i] is the sticker that ends up at i under symmetry s, identity first
+    private int[][] sources;
+    private int[] inverse;
+    private int[][] conjugates;
+
+    private CubeSymmetry(int cubeSize, int numSymmetries) {
+        this.cubeSize = cubeSize;
+        this.moveTable = MoveTable.forSize(cubeSize);
+
+        List<int[]> generators = new ArrayList<int[]>();
+        if (numSymmetries != IDENTITY_ONLY) {
+            generators.add(this.wholeCubeTurn(0));
+            generators.add(this.wholeCubeTurn(1));
+        }
+        if (numSymmetries == ROTATIONS_AND_REFLECTIONS) {
+            generators.add(this.mirror());
+        }
+        this.sources = closure(this.identity(), generators);
+        if (this.sources.length != numSymmetries) {
+            throw new IllegalStateException("Found " + this.sources.length + " symmetries");
+        }
+
+        this.inverse = new int[numSymmetries];
+        for (int s = 0; s < numSymmetries; s++) {
+            this.inverse[s] = indexOf(this.sources, invert(this.sources[s]));
+        }
+
+        Map<String, Integer> moveBySources = new HashMap<String, Integer>();
+        for (int move = 0; move < this.moveTable.getNumMoves(); move++) {
+            moveBySources.put(Arrays.toString(this.moveTable.getSources(move)), move);
+        }
+        this.conjugates = new int[numSymmetries][this.moveTable.getNumMoves()];
+        for (int s = 0; s < numSymmetries; s++) {
+            int[] sym = this.sources[s];
+            int[] symInverse = this.sources[this.inverse[s]];
+            for (int move = 0; move < this.moveTable.getNumMoves(); move++) {
+                int[] moveSources = this.moveTable.getSources(move);
+                int[] conjugate = new int[sym.length];
+                for (int i = 0; i < conjugate.length; i++) {
+                    conjugate[i] = symInverse[moveSources[sym[i]]];
+                }
+                Integer conjugateMove = moveBySources.get(Arrays.toString(conjugate));
+                if (conjugateMove == null) {
+                    throw new IllegalStateException("Symmetry " + s + " doesn't map move " + move + " to a move");
+                }
+                this.conjugates[s][move] = conjugateMove;
+            }
+        }
+    }
+
+    /**
+     * Returns the shared table for a cube size, building it the first time it's asked for
+     * @param int numSymmetries IDENTITY_ONLY, ROTATIONS or ROTATIONS_AND_REFLECTIONS
+     */
+    public static CubeSymmetry forSize(int cubeSize, int numSymmetries) {
+        if (numSymmetries != IDENTITY_ONLY && numSymmetries != ROTATIONS
+                && numSymmetries != ROTATIONS_AND_REFLECTIONS) {
+            throw new IllegalArgumentException("numSymmetries must be 1, 24 or 48");
+        }
+        int key = cubeSize * 64 + numSymmetries;
+        CubeSymmetry table = TABLES.get(key);
+        if (table == null) {
+            table = TABLES.computeIfAbsent(key, k -> new CubeSymmetry(cubeSize, numSymmetries));
+        }
+        return table;
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    public int getNumSymmetries() {
+        return this.sources.length;
+    }
+
+    /**
+     * Returns the symmetry that undoes symmetry
+     */
+    public int getInverse(int symmetry) {
+        return this.inverse[symmetry];
+    }
+
+    /**
+     * Returns the move that does to a transformed cube what moveIndex does to the original,
+     * so transform(symmetry, cube after moveIndex) is transform(symmetry, cube) after the
+     * returned move.
+     */
+    public int conjugateMove(int symmetry, int moveIndex) {
+        return this.conjugates[symmetry][moveIndex];
+    }
+
+    /**
+     * Applies a symmetry to packed stickers
+     * @param byte[] src stickers to read, not changed
+     * @param byte[] dest where the transformed stickers go, can't be src
+     */
+    public void transform(int symmetry, byte[] src, byte[] dest) {
+        int[] sym = this.sources[symmetry];
+        for (int i = 0; i < sym.length; i++) {
+            dest[i] = src[sym[i]];
+        }
+    }
+
+    /**
+     * Returns a new cube that is cube with a symmetry applied
+     */
+    public RubiksCube transform(int symmetry, RubiksCube cube) {
+        byte[] src = new byte[this.sources[0].length];
+        byte[] dest = new byte[src.length];
+        cube.copyStickersTo(src, 0);
+        this.transform(symmetry, src, dest);
+        RubiksCube transformed = new RubiksCube(cube);
+        transformed.copyStickersFrom(dest, 0);
+        return transformed;
+    }
+
+    /**
+     * Returns the key shared by every state that only differs from cube by a symmetry or by
+     * which color is which. It's a 64 bit hash, so two states that aren't symmetric can
+     * share a key, but only with a tiny chance.
+     */
+    public long canonicalKey(RubiksCube cube) {
+        byte[] stickers = new byte[this.sources[0].length];
+        cube.copyStickersTo(stickers, 0);
+        return this.canonicalKey(stickers);
+    }
+
+    public long canonicalKey(byte[] stickers) {
+        return this.key(stickers, this.canonicalSymmetry(stickers));
+    }
+
+    /**
+     * Returns a symmetry that takes stickers to the canonical form its canonicalKey is made
+     * from. If the state is symmetric itself more than one symmetry does, and this is the
+     * first of them.
+     */
+    public int canonicalSymmetry(byte[] stickers) {
+        int best = 0;
+        long bestKey = this.key(stickers, 0);
+        for (int s = 1; s < this.sources.length; s++) {
+            long key = this.key(stickers, s);
+            if (Long.compareUnsigned(key, bestKey) < 0) {
+                best = s;
+                bestKey = key;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Hashes the stickers after a symmetry, with the colors renumbered in the order they
+     * first show up so the original color numbers don't matter.
+     */
+    public long key(byte[] stickers, int symmetry) {
+        int[] sym = this.sources[symmetry];
+        // 3 bits per original color holding its new number
+        int relabel = 0x3FFFF;
+        int nextColor = 0;
+        long key = sym.length;
+        long word = 0;
+        int wordLength = 0;
+        for (int i = 0; i < sym.length; i++) {
+            int color = stickers[sym[i]];
+            int newColor = (relabel >>> (color * 3)) & UNASSIGNED;
+            if (newColor == UNASSIGNED) {
+                newColor = nextColor++;
+                relabel = (relabel & ~(UNASSIGNED << (color * 3))) | (newColor << (color * 3));
+            }
+            word = (word << 3) | newColor;
+            wordLength++;
+            if (wordLength == STICKERS_PER_WORD) {
+                key = LongHashSet.mix(key ^ word);
+                word = 0;
+                wordLength = 0;
+            }
+        }
+        return LongHashSet.mix(key ^ word);
+    }
+
+    private int[] identity() {
+        int[] src = new int[NUM_SIDES * this.cubeSize * this.cubeSize];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i;
+        }
+        return src;
+    }
+
+    /**
+     * Returns every layer on axis turned a quarter turn at once
+     */
+    private int[] wholeCubeTurn(int axis) {
+        int[] src = this.identity();
+        for (int layer = 0; layer < this.cubeSize; layer++) {
+            src = compose(src, this.moveTable.getSources(this.moveTable.getMoveIndex(axis, layer, 1)));
+        }
+        return src;
+    }
+
+    /**
+     * Returns the mirror image through the plane between left and right. Every sticker keeps
+     * its row and flips its column, and the left and right sides swap.
+     */
+    private int[] mirror() {
+        int cs = this.cubeSize;
+        int[] src = new int[NUM_SIDES * cs * cs];
+        for (int side = 0; side < NUM_SIDES; side++) {
+            int mirroredSide = side;
+            if (side == CubieGeometry.LEFT) {
+                mirroredSide = CubieGeometry.RIGHT;
+            } else if (side == CubieGeometry.RIGHT) {
+                mirroredSide = CubieGeometry.LEFT;
+            }
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    src[side * cs * cs + row * cs + col] = mirroredSide * cs * cs + row * cs + (cs - 1 - col);
+                }
+            }
+        }
+        return src;
+    }
+
+    /**
+     * Returns every permutation the generators make, starting with identity
+     */
+    private static int[][] closure(int[] identity, List<int[]> generators) {
+        List<int[]> found = new ArrayList<int[]>();
+        found.add(identity);
+        for (int i = 0; i < found.size(); i++) {
+            for (int[] generator : generators) {
+                int[] next = compose(found.get(i), generator);
+                if (indexOf(found.toArray(new int[0][]), next) == -1) {
+                    found.add(next);
+                }
+            }
+        }
+        return found.toArray(new int[0][]);
+    }
+
+    private static int indexOf(int[][] perms, int[] perm) {
+        for (int i = 0; i < perms.length; i++) {
+            if (Arrays.equals(perms[i], perm)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the sources of doing first and then second
+     */
+    private static int[] compose(int[] first, int[] second) {
+        int[] src = new int[first.length];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = first[second[i]];
+        }
+        return src;
+    }
+
+    private static int[] invert(int[] src) {
+        int[] inverted = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            inverted[src[i]] = i;
+        }
+        return inverted;
+    }
+}
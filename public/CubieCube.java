@@ -0,0 +1,212 @@
+/**
+ * Cubie level encoding of a 2x2 or 3x3 that fits in two longs (one for a 2x2).
+ *
+ * Instead of storing stickers this stores which cubie is in each slot and how it is turned,
+ * using the slot and cubie numbering from CubieGeometry.
+ *
+ * cornerWord, 5 bits per corner slot then 3 bits per center (3x3 only):
+ *   bits 5i..5i+2   cubie in corner slot i
+ *   bits 5i+3..5i+4 twist of that cubie (0-2)
+ *   bits 40+3s..42+3s color of the center on side s
+ * edgeWord (3x3 only), 5 bits per edge slot:
+ *   bits 5i..5i+3   cubie in edge slot i
+ *   bit  5i+4       flip of that cubie
+ *
+ * Cubies are identified by their colors, so this only works for cubes that use the color
+ * scheme of RubiksCube(cubeSize, false) (color n solved on side n). Every cube made by
+ * scrambling one of those does. Slice moves can move the 3x3's centers around, which is
+ * why they are stored too.
+ */
+public class CubieCube {
+    private static final int CORNER_BITS = 5;
+    private static final int EDGE_BITS = 5;
+    private static final int CENTER_BITS = 3;
+    private static final int CENTER_SHIFT = CubieGeometry.NUM_CORNERS * CORNER_BITS;
+    private static final int NUM_SIDES = 6;
+
+    private static final int[] STANDARD_COLORS = {0, 1, 2, 3, 4, 5};
+
+    private int cubeSize;
+    private long cornerWord;
+    private long edgeWord;
+
+    private CubieCube(int cubeSize, long cornerWord, long edgeWord) {
+        this.cubeSize = cubeSize;
+        this.cornerWord = cornerWord;
+        this.edgeWord = edgeWord;
+    }
+
+    /**
+     * Encodes a 2x2 or 3x3
+     * @throws Exception if the cube is another size or its stickers don't make real cubies
+     */
+    public static CubieCube fromCube(RubiksCube cube) throws Exception {
+        int cs = cube.getCubeSize();
+        if (cs != 2 && cs != 3) {
+            throw new Exception("Only 2x2 and 3x3 cubes can be encoded as cubies");
+        }
+
+        int[] cubieAt = new int[CubieGeometry.NUM_CORNERS];
+        int[] twistAt = new int[CubieGeometry.NUM_CORNERS];
+        if (!CubieGeometry.readCorners(cube, STANDARD_COLORS, cubieAt, twistAt)) {
+            throw new Exception("Game state given is not valid");
+        }
+        long cornerWord = 0;
+        for (int slot = 0; slot < CubieGeometry.NUM_CORNERS; slot++) {
+            long bits = cubieAt[slot] | (twistAt[slot] << 3);
+            cornerWord |= bits << (slot * CORNER_BITS);
+        }
+
+        long edgeWord = 0;
+        if (cs == 3) {
+            for (int side = 0; side < NUM_SIDES; side++) {
+                long color = cube.getSticker(side, 1, 1);
+                cornerWord |= color << (CENTER_SHIFT + side * CENTER_BITS);
+            }
+
+            int[] edgeAt = new int[CubieGeometry.NUM_EDGES];
+            int[] flipAt = new int[CubieGeometry.NUM_EDGES];
+            if (!CubieGeometry.readEdges(cube, STANDARD_COLORS, edgeAt, flipAt)) {
+                throw new Exception("Game state given is not valid");
+            }
+            for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                long bits = edgeAt[slot] | (flipAt[slot] << 4);
+                edgeWord |= bits << (slot * EDGE_BITS);
+            }
+        }
+        return new CubieCube(cs, cornerWord, edgeWord);
+    }
+
+    /**
+     * Encodes a game state in the format the RubiksCube constructor takes
+     * @throws Exception if gameStateArr isn't valid or can't be encoded as cubies
+     */
+    public static CubieCube fromGameState(int cubeSize, int[][][] gameStateArr) throws Exception {
+        return fromCube(new RubiksCube(cubeSize, gameStateArr));
+    }
+
+    /**
+     * Rebuilds a CubieCube out of the words from getCornerWord and getEdgeWord. The words
+     * aren't checked, they have to come from a real encoding.
+     */
+    public static CubieCube fromWords(int cubeSize, long cornerWord, long edgeWord) {
+        if (cubeSize != 2 && cubeSize != 3) {
+            throw new IllegalArgumentException("Only 2x2 and 3x3 cubes can be encoded as cubies");
+        }
+        return new CubieCube(cubeSize, cornerWord, cubeSize == 3 ? edgeWord : 0);
+    }
+
+    /**
+     * Decodes back into the gameStateArr format the RubiksCube constructor takes
+     */
+    public int[][][] toGameState() {
+        int cs = this.cubeSize;
+        byte[] stickers = new byte[NUM_SIDES * cs * cs];
+        this.toStickers(stickers);
+        int[][][] gameStateArr = new int[NUM_SIDES][cs][cs];
+        int index = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    gameStateArr[side][row][col] = stickers[index++];
+                }
+            }
+        }
+        return gameStateArr;
+    }
+
+    /**
+     * Decodes into packed stickers, the layout RubiksCube.copyStickersFrom takes
+     * @param byte[] stickers 6 * cubeSize^2 stickers to overwrite
+     */
+    void toStickers(byte[] stickers) {
+        int cs = this.cubeSize;
+        for (int slot = 0; slot < CubieGeometry.NUM_CORNERS; slot++) {
+            int cubie = this.getCornerCubie(slot);
+            int twist = this.getCornerTwist(slot);
+            for (int i = 0; i < 3; i++) {
+                int sticker = CubieGeometry.cornerSticker(cs, slot, (twist + i) % 3);
+                stickers[sticker] = (byte) CubieGeometry.CORNER_SIDES[cubie][i];
+            }
+        }
+
+        if (cs == 3) {
+            for (int side = 0; side < NUM_SIDES; side++) {
+                stickers[side * 9 + 4] = (byte) this.getCenterColor(side);
+            }
+            for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                int cubie = this.getEdgeCubie(slot);
+                int flip = this.getEdgeFlip(slot);
+                for (int i = 0; i < 2; i++) {
+                    int sticker = CubieGeometry.edgeSticker(slot, i ^ flip);
+                    stickers[sticker] = (byte) CubieGeometry.EDGE_SIDES[cubie][i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a new RubiksCube in this state
+     */
+    public RubiksCube toCube() throws Exception {
+        return new RubiksCube(this.cubeSize, this.toGameState());
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns the word holding the corners (and the centers on a 3x3)
+     */
+    public long getCornerWord() {
+        return this.cornerWord;
+    }
+
+    /**
+     * Returns the word holding the edges, always 0 for a 2x2
+     */
+    public long getEdgeWord() {
+        return this.edgeWord;
+    }
+
+    public int getCornerCubie(int slot) {
+        return (int) (this.cornerWord >>> (slot * CORNER_BITS)) & 0x7;
+    }
+
+    public int getCornerTwist(int slot) {
+        return (int) (this.cornerWord >>> (slot * CORNER_BITS + 3)) & 0x3;
+    }
+
+    public int getEdgeCubie(int slot) {
+        return (int) (this.edgeWord >>> (slot * EDGE_BITS)) & 0xF;
+    }
+
+    public int getEdgeFlip(int slot) {
+        return (int) (this.edgeWord >>> (slot * EDGE_BITS + 4)) & 0x1;
+    }
+
+    public int getCenterColor(int side) {
+        return (int) (this.cornerWord >>> (CENTER_SHIFT + side * CENTER_BITS)) & 0x7;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CubieCube)) {
+            return false;
+        }
+        CubieCube otherCube = (CubieCube) other;
+        return this.cubeSize == otherCube.cubeSize
+            && this.cornerWord == otherCube.cornerWord
+            && this.edgeWord == otherCube.edgeWord;
+    }
+
+    @Override
+    public int hashCode() {
+        long mixed = this.cornerWord * 0x9E3779B97F4A7C15L + this.edgeWord;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,347 @@
+import java.util.Arrays;
+
+/**
+ * Where the corner and edge pieces ("cubies") of a cube live in terms of stickers, and
+ * helpers to read them back off of a RubiksCube.
+ *
+ * Sides and colors use the same numbers as the gameStateArr constructor, so a cube made
+ * with RubiksCube(cubeSize, false) has color n on side n. Sticker positions are packed as
+ * side * cubeSize * cubeSize + row * cubeSize + col.
+ *
+ * The solved check doesn't care which way the cube is facing, and since slice moves can
+ * change that, every read is done in a frame that's normalized on the down-back-left
+ * corner: the colors are relabeled so whatever cubie sits in that slot counts as the
+ * solved DBL cubie. None of the moves in that frame ever touch the DBL slot, see
+ * applyNormalizedMove.
+ *
+ * Corner slots: 0 UBL, 1 UBR, 2 UFR, 3 UFL, 4 DFL, 5 DFR, 6 DBR, 7 DBL
+ * Edge slots (3x3 only): 0 UB, 1 UR, 2 UF, 3 UL, 4 DF, 5 DR, 6 DB, 7 DL, 8 FL, 9 FR, 10 BR, 11 BL
+ */
+class CubieGeometry {
+    static final int FRONT = 0;
+    static final int BACK = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+    static final int TOP = 4;
+    static final int BOTTOM = 5;
+
+    static final int NUM_CORNERS = 8;
+    static final int NUM_EDGES = 12;
+    static final int DBL_SLOT = 7;
+
+    static final int NUM_AXES = 3;
+
+    // {x, y, z} where 0 means left/bottom/front and 1 means right/top/back
+    private static final int[][] CORNER_POSITIONS = {
+        {0, 1, 1}, {1, 1, 1}, {1, 1, 0}, {0, 1, 0},
+        {0, 0, 0}, {1, 0, 0}, {1, 0, 1}, {0, 0, 1}
+    };
+
+    // {x, y, z} where 0 and 2 are the outer layers and 1 is the middle layer
+    private static final int[][] EDGE_POSITIONS = {
+        {1, 2, 2}, {2, 2, 1}, {1, 2, 0}, {0, 2, 1},
+        {1, 0, 0}, {2, 0, 1}, {1, 0, 2}, {0, 0, 1},
+        {0, 1, 0}, {2, 1, 0}, {2, 1, 2}, {0, 1, 2}
+    };
+
+    /**
+     * For each corner slot, the sides its three stickers are on. The up/down side is
+     * always first and all eight are listed in the same rotational direction, which is
+     * what lets a twist be added up as the cubie moves from slot to slot.
+     */
+    static final int[][] CORNER_SIDES = new int[NUM_CORNERS][];
+
+    /**
+     * For each edge slot, the sides its two stickers are on. The up/down side comes first,
+     * or the front/back side for the four middle layer edges.
+     */
+    static final int[][] EDGE_SIDES = new int[NUM_EDGES][];
+
+    // cubie number indexed by the bitmask of its colors, -1 if there is no such cubie
+    private static final int[] CORNER_BY_MASK = new int[64];
+    private static final int[] EDGE_BY_MASK = new int[64];
+
+    static {
+        for (int corner = 0; corner < NUM_CORNERS; corner++) {
+            int[] pos = CORNER_POSITIONS[corner];
+            int ud = pos[1] == 1 ? TOP : BOTTOM;
+            int fb = pos[2] == 1 ? BACK : FRONT;
+            int lr = pos[0] == 1 ? RIGHT : LEFT;
+
+            // list the stickers in the same rotational direction at every corner
+            if (tripleProduct(ud, fb, lr) > 0) {
+                CORNER_SIDES[corner] = new int[] {ud, fb, lr};
+            } else {
+                CORNER_SIDES[corner] = new int[] {ud, lr, fb};
+            }
+        }
+
+        for (int edge = 0; edge < NUM_EDGES; edge++) {
+            int[] pos = EDGE_POSITIONS[edge];
+            int[] sides = new int[2];
+            int count = 0;
+            if (pos[1] != 1) {
+                sides[count++] = pos[1] == 2 ? TOP : BOTTOM;
+            }
+            if (pos[2] != 1) {
+                sides[count++] = pos[2] == 2 ? BACK : FRONT;
+            }
+            if (pos[0] != 1) {
+                sides[count++] = pos[0] == 2 ? RIGHT : LEFT;
+            }
+            EDGE_SIDES[edge] = sides;
+        }
+
+        Arrays.fill(CORNER_BY_MASK, -1);
+        Arrays.fill(EDGE_BY_MASK, -1);
+        for (int corner = 0; corner < NUM_CORNERS; corner++) {
+            CORNER_BY_MASK[colorMask(CORNER_SIDES[corner])] = corner;
+        }
+        for (int edge = 0; edge < NUM_EDGES; edge++) {
+            EDGE_BY_MASK[colorMask(EDGE_SIDES[edge])] = edge;
+        }
+    }
+
+    private CubieGeometry() {
+    }
+
+    /**
+     * Returns the packed sticker index of the sticker on side that belongs to the cubie at
+     * (x, y, z). Coordinates go from 0 to cubeSize - 1, x left to right, y bottom to top
+     * and z front to back. See cubeMap.txt for how the sides are laid out.
+     */
+    static int stickerIndex(int cs, int side, int x, int y, int z) {
+        int row;
+        int col;
+        if (side == FRONT) {
+            row = cs - 1 - y;
+            col = x;
+        } else if (side == BACK) {
+            row = cs - 1 - y;
+            col = cs - 1 - x;
+        } else if (side == LEFT) {
+            row = cs - 1 - y;
+            col = cs - 1 - z;
+        } else if (side == RIGHT) {
+            row = cs - 1 - y;
+            col = z;
+        } else if (side == TOP) {
+            row = cs - 1 - z;
+            col = x;
+        } else {
+            row = z;
+            col = x;
+        }
+        return side * cs * cs + row * cs + col;
+    }
+
+    /**
+     * Returns the packed sticker index for sticker number sticker (0-2) of a corner slot
+     */
+    static int cornerSticker(int cs, int corner, int sticker) {
+        int[] pos = CORNER_POSITIONS[corner];
+        return stickerIndex(cs, CORNER_SIDES[corner][sticker], pos[0] * (cs - 1),
+                            pos[1] * (cs - 1), pos[2] * (cs - 1));
+    }
+
+    /**
+     * Returns the packed sticker index for sticker number sticker (0-1) of an edge slot.
+     * Only makes sense for a 3x3.
+     */
+    static int edgeSticker(int edge, int sticker) {
+        int[] pos = EDGE_POSITIONS[edge];
+        return stickerIndex(3, EDGE_SIDES[edge][sticker], pos[0], pos[1], pos[2]);
+    }
+
+    /**
+     * Reads the color of a packed sticker index off of a cube
+     */
+    static int readSticker(RubiksCube cube, int stickerIndex) {
+        return cube.getPackedSticker(stickerIndex);
+    }
+
+    /**
+     * Works out how to relabel the cube's colors so the cubie in the DBL slot becomes the
+     * solved DBL cubie of a RubiksCube(cubeSize, false). Opposite colors are found by
+     * looking for the color that never shares a corner with a given color.
+     * @return int[6] mapping the cube's colors to normalized colors, or null if the corners
+     * don't describe a real cube
+     */
+    static int[] normalizingRelabel(RubiksCube cube) {
+        int[] relabel = new int[6];
+        return normalizingRelabel(cube, relabel) ? relabel : null;
+    }
+
+    /**
+     * normalizingRelabel into an array the caller keeps, so a search can do it for every
+     * state without allocating
+     * @param int[] relabel filled with the mapping, at least 6 long
+     * @return false if the corners don't describe a real cube
+     */
+    static boolean normalizingRelabel(RubiksCube cube, int[] relabel) {
+        int cs = cube.getCubeSize();
+        if (cs < 2) {
+            return false;
+        }
+
+        // which colors share a corner with each color, 6 bits a color
+        long adjacent = 0;
+        for (int corner = 0; corner < NUM_CORNERS; corner++) {
+            int c0 = readSticker(cube, cornerSticker(cs, corner, 0));
+            int c1 = readSticker(cube, cornerSticker(cs, corner, 1));
+            int c2 = readSticker(cube, cornerSticker(cs, corner, 2));
+            if (c0 == c1 || c1 == c2 || c0 == c2) {
+                return false;
+            }
+            adjacent |= (long) ((1 << c1) | (1 << c2)) << (6 * c0);
+            adjacent |= (long) ((1 << c0) | (1 << c2)) << (6 * c1);
+            adjacent |= (long) ((1 << c0) | (1 << c1)) << (6 * c2);
+        }
+
+        int down = readSticker(cube, stickerIndex(cs, BOTTOM, 0, 0, cs - 1));
+        int back = readSticker(cube, stickerIndex(cs, BACK, 0, 0, cs - 1));
+        int left = readSticker(cube, stickerIndex(cs, LEFT, 0, 0, cs - 1));
+
+        Arrays.fill(relabel, 0, 6, -1);
+        return assignOpposites(relabel, adjacent, down, BOTTOM, TOP)
+            && assignOpposites(relabel, adjacent, back, BACK, FRONT)
+            && assignOpposites(relabel, adjacent, left, LEFT, RIGHT);
+    }
+
+    private static boolean assignOpposites(int[] relabel, long adjacent, int color,
+                                           int side, int oppositeSide) {
+        int colorAdjacent = (int) (adjacent >>> (6 * color)) & 0x3F;
+        int oppositeMask = 0x3F & ~colorAdjacent & ~(1 << color);
+        if (Integer.bitCount(oppositeMask) != 1) {
+            return false;
+        }
+        int opposite = Integer.numberOfTrailingZeros(oppositeMask);
+        if (relabel[color] != -1 || relabel[opposite] != -1) {
+            return false;
+        }
+        relabel[color] = side;
+        relabel[opposite] = oppositeSide;
+        return true;
+    }
+
+    /**
+     * Reads all eight corners of a cube (any size of at least 2) in the normalized frame.
+     * @param int[] relabel from normalizingRelabel
+     * @param int[] cubieAt filled with the corner cubie in each slot
+     * @param int[] twistAt filled with how far each slot's cubie is twisted (0-2)
+     * @return false if a corner doesn't match a real cubie
+     */
+    static boolean readCorners(RubiksCube cube, int[] relabel, int[] cubieAt, int[] twistAt) {
+        int cs = cube.getCubeSize();
+        for (int corner = 0; corner < NUM_CORNERS; corner++) {
+            int c0 = relabel[readSticker(cube, cornerSticker(cs, corner, 0))];
+            int c1 = relabel[readSticker(cube, cornerSticker(cs, corner, 1))];
+            int c2 = relabel[readSticker(cube, cornerSticker(cs, corner, 2))];
+            int mask = (1 << c0) | (1 << c1) | (1 << c2);
+            int twist = c0 == TOP || c0 == BOTTOM ? 0
+                      : (c1 == TOP || c1 == BOTTOM ? 1 : (c2 == TOP || c2 == BOTTOM ? 2 : -1));
+
+            int cubie = CORNER_BY_MASK[mask];
+            if (cubie == -1 || twist == -1) {
+                return false;
+            }
+            // a mirrored corner has the right colors in the wrong rotational order
+            int[] home = CORNER_SIDES[cubie];
+            int next = twist == 0 ? c1 : (twist == 1 ? c2 : c0);
+            int last = twist == 0 ? c2 : (twist == 1 ? c0 : c1);
+            if (next != home[1] || last != home[2]) {
+                return false;
+            }
+            cubieAt[corner] = cubie;
+            twistAt[corner] = twist;
+        }
+        return true;
+    }
+
+    /**
+     * Reads all twelve edges of a 3x3 in the normalized frame.
+     * @param int[] relabel from normalizingRelabel
+     * @param int[] cubieAt filled with the edge cubie in each slot
+     * @param int[] flipAt filled with whether each slot's cubie is flipped (0 or 1)
+     * @return false if the cube isn't a 3x3 or an edge doesn't match a real cubie
+     */
+    static boolean readEdges(RubiksCube cube, int[] relabel, int[] cubieAt, int[] flipAt) {
+        if (cube.getCubeSize() != 3) {
+            return false;
+        }
+        for (int edge = 0; edge < NUM_EDGES; edge++) {
+            int c0 = relabel[readSticker(cube, edgeSticker(edge, 0))];
+            int c1 = relabel[readSticker(cube, edgeSticker(edge, 1))];
+            int cubie = EDGE_BY_MASK[(1 << c0) | (1 << c1)];
+            if (cubie == -1 || c0 == c1) {
+                return false;
+            }
+            cubieAt[edge] = cubie;
+            flipAt[edge] = c0 == EDGE_SIDES[cubie][0] ? 0 : 1;
+        }
+        return true;
+    }
+
+    /**
+     * Applies a move the way it looks in the normalized frame. Turning a layer that holds
+     * the DBL slot is the same as turning every other layer on that axis the other way
+     * and then turning the whole cube, and the whole cube turn doesn't matter to us.
+     */
+    static void applyNormalizedMove(RubiksCube cube, int axis, int layer, int numTurns) {
+        int cs = cube.getCubeSize();
+        if (layer != dblLayer(cs, axis)) {
+            cube.makeMove(axis, layer, numTurns);
+            return;
+        }
+        for (int otherLayer = 0; otherLayer < cs; otherLayer++) {
+            if (otherLayer != layer) {
+                cube.makeMove(axis, otherLayer, 4 - numTurns);
+            }
+        }
+    }
+
+    /**
+     * Returns the layer on axis that holds the DBL slot
+     */
+    static int dblLayer(int cs, int axis) {
+        if (axis == 1) {
+            // y layers are numbered left to right
+            return 0;
+        }
+        // x layers are numbered top to bottom and z layers front to back
+        return cs - 1;
+    }
+
+    private static int colorMask(int[] colors) {
+        int mask = 0;
+        for (int color : colors) {
+            mask |= 1 << color;
+        }
+        return mask;
+    }
+
+    private static int tripleProduct(int s0, int s1, int s2) {
+        int[] a = normal(s0);
+        int[] b = normal(s1);
+        int[] c = normal(s2);
+        return a[0] * (b[1] * c[2] - b[2] * c[1])
+             - a[1] * (b[0] * c[2] - b[2] * c[0])
+             + a[2] * (b[0] * c[1] - b[1] * c[0]);
+    }
+
+    private static int[] normal(int side) {
+        if (side == FRONT) {
+            return new int[] {0, 0, -1};
+        } else if (side == BACK) {
+            return new int[] {0, 0, 1};
+        } else if (side == LEFT) {
+            return new int[] {-1, 0, 0};
+        } else if (side == RIGHT) {
+            return new int[] {1, 0, 0};
+        } else if (side == TOP) {
+            return new int[] {0, 1, 0};
+        } else {
+            return new int[] {0, -1, 0};
+        }
+    }
+}
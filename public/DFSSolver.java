@@ -0,0 +1,59 @@
+import java.util.Stack;
+
+/**
+ * The depth first search behind RubiksCube.solveDFS as a CubeSolver, so it can be run by
+ * anything that takes one and stopped partway with cancel() (see AsyncSolver). Moves are
+ * tried in the same order, so it finds the same solution solveDFS would, which isn't
+ * always a shortest one. A solver instance is not thread safe, use one per thread, but
+ * cancel() can be called from any thread.
+ */
+public class DFSSolver implements CubeSolver {
+    private TranspositionTable table;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a solver that doesn't remember which states it's searched
+     */
+    public DFSSolver() {
+        this(null);
+    }
+
+    /**
+     * @param TranspositionTable table where to remember searched states, or null for nowhere
+     */
+    public DFSSolver(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Searches for a solution that is at most depthLimit moves long.
+     * @param RubiksCube cube The cube to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the cube should be left solved or put back the
+     * way it was
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if there is no solution within depthLimit moves or the solver got cancelled.
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        MovePath path = new MovePath(cube.getCubeSize());
+        // solveDFS's limit lets through one more move than it says
+        if (cube.solveDFSRecursive(depthLimit - 1, path, -1, -1, leaveCubeSolved, this.table,
+                                   this::isCancelled)) {
+            return path.toStack();
+        }
+        return null;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can, put the cube back the way it was and return
+     * no solution.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+}
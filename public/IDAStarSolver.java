@@ -0,0 +1,362 @@
+import java.util.Stack;
+
+/**
+ * Iterative-Deepening A* solver.
+ *
+ * Runs a series of depth first searches, each one cut off as soon as
+ * (moves made so far + heuristic estimate) goes past the current bound. The bound starts
+ * at the estimate for the starting cube and is raised to the smallest f value that got cut
+ * off, so the first solution found is always a shortest one as long as the heuristic is
+ * admissible. It searches for a solved cube unless it's given a CubeGoal, like one of the
+ * StageGoals, to search for instead.
+ *
+ * Moves are enumerated in the same order as RubiksCube.solveDFS and use the same
+ * {axis, layer, numTurns} format. A solver instance is not thread safe, use one per thread,
+ * but cancel() can be called from any thread.
+ */
+public class IDAStarSolver implements CubeSolver {
+    private static final int FOUND = -1;
+    private static final int CANCELLED = -2;
+    private static final int NOT_FOUND = Integer.MAX_VALUE;
+    private static final int NUM_AXES = 3;
+
+    private CubeGoal goal;
+    private CubeHeuristic heuristic;
+    // can be null, then nothing is remembered between visits to a state
+    private TranspositionTable table;
+
+    private RubiksCube cube;
+    private MovePath path;
+
+    private volatile boolean cancelled;
+    private int nextBound;
+
+    // both null unless metrics are being kept
+    private SolverMetrics metrics;
+    private SolverMetrics.Recorder recorder;
+
+    /**
+     * Creates a solver that uses the StickerHeuristic
+     */
+    public IDAStarSolver() {
+        this(new StickerHeuristic());
+    }
+
+    /**
+     * Creates a solver guided by heuristic
+     * @param CubeHeuristic heuristic must be admissible for the results to be optimal
+     */
+    public IDAStarSolver(CubeHeuristic heuristic) {
+        this(heuristic, null);
+    }
+
+    /**
+     * Creates a solver guided by heuristic that remembers what it learns about states in
+     * table, so states reached again by another move order or in a later pass get cut off
+     * as early as possible. The table can be shared with other solvers, even on other
+     * threads, as long as they search the same cube size.
+     * @param CubeHeuristic heuristic must be admissible for the results to be optimal
+     * @param TranspositionTable table where to keep what's learned, or null for nowhere
+     */
+    public IDAStarSolver(CubeHeuristic heuristic, TranspositionTable table) {
+        this(CubeGoal.SOLVED, heuristic, table);
+    }
+
+    /**
+     * Creates a solver that searches for goal instead of a solved cube, guided by the
+     * goal's own estimate
+     * @param CubeGoal goal what counts as solved, its estimate must be admissible for the
+     * results to be shortest
+     */
+    public IDAStarSolver(CubeGoal goal) {
+        this(goal, goal::estimate, null);
+    }
+
+    /**
+     * Creates a solver that searches for goal instead of a solved cube. What's learned
+     * about states is only true for one goal, so a table can only be shared by solvers
+     * with the same goal.
+     * @param CubeGoal goal what counts as solved
+     * @param CubeHeuristic heuristic lower bound on the moves to reach goal, must be
+     * admissible for the results to be shortest
+     * @param TranspositionTable table where to keep what's learned, or null for nowhere
+     */
+    public IDAStarSolver(CubeGoal goal, CubeHeuristic heuristic, TranspositionTable table) {
+        this.goal = goal;
+        this.heuristic = heuristic;
+        this.table = table;
+    }
+
+    /**
+     * Searches for a shortest solution that is at most depthLimit moves long. With a goal,
+     * "solved" means the goal is reached.
+     * @param RubiksCube cube The cube to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the cube should be left solved or put back the
+     * way it was
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if there is no solution within depthLimit moves or the solver got cancelled.
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        this.cube = cube;
+        this.path = new MovePath(cube.getCubeSize());
+        long startNanos = this.startRecording();
+
+        try {
+            int bound = this.heuristic.estimate(cube);
+            while (bound <= depthLimit) {
+                int result = this.startSearch(0, bound, -1, -1);
+                if (result == FOUND) {
+                    if (!leaveCubeSolved) {
+                        this.path.undo(cube);
+                    }
+                    return this.path.toStack();
+                }
+                if (result == NOT_FOUND || result == CANCELLED) {
+                    break;
+                }
+                bound = result;
+            }
+            return null;
+        } finally {
+            this.cube = null;
+            if (this.recorder != null) {
+                long elapsedNanos = this.stopRecording(startNanos);
+                this.metrics.solveFinished("ida", elapsedNanos);
+            }
+        }
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can. The search that is running (or the next one)
+     * gives up, puts the cube back the way it was and returns no solution.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Runs a single pass with a fixed bound, continuing on from the moves already on
+     * moveStack (which must already have been made on cube). Used by ParallelSolver to
+     * search one branch of the move tree.
+     * @return true if the cube got solved, in which case the solution is left on moveStack
+     * and the cube is left solved. Otherwise both are left the way they were and
+     * getNextBound has the bound for the next pass.
+     */
+    boolean searchBranch(RubiksCube cube, Stack<int[]> moveStack, int bound) {
+        this.cube = cube;
+        this.path = new MovePath(cube.getCubeSize());
+        this.path.pushAll(moveStack);
+        int lastAxis = -1;
+        int lastLayer = -1;
+        if (!moveStack.isEmpty()) {
+            lastAxis = moveStack.peek()[0];
+            lastLayer = moveStack.peek()[1];
+        }
+
+        long startNanos = this.startRecording();
+        try {
+            int result = this.startSearch(moveStack.size(), bound, lastAxis, lastLayer);
+            this.nextBound = result < 0 ? NOT_FOUND : result;
+            if (result == FOUND) {
+                for (int i = moveStack.size(); i < this.path.getLength(); i++) {
+                    moveStack.push(new int[] {this.path.getAxis(i), this.path.getLayer(i), this.path.getNumTurns(i)});
+                }
+            }
+            return result == FOUND;
+        } finally {
+            this.cube = null;
+            if (this.recorder != null) {
+                this.stopRecording(startNanos);
+            }
+        }
+    }
+
+    /**
+     * Returns the smallest f value that went past the bound in the last searchBranch call,
+     * Integer.MAX_VALUE if nothing did (or the search was cancelled)
+     */
+    int getNextBound() {
+        return this.nextBound;
+    }
+
+    /**
+     * Runs search, or searchRecorded if metrics are being kept
+     */
+    private int startSearch(int depth, int bound, int lastAxis, int lastLayer) {
+        if (this.recorder != null) {
+            return this.searchRecorded(depth, bound, lastAxis, lastLayer);
+        }
+        return this.search(depth, bound, lastAxis, lastLayer);
+    }
+
+    /**
+     * Depth first search that never goes past bound.
+     * @return FOUND if the cube got solved, CANCELLED if cancel() was called, otherwise the
+     * smallest f value that went past bound (NOT_FOUND if there wasn't one)
+     */
+    private int search(int depth, int bound, int lastAxis, int lastLayer) {
+        if (this.cancelled) {
+            return CANCELLED;
+        }
+        int estimate = this.heuristic.estimate(this.cube);
+        int learned = 0;
+        long key = 0;
+        if (this.table != null) {
+            key = TranspositionTable.key(this.cube.getZobristHash(), lastAxis, lastLayer);
+            learned = this.table.getLowerBound(key);
+        }
+        int f = depth + Math.max(estimate, learned);
+        if (f > bound) {
+            return f;
+        }
+        if (this.goal.isReached(this.cube)) {
+            return FOUND;
+        }
+
+        int cs = this.cube.getCubeSize();
+        boolean anyOrientation = this.goal.isOrientationInvariant();
+        int minOverBound = NOT_FOUND;
+        for (int numTurns = 1; numTurns <= 3; numTurns++) {
+            int undoNumTurns = 4 - numTurns;
+            for (int layer = 0; layer < cs; layer++) {
+                for (int axis = 0; axis < NUM_AXES; axis++) {
+                    if (!MoveOrdering.canFollow(cs, lastAxis, lastLayer, axis, layer, anyOrientation)) {
+                        continue;
+                    }
+
+                    this.path.push(axis, layer, numTurns);
+                    this.cube.makeMove(axis, layer, numTurns);
+
+                    int result = this.search(depth + 1, bound, axis, layer);
+                    if (result == FOUND) {
+                        return FOUND;
+                    }
+
+                    this.path.pop();
+                    this.cube.makeMove(axis, layer, undoNumTurns);
+                    if (result == CANCELLED) {
+                        return CANCELLED;
+                    }
+                    if (result < minOverBound) {
+                        minOverBound = result;
+                    }
+                }
+            }
+        }
+
+        // every path through here is at least minOverBound long, so that's how many moves
+        // are left from here at least
+        if (this.table != null) {
+            int lowerBound = minOverBound == NOT_FOUND ? Integer.MAX_VALUE : minOverBound - depth;
+            this.table.store(key, lowerBound);
+        }
+        return minOverBound;
+    }
+
+    /**
+     * search, counting into the recorder as it goes. It's a copy rather than search checking
+     * for a recorder at every node, so searches without metrics don't pay for them at all.
+     */
+    private int searchRecorded(int depth, int bound, int lastAxis, int lastLayer) {
+        if (this.cancelled) {
+            return CANCELLED;
+        }
+        int estimate = this.heuristic.estimate(this.cube);
+        int learned = 0;
+        long key = 0;
+        if (this.table != null) {
+            key = TranspositionTable.key(this.cube.getZobristHash(), lastAxis, lastLayer);
+            learned = this.table.getLowerBound(key);
+            this.recorder.tableProbe(learned != 0);
+        }
+        int f = depth + Math.max(estimate, learned);
+        if (f > bound) {
+            this.countPrune(depth + estimate > bound);
+            return f;
+        }
+        if (this.goal.isReached(this.cube)) {
+            return FOUND;
+        }
+        this.recorder.expanded(depth);
+
+        int cs = this.cube.getCubeSize();
+        boolean anyOrientation = this.goal.isOrientationInvariant();
+        int minOverBound = NOT_FOUND;
+        for (int numTurns = 1; numTurns <= 3; numTurns++) {
+            int undoNumTurns = 4 - numTurns;
+            for (int layer = 0; layer < cs; layer++) {
+                for (int axis = 0; axis < NUM_AXES; axis++) {
+                    if (!MoveOrdering.canFollow(cs, lastAxis, lastLayer, axis, layer, anyOrientation)) {
+                        continue;
+                    }
+
+                    this.path.push(axis, layer, numTurns);
+                    this.cube.makeMove(axis, layer, numTurns);
+
+                    int result = this.searchRecorded(depth + 1, bound, axis, layer);
+                    if (result == FOUND) {
+                        return FOUND;
+                    }
+
+                    this.path.pop();
+                    this.cube.makeMove(axis, layer, undoNumTurns);
+                    if (result == CANCELLED) {
+                        return CANCELLED;
+                    }
+                    if (result < minOverBound) {
+                        minOverBound = result;
+                    }
+                }
+            }
+        }
+
+        // every path through here is at least minOverBound long, so that's how many moves
+        // are left from here at least
+        if (this.table != null) {
+            int lowerBound = minOverBound == NOT_FOUND ? Integer.MAX_VALUE : minOverBound - depth;
+            this.table.store(key, lowerBound);
+        }
+        return minOverBound;
+    }
+
+    private void countPrune(boolean byHeuristic) {
+        if (byHeuristic) {
+            this.recorder.heuristicPrune();
+        } else {
+            this.recorder.duplicatePrune();
+        }
+    }
+
+    /**
+     * Starts a recorder if there are metrics to keep
+     * @return the time it started
+     */
+    private long startRecording() {
+        if (this.metrics == null) {
+            return 0;
+        }
+        this.recorder = this.metrics.newRecorder();
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds what the recorder counted and the time spent searching to the metrics
+     * @return how long it was since startNanos
+     */
+    private long stopRecording(long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        this.recorder.flush();
+        this.recorder = null;
+        this.metrics.addPhaseNanos("ida.search", elapsedNanos);
+        return elapsedNanos;
+    }
+}
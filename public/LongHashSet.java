@@ -0,0 +1,153 @@
+import java.util.Arrays;
+
+/**
+ * Open addressed hash set of primitive longs, with one byte tag stored next to each key.
+ *
+ * Made for search visited sets holding millions of state keys, where a HashSet<Long> would
+ * spend ~50 bytes a key on boxes and entries. This one takes 9 bytes a slot (long key +
+ * byte tag) at a load factor of at most 1/2. The tag is there for remembering which move
+ * reached a state.
+ *
+ * Keys are spread with a 64 bit mixer and collisions are resolved by linear probing.
+ * Not thread safe.
+ */
+public class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private byte[] tags;
+    private int mask;
+    private int size;
+
+    // 0 marks an empty slot, so the key 0 is kept on the side
+    private boolean hasZeroKey;
+    private byte zeroKeyTag;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param int expectedSize how many keys the set should hold before it has to grow
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.keys = new long[capacity];
+        this.tags = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean contains(long key) {
+        return this.getTag(key) != -1;
+    }
+
+    /**
+     * Returns the tag stored with key (0-255), -1 if the key isn't in the set
+     */
+    public int getTag(long key) {
+        if (key == 0) {
+            return this.hasZeroKey ? this.zeroKeyTag & 0xFF : -1;
+        }
+        int slot = this.slotFor(key);
+        while (true) {
+            long slotKey = this.keys[slot];
+            if (slotKey == key) {
+                return this.tags[slot] & 0xFF;
+            }
+            if (slotKey == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Adds a key with a tag of 0
+     * @return true if the key wasn't already in the set
+     */
+    public boolean add(long key) {
+        return this.add(key, 0);
+    }
+
+    /**
+     * Adds a key. If it's already in the set, nothing changes (including the tag).
+     * @param int tag 0-255
+     * @return true if the key wasn't already in the set
+     */
+    public boolean add(long key, int tag) {
+        if (key == 0) {
+            if (this.hasZeroKey) {
+                return false;
+            }
+            this.hasZeroKey = true;
+            this.zeroKeyTag = (byte) tag;
+            this.size++;
+            return true;
+        }
+
+        int slot = this.slotFor(key);
+        while (true) {
+            long slotKey = this.keys[slot];
+            if (slotKey == key) {
+                return false;
+            }
+            if (slotKey == 0) {
+                break;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.tags[slot] = (byte) tag;
+        this.size++;
+        if (this.size * 2 > this.keys.length) {
+            this.grow();
+        }
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        this.hasZeroKey = false;
+        this.size = 0;
+    }
+
+    private int slotFor(long key) {
+        return (int) mix(key) & this.mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        byte[] oldTags = this.tags;
+        this.keys = new long[oldKeys.length * 2];
+        this.tags = new byte[oldKeys.length * 2];
+        this.mask = this.keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = this.slotFor(key);
+                while (this.keys[slot] != 0) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = key;
+                this.tags[slot] = oldTags[i];
+            }
+        }
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreads every bit of the key over the whole long
+     */
+    static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Stack;
+
+/**
+ * Solves 2x2s optimally by looking them up instead of searching, using a table of the exact
+ * distance of every 2x2 state (from TwoByTwoEnumerator, PatternDatabase.buildCorners or a
+ * saved corners.pdb, they're all the same table).
+ *
+ * The cube's state is ranked once, and from there every step is picking one of the 9 moves
+ * that leads to a state one closer, which the table says there always is. That's at most
+ * 11 steps of 9 table reads each, whatever the state, with no search at all.
+ *
+ * A solver instance keeps nothing between solves but its metrics and can be shared by any
+ * number of threads.
+ */
+public class LookupSolver implements CubeSolver {
+    private PatternDatabase distances;
+
+    // null unless metrics are being kept
+    private volatile SolverMetrics metrics;
+
+    /**
+     * @param PatternDatabase distances corner table of exact 2x2 distances
+     * @throws IllegalArgumentException if the table isn't a corner table
+     */
+    public LookupSolver(PatternDatabase distances) {
+        if (distances.getKind() != PatternDatabase.KIND_CORNERS) {
+            throw new IllegalArgumentException("Lookups need the corner table");
+        }
+        this.distances = distances;
+    }
+
+    /**
+     * Looks up a shortest solution.
+     * @param RubiksCube cube The 2x2 to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the cube should be left solved or the way it was
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if the cube isn't a real 2x2 state or needs more than depthLimit moves
+     * @throws IllegalArgumentException if the cube isn't a 2x2
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        if (cube.getCubeSize() != 2) {
+            throw new IllegalArgumentException("Only 2x2s can be looked up");
+        }
+        long startNanos = System.nanoTime();
+        Stack<int[]> solution = this.lookUp(cube, depthLimit);
+        SolverMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.solveFinished("lookup", System.nanoTime() - startNanos);
+        }
+
+        if (solution != null && leaveCubeSolved) {
+            for (int[] move : solution) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Returns how many moves a 2x2 is from solved, or -1 if it isn't a real state
+     */
+    public int getDistance(RubiksCube cube) {
+        int[] relabel = CubieGeometry.normalizingRelabel(cube);
+        int index = relabel == null ? -1 : PatternDatabase.cornerIndex(cube, relabel);
+        if (index < 0) {
+            return -1;
+        }
+        int distance = this.distances.getDistance(index);
+        return distance == PatternDatabase.UNVISITED ? -1 : distance;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private Stack<int[]> lookUp(RubiksCube cube, int depthLimit) {
+        int[] relabel = CubieGeometry.normalizingRelabel(cube);
+        int index = relabel == null ? -1 : PatternDatabase.cornerIndex(cube, relabel);
+        if (index < 0) {
+            return null;
+        }
+        int distance = this.distances.getDistance(index);
+        if (distance == PatternDatabase.UNVISITED || distance > depthLimit) {
+            return null;
+        }
+
+        int numMoves = PatternDatabase.NUM_CORNER_MOVES;
+        int numTwists = PatternDatabase.NUM_CORNER_TWISTS;
+        int[] permMove = Transitions.PERM_MOVE;
+        int[] twistMove = Transitions.TWIST_MOVE;
+        Stack<int[]> solution = new Stack<int[]>();
+        while (distance > 0) {
+            int permRank = index / numTwists;
+            int twistRank = index % numTwists;
+            int move = 0;
+            int next = -1;
+            for (; move < numMoves; move++) {
+                next = permMove[permRank * numMoves + move] * numTwists + twistMove[twistRank * numMoves + move];
+                if (this.distances.getDistance(next) == distance - 1) {
+                    break;
+                }
+            }
+            if (move == numMoves) {
+                throw new IllegalStateException("Distance table has no way down from state " + index);
+            }
+            // corner moves go axis by axis, 1 to 3 turns of the layer away from DBL
+            int axis = move / 3;
+            solution.push(new int[] {axis, 1 - CubieGeometry.dblLayer(2, axis), move % 3 + 1});
+            index = next;
+            distance--;
+        }
+        return solution;
+    }
+
+    // worked out the first time anything is looked up
+    private static class Transitions {
+        static final int[] PERM_MOVE;
+        static final int[] TWIST_MOVE;
+        static {
+            int[][] transitions = PatternDatabase.cornerTransitions();
+            PERM_MOVE = transitions[0];
+            TWIST_MOVE = transitions[1];
+        }
+    }
+}
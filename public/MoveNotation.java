@@ -0,0 +1,251 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes moves in standard cube notation, like R U' F2, for people to read. Nothing here is
+ * used while searching, solutions only get formatted when someone asks.
+ *
+ * In this project axis 0 turns the top (layer 0) to the bottom, axis 1 the left to the right
+ * and axis 2 the front to the back, and numTurns turns the same way as D, R and B. So the
+ * faces are:
+ *   axis 0: layer 0 is U, the last layer is D, E is the middle
+ *   axis 1: layer 0 is L, the last layer is R, M is the middle
+ *   axis 2: layer 0 is F, the last layer is B, S is the middle
+ * and a move on layer 0 is written the other way round, axis 0 layer 0 numTurns 1 is U'.
+ *
+ * Moves back to back on the same axis all commute, so they're written together: a block of
+ * layers turned the same amount from one face becomes a wide move (Rw for two layers, 3Rw
+ * for three), all of the layers becomes a whole cube rotation (x, y or z), and any other
+ * inner layer is a slice move counted from its nearest face (2R is the layer next to R).
+ * Odd cubes use M, E and S for the middle layer. Turns that add up to nothing on a layer
+ * are left out. parse reads all of it back.
+ */
+public class MoveNotation {
+    private static final char[] NEAR_FACES = {'U', 'L', 'F'};
+    private static final char[] FAR_FACES = {'D', 'R', 'B'};
+    private static final char[] MIDDLE_SLICES = {'E', 'M', 'S'};
+    private static final char[] ROTATIONS = {'y', 'x', 'z'};
+    // whether the middle slice and the rotation turn the same way as the far face
+    private static final boolean[] MIDDLE_FOLLOWS_FAR = {true, false, false};
+    private static final boolean[] ROTATION_FOLLOWS_FAR = {false, true, false};
+
+    private MoveNotation() {
+    }
+
+    /**
+     * Formats a single move
+     */
+    public static String formatMove(int cubeSize, int axis, int layer, int numTurns) {
+        int[] layerTurns = new int[cubeSize];
+        layerTurns[layer] = numTurns;
+        StringBuilder notation = new StringBuilder();
+        appendAxis(notation, cubeSize, axis, layerTurns);
+        return notation.toString();
+    }
+
+    /**
+     * Formats a list of {axis, layer, numTurns} moves, like a solution Stack, first move first
+     */
+    public static String format(int cubeSize, List<int[]> moves) {
+        int[] codes = new int[moves.size()];
+        for (int i = 0; i < codes.length; i++) {
+            int[] move = moves.get(i);
+            codes[i] = MovePath.encode(cubeSize, move[0], move[1], move[2]);
+        }
+        return format(cubeSize, codes);
+    }
+
+    public static String format(MovePath path) {
+        int[] codes = new int[path.getLength()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = path.getCode(i);
+        }
+        return format(path.getCubeSize(), codes);
+    }
+
+    /**
+     * Reads moves written in the notation format writes, separated by whitespace, into
+     * {axis, layer, numTurns} moves. A wide move, rotation or slice becomes one move per
+     * layer it turns. Lowercase face letters (r for Rw) aren't understood.
+     * @throws IllegalArgumentException if a token isn't a move on a cube of cubeSize
+     */
+    public static List<int[]> parse(int cubeSize, String notation) {
+        List<int[]> moves = new ArrayList<int[]>();
+        for (String token : notation.trim().split("\\s+")) {
+            if (!token.isEmpty()) {
+                parseToken(cubeSize, token, moves);
+            }
+        }
+        return moves;
+    }
+
+    private static void parseToken(int cs, String token, List<int[]> moves) {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        int depth = i == 0 ? 0 : Integer.parseInt(token.substring(0, i));
+        if (i == token.length()) {
+            throw new IllegalArgumentException("Move " + token + " has no face");
+        }
+        char face = token.charAt(i++);
+        boolean wide = i < token.length() && token.charAt(i) == 'w';
+        if (wide) {
+            i++;
+        }
+        int turns = 1;
+        if (i < token.length() && token.charAt(i) == '2') {
+            turns = 2;
+            i++;
+        } else if (i < token.length() && token.charAt(i) == '\'') {
+            turns = 3;
+            i++;
+        }
+        if (i != token.length()) {
+            throw new IllegalArgumentException("Can't read move " + token);
+        }
+
+        int nearAxis = indexOf(NEAR_FACES, face);
+        int farAxis = indexOf(FAR_FACES, face);
+        int sliceAxis = indexOf(MIDDLE_SLICES, face);
+        int rotationAxis = indexOf(ROTATIONS, face);
+        if (nearAxis >= 0 || farAxis >= 0) {
+            boolean far = farAxis >= 0;
+            int numLayers = wide ? (depth == 0 ? 2 : depth) : 1;
+            int firstDepth = wide ? 1 : (depth == 0 ? 1 : depth);
+            if (firstDepth + numLayers - 1 > cs) {
+                throw new IllegalArgumentException("Move " + token + " goes deeper than a cube of size " + cs);
+            }
+            for (int d = firstDepth; d < firstDepth + numLayers; d++) {
+                int layer = far ? cs - d : d - 1;
+                moves.add(new int[] {far ? farAxis : nearAxis, layer, faceTurns(turns, far)});
+            }
+        } else if (sliceAxis >= 0) {
+            if (cs % 2 == 0 || depth != 0 || wide) {
+                throw new IllegalArgumentException("Move " + token + " needs an odd cube and no depth");
+            }
+            moves.add(new int[] {sliceAxis, cs / 2, faceTurns(turns, MIDDLE_FOLLOWS_FAR[sliceAxis])});
+        } else if (rotationAxis >= 0) {
+            if (depth != 0 || wide) {
+                throw new IllegalArgumentException("Rotation " + token + " can't have a depth");
+            }
+            for (int layer = 0; layer < cs; layer++) {
+                moves.add(new int[] {rotationAxis, layer, faceTurns(turns, ROTATION_FOLLOWS_FAR[rotationAxis])});
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown face " + face + " in move " + token);
+        }
+    }
+
+    private static int indexOf(char[] letters, char letter) {
+        for (int i = 0; i < letters.length; i++) {
+            if (letters[i] == letter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String format(int cubeSize, int[] codes) {
+        StringBuilder notation = new StringBuilder();
+        int[] layerTurns = new int[cubeSize];
+        int i = 0;
+        while (i < codes.length) {
+            int axis = codes[i] / 3 / cubeSize;
+            Arrays.fill(layerTurns, 0);
+            for (; i < codes.length && codes[i] / 3 / cubeSize == axis; i++) {
+                int layer = codes[i] / 3 % cubeSize;
+                layerTurns[layer] = (layerTurns[layer] + codes[i] % 3 + 1) % 4;
+            }
+            appendAxis(notation, cubeSize, axis, layerTurns);
+        }
+        return notation.toString();
+    }
+
+    /**
+     * Writes the turns of every layer of one axis
+     * @param int[] layerTurns how many turns each layer gets, in this project's direction
+     */
+    private static void appendAxis(StringBuilder notation, int cs, int axis, int[] layerTurns) {
+        boolean allSame = layerTurns[0] != 0;
+        for (int layer = 1; layer < cs; layer++) {
+            allSame &= layerTurns[layer] == layerTurns[0];
+        }
+        if (allSame) {
+            appendToken(notation, "", ROTATIONS[axis], "", faceTurns(layerTurns[0], ROTATION_FOLLOWS_FAR[axis]));
+            return;
+        }
+
+        // blocks of layers turned together from each face, the far one can't take any of the
+        // near one's layers
+        int nearBlock = blockLength(layerTurns, 0, 1, cs);
+        int farBlock = blockLength(layerTurns, cs - 1, -1, cs - nearBlock);
+        if (nearBlock >= 2) {
+            appendWide(notation, nearBlock, NEAR_FACES[axis], faceTurns(layerTurns[0], false));
+        }
+        for (int layer = 0; layer < cs; layer++) {
+            if ((nearBlock >= 2 && layer < nearBlock) || (farBlock >= 2 && layer >= cs - farBlock)
+                    || layerTurns[layer] == 0) {
+                continue;
+            }
+            if (cs % 2 == 1 && cs > 1 && layer == cs / 2) {
+                appendToken(notation, "", MIDDLE_SLICES[axis], "",
+                            faceTurns(layerTurns[layer], MIDDLE_FOLLOWS_FAR[axis]));
+            } else if (layer < cs / 2) {
+                appendToken(notation, depthPrefix(layer + 1), NEAR_FACES[axis], "",
+                            faceTurns(layerTurns[layer], false));
+            } else {
+                appendToken(notation, depthPrefix(cs - layer), FAR_FACES[axis], "",
+                            faceTurns(layerTurns[layer], true));
+            }
+        }
+        if (farBlock >= 2) {
+            appendWide(notation, farBlock, FAR_FACES[axis], faceTurns(layerTurns[cs - 1], true));
+        }
+    }
+
+    /**
+     * Returns how many layers in a row, starting at start and going by step, are turned the
+     * same nonzero amount as the first, up to maxLength
+     */
+    private static int blockLength(int[] layerTurns, int start, int step, int maxLength) {
+        if (maxLength <= 0 || layerTurns[start] == 0) {
+            return 0;
+        }
+        int length = 1;
+        while (length < maxLength && layerTurns[start + length * step] == layerTurns[start]) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void appendWide(StringBuilder notation, int numLayers, char face, int turns) {
+        appendToken(notation, numLayers == 2 ? "" : Integer.toString(numLayers), face, "w", turns);
+    }
+
+    private static String depthPrefix(int depth) {
+        return depth == 1 ? "" : Integer.toString(depth);
+    }
+
+    /**
+     * Turns this project's number of turns into turns of the face the notation names, or
+     * back, it's the same both ways
+     * @param boolean followsFar whether the face turns the same way as D, R and B
+     */
+    private static int faceTurns(int numTurns, boolean followsFar) {
+        return followsFar ? numTurns : (4 - numTurns) % 4;
+    }
+
+    private static void appendToken(StringBuilder notation, String prefix, char face, String suffix, int turns) {
+        if (notation.length() > 0) {
+            notation.append(' ');
+        }
+        notation.append(prefix).append(face).append(suffix);
+        if (turns == 2) {
+            notation.append('2');
+        } else if (turns == 3) {
+            notation.append('\'');
+        }
+    }
+}
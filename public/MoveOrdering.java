@@ -0,0 +1,38 @@
+/**
+ * Which move sequences a search actually needs to try.
+ *
+ * Layers on the same axis never share a sticker, so turning two of them is the same in
+ * either order, and turning one layer twice in a row is the same as one bigger turn. Only
+ * trying same axis moves in increasing layer order gets rid of all of those duplicates at
+ * once without ever losing a shortest solution.
+ *
+ * On a 2x2 each axis has two layers and turning one is the same as turning the other the
+ * other way and then turning the whole cube. Since the solved check doesn't care which way
+ * the cube faces, only the layer away from the DBL corner is ever turned there (see
+ * CubieGeometry.dblLayer), which leaves 9 moves instead of 18. Searches for goals that do
+ * care (see CubeGoal.isOrientationInvariant) have to try all 18.
+ */
+class MoveOrdering {
+    private MoveOrdering() {
+    }
+
+    /**
+     * Returns whether a search should try (axis, layer) right after (lastAxis, lastLayer).
+     * Use -1 for both the first time.
+     */
+    static boolean canFollow(int cubeSize, int lastAxis, int lastLayer, int axis, int layer) {
+        return canFollow(cubeSize, lastAxis, lastLayer, axis, layer, true);
+    }
+
+    /**
+     * @param boolean anyOrientation whether the search's goal is reached the same whichever
+     * way the cube faces, false to keep the 2x2's DBL layer turns
+     */
+    static boolean canFollow(int cubeSize, int lastAxis, int lastLayer, int axis, int layer,
+                             boolean anyOrientation) {
+        if (axis == lastAxis && layer <= lastLayer) {
+            return false;
+        }
+        return !anyOrientation || cubeSize != 2 || layer != CubieGeometry.dblLayer(cubeSize, axis);
+    }
+}
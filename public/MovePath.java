@@ -0,0 +1,182 @@
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * A sequence of moves packed one byte each, for searches to push and pop moves on without
+ * making an int[] for every move they try.
+ *
+ * A move's code is the same as its MoveTable move index, (axis * cubeSize + layer) * 3 +
+ * numTurns - 1, which fits in a byte up to a 28x28. Bigger cubes take two bytes a move. The
+ * buffer is allocated up front at the capacity given and only grows if a search goes deeper
+ * than that. Not thread safe.
+ *
+ * Solutions are still handed out as Stack<int[]>, see toStack, and MoveNotation formats
+ * them for people.
+ */
+public class MovePath {
+    // deeper than any search that finishes gets
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private static final int NUM_TURNS = 3;
+    private static final int NUM_AXES = 3;
+
+    private int cubeSize;
+    private int bytesPerMove;
+    private byte[] moves;
+    private int length;
+
+    /**
+     * Creates a path with room for DEFAULT_CAPACITY moves
+     * @param int cubeSize size of the cube the moves are for
+     */
+    public MovePath(int cubeSize) {
+        this(cubeSize, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param int cubeSize size of the cube the moves are for
+     * @param int capacity how many moves to make room for up front
+     */
+    public MovePath(int cubeSize, int capacity) {
+        if (cubeSize < 1 || capacity < 0) {
+            throw new IllegalArgumentException("Cube size must be at least 1 and capacity can't be negative");
+        }
+        this.cubeSize = cubeSize;
+        this.bytesPerMove = NUM_AXES * cubeSize * NUM_TURNS <= 0x100 ? 1 : 2;
+        this.moves = new byte[Math.max(capacity, 1) * this.bytesPerMove];
+    }
+
+    /**
+     * Returns the code for a move, which is also its MoveTable move index
+     */
+    public static int encode(int cubeSize, int axis, int layer, int numTurns) {
+        return (axis * cubeSize + layer) * NUM_TURNS + numTurns - 1;
+    }
+
+    public void push(int axis, int layer, int numTurns) {
+        this.pushCode(encode(this.cubeSize, axis, layer, numTurns));
+    }
+
+    public void pushCode(int code) {
+        int offset = this.length * this.bytesPerMove;
+        if (offset + this.bytesPerMove > this.moves.length) {
+            this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+        }
+        if (this.bytesPerMove == 1) {
+            this.moves[offset] = (byte) code;
+        } else {
+            this.moves[offset] = (byte) (code >>> 8);
+            this.moves[offset + 1] = (byte) code;
+        }
+        this.length++;
+    }
+
+    /**
+     * Drops the last move
+     */
+    public void pop() {
+        if (this.length == 0) {
+            throw new IllegalStateException("Path is empty");
+        }
+        this.length--;
+    }
+
+    /**
+     * Drops every move after the first length
+     */
+    public void truncate(int length) {
+        if (length < 0 || length > this.length) {
+            throw new IllegalArgumentException("Can't truncate a path of " + this.length + " moves to " + length);
+        }
+        this.length = length;
+    }
+
+    public void clear() {
+        this.length = 0;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public boolean isEmpty() {
+        return this.length == 0;
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns the code of move i, the first move being 0
+     */
+    public int getCode(int i) {
+        if (i < 0 || i >= this.length) {
+            throw new IndexOutOfBoundsException("Move " + i + " of a path of " + this.length);
+        }
+        int offset = i * this.bytesPerMove;
+        if (this.bytesPerMove == 1) {
+            return this.moves[offset] & 0xFF;
+        }
+        return ((this.moves[offset] & 0xFF) << 8) | (this.moves[offset + 1] & 0xFF);
+    }
+
+    public int getAxis(int i) {
+        return this.getCode(i) / NUM_TURNS / this.cubeSize;
+    }
+
+    public int getLayer(int i) {
+        return this.getCode(i) / NUM_TURNS % this.cubeSize;
+    }
+
+    public int getNumTurns(int i) {
+        return this.getCode(i) % NUM_TURNS + 1;
+    }
+
+    /**
+     * Adds every move of a move stack, bottom first
+     */
+    public void pushAll(Stack<int[]> moveStack) {
+        for (int[] move : moveStack) {
+            this.push(move[0], move[1], move[2]);
+        }
+    }
+
+    /**
+     * Returns the moves as a Stack of {axis, layer, numTurns} with the first move at the bottom
+     */
+    public Stack<int[]> toStack() {
+        Stack<int[]> moveStack = new Stack<int[]>();
+        for (int i = 0; i < this.length; i++) {
+            moveStack.push(new int[] {this.getAxis(i), this.getLayer(i), this.getNumTurns(i)});
+        }
+        return moveStack;
+    }
+
+    /**
+     * Makes every move on cube, first to last
+     */
+    public void apply(RubiksCube cube) {
+        for (int i = 0; i < this.length; i++) {
+            cube.makeMove(this.getAxis(i), this.getLayer(i), this.getNumTurns(i));
+        }
+    }
+
+    /**
+     * Undoes every move on cube, last to first, which puts a cube the path was made on back
+     * the way it started
+     */
+    public void undo(RubiksCube cube) {
+        for (int i = this.length - 1; i >= 0; i--) {
+            cube.makeMove(this.getAxis(i), this.getLayer(i), 4 - this.getNumTurns(i));
+        }
+    }
+
+    /**
+     * Returns the moves in standard notation, see MoveNotation
+     */
+    @Override
+    public String toString() {
+        return MoveNotation.format(this);
+    }
+}
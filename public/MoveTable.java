@@ -0,0 +1,691 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed sticker permutations for every move on one cube size.
+ *
+ * Every move (axis, layer, numTurns) gets a move index
+ * (axis * cubeSize + layer) * 3 + numTurns - 1, and the stickers it moves are stored as a
+ * list of cycles over the packed sticker array (side * cubeSize * cubeSize + row * cubeSize
+ * + col). A quarter turn is nothing but 4-cycles and a half turn nothing but swaps, so
+ * applying a move is a single pass over that list that doesn't allocate anything.
+ *
+ * The tables are worked out by turning each sticker's 3d position around the layer's axis,
+ * with the same directions as the original rotate methods (see cubeMap.txt):
+ * AXIS_X turns front toward right, AXIS_Y turns front toward top and AXIS_Z turns right
+ * toward top. Only the stickers in a layer are looked at, a row or column of each side
+ * around it and the whole face for an outer layer, so a table takes time and space in
+ * proportion to the stickers its moves move rather than the whole cube per move. Tables
+ * are immutable and shared, get them with forSize.
+ *
+ * Each table also holds the Zobrist keys for its size: one random long for every
+ * (sticker, color) pair, and a state's hash is the XOR of the keys of all its stickers. A
+ * move only has to XOR out and back in the stickers it actually moves. The keys come from a
+ * fixed seed so hashes are the same from run to run.
+ */
+public class MoveTable {
+    private static final int NUM_AXES = 3;
+    private static final int NUM_TURNS = 3;
+    private static final int NUM_SIDES = 6;
+    private static final int NUM_COLORS = 6;
+    private static final long ZOBRIST_SEED = 0x2B7E151628AED2A6L;
+
+    // How many stickers of each color a side has is packed into one long a side, COUNT_BITS
+    // per color, which fits up to a 31x31
+    static final int COUNT_BITS = 10;
+    static final int MAX_COUNTED_SIZE = 31;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long[] COLOR_UNITS = new long[NUM_COLORS];
+    static {
+        for (int color = 0; color < NUM_COLORS; color++) {
+            COLOR_UNITS[color] = 1L << (color * COUNT_BITS);
+        }
+    }
+
+    private static final ConcurrentHashMap<Integer, MoveTable> TABLES = new ConcurrentHashMap<Integer, MoveTable>();
+
+    private int cubeSize;
+    private int numMoves;
+
+    // cycles[move] holds every cycle of that move back to back, all of length cycleLength[move]
+    private int[][] cycles;
+    private int[] cycleLength;
+
+    // zobristKeys[sticker * NUM_COLORS + color]
+    private long[] zobristKeys;
+    // moveKeys[move][i * NUM_COLORS + color] is how the hash changes when a sticker of that
+    // color gets moved into cycles[move][i]: the key of it at its new place XOR the key of
+    // it at its old one. Updating a hash reads them front to back, one per moved sticker.
+    // They take 48 bytes per moved sticker per move, so bigger cubes than
+    // MAX_COUNTED_SIZE don't keep them (null) and work them out from zobristKeys instead.
+    private long[][] moveKeys;
+
+    // The stickers a move carries from side to side come first in cycles[move], the first
+    // crossingEnd[move] of them, in blocks of four that all go around the same four sides:
+    // crossingSides[move][j] is the side of every sticker at position j of a block. Those
+    // are the only stickers that change how many of each color a side has, see apply with
+    // faceColorCounts.
+    private int[] crossingEnd;
+    private int[][] crossingSides;
+
+    private MoveTable(int cubeSize) {
+        this.cubeSize = cubeSize;
+        this.numMoves = NUM_AXES * cubeSize * NUM_TURNS;
+        this.cycles = new int[this.numMoves][];
+        this.cycleLength = new int[this.numMoves];
+        this.crossingEnd = new int[this.numMoves];
+        this.crossingSides = new int[this.numMoves][];
+
+        // scratch shared by every layer: only the entries of the layer being worked on are
+        // ever written or read
+        int[] src = new int[NUM_SIDES * cubeSize * cubeSize];
+        boolean[] visited = new boolean[src.length];
+        // a row or column of four sides and a face, or two faces on a 1x1
+        int[] inLayer = new int[4 * cubeSize + 2 * cubeSize * cubeSize];
+        for (int axis = 0; axis < NUM_AXES; axis++) {
+            for (int layer = 0; layer < cubeSize; layer++) {
+                int numInLayer = this.quarterTurnSources(axis, layer, src, inLayer);
+                int[] quarter = toCycles(src, visited, inLayer, numInLayer);
+                int[] half = new int[quarter.length];
+                int[] threeQuarters = new int[quarter.length];
+                for (int start = 0; start < quarter.length; start += 4) {
+                    // turning a <- b <- c <- d twice swaps a with c and b with d, and three
+                    // times is a <- d <- c <- b
+                    half[start] = quarter[start];
+                    half[start + 1] = quarter[start + 2];
+                    half[start + 2] = quarter[start + 1];
+                    half[start + 3] = quarter[start + 3];
+                    threeQuarters[start] = quarter[start];
+                    threeQuarters[start + 1] = quarter[start + 3];
+                    threeQuarters[start + 2] = quarter[start + 2];
+                    threeQuarters[start + 3] = quarter[start + 1];
+                }
+                int[][] turns = {quarter, half, threeQuarters};
+                for (int numTurns = 1; numTurns <= NUM_TURNS; numTurns++) {
+                    int move = this.getMoveIndex(axis, layer, numTurns);
+                    this.cycleLength[move] = numTurns == 2 ? 2 : 4;
+                    this.cycles[move] = turns[numTurns - 1];
+                }
+                this.putCrossingsFirst(axis, layer);
+            }
+        }
+
+        SplittableRandom random = new SplittableRandom(ZOBRIST_SEED + cubeSize);
+        this.zobristKeys = new long[NUM_SIDES * cubeSize * cubeSize * NUM_COLORS];
+        for (int i = 0; i < this.zobristKeys.length; i++) {
+            this.zobristKeys[i] = random.nextLong();
+        }
+        if (cubeSize > MAX_COUNTED_SIZE) {
+            return;
+        }
+        this.moveKeys = new long[this.numMoves][];
+        for (int move = 0; move < this.numMoves; move++) {
+            int[] moveCycles = this.cycles[move];
+            int length = this.cycleLength[move];
+            this.moveKeys[move] = new long[moveCycles.length * NUM_COLORS];
+            for (int i = 0; i < moveCycles.length; i++) {
+                // each sticker in a cycle takes the color of the next one
+                int from = moveCycles[i - i % length + (i + 1) % length];
+                for (int color = 0; color < NUM_COLORS; color++) {
+                    this.moveKeys[move][i * NUM_COLORS + color] = keyChange(this.zobristKeys, moveCycles[i], from, color);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the shared table for a cube size, building it the first time it's asked for
+     */
+    public static MoveTable forSize(int cubeSize) {
+        MoveTable table = TABLES.get(cubeSize);
+        if (table == null) {
+            table = TABLES.computeIfAbsent(cubeSize, size -> new MoveTable(size));
+        }
+        return table;
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns the number of distinct moves, 9 * cubeSize
+     */
+    public int getNumMoves() {
+        return this.numMoves;
+    }
+
+    /**
+     * Returns the move index of (axis, layer, numTurns), numTurns going from 1 to 3. Nothing
+     * is checked, a layer that isn't on the cube gives the index of some other move.
+     */
+    public int getMoveIndex(int axis, int layer, int numTurns) {
+        return (axis * this.cubeSize + layer) * NUM_TURNS + numTurns - 1;
+    }
+
+    public int getAxis(int moveIndex) {
+        return moveIndex / NUM_TURNS / this.cubeSize;
+    }
+
+    public int getLayer(int moveIndex) {
+        return moveIndex / NUM_TURNS % this.cubeSize;
+    }
+
+    public int getNumTurns(int moveIndex) {
+        return moveIndex % NUM_TURNS + 1;
+    }
+
+    /**
+     * Returns the move index that undoes moveIndex
+     */
+    public int getInverse(int moveIndex) {
+        int turnIndex = moveIndex % NUM_TURNS;
+        return moveIndex - turnIndex + (NUM_TURNS - 1 - turnIndex);
+    }
+
+    /**
+     * Returns every cycle of a move back to back, each sticker in a cycle taking the color
+     * of the next one. Shared, don't change it.
+     */
+    int[] getCycles(int moveIndex) {
+        return this.cycles[moveIndex];
+    }
+
+    /**
+     * Returns how long the cycles of a move are, 4 or 2 for a half turn
+     */
+    int getCycleLength(int moveIndex) {
+        return this.cycleLength[moveIndex];
+    }
+
+    /**
+     * Applies a move to packed stickers in place
+     * @param byte[] stickers packed stickers of a cube this table's size
+     * @param int moveIndex from getMoveIndex
+     */
+    public void apply(byte[] stickers, int moveIndex) {
+        int[] moveCycles = this.cycles[moveIndex];
+        if (this.cycleLength[moveIndex] == 4) {
+            for (int i = 0; i < moveCycles.length; i += 4) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                int c = moveCycles[i + 2];
+                int d = moveCycles[i + 3];
+                byte temp = stickers[a];
+                stickers[a] = stickers[b];
+                stickers[b] = stickers[c];
+                stickers[c] = stickers[d];
+                stickers[d] = temp;
+            }
+        } else {
+            for (int i = 0; i < moveCycles.length; i += 2) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                byte temp = stickers[a];
+                stickers[a] = stickers[b];
+                stickers[b] = temp;
+            }
+        }
+    }
+
+    /**
+     * Applies a move to packed stickers in place and updates their Zobrist hash, only
+     * touching the stickers the move moves.
+     * @param long hash zobristHash of stickers before the move
+     * @return zobristHash of stickers after the move
+     */
+    public long apply(byte[] stickers, int moveIndex, long hash) {
+        return this.applyCycles(stickers, moveIndex, 0, hash);
+    }
+
+    /**
+     * Applies a move like apply(stickers, moveIndex, hash) and also keeps count of how many
+     * stickers of each color every side has. The counts only change for the stickers that
+     * go from side to side, and since those all go around the same four sides the changes
+     * add up in four locals and get written back once.
+     * @param long[] faceColorCounts from countFaceColors, or null to not keep count
+     */
+    long apply(byte[] stickers, int moveIndex, long hash, long[] faceColorCounts) {
+        if (faceColorCounts == null) {
+            return this.applyCycles(stickers, moveIndex, 0, hash);
+        }
+        // counts are only kept up to MAX_COUNTED_SIZE, so moveKeys are always there
+        long[] keys = this.moveKeys[moveIndex];
+        int[] moveCycles = this.cycles[moveIndex];
+        int end = this.crossingEnd[moveIndex];
+        long delta0 = 0;
+        long delta1 = 0;
+        long delta2 = 0;
+        long delta3 = 0;
+        if (this.cycleLength[moveIndex] == 4) {
+            for (int i = 0; i < end; i += 4) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                int c = moveCycles[i + 2];
+                int d = moveCycles[i + 3];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                byte colorC = stickers[c];
+                byte colorD = stickers[d];
+                int k = i * NUM_COLORS;
+                hash ^= keys[k + colorB] ^ keys[k + NUM_COLORS + colorC]
+                      ^ keys[k + 2 * NUM_COLORS + colorD] ^ keys[k + 3 * NUM_COLORS + colorA];
+                long unitA = 1L << (colorA * COUNT_BITS);
+                long unitB = 1L << (colorB * COUNT_BITS);
+                long unitC = 1L << (colorC * COUNT_BITS);
+                long unitD = 1L << (colorD * COUNT_BITS);
+                delta0 += unitB - unitA;
+                delta1 += unitC - unitB;
+                delta2 += unitD - unitC;
+                delta3 += unitA - unitD;
+                stickers[a] = colorB;
+                stickers[b] = colorC;
+                stickers[c] = colorD;
+                stickers[d] = colorA;
+            }
+        } else {
+            // a half turn's block is two swaps
+            for (int i = 0; i < end; i += 4) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                int c = moveCycles[i + 2];
+                int d = moveCycles[i + 3];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                byte colorC = stickers[c];
+                byte colorD = stickers[d];
+                int k = i * NUM_COLORS;
+                hash ^= keys[k + colorB] ^ keys[k + NUM_COLORS + colorA]
+                      ^ keys[k + 2 * NUM_COLORS + colorD] ^ keys[k + 3 * NUM_COLORS + colorC];
+                long swapAB = COLOR_UNITS[colorB] - COLOR_UNITS[colorA];
+                long swapCD = COLOR_UNITS[colorD] - COLOR_UNITS[colorC];
+                delta0 += swapAB;
+                delta1 -= swapAB;
+                delta2 += swapCD;
+                delta3 -= swapCD;
+                stickers[a] = colorB;
+                stickers[b] = colorA;
+                stickers[c] = colorD;
+                stickers[d] = colorC;
+            }
+        }
+        int[] sides = this.crossingSides[moveIndex];
+        faceColorCounts[sides[0]] += delta0;
+        faceColorCounts[sides[1]] += delta1;
+        faceColorCounts[sides[2]] += delta2;
+        faceColorCounts[sides[3]] += delta3;
+        return this.applyCycles(stickers, moveIndex, end, hash);
+    }
+
+    /**
+     * Applies the cycles of a move from index start on and updates the hash for them
+     */
+    private long applyCycles(byte[] stickers, int moveIndex, int start, long hash) {
+        if (this.moveKeys == null) {
+            return this.applyCyclesUnkeyed(stickers, moveIndex, start, hash);
+        }
+        long[] keys = this.moveKeys[moveIndex];
+        int[] moveCycles = this.cycles[moveIndex];
+        if (this.cycleLength[moveIndex] == 4) {
+            for (int i = start; i < moveCycles.length; i += 4) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                int c = moveCycles[i + 2];
+                int d = moveCycles[i + 3];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                byte colorC = stickers[c];
+                byte colorD = stickers[d];
+                int k = i * NUM_COLORS;
+                hash ^= keys[k + colorB] ^ keys[k + NUM_COLORS + colorC]
+                      ^ keys[k + 2 * NUM_COLORS + colorD] ^ keys[k + 3 * NUM_COLORS + colorA];
+                stickers[a] = colorB;
+                stickers[b] = colorC;
+                stickers[c] = colorD;
+                stickers[d] = colorA;
+            }
+        } else {
+            for (int i = start; i < moveCycles.length; i += 2) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                int k = i * NUM_COLORS;
+                hash ^= keys[k + colorB] ^ keys[k + NUM_COLORS + colorA];
+                stickers[a] = colorB;
+                stickers[b] = colorA;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * applyCycles for cubes without moveKeys, working out each moved sticker's change to
+     * the hash from zobristKeys
+     */
+    private long applyCyclesUnkeyed(byte[] stickers, int moveIndex, int start, long hash) {
+        long[] keys = this.zobristKeys;
+        int[] moveCycles = this.cycles[moveIndex];
+        if (this.cycleLength[moveIndex] == 4) {
+            for (int i = start; i < moveCycles.length; i += 4) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                int c = moveCycles[i + 2];
+                int d = moveCycles[i + 3];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                byte colorC = stickers[c];
+                byte colorD = stickers[d];
+                hash ^= keyChange(keys, a, b, colorB) ^ keyChange(keys, b, c, colorC)
+                      ^ keyChange(keys, c, d, colorD) ^ keyChange(keys, d, a, colorA);
+                stickers[a] = colorB;
+                stickers[b] = colorC;
+                stickers[c] = colorD;
+                stickers[d] = colorA;
+            }
+        } else {
+            for (int i = start; i < moveCycles.length; i += 2) {
+                int a = moveCycles[i];
+                int b = moveCycles[i + 1];
+                byte colorA = stickers[a];
+                byte colorB = stickers[b];
+                hash ^= keyChange(keys, a, b, colorB) ^ keyChange(keys, b, a, colorA);
+                stickers[a] = colorB;
+                stickers[b] = colorA;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns how the hash changes when a sticker of color goes from sticker from to sticker
+     * to: its key at its old place XOR its key at its new one
+     */
+    private static long keyChange(long[] keys, int to, int from, int color) {
+        return keys[to * NUM_COLORS + color] ^ keys[from * NUM_COLORS + color];
+    }
+
+    /**
+     * Counts the stickers of each color on each side from scratch, packed for apply
+     * @return long[] one long a side, see getColorCount, or null if the cube is bigger than
+     * MAX_COUNTED_SIZE
+     */
+    static long[] countFaceColors(byte[] stickers, int cubeSize) {
+        if (cubeSize > MAX_COUNTED_SIZE) {
+            return null;
+        }
+        long[] faceColorCounts = new long[NUM_SIDES];
+        int sideSize = cubeSize * cubeSize;
+        for (int i = 0; i < stickers.length; i++) {
+            faceColorCounts[i / sideSize] += COLOR_UNITS[stickers[i]];
+        }
+        return faceColorCounts;
+    }
+
+    /**
+     * Reads how many stickers of color a side has out of its packed counts
+     */
+    static int getColorCount(long sideCounts, int color) {
+        return (int) ((sideCounts >>> (color * COUNT_BITS)) & COUNT_MASK);
+    }
+
+    /**
+     * Returns how a side's packed counts change when one of its stickers goes from color
+     * from to color to
+     */
+    static long countChange(int from, int to) {
+        return COLOR_UNITS[to] - COLOR_UNITS[from];
+    }
+
+    /**
+     * Reorders the cycles of the three turns of a layer so the stickers going from side to
+     * side come first, in blocks of four following the quarter turn's cycles around the
+     * layer. Every quarter turn cycle around the layer starts on the same side, the lowest
+     * numbered of the four, so position j of every block is on the same side.
+     */
+    private void putCrossingsFirst(int axis, int layer) {
+        int sideSize = this.cubeSize * this.cubeSize;
+        int[] quarter = this.cycles[this.getMoveIndex(axis, layer, 1)];
+        int[] around = new int[quarter.length];
+        int numAround = 0;
+        for (int start = 0; start < quarter.length; start += 4) {
+            if (quarter[start] / sideSize != quarter[start + 1] / sideSize) {
+                System.arraycopy(quarter, start, around, numAround, 4);
+                numAround += 4;
+            }
+        }
+        for (int i = 4; i < numAround; i++) {
+            if (around[i] / sideSize != around[i % 4] / sideSize) {
+                throw new IllegalStateException("Layer " + layer + " on axis " + axis + " doesn't go around the same sides");
+            }
+        }
+
+        for (int numTurns = 1; numTurns <= NUM_TURNS; numTurns++) {
+            int move = this.getMoveIndex(axis, layer, numTurns);
+            // where each block position takes its sticker from in the quarter turn's cycle:
+            // q0 q1 q2 q3 for a quarter turn, swaps q0 q2 and q1 q3 for a half turn and the
+            // cycle backwards for three quarters
+            int[] order = numTurns == 1 ? new int[] {0, 1, 2, 3}
+                        : (numTurns == 2 ? new int[] {0, 2, 1, 3} : new int[] {0, 3, 2, 1});
+            int[] moveCycles = this.cycles[move];
+            int length = this.cycleLength[move];
+            int[] ordered = new int[moveCycles.length];
+            int count = 0;
+            for (int start = 0; start < numAround; start += 4) {
+                for (int j = 0; j < 4; j++) {
+                    ordered[count++] = around[start + order[j]];
+                }
+            }
+            for (int start = 0; start < moveCycles.length; start += length) {
+                if (moveCycles[start] / sideSize == moveCycles[start + 1] / sideSize) {
+                    System.arraycopy(moveCycles, start, ordered, count, length);
+                    count += length;
+                }
+            }
+            if (count != moveCycles.length) {
+                throw new IllegalStateException("Move " + move + " has cycles that only partly change sides");
+            }
+            this.cycles[move] = ordered;
+            this.crossingEnd[move] = numAround;
+            this.crossingSides[move] = new int[4];
+            for (int j = 0; j < 4; j++) {
+                this.crossingSides[move][j] = around[order[j]] / sideSize;
+            }
+        }
+    }
+
+    /**
+     * Works out the Zobrist hash of packed stickers from scratch
+     */
+    public long zobristHash(byte[] stickers) {
+        long hash = 0;
+        for (int i = 0; i < stickers.length; i++) {
+            hash ^= this.zobristKeys[i * NUM_COLORS + stickers[i]];
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the Zobrist key of a sticker of color at sticker index sticker
+     */
+    long getZobristKey(int sticker, int color) {
+        return this.zobristKeys[sticker * NUM_COLORS + color];
+    }
+
+    /**
+     * Returns a move as a full permutation of the packed stickers
+     * @return int[] src where after the move, sticker i holds what sticker src[i] held before
+     */
+    public int[] getSources(int moveIndex) {
+        int[] src = new int[NUM_SIDES * this.cubeSize * this.cubeSize];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i;
+        }
+        int[] moveCycles = this.cycles[moveIndex];
+        int length = this.cycleLength[moveIndex];
+        for (int start = 0; start < moveCycles.length; start += length) {
+            for (int i = 0; i < length; i++) {
+                src[moveCycles[start + i]] = moveCycles[start + (i + 1) % length];
+            }
+        }
+        return src;
+    }
+
+    /**
+     * Works out a quarter turn of one layer.
+     * @param int[] src filled in for the stickers in the layer: after the move, sticker i
+     * holds what sticker src[i] held before. Nothing else is touched.
+     * @param int[] inLayer filled with the stickers in the layer, in increasing order
+     * @return how many stickers are in the layer
+     */
+    private int quarterTurnSources(int axis, int layer, int[] src, int[] inLayer) {
+        int cs = this.cubeSize;
+        int count = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                // along a row the layer coordinate is either the same everywhere or goes up
+                // or down by one a column, so the row has all, none or one of its stickers
+                // in the layer
+                int first = layerCoord(cs, axis, side, row, 0);
+                int last = layerCoord(cs, axis, side, row, cs - 1);
+                if (first == last) {
+                    if (first == layer) {
+                        for (int col = 0; col < cs; col++) {
+                            inLayer[count++] = side * cs * cs + row * cs + col;
+                        }
+                    }
+                } else {
+                    int col = first < last ? layer - first : first - layer;
+                    if (col >= 0 && col < cs) {
+                        inLayer[count++] = side * cs * cs + row * cs + col;
+                    }
+                }
+            }
+        }
+
+        // positions are doubled and centered so a layer turns around 0
+        for (int k = 0; k < count; k++) {
+            int from = inLayer[k];
+            int side = from / (cs * cs);
+            int row = from / cs % cs;
+            int col = from % cs;
+            int[] pos = cubiePosition(cs, side, row, col);
+            int[] centered = {2 * pos[0] - cs + 1, 2 * pos[1] - cs + 1, 2 * pos[2] - cs + 1};
+            int[] newCentered = rotate(axis, centered);
+            int newSide = sideOf(rotate(axis, normal(side)));
+            int to = CubieGeometry.stickerIndex(cs, newSide, (newCentered[0] + cs - 1) / 2,
+                                               (newCentered[1] + cs - 1) / 2,
+                                               (newCentered[2] + cs - 1) / 2);
+            src[to] = from;
+        }
+        return count;
+    }
+
+    /**
+     * Returns which layer of axis a sticker's cubie is in
+     */
+    private static int layerCoord(int cs, int axis, int side, int row, int col) {
+        int[] pos = cubiePosition(cs, side, row, col);
+        return axis == 0 ? cs - 1 - pos[1] : (axis == 1 ? pos[0] : pos[2]);
+    }
+
+    /**
+     * Turns a vector a quarter turn around an axis (x = 0, y = 1, z = 2 in RubiksCube's move
+     * numbering) in that axis's move direction.
+     */
+    private static int[] rotate(int axis, int[] v) {
+        if (axis == 0) {
+            // around the vertical: front goes to right
+            return new int[] {-v[2], v[1], v[0]};
+        } else if (axis == 1) {
+            // around left-right: front goes to top
+            return new int[] {v[0], -v[2], v[1]};
+        } else {
+            // around front-back: right goes to top
+            return new int[] {-v[1], v[0], v[2]};
+        }
+    }
+
+    /**
+     * Returns {x, y, z} of the cubie a sticker is on, the inverse of CubieGeometry.stickerIndex
+     */
+    static int[] cubiePosition(int cs, int side, int row, int col) {
+        int y = cs - 1 - row;
+        if (side == CubieGeometry.FRONT) {
+            return new int[] {col, y, 0};
+        } else if (side == CubieGeometry.BACK) {
+            return new int[] {cs - 1 - col, y, cs - 1};
+        } else if (side == CubieGeometry.LEFT) {
+            return new int[] {0, y, cs - 1 - col};
+        } else if (side == CubieGeometry.RIGHT) {
+            return new int[] {cs - 1, y, col};
+        } else if (side == CubieGeometry.TOP) {
+            return new int[] {col, cs - 1, cs - 1 - row};
+        } else {
+            return new int[] {col, 0, row};
+        }
+    }
+
+    static int[] normal(int side) {
+        if (side == CubieGeometry.FRONT) {
+            return new int[] {0, 0, -1};
+        } else if (side == CubieGeometry.BACK) {
+            return new int[] {0, 0, 1};
+        } else if (side == CubieGeometry.LEFT) {
+            return new int[] {-1, 0, 0};
+        } else if (side == CubieGeometry.RIGHT) {
+            return new int[] {1, 0, 0};
+        } else if (side == CubieGeometry.TOP) {
+            return new int[] {0, 1, 0};
+        } else {
+            return new int[] {0, -1, 0};
+        }
+    }
+
+    private static int sideOf(int[] normal) {
+        if (normal[2] == -1) {
+            return CubieGeometry.FRONT;
+        } else if (normal[2] == 1) {
+            return CubieGeometry.BACK;
+        } else if (normal[0] == -1) {
+            return CubieGeometry.LEFT;
+        } else if (normal[0] == 1) {
+            return CubieGeometry.RIGHT;
+        } else if (normal[1] == 1) {
+            return CubieGeometry.TOP;
+        } else {
+            return CubieGeometry.BOTTOM;
+        }
+    }
+
+    /**
+     * Splits a quarter turn of a layer into its 4-cycles, leaving out stickers that don't
+     * move. Each cycle starts at its lowest sticker since the stickers are gone through in
+     * increasing order.
+     * @param boolean[] visited all false for the stickers in the layer, left that way
+     */
+    private static int[] toCycles(int[] src, boolean[] visited, int[] inLayer, int numInLayer) {
+        int[] cycles = new int[numInLayer];
+        int count = 0;
+        for (int k = 0; k < numInLayer; k++) {
+            int start = inLayer[k];
+            if (visited[start] || src[start] == start) {
+                continue;
+            }
+            int length = 0;
+            for (int i = start; !visited[i]; i = src[i]) {
+                visited[i] = true;
+                cycles[count++] = i;
+                length++;
+            }
+            if (length != 4) {
+                throw new IllegalStateException("Move has a cycle of length " + length);
+            }
+        }
+        for (int k = 0; k < numInLayer; k++) {
+            visited[inLayer[k]] = false;
+        }
+        return Arrays.copyOf(cycles, count);
+    }
+}
@@ -0,0 +1,262 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * IDA* split across a ForkJoinPool.
+ *
+ * The first splitDepth moves of the move tree (enumerated in the same order as solveDFS)
+ * are expanded up front and every branch becomes its own task with its own copy of the
+ * cube, so the workers never share any mutable state. Each bound is searched by all the
+ * branches at once, and the bound only goes up once every branch has finished it, so
+ * the solution is always a shortest one.
+ *
+ * As soon as a branch finds a solution, every branch after it in enumeration order gets
+ * cancelled. Branches before it keep going since they may have an equally short solution
+ * that comes first, which makes the result exactly the one IDAStarSolver would return.
+ */
+public class ParallelSolver implements CubeSolver {
+    public static final int DEFAULT_SPLIT_DEPTH = 2;
+
+    private static final int NUM_AXES = 3;
+    private static final int NO_SOLUTION = Integer.MAX_VALUE;
+
+    private CubeHeuristic heuristic;
+    private ForkJoinPool pool;
+    private int splitDepth;
+    // null unless metrics are being kept, every branch counts into it
+    private SolverMetrics metrics;
+
+    private volatile boolean cancelled;
+    // the pass running right now, so cancel() can reach its branches
+    private volatile BoundSearch currentSearch;
+
+    /**
+     * Creates a solver that uses the StickerHeuristic on the common ForkJoinPool
+     */
+    public ParallelSolver() {
+        this(new StickerHeuristic(), ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * @param CubeHeuristic heuristic admissible heuristic, shared by every worker so it has
+     * to be thread safe (all the ones in this project are)
+     * @param ForkJoinPool pool the pool to run the branches on
+     * @param int splitDepth how many moves deep to split the tree into tasks. 2 gives a few
+     * hundred tasks on a 3x3, which is plenty for 32 cores.
+     */
+    public ParallelSolver(CubeHeuristic heuristic, ForkJoinPool pool, int splitDepth) {
+        if (splitDepth < 1) {
+            throw new IllegalArgumentException("splitDepth must be at least 1");
+        }
+        this.heuristic = heuristic;
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Searches for a shortest solution that is at most depthLimit moves long.
+     * @param RubiksCube cube The cube to solve, it's only ever copied by the workers
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the solution should be made on cube afterwards
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if there is no solution within depthLimit moves.
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        long startNanos = System.nanoTime();
+        Stack<int[]> solution = this.findSolution(cube, depthLimit);
+        if (this.metrics != null) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            this.metrics.addPhaseNanos("parallel.search", elapsedNanos);
+            this.metrics.solveFinished("parallel", elapsedNanos);
+        }
+        if (solution != null && leaveCubeSolved) {
+            for (int[] move : solution) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return solution;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can. Every branch gives up, and the solve returns
+     * no solution unless a branch already found one. Any solution found is still a shortest
+     * one, it just might not be the one that comes first in solveDFS order.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        BoundSearch search = this.currentSearch;
+        if (search != null) {
+            search.cancelAll();
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    private Stack<int[]> findSolution(RubiksCube cube, int depthLimit) {
+        // anything shorter than the split depth never reaches the tasks, and it's cheap to
+        // look for on one thread
+        int shallowLimit = Math.min(this.splitDepth - 1, depthLimit);
+        Stack<int[]> shallowSolution = new IDAStarSolver(this.heuristic)
+                                           .solve(new RubiksCube(cube), shallowLimit, false);
+        if (shallowSolution != null || depthLimit < this.splitDepth) {
+            return shallowSolution;
+        }
+
+        List<int[][]> branches = new ArrayList<int[][]>();
+        this.collectBranches(cube.getCubeSize(), new Stack<int[]>(), branches);
+
+        int bound = Math.max(this.splitDepth, this.heuristic.estimate(cube));
+        while (bound <= depthLimit && !this.cancelled) {
+            BoundSearch search = new BoundSearch(cube, branches, bound);
+            this.currentSearch = search;
+            this.pool.invoke(search);
+            this.currentSearch = null;
+
+            int foundIndex = search.foundIndex.get();
+            if (foundIndex != NO_SOLUTION) {
+                return search.solutions.get(foundIndex);
+            }
+            if (search.nextBound.get() == NO_SOLUTION) {
+                return null;
+            }
+            bound = search.nextBound.get();
+        }
+        return null;
+    }
+
+    /**
+     * Adds every move sequence of splitDepth moves to branches, in the same order solveDFS
+     * would try them and skipping the same redundant sequences (see MoveOrdering).
+     */
+    private void collectBranches(int cs, Stack<int[]> prefix, List<int[][]> branches) {
+        if (prefix.size() == this.splitDepth) {
+            branches.add(prefix.toArray(new int[0][]));
+            return;
+        }
+
+        int lastAxis = prefix.isEmpty() ? -1 : prefix.peek()[0];
+        int lastLayer = prefix.isEmpty() ? -1 : prefix.peek()[1];
+        for (int numTurns = 1; numTurns <= 3; numTurns++) {
+            for (int layer = 0; layer < cs; layer++) {
+                for (int axis = 0; axis < NUM_AXES; axis++) {
+                    if (MoveOrdering.canFollow(cs, lastAxis, lastLayer, axis, layer)) {
+                        prefix.push(new int[] {axis, layer, numTurns});
+                        this.collectBranches(cs, prefix, branches);
+                        prefix.pop();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * One pass over every branch with the same bound
+     */
+    private class BoundSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private RubiksCube startCube;
+        private List<int[][]> branches;
+        private int bound;
+
+        // lowest branch index that found a solution so far
+        private AtomicInteger foundIndex = new AtomicInteger(NO_SOLUTION);
+        private AtomicInteger nextBound = new AtomicInteger(NO_SOLUTION);
+        private AtomicReferenceArray<IDAStarSolver> solvers;
+        private AtomicReferenceArray<Stack<int[]>> solutions;
+
+        BoundSearch(RubiksCube startCube, List<int[][]> branches, int bound) {
+            this.startCube = startCube;
+            this.branches = branches;
+            this.bound = bound;
+            this.solvers = new AtomicReferenceArray<IDAStarSolver>(branches.size());
+            this.solutions = new AtomicReferenceArray<Stack<int[]>>(branches.size());
+        }
+
+        @Override
+        protected void compute() {
+            List<BranchSearch> tasks = new ArrayList<BranchSearch>(this.branches.size());
+            for (int i = 0; i < this.branches.size(); i++) {
+                tasks.add(new BranchSearch(this, i));
+            }
+            invokeAll(tasks);
+        }
+
+        /**
+         * Records a solution from branch index and cancels every branch after it
+         */
+        void found(int index, Stack<int[]> solution) {
+            this.solutions.set(index, solution);
+            this.foundIndex.accumulateAndGet(index, Math::min);
+            this.cancelFrom(index + 1);
+        }
+
+        void cancelAll() {
+            this.cancelFrom(0);
+        }
+
+        private void cancelFrom(int index) {
+            for (int i = index; i < this.solvers.length(); i++) {
+                IDAStarSolver solver = this.solvers.get(i);
+                if (solver != null) {
+                    solver.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches one branch of the tree with its own copy of the cube
+     */
+    private class BranchSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private BoundSearch parent;
+        private int index;
+
+        BranchSearch(BoundSearch parent, int index) {
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            IDAStarSolver solver = new IDAStarSolver(ParallelSolver.this.heuristic);
+            solver.setMetrics(ParallelSolver.this.metrics);
+            // register before checking foundIndex so a solution found in between still
+            // gets to cancel this branch
+            this.parent.solvers.set(this.index, solver);
+            if (this.parent.foundIndex.get() < this.index) {
+                return;
+            }
+            if (ParallelSolver.this.cancelled) {
+                return;
+            }
+
+            RubiksCube cube = new RubiksCube(this.parent.startCube);
+            Stack<int[]> moveStack = new Stack<int[]>();
+            for (int[] move : this.parent.branches.get(this.index)) {
+                cube.makeMove(move[0], move[1], move[2]);
+                moveStack.push(move);
+            }
+
+            if (solver.searchBranch(cube, moveStack, this.parent.bound)) {
+                this.parent.found(this.index, moveStack);
+            } else if (!solver.isCancelled()) {
+                this.parent.nextBound.accumulateAndGet(solver.getNextBound(), Math::min);
+            }
+            this.parent.solvers.set(this.index, null);
+        }
+    }
+}
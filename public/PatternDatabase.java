@@ -0,0 +1,567 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A pattern database is a table of exact distances for one part of the cube (the corners,
+ * or a handful of edges), found with a breadth first search out from the solved state.
+ * Ignoring the rest of the cube can only make it easier to solve, so every entry is an
+ * admissible lower bound for IDAStarSolver.
+ *
+ * Positions are read in the DBL-normalized frame from CubieGeometry, so it doesn't matter
+ * which way the cube is facing or what colors it uses.
+ *
+ * - corners: all 3,674,160 corner positions. Slice moves never move corners, so this is
+ *   the same table for every cube size of 2 or more, and for a 2x2 it's the exact full
+ *   state distance.
+ * - edges: the positions and flips of a subset of up to 7 of the 3x3's edges (6 edges is
+ *   42,577,920 entries).
+ *
+ * Tables are packed 4 bits per entry. On disk that's a small header followed by the packed
+ * entries, and load() memory maps the file read only instead of copying it onto the heap,
+ * so one loaded table can be shared by every solver thread.
+ */
+public class PatternDatabase implements CubeHeuristic {
+    public static final int KIND_CORNERS = 0;
+    public static final int KIND_EDGES = 1;
+
+    public static final int MAX_EDGE_SUBSET = 7;
+
+    private static final int MAGIC = 0x52435044; // "RCPD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    static final int UNVISITED = 0xF;
+    private static final int MAX_DEPTH = UNVISITED - 1;
+
+    static final int NUM_CORNER_PERMS = 5040; // 7!, the DBL corner never moves
+    static final int NUM_CORNER_TWISTS = 729; // 3^6, the 7th twist is implied
+    private static final int NUM_TURNS = 3;
+    // turning the top, right or front layer 1 to 3 times, see cornerMoves
+    static final int NUM_CORNER_MOVES = CubieGeometry.NUM_AXES * NUM_TURNS;
+
+    // what estimate reads off of a cube, one per thread so estimates don't allocate
+    private static final ThreadLocal<Cubies> SCRATCH = ThreadLocal.withInitial(Cubies::new);
+
+    private int kind;
+    private int[] edgeSubset;
+    private int numEntries;
+    private ByteBuffer table;
+
+    private PatternDatabase(int kind, int[] edgeSubset, int numEntries, ByteBuffer table) {
+        this.kind = kind;
+        this.edgeSubset = edgeSubset;
+        this.numEntries = numEntries;
+        this.table = table;
+    }
+
+    /**
+     * Returns a corner table built in memory the first time it's asked for and shared by
+     * everything that asks after that
+     */
+    public static PatternDatabase sharedCorners() {
+        return SharedCorners.CORNERS;
+    }
+
+    /**
+     * Builds the corner table. Takes a couple of seconds.
+     */
+    public static PatternDatabase buildCorners() {
+        int numMoves = NUM_CORNER_MOVES;
+        int[][] transitions = cornerTransitions();
+        int[] permMove = transitions[0];
+        int[] twistMove = transitions[1];
+
+        int numEntries = NUM_CORNER_PERMS * NUM_CORNER_TWISTS;
+        byte[] packed = newPackedTable(numEntries);
+        setPacked(packed, 0, 0);
+
+        int depth = 0;
+        int frontierSize = 1;
+        while (frontierSize > 0 && depth < MAX_DEPTH) {
+            frontierSize = 0;
+            for (int index = 0; index < numEntries; index++) {
+                if (getPacked(packed, index) != depth) {
+                    continue;
+                }
+                int permRank = index / NUM_CORNER_TWISTS;
+                int twistRank = index % NUM_CORNER_TWISTS;
+                for (int move = 0; move < numMoves; move++) {
+                    int next = permMove[permRank * numMoves + move] * NUM_CORNER_TWISTS
+                             + twistMove[twistRank * numMoves + move];
+                    if (getPacked(packed, next) == UNVISITED) {
+                        setPacked(packed, next, depth + 1);
+                        frontierSize++;
+                    }
+                }
+            }
+            depth++;
+        }
+
+        return new PatternDatabase(KIND_CORNERS, null, numEntries, ByteBuffer.wrap(packed));
+    }
+
+    /**
+     * Works out where every corner perm rank and twist rank goes under each of the 9 corner
+     * moves of the normalized frame (see cornerMoves for their order). A corner index is
+     * permRank * NUM_CORNER_TWISTS + twistRank, and the two move independently of each
+     * other, so they're tabulated separately.
+     * @return int[][] {permMove, twistMove}, each indexed by rank * 9 + move
+     */
+    static int[][] cornerTransitions() {
+        int numMoves = NUM_CORNER_MOVES;
+        int[][] src = new int[numMoves][CubieGeometry.NUM_CORNERS];
+        int[][] twist = new int[numMoves][CubieGeometry.NUM_CORNERS];
+        cornerMoves(src, twist);
+
+        int[] permMove = new int[NUM_CORNER_PERMS * numMoves];
+        int[] twistMove = new int[NUM_CORNER_TWISTS * numMoves];
+        int[] perm = new int[7];
+        int[] newPerm = new int[7];
+        for (int rank = 0; rank < NUM_CORNER_PERMS; rank++) {
+            unrankPartial(rank, 7, 7, perm);
+            for (int move = 0; move < numMoves; move++) {
+                for (int slot = 0; slot < 7; slot++) {
+                    newPerm[slot] = perm[src[move][slot]];
+                }
+                permMove[rank * numMoves + move] = rankPartial(newPerm, 7, 7);
+            }
+        }
+        int[] twists = new int[7];
+        int[] newTwists = new int[7];
+        for (int rank = 0; rank < NUM_CORNER_TWISTS; rank++) {
+            unrankTwists(rank, twists);
+            for (int move = 0; move < numMoves; move++) {
+                for (int slot = 0; slot < 7; slot++) {
+                    newTwists[slot] = (twists[src[move][slot]] + twist[move][slot]) % 3;
+                }
+                twistMove[rank * numMoves + move] = rankTwists(newTwists);
+            }
+        }
+        return new int[][] {permMove, twistMove};
+    }
+
+    /**
+     * Wraps a corner table that was worked out somewhere else, packed the way
+     * newPackedTable packs them
+     */
+    static PatternDatabase ofCorners(byte[] packed) {
+        int numEntries = NUM_CORNER_PERMS * NUM_CORNER_TWISTS;
+        if (packed.length != packedSize(numEntries)) {
+            throw new IllegalArgumentException("A corner table is " + packedSize(numEntries) + " bytes");
+        }
+        return new PatternDatabase(KIND_CORNERS, null, numEntries, ByteBuffer.wrap(packed));
+    }
+
+    /**
+     * Builds an edge table for a 3x3. 6 edges takes about a minute and 21MB.
+     * @param int[] edgeSubset The edge cubies to track (see CubieGeometry for numbering),
+     * between 1 and MAX_EDGE_SUBSET of them
+     */
+    public static PatternDatabase buildEdges(int[] edgeSubset) {
+        int k = edgeSubset.length;
+        if (k < 1 || k > MAX_EDGE_SUBSET) {
+            throw new IllegalArgumentException("Edge subsets must have 1 to " + MAX_EDGE_SUBSET + " edges");
+        }
+        int numMoves = CubieGeometry.NUM_AXES * 3 * NUM_TURNS;
+        int[][] dest = new int[numMoves][CubieGeometry.NUM_EDGES];
+        int[][] flip = new int[numMoves][CubieGeometry.NUM_EDGES];
+        edgeMoves(dest, flip);
+
+        int numEntries = numPartialPerms(CubieGeometry.NUM_EDGES, k) << k;
+        byte[] packed = newPackedTable(numEntries);
+        setPacked(packed, edgeIndex(edgeSubset.clone(), new int[k], k), 0);
+
+        int[] positions = new int[k];
+        int[] newPositions = new int[k];
+        int depth = 0;
+        int frontierSize = 1;
+        while (frontierSize > 0 && depth < MAX_DEPTH) {
+            frontierSize = 0;
+            for (int index = 0; index < numEntries; index++) {
+                if (getPacked(packed, index) != depth) {
+                    continue;
+                }
+                int flips = index & ((1 << k) - 1);
+                unrankPartial(index >>> k, CubieGeometry.NUM_EDGES, k, positions);
+                for (int move = 0; move < numMoves; move++) {
+                    int newFlips = 0;
+                    for (int i = 0; i < k; i++) {
+                        int newPosition = dest[move][positions[i]];
+                        newPositions[i] = newPosition;
+                        newFlips |= (((flips >>> i) & 1) ^ flip[move][newPosition]) << i;
+                    }
+                    int next = (rankPartial(newPositions, CubieGeometry.NUM_EDGES, k) << k) | newFlips;
+                    if (getPacked(packed, next) == UNVISITED) {
+                        setPacked(packed, next, depth + 1);
+                        frontierSize++;
+                    }
+                }
+            }
+            depth++;
+        }
+
+        return new PatternDatabase(KIND_EDGES, edgeSubset.clone(), numEntries, ByteBuffer.wrap(packed));
+    }
+
+    /**
+     * Memory maps a table written by save(). The file is mapped read only and nothing is
+     * copied onto the heap. The header's kind, edge subset and entry count are checked
+     * against each other, so a damaged file can't index past the end of the table.
+     * @throws IOException if the file can't be read or isn't a pattern database
+     */
+    public static PatternDatabase load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            if (channel.size() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a pattern database");
+            }
+            if (mapped.getInt(4) != VERSION) {
+                throw new IOException(path + " has unsupported version " + mapped.getInt(4));
+            }
+
+            int kind = mapped.getInt(8);
+            int subsetMask = mapped.getInt(12);
+            int numEntries = mapped.getInt(16);
+            int expectedEntries;
+            if (kind == KIND_CORNERS) {
+                if (subsetMask != 0) {
+                    throw new IOException(path + " is a corner table with an edge subset");
+                }
+                expectedEntries = NUM_CORNER_PERMS * NUM_CORNER_TWISTS;
+            } else if (kind == KIND_EDGES) {
+                int k = Integer.bitCount(subsetMask);
+                if (k < 1 || k > MAX_EDGE_SUBSET || (subsetMask >>> CubieGeometry.NUM_EDGES) != 0) {
+                    throw new IOException(path + " has an invalid edge subset 0x" + Integer.toHexString(subsetMask));
+                }
+                expectedEntries = numPartialPerms(CubieGeometry.NUM_EDGES, k) << k;
+            } else {
+                throw new IOException(path + " has unknown table kind " + kind);
+            }
+            if (numEntries != expectedEntries) {
+                throw new IOException(path + " has " + numEntries + " entries, expected " + expectedEntries);
+            }
+
+            int[] edgeSubset = null;
+            if (kind == KIND_EDGES) {
+                edgeSubset = new int[Integer.bitCount(subsetMask)];
+                int count = 0;
+                for (int edge = 0; edge < CubieGeometry.NUM_EDGES; edge++) {
+                    if ((subsetMask & (1 << edge)) != 0) {
+                        edgeSubset[count++] = edge;
+                    }
+                }
+            }
+            if (channel.size() < HEADER_SIZE + packedSize(numEntries)) {
+                throw new IOException(path + " is truncated");
+            }
+
+            mapped.position(HEADER_SIZE);
+            return new PatternDatabase(kind, edgeSubset, numEntries, mapped.slice());
+        }
+    }
+
+    /**
+     * Writes the table to path so it can be mapped back in with load().
+     * Edge subsets are stored as a set, so they are saved in increasing order.
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(this.kind);
+        int subsetMask = 0;
+        if (this.edgeSubset != null) {
+            for (int edge : this.edgeSubset) {
+                subsetMask |= 1 << edge;
+            }
+        }
+        header.putInt(subsetMask);
+        header.putInt(this.numEntries);
+        header.rewind();
+
+        ByteBuffer body = this.table.duplicate();
+        body.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    public int getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns a copy of the edges tracked by an edge table, or null for the corner table
+     */
+    public int[] getEdgeSubset() {
+        return this.edgeSubset == null ? null : this.edgeSubset.clone();
+    }
+
+    public int getNumEntries() {
+        return this.numEntries;
+    }
+
+    /**
+     * Returns the stored distance for an index, 15 if that position can't be reached
+     */
+    public int getDistance(int index) {
+        int b = this.table.get(index >>> 1);
+        return (b >>> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * Returns the table's distance for the cube. Returns 0 if the table doesn't apply to
+     * the cube (edge tables on anything but a 3x3) or the cube's stickers don't make a real
+     * cube, so it's always safe to use as a heuristic.
+     */
+    public int estimate(RubiksCube cube) {
+        Cubies cubies = SCRATCH.get();
+        cubies.read(cube);
+        return this.estimate(cubies);
+    }
+
+    /**
+     * Returns the table's distance for cubies already read off of a cube, so several tables
+     * can share one read (see PatternDatabaseHeuristic)
+     */
+    int estimate(Cubies cubies) {
+        int index;
+        if (this.kind == KIND_CORNERS) {
+            if (!cubies.cornersRead) {
+                return 0;
+            }
+            index = rankPartial(cubies.cornerAt, 7, 7) * NUM_CORNER_TWISTS + rankTwists(cubies.twistAt);
+        } else {
+            if (!cubies.edgesRead) {
+                return 0;
+            }
+            int k = this.edgeSubset.length;
+            for (int i = 0; i < k; i++) {
+                int slot = cubies.edgeSlot[this.edgeSubset[i]];
+                cubies.positions[i] = slot;
+                cubies.flips[i] = cubies.flipAt[slot];
+            }
+            index = edgeIndex(cubies.positions, cubies.flips, k);
+        }
+        return this.getDistance(index);
+    }
+
+    /**
+     * Returns the cubie reader for the calling thread
+     */
+    static Cubies scratch() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * Returns the corner table index of a cube, -1 if its corners can't be read
+     */
+    static int cornerIndex(RubiksCube cube, int[] relabel) {
+        int[] cubieAt = new int[CubieGeometry.NUM_CORNERS];
+        int[] twistAt = new int[CubieGeometry.NUM_CORNERS];
+        if (!CubieGeometry.readCorners(cube, relabel, cubieAt, twistAt)) {
+            return -1;
+        }
+        return rankPartial(cubieAt, 7, 7) * NUM_CORNER_TWISTS + rankTwists(twistAt);
+    }
+
+    private static int edgeIndex(int[] positions, int[] flips, int k) {
+        int flipBits = 0;
+        for (int i = 0; i < k; i++) {
+            flipBits |= flips[i] << i;
+        }
+        return (rankPartial(positions, CubieGeometry.NUM_EDGES, k) << k) | flipBits;
+    }
+
+    /**
+     * Finds what the 9 corner moves of the normalized frame (turning the top, right or
+     * front layer) do to the corners by making them on a solved 2x2.
+     * src[move][slot] is the slot the cubie came from and twist[move][slot] is how much it
+     * got twisted on the way.
+     */
+    private static void cornerMoves(int[][] src, int[][] twist) {
+        int[] layers = {0, 1, 0};
+        int[] cubieAt = new int[CubieGeometry.NUM_CORNERS];
+        int[] twistAt = new int[CubieGeometry.NUM_CORNERS];
+
+        int move = 0;
+        for (int axis = 0; axis < CubieGeometry.NUM_AXES; axis++) {
+            for (int numTurns = 1; numTurns <= NUM_TURNS; numTurns++) {
+                RubiksCube cube = new RubiksCube(2, false);
+                cube.makeMove(axis, layers[axis], numTurns);
+                CubieGeometry.readCorners(cube, CubieGeometry.normalizingRelabel(cube), cubieAt, twistAt);
+                for (int slot = 0; slot < CubieGeometry.NUM_CORNERS; slot++) {
+                    src[move][slot] = cubieAt[slot];
+                    twist[move][slot] = twistAt[slot];
+                }
+                move++;
+            }
+        }
+    }
+
+    /**
+     * Finds what all 27 moves of the normalized frame do to the edges of a 3x3.
+     * dest[move][slot] is where that slot's cubie ends up and flip[move][slot] is whether
+     * the cubie that ends up in slot got flipped on the way.
+     */
+    private static void edgeMoves(int[][] dest, int[][] flip) {
+        int[] cubieAt = new int[CubieGeometry.NUM_EDGES];
+        int[] flipAt = new int[CubieGeometry.NUM_EDGES];
+
+        int move = 0;
+        for (int axis = 0; axis < CubieGeometry.NUM_AXES; axis++) {
+            for (int layer = 0; layer < 3; layer++) {
+                for (int numTurns = 1; numTurns <= NUM_TURNS; numTurns++) {
+                    RubiksCube cube = new RubiksCube(3, false);
+                    CubieGeometry.applyNormalizedMove(cube, axis, layer, numTurns);
+                    CubieGeometry.readEdges(cube, CubieGeometry.normalizingRelabel(cube), cubieAt, flipAt);
+                    for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                        dest[move][cubieAt[slot]] = slot;
+                        flip[move][slot] = flipAt[slot];
+                    }
+                    move++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Ranks k distinct values out of n (in order) into 0 to n!/(n-k)! - 1
+     */
+    static int rankPartial(int[] values, int n, int k) {
+        int rank = 0;
+        int used = 0;
+        for (int i = 0; i < k; i++) {
+            int value = values[i];
+            int smallerUnused = Integer.bitCount(~used & ((1 << value) - 1));
+            rank = rank * (n - i) + smallerUnused;
+            used |= 1 << value;
+        }
+        return rank;
+    }
+
+    /**
+     * The inverse of rankPartial, fills values with the k values for rank
+     */
+    static void unrankPartial(int rank, int n, int k, int[] values) {
+        for (int i = k - 1; i >= 0; i--) {
+            values[i] = rank % (n - i);
+            rank /= n - i;
+        }
+        int used = 0;
+        for (int i = 0; i < k; i++) {
+            int skip = values[i];
+            int value = 0;
+            while (true) {
+                if ((used & (1 << value)) == 0) {
+                    if (skip == 0) {
+                        break;
+                    }
+                    skip--;
+                }
+                value++;
+            }
+            values[i] = value;
+            used |= 1 << value;
+        }
+    }
+
+    static int numPartialPerms(int n, int k) {
+        int count = 1;
+        for (int i = 0; i < k; i++) {
+            count *= n - i;
+        }
+        return count;
+    }
+
+    private static int rankTwists(int[] twists) {
+        int rank = 0;
+        for (int slot = 0; slot < 6; slot++) {
+            rank = rank * 3 + twists[slot];
+        }
+        return rank;
+    }
+
+    private static void unrankTwists(int rank, int[] twists) {
+        int sum = 0;
+        for (int slot = 5; slot >= 0; slot--) {
+            twists[slot] = rank % 3;
+            sum += twists[slot];
+            rank /= 3;
+        }
+        twists[6] = (3 - sum % 3) % 3;
+    }
+
+    private static int packedSize(int numEntries) {
+        return (numEntries + 1) / 2;
+    }
+
+    static byte[] newPackedTable(int numEntries) {
+        byte[] packed = new byte[packedSize(numEntries)];
+        Arrays.fill(packed, (byte) 0xFF);
+        return packed;
+    }
+
+    static int getPacked(byte[] packed, int index) {
+        return (packed[index >>> 1] >>> ((index & 1) << 2)) & 0xF;
+    }
+
+    static void setPacked(byte[] packed, int index, int value) {
+        int shift = (index & 1) << 2;
+        packed[index >>> 1] = (byte) ((packed[index >>> 1] & ~(0xF << shift)) | (value << shift));
+    }
+
+    /**
+     * The corners, and on a 3x3 the edges, of one cube in the normalized frame, read once
+     * for every table that wants them. Reused from state to state, nothing is allocated
+     * after it's made.
+     */
+    static class Cubies {
+        int[] relabel = new int[6];
+        boolean cornersRead;
+        int[] cornerAt = new int[CubieGeometry.NUM_CORNERS];
+        int[] twistAt = new int[CubieGeometry.NUM_CORNERS];
+        boolean edgesRead;
+        int[] edgeAt = new int[CubieGeometry.NUM_EDGES];
+        int[] flipAt = new int[CubieGeometry.NUM_EDGES];
+        // edgeSlot[cubie] is the slot edge cubie is in
+        int[] edgeSlot = new int[CubieGeometry.NUM_EDGES];
+        // an edge subset's slots and flips, for working out its index
+        int[] positions = new int[CubieGeometry.NUM_EDGES];
+        int[] flips = new int[CubieGeometry.NUM_EDGES];
+
+        /**
+         * Reads cube's cubies, leaving cornersRead and edgesRead false for any that can't be
+         * read (edges on anything but a 3x3, or stickers that aren't a real cube)
+         */
+        void read(RubiksCube cube) {
+            this.cornersRead = CubieGeometry.normalizingRelabel(cube, this.relabel)
+                            && CubieGeometry.readCorners(cube, this.relabel, this.cornerAt, this.twistAt);
+            this.edgesRead = this.cornersRead
+                          && CubieGeometry.readEdges(cube, this.relabel, this.edgeAt, this.flipAt);
+            if (this.edgesRead) {
+                for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                    this.edgeSlot[this.edgeAt[slot]] = slot;
+                }
+            }
+        }
+    }
+
+    private static class SharedCorners {
+        // built the first time sharedCorners() is called
+        private static final PatternDatabase CORNERS = buildCorners();
+    }
+}
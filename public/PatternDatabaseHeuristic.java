@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heuristic that takes the largest estimate out of a set of pattern databases and the
+ * StickerHeuristic. The max of admissible heuristics is still admissible.
+ *
+ * Instances don't hold any per-search state, so one can be shared by any number of solver
+ * threads.
+ */
+public class PatternDatabaseHeuristic implements CubeHeuristic {
+    public static final String CORNER_FILE_NAME = "corners.pdb";
+
+    // the two halves of the 3x3's edges
+    private static final int[][] EDGE_SUBSETS = {{0, 1, 2, 3, 4, 5}, {6, 7, 8, 9, 10, 11}};
+
+    private PatternDatabase[] databases;
+    private StickerHeuristic stickerHeuristic = new StickerHeuristic();
+
+    /**
+     * Creates a heuristic out of already built or loaded pattern databases
+     */
+    public PatternDatabaseHeuristic(PatternDatabase... databases) {
+        this.databases = databases.clone();
+    }
+
+    /**
+     * Loads every table that helps a cube of cubeSize out of directory, building and saving
+     * any that are missing first. The 3x3 edge tables take a minute or two each to build, so
+     * after the first run this should only ever be mapping files.
+     * @param Path directory Where the .pdb files live
+     * @param int cubeSize The size of cube the heuristic will be used on
+     * @throws IOException if a table can't be written or read
+     */
+    public static PatternDatabaseHeuristic loadOrBuild(Path directory, int cubeSize) throws IOException {
+        List<PatternDatabase> databases = new ArrayList<PatternDatabase>();
+        if (cubeSize >= 2) {
+            databases.add(loadOrBuild(directory.resolve(CORNER_FILE_NAME), null));
+        }
+        if (cubeSize == 3) {
+            for (int[] edgeSubset : EDGE_SUBSETS) {
+                databases.add(loadOrBuild(directory.resolve(edgeFileName(edgeSubset)), edgeSubset));
+            }
+        }
+        return new PatternDatabaseHeuristic(databases.toArray(new PatternDatabase[0]));
+    }
+
+    static PatternDatabase loadOrBuild(Path path, int[] edgeSubset) throws IOException {
+        if (!Files.exists(path)) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            PatternDatabase built = edgeSubset == null
+                                  ? PatternDatabase.buildCorners()
+                                  : PatternDatabase.buildEdges(edgeSubset);
+            // write to a temp file first so a half written table never gets loaded
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            built.save(tempPath);
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return PatternDatabase.load(path);
+    }
+
+    /**
+     * Returns the file name loadOrBuild uses for an edge subset, e.g. "edges-0-1-2-3-4-5.pdb"
+     */
+    public static String edgeFileName(int[] edgeSubset) {
+        String fileName = "edges";
+        for (int edge : edgeSubset) {
+            fileName += "-" + edge;
+        }
+        return fileName + ".pdb";
+    }
+
+    /**
+     * Reads the cube's cubies once and looks every table up off of that read
+     */
+    public int estimate(RubiksCube cube) {
+        int estimate = this.stickerHeuristic.estimate(cube);
+        PatternDatabase.Cubies cubies = PatternDatabase.scratch();
+        cubies.read(cube);
+        for (PatternDatabase database : this.databases) {
+            estimate = Math.max(estimate, database.estimate(cubies));
+        }
+        return estimate;
+    }
+}
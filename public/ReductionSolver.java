@@ -0,0 +1,337 @@
+import java.util.Stack;
+
+/**
+ * Solver for any size of cube that solves big cubes the way people do, by reducing them
+ * to a smaller cube and solving that.
+ *
+ * 1. The corners, and on an odd cube the middle edges and middle centers too, are
+ *    turned only by the outer layers and the middle slices, exactly like a 2x2 or a 3x3.
+ *    They're copied onto one (every other row and column left out) and solved with the
+ *    BidirectionalSolver or TwoPhaseSolver, making the same moves on the outer layers.
+ * 2. That fixes what color every side ends up. Every set of 24 wings that's an odd
+ *    permutation away from solved (the "parity" cases, which no number of 3-cycles can fix)
+ *    gets one inner slice quarter turn, which moves four of them.
+ * 3. Every other center piece and then every wing is put in place with pure 3-cycles from
+ *    the CommutatorLibrary, which don't disturb anything else. Each step picks whichever
+ *    3-cycle puts the most pieces where they belong.
+ *
+ * There are about cubeSize^2 / 4 orbits of centers and cubeSize / 2 of wings, each takes a
+ * couple of dozen 3-cycles of 8 to 10 moves, and a move costs at most cubeSize^2, so solving
+ * takes polynomial time in the cube size. The solutions are long (thousands of moves on a
+ * 10x10), nowhere near the shortest. Moves made back to back on the same layer are merged.
+ *
+ * The 3-cycles for a cube size are worked out the first time that size gets solved. A
+ * solver instance keeps nothing between solves but its metrics and can be shared by any
+ * number of threads.
+ */
+public class ReductionSolver implements CubeSolver {
+    // no 2x2 state is more than 11 moves from solved
+    private static final int MAX_2X2_LENGTH = 11;
+    private static final int NUM_SIDES = 6;
+
+    // null unless metrics are being kept, the reduced solves count into it too
+    private volatile SolverMetrics metrics;
+    private volatile boolean cancelled;
+
+    /**
+     * Solves the cube.
+     * @param RubiksCube cube The cube to solve, it's only changed if leaveCubeSolved is set
+     * @param int depthLimit Max number of moves the solution can have, Integer.MAX_VALUE
+     * for no limit
+     * @param boolean leaveCubeSolved whether the solution should be made on cube afterwards
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if the cube can't be solved or the solution is longer than depthLimit
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        SolverMetrics metrics = this.metrics;
+        long startNanos = System.nanoTime();
+        RubiksCube work = new RubiksCube(cube);
+        Stack<int[]> moveStack = new Stack<int[]>();
+        boolean solved = this.solveReduced(work, moveStack, metrics)
+                         && this.solveInnerPieces(work, moveStack, metrics) && work.isSolved();
+        if (metrics != null) {
+            metrics.solveFinished("reduction", System.nanoTime() - startNanos);
+        }
+        if (!solved || moveStack.size() > depthLimit) {
+            return null;
+        }
+
+        if (leaveCubeSolved) {
+            for (int[] move : moveStack) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return moveStack;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes every solve running on this instance stop after the 3-cycle it's on and return
+     * no solution. The 2x2 or 3x3 solve at the start isn't interrupted, it only takes
+     * milliseconds, and neither is working out the 3-cycles the first time a size is solved.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Solves the 2x2 (even sizes) or 3x3 (odd sizes) the cube reduces to
+     * @return false if that smaller cube can't be solved
+     */
+    private boolean solveReduced(RubiksCube work, Stack<int[]> moveStack, SolverMetrics metrics) {
+        int cs = work.getCubeSize();
+        if (cs < 2) {
+            return true;
+        }
+        int reducedSize = cs % 2 == 0 ? 2 : 3;
+        int step = (cs - 1) / (reducedSize - 1);
+
+        int[][][] gameStateArr = new int[NUM_SIDES][reducedSize][reducedSize];
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < reducedSize; row++) {
+                for (int col = 0; col < reducedSize; col++) {
+                    gameStateArr[side][row][col] = work.getSticker(side, row * step, col * step);
+                }
+            }
+        }
+        RubiksCube reduced;
+        try {
+            reduced = new RubiksCube(reducedSize, gameStateArr);
+        } catch (Exception e) {
+            return false;
+        }
+
+        CubeSolver reducedSolver;
+        int reducedLimit;
+        if (reducedSize == 2) {
+            reducedSolver = new BidirectionalSolver();
+            reducedLimit = MAX_2X2_LENGTH;
+        } else {
+            // the reduced solution is a drop in the bucket, so take the first one found
+            reducedSolver = new TwoPhaseSolver(0, TwoPhaseSolver.MAX_LENGTH);
+            reducedLimit = TwoPhaseSolver.MAX_LENGTH;
+        }
+        reducedSolver.setMetrics(metrics);
+        Stack<int[]> reducedSolution = reducedSolver.solve(reduced, reducedLimit, false);
+        if (reducedSolution == null) {
+            return false;
+        }
+        // both reduced solvers only turn outer layers
+        for (int[] move : reducedSolution) {
+            int layer = move[1] == 0 ? 0 : cs - 1;
+            push(work, moveStack, move[0], layer, move[2]);
+        }
+        return true;
+    }
+
+    /**
+     * Fixes wing parity and then 3-cycles every center piece and wing into place
+     * @return false if some orbit's pieces don't add up to a solvable cube
+     */
+    private boolean solveInnerPieces(RubiksCube work, Stack<int[]> moveStack, SolverMetrics metrics) {
+        int cs = work.getCubeSize();
+        if (cs < 4) {
+            return true;
+        }
+        long phaseStartNanos = System.nanoTime();
+        CommutatorLibrary library = CommutatorLibrary.forSize(cs);
+        phaseStartNanos = endPhase(metrics, "reduction.library", phaseStartNanos);
+
+        // the reduced cube is solved, so its corners say what color each side is
+        int[] sideColors = new int[NUM_SIDES];
+        for (int side = 0; side < NUM_SIDES; side++) {
+            sideColors[side] = work.getSticker(side, 0, 0);
+        }
+
+        for (int orbit = 0; orbit < library.getNumOrbits(); orbit++) {
+            if (library.isWingOrbit(orbit) && !this.fixWingParity(work, moveStack, library, orbit, sideColors)) {
+                return false;
+            }
+        }
+        phaseStartNanos = endPhase(metrics, "reduction.parity", phaseStartNanos);
+        // centers first, the parity fixes move them around
+        for (int pass = 0; pass < 2; pass++) {
+            for (int orbit = 0; orbit < library.getNumOrbits(); orbit++) {
+                if (library.isWingOrbit(orbit) == (pass == 1)
+                        && !this.solveOrbit(work, moveStack, library, orbit, sideColors)) {
+                    return false;
+                }
+            }
+            phaseStartNanos = endPhase(metrics, pass == 0 ? "reduction.centers" : "reduction.wings",
+                                       phaseStartNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the time since startNanos to a phase, if metrics are being kept
+     * @return the time now, for the next phase to start from
+     */
+    private static long endPhase(SolverMetrics metrics, String phase, long startNanos) {
+        long now = System.nanoTime();
+        if (metrics != null) {
+            metrics.addPhaseNanos(phase, now - startNanos);
+        }
+        return now;
+    }
+
+    /**
+     * Turns an inner slice holding four of an orbit's wings if the orbit is an odd
+     * permutation away from solved
+     * @return false if the orbit's wings aren't 24 different real wings
+     */
+    private boolean fixWingParity(RubiksCube work, Stack<int[]> moveStack, CommutatorLibrary library,
+                                  int orbit, int[] sideColors) {
+        int[] stickers = library.getOrbitStickers(orbit);
+        int[] have = new int[stickers.length];
+        int[] want = new int[stickers.length];
+        this.readOrbit(work, library, orbit, sideColors, have, want);
+
+        int[] home = new int[stickers.length];
+        for (int i = 0; i < stickers.length; i++) {
+            home[i] = -1;
+            for (int j = 0; j < stickers.length; j++) {
+                if (want[j] == have[i]) {
+                    home[i] = j;
+                }
+            }
+        }
+        boolean[] visited = new boolean[stickers.length];
+        int parity = 0;
+        for (int i = 0; i < stickers.length; i++) {
+            if (home[i] == -1) {
+                return false;
+            }
+            int cycleLength = 0;
+            for (int j = i; !visited[j]; j = home[j]) {
+                visited[j] = true;
+                cycleLength++;
+            }
+            if (cycleLength > 0) {
+                parity ^= (cycleLength - 1) & 1;
+            }
+        }
+        if (parity == 0) {
+            return true;
+        }
+
+        MoveTable moveTable = MoveTable.forSize(work.getCubeSize());
+        for (int layer = 1; layer < work.getCubeSize() - 1; layer++) {
+            int[] sources = moveTable.getSources(moveTable.getMoveIndex(0, layer, 1));
+            if (movesAny(sources, stickers)) {
+                push(work, moveStack, 0, layer, 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean movesAny(int[] sources, int[] stickers) {
+        for (int sticker : stickers) {
+            if (sources[sticker] != sticker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes whichever 3-cycle puts the most of an orbit's pieces in place, over and over
+     * until they all are
+     * @return false if no 3-cycle helps but the orbit isn't solved
+     */
+    private boolean solveOrbit(RubiksCube work, Stack<int[]> moveStack, CommutatorLibrary library,
+                               int orbit, int[] sideColors) {
+        int numPositions = library.getOrbitStickers(orbit).length;
+        int[] have = new int[numPositions];
+        int[] want = new int[numPositions];
+        int[] positions = new int[3];
+        this.readOrbit(work, library, orbit, sideColors, have, want);
+
+        while (!this.cancelled) {
+            int bestGain = 0;
+            int bestCycle = -1;
+            for (int cycle = 0; cycle < library.getNumCycles(orbit) && bestGain < 3; cycle++) {
+                library.getCycle(orbit, cycle, positions);
+                int from = positions[0];
+                int to = positions[1];
+                int next = positions[2];
+                int gain = matches(have[from], want[to]) + matches(have[to], want[next])
+                         + matches(have[next], want[from]) - matches(have[from], want[from])
+                         - matches(have[to], want[to]) - matches(have[next], want[next]);
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestCycle = cycle;
+                }
+            }
+            if (bestCycle == -1) {
+                break;
+            }
+
+            MoveTable moveTable = MoveTable.forSize(work.getCubeSize());
+            for (int move : library.getSequence(orbit, bestCycle)) {
+                push(work, moveStack, moveTable.getAxis(move), moveTable.getLayer(move),
+                     moveTable.getNumTurns(move));
+            }
+            library.getCycle(orbit, bestCycle, positions);
+            int fromPiece = have[positions[0]];
+            have[positions[0]] = have[positions[2]];
+            have[positions[2]] = have[positions[1]];
+            have[positions[1]] = fromPiece;
+        }
+
+        for (int i = 0; i < numPositions; i++) {
+            if (have[i] != want[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads which piece is at each position of an orbit and which piece belongs there. A
+     * center piece is just its color, a wing is its two colors.
+     */
+    private void readOrbit(RubiksCube work, CommutatorLibrary library, int orbit, int[] sideColors,
+                           int[] have, int[] want) {
+        int cs = work.getCubeSize();
+        int[] stickers = library.getOrbitStickers(orbit);
+        for (int i = 0; i < stickers.length; i++) {
+            int sticker = stickers[i];
+            have[i] = CubieGeometry.readSticker(work, sticker);
+            want[i] = sideColors[sticker / (cs * cs)];
+            if (library.isWingOrbit(orbit)) {
+                int partner = library.getPartner(sticker);
+                have[i] = have[i] * NUM_SIDES + CubieGeometry.readSticker(work, partner);
+                want[i] = want[i] * NUM_SIDES + sideColors[partner / (cs * cs)];
+            }
+        }
+    }
+
+    private static int matches(int piece, int wanted) {
+        return piece == wanted ? 1 : 0;
+    }
+
+    /**
+     * Makes a move and adds it to the solution, merging it into the last move if that was
+     * on the same layer
+     */
+    private static void push(RubiksCube work, Stack<int[]> moveStack, int axis, int layer, int numTurns) {
+        work.makeMove(axis, layer, numTurns);
+        if (!moveStack.isEmpty() && moveStack.peek()[0] == axis && moveStack.peek()[1] == layer) {
+            int merged = (moveStack.pop()[2] + numTurns) % 4;
+            if (merged != 0) {
+                moveStack.push(new int[] {axis, layer, merged});
+            }
+            return;
+        }
+        moveStack.push(new int[] {axis, layer, numTurns});
+    }
+}
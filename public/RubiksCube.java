@@ -1,6 +1,9 @@
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.Stack;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
 
 public class RubiksCube {
     private int NUM_RED = 0;
@@ -11,27 +14,42 @@ public class RubiksCube {
     private int NUM_WHITE = 5;
     private int MIN_COLOR_INT = 0;
     private int MAX_COLOR_INT = 5;
+    private int NUM_COLORS = 6;
 
     public int AXIS_X = 0;
     public int AXIS_Y = 1;
-    public int AXIS_Z = 1;
+    public int AXIS_Z = 2;
 
     private int NUM_SIDES = 6;
 
+    // side indexes, same order as the gameStateArr constructor
+    private int FRONT_SIDE = 0;
+    private int BACK_SIDE = 1;
+    private int LEFT_SIDE = 2;
+    private int RIGHT_SIDE = 3;
+    private int TOP_SIDE = 4;
+    private int BOTTOM_SIDE = 5;
+
     private int SCRAMBLE_RAND_MIN = 100;
     private int SCRAMBLE_RAND_MAX = 300;
     private int cubeSize;
 
 
-    // 2D Arrays that represent each side
-    private int[][] frontSideArr;
-    private int[][] backSideArr;
+    // Every sticker on the cube packed into one array, one side after another in the same
+    // order as the gameStateArr constructor. A sticker's index is
+    // side * cubeSize * cubeSize + row * cubeSize + col
+    private byte[] stickers;
+
+    // precomputed sticker permutations for every move on this cubeSize
+    private MoveTable moveTable;
 
-    private int[][] leftSideArr;
-    private int[][] rightSideArr;
+    // Zobrist hash of the stickers, kept up to date by every move (see MoveTable)
+    private long zobristHash;
 
-    private int[][] topSideArr;
-    private int[][] bottomSideArr;
+    // how many stickers of each color every side has, packed one long a side (see
+    // MoveTable.countFaceColors) and kept up to date by every move so isSolved doesn't have
+    // to look at every sticker. null on cubes too big to pack, which check stickers instead.
+    private long[] faceColorCounts;
 
     /**
     * Creates new solved cube of cubeSize 3
@@ -56,23 +74,15 @@ public class RubiksCube {
         this.cubeSize = cubeSize;
         int numSides = this.NUM_SIDES;
 
-        int[][][] gameStateArr = new int[6][cubeSize][cubeSize];
+        int sideLength = cubeSize * cubeSize;
+        this.stickers = new byte[numSides * sideLength];
+        this.moveTable = MoveTable.forSize(cubeSize);
 
         for (int color = 0; color < numSides; color++) {
-            for (int row = 0; row < cubeSize; row++) {
-                Arrays.fill(gameStateArr[color][row], color);
-                for (int col = 0; col < cubeSize; col++) {
-                    gameStateArr[color][row][col] = color;
-                }
-            }
+            Arrays.fill(this.stickers, color * sideLength, (color + 1) * sideLength, (byte) color);
         }
-
-        this.frontSideArr = gameStateArr[0];
-        this.backSideArr = gameStateArr[1];
-        this.leftSideArr = gameStateArr[2];
-        this.rightSideArr = gameStateArr[3];
-        this.topSideArr = gameStateArr[4];
-        this.bottomSideArr = gameStateArr[5];
+        this.zobristHash = this.moveTable.zobristHash(this.stickers);
+        this.faceColorCounts = MoveTable.countFaceColors(this.stickers, cubeSize);
 
         if (scramble) {
             this.scramble();
@@ -94,12 +104,34 @@ public class RubiksCube {
             throw new Exception("Game state given is not valid");
         }
 
-        this.frontSideArr = gameStateArr[0];
-        this.backSideArr = gameStateArr[1];
-        this.leftSideArr = gameStateArr[2];
-        this.rightSideArr = gameStateArr[3];
-        this.topSideArr = gameStateArr[4];
-        this.bottomSideArr = gameStateArr[5];
+        this.stickers = new byte[this.NUM_SIDES * cubeSize * cubeSize];
+        this.moveTable = MoveTable.forSize(cubeSize);
+
+        int index = 0;
+        for (int side = 0; side < this.NUM_SIDES; side++) {
+            for (int row = 0; row < cubeSize; row++) {
+                for (int col = 0; col < cubeSize; col++) {
+                    this.stickers[index++] = (byte) gameStateArr[side][row][col];
+                }
+            }
+        }
+        this.zobristHash = this.moveTable.zobristHash(this.stickers);
+        this.faceColorCounts = MoveTable.countFaceColors(this.stickers, cubeSize);
+    }
+
+    /**
+    * Creates a copy of another cube. The copy can be moved around without touching the
+    * original, which is what lets several threads search from the same starting point.
+    *
+    * @param other    (RubiksCube) the cube to copy
+    * @return         RubiksCube object
+    */
+    public RubiksCube(RubiksCube other) {
+        this.cubeSize = other.cubeSize;
+        this.stickers = other.stickers.clone();
+        this.moveTable = other.moveTable;
+        this.zobristHash = other.zobristHash;
+        this.faceColorCounts = other.faceColorCounts == null ? null : other.faceColorCounts.clone();
     }
 
     /**
@@ -150,335 +182,279 @@ public class RubiksCube {
     }
 
     /**
-     * Returns whether or not the Rubik's Cube is in a finished state.
+     * Returns the size of the cube (number of stickers along one edge)
      */
-    public boolean isSolved() {
-        boolean isSolved = this.sideIsSolved(this.frontSideArr);
-        isSolved = isSolved && this.sideIsSolved(this.backSideArr);
-        isSolved = isSolved && this.sideIsSolved(this.leftSideArr);
-        isSolved = isSolved && this.sideIsSolved(this.rightSideArr);
-        isSolved = isSolved && this.sideIsSolved(this.topSideArr);
-        isSolved = isSolved && this.sideIsSolved(this.bottomSideArr);
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
 
-        return isSolved;
+    /**
+     * Returns the color int of a single sticker.
+     * @param int side The side to read, indexed the same way as the gameStateArr
+     * constructor (0 front, 1 back, 2 left, 3 right, 4 top, 5 bottom)
+     * @param int row The row on that side
+     * @param int col The column on that side
+     */
+    public int getSticker(int side, int row, int col) {
+        return this.stickers[this.getStickerIndex(side, row, col)];
     }
 
     /**
-     * Returns whether or not a side is all the same color.
+     * Returns a copy of the cube's state in the same format the gameStateArr constructor
+     * takes, so new RubiksCube(cube.getCubeSize(), cube.getGameState()) makes a copy of cube.
      */
-    private boolean sideIsSolved(int[][] side) {
-        int colorNumber = side[0][0];
-        for (int row = 0; row < this.cubeSize; row++) {
-            for (int col = 0; col < this.cubeSize; col++) {
-                
-                int currColorNumber = side[row][col];
-                if (currColorNumber != colorNumber) {
-                    return false;
+    public int[][][] getGameState() {
+        int cs = this.cubeSize;
+        int[][][] gameStateArr = new int[this.NUM_SIDES][cs][cs];
+        int index = 0;
+        for (int side = 0; side < this.NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    gameStateArr[side][row][col] = this.stickers[index++];
                 }
             }
         }
-        return true;
+        return gameStateArr;
     }
 
-    public void scramble() {
-        Random rn = new Random();
-        int range = this.SCRAMBLE_RAND_MAX - this.SCRAMBLE_RAND_MIN + 1;
-        int numMoves = rn.nextInt(range) + this.SCRAMBLE_RAND_MIN;
-//
-        for (int i = 0; i < numMoves; i++) {
-            int axis = rn.nextInt(3);
-            int layerIndex = rn.nextInt(this.cubeSize);
-            int numRotate = rn.nextInt(3) + 1;
-
-            //axis = 0;
-            //layerIndex = 0;
-            //numRotate = 3;
-
-            this.makeMove(axis, layerIndex, numRotate);
-        }
+    /**
+     * Returns a 64 bit hash of the cube's exact state (which sticker is where, so the same
+     * state held a different way hashes differently). It's kept up to date by every move
+     * instead of being worked out on each call, so it's free to read.
+     */
+    public long getZobristHash() {
+        return this.zobristHash;
     }
 
-    public String toString() {
-        String cubeString = "";
-
-        cubeString += this.getTopString();
-        cubeString += this.getMiddleString();
-        cubeString += this.getBottomString();
-
-        return cubeString;
+    @Override
+    public int hashCode() {
+        return (int) (this.zobristHash ^ (this.zobristHash >>> 32));
     }
 
-    public String getTopString() {
-        String returnString = "";
-
-        int cs = this.cubeSize;
-        int[][] side = this.topSideArr;
-        int repeatLength = cs * 4;
-
-        returnString += this.stringRepeat(" ", repeatLength);
-        returnString += this.stringRepeat("_", repeatLength + 1);
-        
-        for (int row = 0; row < cs - 1; row++) {
-            returnString += "\n" + this.stringRepeat(" ", repeatLength);
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(side[row][col]) + "_";
-            }
-            returnString += "|";
-
+    /**
+     * Two cubes are equal when they are the same size and every sticker matches. Cubes with
+     * different hashes are told apart without looking at the stickers.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
         }
-        returnString += "\n" + this.stringRepeat("_", repeatLength);
-        for (int col = 0; col < cs; col++) {
-            returnString += "|_" + this.getColorChar(side[cs - 1][col]) + "_";
+        if (!(other instanceof RubiksCube)) {
+            return false;
         }
-        returnString += "|";
-        returnString += this.stringRepeat("_", repeatLength * 2);
-        return returnString;
+        RubiksCube otherCube = (RubiksCube) other;
+        return this.cubeSize == otherCube.cubeSize
+            && this.zobristHash == otherCube.zobristHash
+            && Arrays.equals(this.stickers, otherCube.stickers);
     }
 
-    public String getMiddleString() {
-        String returnString = "";
-
-        int cs = this.cubeSize;
-        int[][] leftSide = this.leftSideArr;
-        int[][] frontSide = this.frontSideArr;
-        int[][] rightSide = this.rightSideArr;
-        int[][] backSide = this.backSideArr;
-        
-        for (int row = 0; row < cs; row++) {
-            returnString += "\n";
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(leftSide[row][col]) + "_";
-            }
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(frontSide[row][col]) + "_";
-            }
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(rightSide[row][col]) + "_";
-            }
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(backSide[row][col]) + "_";
-            }
-            returnString += "|";
+    /**
+     * Copies the packed stickers into dest starting at offset. Used by solvers that keep
+     * lots of states in flat arrays instead of one RubiksCube each.
+     */
+    void copyStickersTo(byte[] dest, int offset) {
+        System.arraycopy(this.stickers, 0, dest, offset, this.stickers.length);
+    }
 
-        }
-        return returnString;
+    /**
+     * Overwrites the stickers with packed stickers from src starting at offset. They are
+     * not validated, so they have to come from copyStickersTo on a cube of the same size.
+     */
+    void copyStickersFrom(byte[] src, int offset) {
+        System.arraycopy(src, offset, this.stickers, 0, this.stickers.length);
+        this.zobristHash = this.moveTable.zobristHash(this.stickers);
+        this.faceColorCounts = MoveTable.countFaceColors(this.stickers, this.cubeSize);
     }
 
-    public String getBottomString() {
-        String returnString = "";
+    /**
+     * Returns the color of a packed sticker, see getStickerIndex
+     */
+    int getPackedSticker(int index) {
+        return this.stickers[index];
+    }
 
+    /**
+     * Returns where a sticker lives in the packed stickers array
+     */
+    private int getStickerIndex(int side, int row, int col) {
         int cs = this.cubeSize;
-        int[][] side = this.bottomSideArr;
-        int repeatLength = cs * 4;
-        
-        for (int row = 0; row < cs; row++) {
-            returnString += "\n" + this.stringRepeat(" ", repeatLength);
-            for (int col = 0; col < cs; col++) {
-                returnString += "|_" + this.getColorChar(side[row][col]) + "_";
-            }
-            returnString += "|";
+        return side * cs * cs + row * cs + col;
+    }
 
+    /**
+     * Returns whether or not the Rubik's Cube is in a finished state. Only looks at one
+     * sticker a side, see faceColorCounts.
+     */
+    public boolean isSolved() {
+        for (int side = 0; side < this.NUM_SIDES; side++) {
+            if (!this.isSideSolved(side)) {
+                return false;
+            }
         }
-        returnString += "\n";
-        return returnString;
+        return true;
     }
 
-    private String stringRepeat(String s, int n) {
-        String returnString = "";
-        for (int i = 0; i < n; i++) {
-            returnString += s;
+    /**
+     * Returns whether or not a side is all the same color.
+     */
+    public boolean isSideSolved(int side) {
+        if (this.faceColorCounts == null) {
+            return this.sideIsSolved(side);
         }
-
-        return returnString;
+        int sideLength = this.cubeSize * this.cubeSize;
+        int color = this.stickers[side * sideLength];
+        return MoveTable.getColorCount(this.faceColorCounts[side], color) == sideLength;
     }
 
     /**
-     * Helper function that rotates an entire 2d array once clockwise.
+     * Returns how many sides are all one color
      */
-    private int[][] rotateArrayClockwise(int[][] side) {
-        int cs = this.cubeSize;
-        int[][] newSide = new int[cs][cs];
-
-        for (int row = 0; row < cs; row++) {
-            for (int col = 0; col < cs; col++) {
-                int prevRow = cs - col - 1;
-                int prevCol = row;
-
-                newSide[row][col] = side[prevRow][prevCol];
+    public int getNumSolvedSides() {
+        int numSolved = 0;
+        for (int side = 0; side < this.NUM_SIDES; side++) {
+            if (this.isSideSolved(side)) {
+                numSolved++;
             }
         }
-
-        return newSide;
+        return numSolved;
     }
 
     /**
-     * Helper function that rotates an entire 2d array once counter-clockwise.
+     * Returns how many stickers of a color are on a side, for goals like getting all of a
+     * color onto one side
      */
-    private int[][] rotateArrayCounterClockwise(int[][] side) {
-        int cs = this.cubeSize;
-        int[][] newSide = new int[cs][cs];
-
-        for (int row = 0; row < cs; row++) {
-            for (int currCol = 0; currCol < cs; currCol++) {
-                int prevRow = currCol;
-                int prevCol = cs - row - 1;
-
-                newSide[row][currCol] = side[prevRow][prevCol];
+    public int getColorCount(int side, int color) {
+        if (this.faceColorCounts != null) {
+            return MoveTable.getColorCount(this.faceColorCounts[side], color);
+        }
+        int sideLength = this.cubeSize * this.cubeSize;
+        int count = 0;
+        for (int i = side * sideLength; i < (side + 1) * sideLength; i++) {
+            if (this.stickers[i] == color) {
+                count++;
             }
         }
-
-        return newSide;
+        return count;
     }
 
     /**
-     * The next group of functions serves as the actual "moves" you can make to alter
-     * the state of the game. If the names/functions of these are confusing, please see
-     * "cubeMap.txt" for a simple visualization.
+     * Returns how many stickers on a side share its most common color, cubeSize^2 once the
+     * side is solved
      */
+    public int getSideProgress(int side) {
+        int best = 0;
+        for (int color = 0; color < this.NUM_COLORS; color++) {
+            best = Math.max(best, this.getColorCount(side, color));
+        }
+        return best;
+    }
 
     /**
-     * This is a generic move function that lets you rotate any layer any direction
-     * @param int index The index of the layer you want to rotate where 0 is the front layer
-     * and (this.cubeSize - 1) is the back layer
+     * Returns whether or not a side is all the same color by looking at every sticker, for
+     * cubes too big to keep count of colors
      */
-    public void makeMove(int axis, int layerIndex, int numRotate) {
-        if (axis == this.AXIS_X) {
-            if (numRotate == 1) {
-                this.rotateXRight(layerIndex);
-            } else if (numRotate == 2) {
-                this.rotateXRight(layerIndex);
-                this.rotateXRight(layerIndex);
-            } else {
-                this.rotateXLeft(layerIndex);
-            }
-        } else if (axis == this.AXIS_Y) {
-            if (numRotate == 1) {
-                this.rotateYUp(layerIndex);
-            } else if (numRotate == 2) {
-                this.rotateYUp(layerIndex);
-                this.rotateYUp(layerIndex);
-            } else {
-                this.rotateYDown(layerIndex);
-            }
-        } else {
-            if (numRotate == 1) {
-                this.rotateZUp(layerIndex);
-            } else if (numRotate == 2) {
-                this.rotateZUp(layerIndex);
-                this.rotateZUp(layerIndex);
-            } else {
-                this.rotateZDown(layerIndex);
+    private boolean sideIsSolved(int side) {
+        int sideStart = this.getStickerIndex(side, 0, 0);
+        int sideEnd = sideStart + this.cubeSize * this.cubeSize;
+        int colorNumber = this.stickers[sideStart];
+        for (int i = sideStart + 1; i < sideEnd; i++) {
+            int currColorNumber = this.stickers[i];
+            if (currColorNumber != colorNumber) {
+                return false;
             }
         }
+        return true;
     }
 
-    
+    public void scramble() {
+        this.scramble(ThreadLocalRandom.current().nextLong());
+    }
 
     /**
-     * Rotates an x layer to the right once
-     * @param int index The index of the layer you want to rotate where 0 is the top layer
-     * and (this.cubeSize - 1) is the bottom layer
+     * Scrambles the same way every time for the same seed, with the same number of moves as
+     * scramble() (see ScrambleGenerator)
      */
-    private void rotateXRight(int layerIndex) {
-        int[] tempRow = this.frontSideArr[layerIndex];
-        this.frontSideArr[layerIndex] = this.leftSideArr[layerIndex];
-        this.leftSideArr[layerIndex] = this.backSideArr[layerIndex];
-        this.backSideArr[layerIndex] = this.rightSideArr[layerIndex];
-        this.rightSideArr[layerIndex] = tempRow;
-
-        if (layerIndex == 0) {
-            this.topSideArr = this.rotateArrayCounterClockwise(this.topSideArr);
-        } else if (layerIndex == this.cubeSize - 1) {
-            this.bottomSideArr = this.rotateArrayClockwise(this.bottomSideArr);
-        }
+    public void scramble(long seed) {
+        ScrambleGenerator generator = new ScrambleGenerator(this.cubeSize, seed);
+        int range = this.SCRAMBLE_RAND_MAX - this.SCRAMBLE_RAND_MIN + 1;
+        int numMoves = (int) Math.floorMod(seed, (long) range) + this.SCRAMBLE_RAND_MIN;
+        generator.nextMoves(numMoves).apply(this);
+    }
+
+    public String toString() {
+        return CubeRenderer.forSize(this.cubeSize).render(this);
     }
 
     /**
-     * Rotates an x layer to the left once
-     * @param int index The index of the layer you want to rotate where 0 is the top layer
-     * and (this.cubeSize - 1) is the bottom layer
+     * Writes the same picture toString returns into out, without making a String of it
+     * @throws IOException if out does
      */
-    private void rotateXLeft(int layerIndex) {
-        int[] tempRow = this.frontSideArr[layerIndex];
-        this.frontSideArr[layerIndex] = this.rightSideArr[layerIndex];
-        this.rightSideArr[layerIndex] = this.backSideArr[layerIndex];
-        this.backSideArr[layerIndex] = this.leftSideArr[layerIndex];
-        this.leftSideArr[layerIndex] = tempRow;
-
-        if (layerIndex == 0) {
-            this.topSideArr = this.rotateArrayClockwise(this.topSideArr);
-        } else if (layerIndex == this.cubeSize - 1) {
-            this.bottomSideArr = this.rotateArrayCounterClockwise(this.bottomSideArr);
-        }
+    public void render(Appendable out) throws IOException {
+        CubeRenderer.forSize(this.cubeSize).render(this, out);
     }
-    
+
     /**
-     * Rotates a y layer up once
-     * @param int index The index of the layer you want to rotate where 0 is the right layer
-     * and (this.cubeSize - 1) is the left layer
+     * Returns the cube on one line as face letters, 54 of them for a 3x3 (see CubeRenderer)
      */
-    private void rotateYUp(int layerIndex) {
-        int cs = this.cubeSize;
+    public String toFaceletString() {
+        return CubeRenderer.facelets(this);
+    }
 
-        for (int i = 0; i < cs; i++) {
-            int tempNum = this.frontSideArr[i][layerIndex];
-            this.frontSideArr[i][layerIndex] = this.bottomSideArr[i][layerIndex];
-            this.bottomSideArr[i][layerIndex] = this.backSideArr[cs - i - 1][cs - layerIndex - 1];
-            this.backSideArr[cs - i - 1][cs - layerIndex - 1] = this.topSideArr[i][layerIndex];
-            this.topSideArr[i][layerIndex] = tempNum;
-        }
+    public String getTopString() {
+        return CubeRenderer.forSize(this.cubeSize).renderTop(this);
+    }
 
-        if (layerIndex == 0) {
-            this.leftSideArr = this.rotateArrayCounterClockwise(this.leftSideArr);
-        } else if (layerIndex == this.cubeSize - 1) {
-            this.rightSideArr = this.rotateArrayClockwise(this.rightSideArr);
-        }
+    public String getMiddleString() {
+        return CubeRenderer.forSize(this.cubeSize).renderMiddle(this);
+    }
+
+    public String getBottomString() {
+        return CubeRenderer.forSize(this.cubeSize).renderBottom(this);
     }
 
     /**
-     * Rotates a y layer down once
-     * @param int index The index of the layer you want to rotate where 0 is the right layer
-     * and (this.cubeSize - 1) is the left layer
+     * The next group of functions serves as the actual "moves" you can make to alter
+     * the state of the game. If the names/functions of these are confusing, please see
+     * "cubeMap.txt" for a simple visualization.
      */
-    private void rotateYDown(int layerIndex) {
-        int cs = this.cubeSize;
 
-        for (int i = 0; i < cs; i++) {
-            int tempNum = this.frontSideArr[i][layerIndex];
-            this.frontSideArr[i][layerIndex] = this.topSideArr[i][layerIndex];
-            this.topSideArr[i][layerIndex] = this.backSideArr[cs - i - 1][cs - layerIndex - 1];
-            this.backSideArr[cs - i - 1][cs - layerIndex - 1] = this.bottomSideArr[i][layerIndex];
-            this.bottomSideArr[i][layerIndex] = tempNum;
+    /**
+     * This is a generic move function that lets you rotate any layer any direction.
+     * The move is looked up in this cube size's MoveTable and applied to the stickers in a
+     * single pass, so it doesn't allocate anything. The Zobrist hash is updated in the same
+     * pass.
+     * @param int index The index of the layer you want to rotate where 0 is the front layer
+     * and (this.cubeSize - 1) is the back layer
+     * @throws IllegalArgumentException if the layer isn't on the cube
+     */
+    public void makeMove(int axis, int layerIndex, int numRotate) {
+        if (layerIndex < 0 || layerIndex >= this.cubeSize) {
+            throw new IllegalArgumentException("Layer " + layerIndex + " isn't on a cube of size " + this.cubeSize);
         }
-
-        if (layerIndex == 0) {
-            this.leftSideArr = this.rotateArrayClockwise(this.leftSideArr);
-        } else if (layerIndex == cs - 1) {
-            this.rightSideArr = this.rotateArrayCounterClockwise(this.rightSideArr);
+        if (axis != this.AXIS_X && axis != this.AXIS_Y) {
+            axis = this.AXIS_Z;
         }
+        if (numRotate != 1 && numRotate != 2) {
+            numRotate = 3;
+        }
+        int moveIndex = this.moveTable.getMoveIndex(axis, layerIndex, numRotate);
+        this.zobristHash = this.moveTable.apply(this.stickers, moveIndex, this.zobristHash, this.faceColorCounts);
     }
 
     /**
-     * Rotates a z layer up once
-     * @param int index The index of the layer you want to rotate where 0 is the front layer
-     * and (this.cubeSize - 1) is the back layer
+     * Makes every move of a compiled algorithm at once, in a single pass over the stickers
+     * it moves
+     * @param CompiledAlgorithm algorithm compiled for this cube's size
      */
-    private void rotateZUp(int layerIndex) {
-        int cs = this.cubeSize;
-
-        for (int i = 0; i < cs; i++) {
-            int tempNum = this.rightSideArr[i][layerIndex];
-            this.rightSideArr[i][layerIndex] = this.bottomSideArr[layerIndex][cs - i - 1];
-            this.bottomSideArr[layerIndex][cs - i - 1] = this.leftSideArr[cs - i - 1][cs - layerIndex - 1];
-            this.leftSideArr[cs - i - 1][cs - layerIndex - 1] = this.topSideArr[cs - layerIndex - 1][i];
-            this.topSideArr[cs - layerIndex - 1][i] = tempNum;
+    public void makeMoves(CompiledAlgorithm algorithm) {
+        if (algorithm.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Algorithm is for a cube of size " + algorithm.getCubeSize());
         }
-
-        if (layerIndex == 0) {
-            this.frontSideArr = this.rotateArrayCounterClockwise(this.frontSideArr);
-        } else if (layerIndex == cs - 1) {
-            this.backSideArr = this.rotateArrayClockwise(this.backSideArr);
+        if (this.faceColorCounts != null) {
+            algorithm.updateFaceColorCounts(this.stickers, this.faceColorCounts);
         }
+        this.zobristHash = algorithm.apply(this.stickers, this.zobristHash);
     }
 
     /**
@@ -487,21 +463,7 @@ public class RubiksCube {
      * and (this.cubeSize - 1) is the back layer
      */
     public void rotateZDown(int layerIndex) {
-        int cs = this.cubeSize;
-
-        for (int i = 0; i < cs; i++) {
-            int tempNum = this.rightSideArr[i][layerIndex];
-            this.rightSideArr[i][layerIndex] = this.topSideArr[cs - layerIndex - 1][i];
-            this.topSideArr[cs - layerIndex - 1][i] = this.leftSideArr[cs - i - 1][cs - layerIndex - 1];
-            this.leftSideArr[cs - i - 1][cs - layerIndex - 1] = this.bottomSideArr[layerIndex][cs - i - 1];
-            this.bottomSideArr[layerIndex][cs - i - 1] = tempNum;
-        }
-
-        if (layerIndex == 0) {
-            this.frontSideArr = this.rotateArrayClockwise(this.frontSideArr);
-        } else if (layerIndex == this.cubeSize - 1) {
-            this.backSideArr = this.rotateArrayCounterClockwise(this.backSideArr);
-        }
+        this.makeMove(this.AXIS_Z, layerIndex, 3);
     }
 /**End Movement Methods */
 /********************************************************************* */
@@ -580,29 +542,23 @@ public void solveRandom(int moveLimit) {
  * @return String[] array of moves that will solve the Cube. 
  */
 public Stack<int[]> solveDFS(int depthLimit, boolean leaveCubeSolved) {
-    Stack<int[]> moveStack = new Stack<int[]>();
-
-    if (this.solveDFSRecursive(depthLimit, moveStack, -1, -1, leaveCubeSolved)) {
-        Stack<int[]> reverseStack = new Stack<int[]>();
-
-        // print moves
-        while (!moveStack.isEmpty()) {
-            reverseStack.push(moveStack.pop());
-        }
-        while (!reverseStack.isEmpty()) {
-            int[] move = reverseStack.pop();
-            moveStack.push(move);
-
-            int axis = move[0];
-            int layer = move[1];
-            int numTurns = move[2];
+    return this.solveDFS(depthLimit, leaveCubeSolved, null);
+}
 
-            String printString = "turn the layer " + layer;
-            printString += " on the axis " + axis;
-            printString += " " + numTurns + " number of turns.";
+/**
+ * Attempts to solve the cube using a Depth First Search that remembers which states it has
+ * already searched (and how deep) in table, so a state reached again through a different
+ * move order doesn't get its whole subtree searched again.
+ * @param int depthLimit Max depth for the algorithm to search
+ * @param TranspositionTable table where to remember searched states, null to not remember
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom.
+ */
+public Stack<int[]> solveDFS(int depthLimit, boolean leaveCubeSolved, TranspositionTable table) {
+    MovePath path = new MovePath(this.cubeSize);
 
-            System.out.println(printString);
-        }
+    if (this.solveDFSRecursive(depthLimit, path, -1, -1, leaveCubeSolved, table, null)) {
+        Stack<int[]> moveStack = path.toStack();
+        this.printMoveStack(moveStack);
         return moveStack;
     } else {
         System.out.println("No solutions found");;
@@ -610,56 +566,179 @@ public Stack<int[]> solveDFS(int depthLimit, boolean leaveCubeSolved) {
     }
 }
 
-private boolean solveDFSRecursive(int depthLimit, Stack<int[]> moveStack, int lastAxis,
-                                  int lastLayer, boolean leaveCubeSolved) {
+/**
+ * Attempts to solve the cube using Iterative-Deepening A*. Unlike solveDFS the returned
+ * solution is always the shortest one within depthLimit.
+ *
+ * A 2x2 is guided by the corner pattern database, which is its exact distance, so any state
+ * is solved in milliseconds once the table is built (a second or so, once per run). Bigger
+ * cubes get the StickerHeuristic, which is only good for shallow scrambles: on a 3x3 about
+ * 7 moves takes a second or two and every extra move costs 3-7 times more. For deeper 3x3s
+ * pass PatternDatabaseHeuristic.loadOrBuild(directory, 3) to the other overload. Its edge
+ * tables take a minute or two to build the first time and then 12 move scrambles take
+ * seconds. solveTwoPhase is faster still if the solution doesn't have to be the shortest.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution within depthLimit.
+ */
+public Stack<int[]> solveIDAStar(int depthLimit, boolean leaveCubeSolved) {
+    CubeHeuristic heuristic = this.cubeSize == 2
+                            ? new PatternDatabaseHeuristic(PatternDatabase.sharedCorners())
+                            : new StickerHeuristic();
+    return this.solveIDAStar(depthLimit, leaveCubeSolved, heuristic);
+}
+
+/**
+ * Attempts to solve the cube using Iterative-Deepening A* guided by heuristic.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @param CubeHeuristic heuristic admissible lower bound used to prune the search
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution. Nothing is printed, MoveNotation can write the moves out.
+ */
+public Stack<int[]> solveIDAStar(int depthLimit, boolean leaveCubeSolved, CubeHeuristic heuristic) {
+    IDAStarSolver solver = new IDAStarSolver(heuristic);
+    return solver.solve(this, depthLimit, leaveCubeSolved);
+}
+
+/**
+ * Attempts to solve the cube with IDA* split across every core (see ParallelSolver).
+ * Returns the same shortest solution solveIDAStar would.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution. Nothing is printed, MoveNotation can write the moves out.
+ */
+public Stack<int[]> solveParallel(int depthLimit, boolean leaveCubeSolved) {
+    ParallelSolver solver = new ParallelSolver();
+    return solver.solve(this, depthLimit, leaveCubeSolved);
+}
+
+/**
+ * Attempts to solve the cube with a bidirectional breadth first search that meets in the
+ * middle (see BidirectionalSolver). Only practical on a 2x2 or a shallow scramble of a
+ * 3x3, but there it's much faster than solveDFS and always finds a shortest solution.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution. Nothing is printed, MoveNotation can write the moves out.
+ */
+public Stack<int[]> solveBidirectional(int depthLimit, boolean leaveCubeSolved) {
+    BidirectionalSolver solver = new BidirectionalSolver();
+    return solver.solve(this, depthLimit, leaveCubeSolved);
+}
+
+/**
+ * Attempts to solve a 3x3 fast with the two-phase algorithm (see TwoPhaseSolver). The
+ * solution isn't always a shortest one but is usually 20-22 moves and takes milliseconds.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution within depthLimit.
+ */
+public Stack<int[]> solveTwoPhase(int depthLimit, boolean leaveCubeSolved) {
+    return this.solveTwoPhase(depthLimit, leaveCubeSolved, TwoPhaseSolver.DEFAULT_TIME_BUDGET_MILLIS,
+                              TwoPhaseSolver.DEFAULT_TARGET_LENGTH);
+}
+
+/**
+ * Attempts to solve a 3x3 with the two-phase algorithm, looking for shorter solutions until
+ * one of at most targetLength moves turns up or timeBudgetMillis runs out.
+ * @param int depthLimit Max number of moves the solution can have
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @param long timeBudgetMillis how long to keep looking for shorter solutions
+ * @param int targetLength a solution this short is good enough
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution. Nothing is printed, MoveNotation can write the moves out.
+ */
+public Stack<int[]> solveTwoPhase(int depthLimit, boolean leaveCubeSolved, long timeBudgetMillis,
+                                  int targetLength) {
+    TwoPhaseSolver solver = new TwoPhaseSolver(timeBudgetMillis, targetLength);
+    return solver.solve(this, depthLimit, leaveCubeSolved);
+}
+
+/**
+ * Solves a cube of any size by reducing it to a 2x2 or 3x3 and then 3-cycling the rest of the
+ * pieces into place. The solution is long but it doesn't take long to find.
+ * @param boolean leaveCubeSolved whether the cube should be left solved or put back
+ * @return Stack<int[]> of {axis, layer, numTurns} moves, first move at the bottom, or null if
+ * there is no solution. Nothing is printed, MoveNotation can write the moves out.
+ */
+public Stack<int[]> solveReduction(boolean leaveCubeSolved) {
+    return new ReductionSolver().solve(this, Integer.MAX_VALUE, leaveCubeSolved);
+}
+
+/**
+ * Prints a stack of moves in the order they should be made (bottom of the stack first)
+ */
+private void printMoveStack(Stack<int[]> moveStack) {
+    for (int[] move : moveStack) {
+        int axis = move[0];
+        int layer = move[1];
+        int numTurns = move[2];
+
+        String printString = "turn the layer " + layer;
+        printString += " on the axis " + axis;
+        printString += " " + numTurns + " number of turns.";
+
+        System.out.println(printString);
+    }
+}
+
+/**
+ * The search behind solveDFS and DFSSolver. It finds solutions of up to depthLimit + 1 moves.
+ * @param BooleanSupplier cancelled checked after every move is undone, the search gives up
+ * with the cube put back once it says true. null if it can't be cancelled.
+ */
+boolean solveDFSRecursive(int depthLimit, MovePath path, int lastAxis, int lastLayer,
+                          boolean leaveCubeSolved, TranspositionTable table, BooleanSupplier cancelled) {
     if (this.isSolved()) {
         if (!leaveCubeSolved) {
-            Stack<int[]> reverseStack = new Stack<int[]>();
-
-            // undo moves
-            while (!moveStack.isEmpty()) {
-                int[] move = moveStack.pop();
-                reverseStack.push(move);
-                int axis = move[0];
-                int layer = move[1];
-                int numTurns = 4 - move[2];
-                this.makeMove(axis, layer, numTurns);
-            }
-
-            // rebuild the stack
-            while (!reverseStack.isEmpty()) {
-                moveStack.push(reverseStack.pop());
-            }
+            path.undo(this);
         }
         return true;
     }
 
-    if (moveStack.size() > depthLimit) {
+    if (path.getLength() > depthLimit) {
         return false;
     }
 
+    // skip states already searched with at least as many moves left as we have now
+    int movesLeft = depthLimit + 1 - path.getLength();
+    long key = 0;
+    if (table != null) {
+        key = TranspositionTable.key(this.zobristHash, lastAxis, lastLayer);
+        if (table.getLowerBound(key) > movesLeft) {
+            return false;
+        }
+    }
+
     for (int numTurns = 1; numTurns <= 3; numTurns++) {
         int undoNumTurns = 4 - numTurns;
         for (int layer = 0; layer < this.cubeSize; layer++) {
             for (int axis = 0; axis < 3; axis++) {
-                if (axis != lastAxis || layer != lastLayer) {
-                    int[] newMoveArr = new int[3];
-                    newMoveArr[0] = axis;
-                    newMoveArr[1] = layer;
-                    newMoveArr[2] = numTurns;
-
-                    moveStack.push(newMoveArr);
+                if (MoveOrdering.canFollow(this.cubeSize, lastAxis, lastLayer, axis, layer)) {
+                    path.push(axis, layer, numTurns);
                     this.makeMove(axis, layer, numTurns);
                     //System.out.println(this.toString());
-                    if (this.solveDFSRecursive(depthLimit, moveStack, axis, layer, leaveCubeSolved)) {
+                    if (this.solveDFSRecursive(depthLimit, path, axis, layer, leaveCubeSolved, table,
+                                               cancelled)) {
                         return true;
                     }
-                    moveStack.pop();
+                    path.pop();
                     this.makeMove(axis, layer, undoNumTurns);
+                    // a cancelled search proved nothing, so it mustn't go in the table either
+                    if (cancelled != null && cancelled.getAsBoolean()) {
+                        return false;
+                    }
                 }
             }
         }
     }
+    if (table != null) {
+        table.store(key, movesLeft + 1);
+    }
     return false;
 }
     
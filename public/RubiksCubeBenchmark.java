@@ -0,0 +1,308 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Repeatable micro benchmarks for RubiksCube's hot paths, so numbers can be compared from
+ * release to release before trusting an optimization.
+ *
+ * Every benchmark is run for each cube size from 2 to 7. Cubes are scrambled with fixed
+ * seeds so every run measures the same states. Each benchmark gets WARMUP_ITERATIONS
+ * untimed iterations for the JIT, then MEASUREMENT_ITERATIONS timed ones, and prints the
+ * mean time per operation with the standard deviation across iterations.
+ *
+ * Usage: java RubiksCubeBenchmark [name filter] [min size] [max size]
+ * e.g.   java RubiksCubeBenchmark solveDFS 2 3 > bench_output.txt
+ * or     mvn compile exec:exec@benchmark -Dbenchmark.filter=solveDFS -Dbenchmark.maxSize=3
+ *
+ * scramble() picks its own random number of moves, so its numbers are noisier than the rest.
+ * solveIDAStar runs the same search with and without SolverMetrics, taking turns iteration
+ * by iteration so both see the same JIT and machine, and prints how much slower keeping
+ * metrics makes it. The slowdown is worked out for each pair of iterations and averaged, with
+ * the standard error of that average, so drift over the run cancels out.
+ */
+public class RubiksCubeBenchmark {
+    private static final long SEED = 0x5EEDL;
+    private static final int MIN_SIZE = 2;
+    private static final int MAX_SIZE = 7;
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    // comparisons look for differences of a percent or two, so they take more samples
+    private static final int COMPARISON_ITERATIONS = 30;
+    private static final long ITERATION_NANOS = 100000000L;
+
+    // number of random moves used to set up the cube for most benchmarks
+    private static final int SETUP_MOVES = 40;
+    // isSolved cycles through this many cubes so the JIT can't hoist the call out of the loop
+    private static final int CUBE_POOL_SIZE = 16;
+    // solveDFS depth, kept small on big cubes since its branching factor grows with the size
+    private static final int SMALL_CUBE_SOLVE_DEPTH = 3;
+    private static final int BIG_CUBE_SOLVE_DEPTH = 2;
+    // solveIDAStar scramble length, deep enough that the search and not setting it up is
+    // what gets timed
+    private static final int SMALL_CUBE_IDA_STAR_DEPTH = 6;
+    private static final int BIG_CUBE_IDA_STAR_DEPTH = 4;
+
+    // results get written here so the JIT can't throw the work away
+    private static volatile long sink;
+
+    /**
+     * One benchmark. run does the operation count times in its own loop so each loop only
+     * ever calls one thing.
+     */
+    private interface Benchmark {
+        long run(int count);
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        int minSize = args.length > 1 ? Integer.parseInt(args[1]) : MIN_SIZE;
+        int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : MAX_SIZE;
+
+        System.out.printf("%-40s %4s %16s %12s%n", "Benchmark", "Size", "ns/op", "Error");
+        for (int cs = minSize; cs <= maxSize; cs++) {
+            for (int axis = 0; axis < 3; axis++) {
+                for (int layer = 0; layer < cs; layer++) {
+                    runIfMatches(filter, "makeMove[axis=" + axis + ",layer=" + layer + "]", cs,
+                                 makeMoveBenchmark(cs, axis, layer));
+                }
+            }
+            runIfMatches(filter, "scramble", cs, scrambleBenchmark(cs));
+            runIfMatches(filter, "isSolved[scrambled]", cs, isSolvedBenchmark(cs, SETUP_MOVES));
+            runIfMatches(filter, "isSolved[solved]", cs, isSolvedBenchmark(cs, 0));
+            runIfMatches(filter, "toString", cs, toStringBenchmark(cs));
+
+            int depth = cs <= 3 ? SMALL_CUBE_SOLVE_DEPTH : BIG_CUBE_SOLVE_DEPTH;
+            runIfMatches(filter, "solveDFS[depth=" + depth + "]", cs, solveDFSBenchmark(cs, depth));
+
+            int idaStarDepth = cs <= 3 ? SMALL_CUBE_IDA_STAR_DEPTH : BIG_CUBE_IDA_STAR_DEPTH;
+            compareIfMatches(filter, "solveIDAStar[depth=" + idaStarDepth, "metrics", cs,
+                             solveIDAStarBenchmark(cs, idaStarDepth, false),
+                             solveIDAStarBenchmark(cs, idaStarDepth, true));
+        }
+    }
+
+    private static Benchmark makeMoveBenchmark(int cs, final int axis, final int layer) {
+        final RubiksCube cube = scrambledCube(cs, SETUP_MOVES);
+        return new Benchmark() {
+            public long run(int count) {
+                for (int i = 0; i < count; i++) {
+                    cube.makeMove(axis, layer, 1);
+                }
+                return cube.getSticker(0, 0, 0);
+            }
+        };
+    }
+
+    private static Benchmark scrambleBenchmark(int cs) {
+        final RubiksCube cube = new RubiksCube(cs, false);
+        return new Benchmark() {
+            public long run(int count) {
+                for (int i = 0; i < count; i++) {
+                    cube.scramble();
+                }
+                return cube.getSticker(0, 0, 0);
+            }
+        };
+    }
+
+    private static Benchmark isSolvedBenchmark(int cs, int numMoves) {
+        final RubiksCube[] cubes = new RubiksCube[CUBE_POOL_SIZE];
+        for (int i = 0; i < CUBE_POOL_SIZE; i++) {
+            cubes[i] = scrambledCube(cs, numMoves, SEED + i);
+        }
+        return new Benchmark() {
+            public long run(int count) {
+                long solvedCount = 0;
+                for (int i = 0; i < count; i++) {
+                    if (cubes[i % CUBE_POOL_SIZE].isSolved()) {
+                        solvedCount++;
+                    }
+                }
+                return solvedCount;
+            }
+        };
+    }
+
+    private static Benchmark toStringBenchmark(int cs) {
+        final RubiksCube cube = scrambledCube(cs, SETUP_MOVES);
+        return new Benchmark() {
+            public long run(int count) {
+                long length = 0;
+                for (int i = 0; i < count; i++) {
+                    length += cube.toString().length();
+                }
+                return length;
+            }
+        };
+    }
+
+    private static Benchmark solveDFSBenchmark(int cs, final int depth) {
+        final RubiksCube cube = scrambledCube(cs, depth);
+        return new Benchmark() {
+            public long run(int count) {
+                // solveDFS prints every move, keep that out of the numbers
+                PrintStream out = System.out;
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                try {
+                    long moves = 0;
+                    for (int i = 0; i < count; i++) {
+                        moves += cube.solveDFS(depth, false).size();
+                    }
+                    return moves;
+                } finally {
+                    System.setOut(out);
+                }
+            }
+        };
+    }
+
+    private static Benchmark solveIDAStarBenchmark(int cs, final int depth, boolean keepMetrics) {
+        final RubiksCube cube = scrambledCube(cs, depth);
+        final IDAStarSolver solver = new IDAStarSolver();
+        if (keepMetrics) {
+            solver.setMetrics(new SolverMetrics());
+        }
+        return new Benchmark() {
+            public long run(int count) {
+                long moves = 0;
+                for (int i = 0; i < count; i++) {
+                    moves += solver.solve(cube, depth, false).size();
+                }
+                return moves;
+            }
+        };
+    }
+
+    /**
+     * Makes a cube scrambled with numMoves random moves from a fixed seed
+     */
+    private static RubiksCube scrambledCube(int cs, int numMoves) {
+        return scrambledCube(cs, numMoves, SEED);
+    }
+
+    private static RubiksCube scrambledCube(int cs, int numMoves, long seed) {
+        Random rn = new Random(seed + cs);
+        RubiksCube cube = new RubiksCube(cs, false);
+        int lastAxis = -1;
+        int lastLayer = -1;
+        for (int i = 0; i < numMoves; i++) {
+            int axis = rn.nextInt(3);
+            int layer = rn.nextInt(cs);
+            // don't let two moves on the same layer cancel out
+            if (axis == lastAxis && layer == lastLayer) {
+                i--;
+                continue;
+            }
+            cube.makeMove(axis, layer, rn.nextInt(3) + 1);
+            lastAxis = axis;
+            lastLayer = layer;
+        }
+        return cube;
+    }
+
+    private static void runIfMatches(String filter, String name, int cs, Benchmark benchmark) {
+        if (!name.contains(filter)) {
+            return;
+        }
+
+        int batch = findBatchSize(benchmark);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(benchmark, batch);
+        }
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            nanosPerOp[i] = runIteration(benchmark, batch);
+        }
+        printResult(name, cs, nanosPerOp);
+    }
+
+    /**
+     * Runs the same operation done two ways, baseline and changed, taking turns every
+     * iteration (warmup included) so the JIT doesn't compile for whichever runs first and
+     * slow drift hits both the same. Prints both and how much slower changed is.
+     * @param String namePrefix the name up to the closing bracket
+     * @param String option what changed has turned on
+     */
+    private static void compareIfMatches(String filter, String namePrefix, String option, int cs,
+                                         Benchmark baseline, Benchmark changed) {
+        if (!namePrefix.contains(filter)) {
+            return;
+        }
+
+        int baselineBatch = findBatchSize(baseline);
+        int changedBatch = findBatchSize(changed);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(baseline, baselineBatch);
+            runIteration(changed, changedBatch);
+        }
+        double[] baselineNanosPerOp = new double[COMPARISON_ITERATIONS];
+        double[] changedNanosPerOp = new double[COMPARISON_ITERATIONS];
+        double[] overheads = new double[COMPARISON_ITERATIONS];
+        for (int i = 0; i < COMPARISON_ITERATIONS; i++) {
+            baselineNanosPerOp[i] = runIteration(baseline, baselineBatch);
+            changedNanosPerOp[i] = runIteration(changed, changedBatch);
+            overheads[i] = 100 * (changedNanosPerOp[i] - baselineNanosPerOp[i]) / baselineNanosPerOp[i];
+        }
+        printResult(namePrefix + "," + option + "=off]", cs, baselineNanosPerOp);
+        printResult(namePrefix + "," + option + "=on]", cs, changedNanosPerOp);
+        double meanOverhead = mean(overheads);
+        System.out.printf("%-40s %4d %15.1f%% %11.1f%%%n", namePrefix + "," + option + " overhead]", cs,
+                          meanOverhead, standardDeviation(overheads, meanOverhead) / Math.sqrt(overheads.length));
+    }
+
+    /**
+     * Returns a batch size that takes long enough to time accurately
+     */
+    private static int findBatchSize(Benchmark benchmark) {
+        int batch = 1;
+        while (true) {
+            long start = System.nanoTime();
+            sink += benchmark.run(batch);
+            if (System.nanoTime() - start > 1000000L || batch >= (1 << 30)) {
+                return batch;
+            }
+            batch *= 2;
+        }
+    }
+
+    /**
+     * Prints the mean time per operation with the standard deviation across iterations
+     */
+    private static void printResult(String name, int cs, double[] nanosPerOp) {
+        double mean = mean(nanosPerOp);
+        System.out.printf("%-40s %4d %16.1f %12.1f%n", name, cs, mean, standardDeviation(nanosPerOp, mean));
+    }
+
+    private static double mean(double[] samples) {
+        double sum = 0;
+        for (double sample : samples) {
+            sum += sample;
+        }
+        return sum / samples.length;
+    }
+
+    private static double standardDeviation(double[] samples, double mean) {
+        double variance = 0;
+        for (double sample : samples) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        return Math.sqrt(variance / (samples.length - 1));
+    }
+
+    /**
+     * Runs batches for ITERATION_NANOS and returns the average time per operation
+     */
+    private static double runIteration(Benchmark benchmark, int batch) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            sink += benchmark.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        return (double) elapsed / ops;
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Makes scrambles from a seed, so the same seed always gives the same scrambles, either as
+ * random moves or (2x2 and 3x3 only) as a uniformly random cube state.
+ *
+ * Random moves never turn the same layer twice in a row or undo each other: moves on the
+ * same axis only go in increasing layer order, like the searches try them (see
+ * MoveOrdering), so a scramble of n moves really is n moves and not a few that cancel.
+ * Moves back to back on one axis never turn every layer of it the same amount either, since
+ * that only turns the whole cube around (a 1x1 has nothing else to do, so it still does).
+ *
+ * A random state is picked the way the cube's pieces allow instead of by turning: a random
+ * corner permutation and twists adding up to a multiple of 3, and on a 3x3 a random edge
+ * permutation with the same parity as the corners and flips adding up to an even number.
+ * Every state a real cube can reach is equally likely. The 2x2 keeps its DBL corner where
+ * it is since there are no centers to say which way the cube faces.
+ *
+ * The streams are made for parallel use. Scramble i of a stream comes from its own
+ * SplittableRandom seeded off i, so a stream gives the same scrambles in the same places
+ * however it's split up. A generator itself is not thread safe, use split() to get one for
+ * another thread.
+ */
+public class ScrambleGenerator {
+    private static final int NUM_AXES = 3;
+    private static final int NUM_SIDES = 6;
+    private static final int CORNER_BITS = 5;
+    private static final int EDGE_BITS = 5;
+    private static final int CENTER_BITS = 3;
+    // odd constant to spread stream indexes out before mixing them into seeds
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private int cubeSize;
+    private SplittableRandom random;
+
+    /**
+     * Creates a generator with a seed nobody else is likely to pick
+     */
+    public ScrambleGenerator(int cubeSize) {
+        this(cubeSize, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @param int cubeSize size of the cubes to scramble
+     * @param long seed generators with the same seed and size make the same scrambles
+     */
+    public ScrambleGenerator(int cubeSize, long seed) {
+        this(cubeSize, new SplittableRandom(seed));
+    }
+
+    private ScrambleGenerator(int cubeSize, SplittableRandom random) {
+        if (cubeSize < 1) {
+            throw new IllegalArgumentException("Cube size must be at least 1");
+        }
+        this.cubeSize = cubeSize;
+        this.random = random;
+    }
+
+    /**
+     * Returns how many random moves a scramble needs to mix a cube of cubeSize up properly,
+     * about what competitions use
+     */
+    public static int defaultLength(int cubeSize) {
+        if (cubeSize <= 2) {
+            return 11;
+        }
+        if (cubeSize == 3) {
+            return 25;
+        }
+        return 20 * (cubeSize - 2);
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns a new generator whose scrambles don't overlap this one's, for another thread
+     */
+    public ScrambleGenerator split() {
+        return new ScrambleGenerator(this.cubeSize, this.random.split());
+    }
+
+    /**
+     * Returns length random moves, none of which cancel the one before
+     */
+    public MovePath nextMoves(int length) {
+        MovePath path = new MovePath(this.cubeSize, length);
+        this.nextMoves(path, length);
+        return path;
+    }
+
+    /**
+     * Clears path and fills it with length random moves, so a caller making lots of
+     * scrambles doesn't need a new path for each
+     */
+    public void nextMoves(MovePath path, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Scramble length can't be negative");
+        }
+        if (path.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Path is for a cube of size " + path.getCubeSize());
+        }
+        fillMoves(this.random, path, length);
+    }
+
+    /**
+     * Returns a solved cube scrambled with length random moves
+     */
+    public RubiksCube nextScrambledCube(int length) {
+        RubiksCube cube = new RubiksCube(this.cubeSize, false);
+        this.nextMoves(length).apply(cube);
+        return cube;
+    }
+
+    /**
+     * Returns a uniformly random state as cubies, the cheap way to get lots of them
+     * @throws IllegalArgumentException if the cube isn't a 2x2 or 3x3
+     */
+    public CubieCube nextRandomCubies() {
+        return randomCubies(this.cubeSize, this.random);
+    }
+
+    /**
+     * Returns a cube in a uniformly random state
+     * @throws IllegalArgumentException if the cube isn't a 2x2 or 3x3
+     */
+    public RubiksCube nextRandomState() {
+        return toCube(this.nextRandomCubies());
+    }
+
+    /**
+     * Returns count scrambles of length random moves. The stream can be run in parallel and
+     * gives the same scrambles either way.
+     */
+    public Stream<MovePath> scrambles(long count, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Scramble length can't be negative");
+        }
+        int cs = this.cubeSize;
+        long seed = this.random.nextLong();
+        return LongStream.range(0, count).mapToObj(i -> {
+            MovePath path = new MovePath(cs, length);
+            fillMoves(streamRandom(seed, i), path, length);
+            return path;
+        });
+    }
+
+    /**
+     * Returns count cubes in uniformly random states. The stream can be run in parallel and
+     * gives the same cubes either way.
+     * @throws IllegalArgumentException if the cube isn't a 2x2 or 3x3
+     */
+    public Stream<RubiksCube> randomStates(long count) {
+        checkCubieSize(this.cubeSize);
+        int cs = this.cubeSize;
+        long seed = this.random.nextLong();
+        return LongStream.range(0, count).mapToObj(i -> toCube(randomCubies(cs, streamRandom(seed, i))));
+    }
+
+    /**
+     * Returns the random scramble i of a stream uses, mixed so nearby indexes don't give
+     * overlapping sequences
+     */
+    private static SplittableRandom streamRandom(long seed, long index) {
+        return new SplittableRandom(LongHashSet.mix(seed + (index + 1) * GOLDEN_GAMMA));
+    }
+
+    private static void fillMoves(SplittableRandom random, MovePath path, int length) {
+        int cs = path.getCubeSize();
+        path.clear();
+        int lastAxis = -1;
+        int lastLayer = -1;
+        // turns of every move so far in this axis' run while they've turned layers 0, 1, 2...
+        // all the same amount, 0 once they haven't
+        int rotationTurns = 0;
+        while (path.getLength() < length) {
+            int choice = random.nextInt(NUM_AXES * cs);
+            int axis = choice / cs;
+            int layer = choice % cs;
+            if (!MoveOrdering.canFollow(cs, lastAxis, lastLayer, axis, layer)) {
+                continue;
+            }
+            int numTurns = random.nextInt(3) + 1;
+            int nextRotationTurns = nextRotationTurns(rotationTurns, lastAxis, lastLayer, axis, layer, numTurns);
+            if (nextRotationTurns != 0 && layer == cs - 1 && cs > 1) {
+                // every layer of the axis turned the same amount only turns the whole cube
+                continue;
+            }
+            path.push(axis, layer, numTurns);
+            lastAxis = axis;
+            lastLayer = layer;
+            rotationTurns = nextRotationTurns;
+        }
+    }
+
+    /**
+     * Returns what fillMoves' rotationTurns becomes after a move. Layers of a run only ever
+     * go up (see MoveOrdering), so a run turns the whole cube exactly when it turns layers
+     * 0 to cubeSize - 1 one after another, all by the same amount.
+     */
+    private static int nextRotationTurns(int rotationTurns, int lastAxis, int lastLayer, int axis, int layer,
+                                         int numTurns) {
+        if (axis != lastAxis) {
+            return layer == 0 ? numTurns : 0;
+        }
+        return layer == lastLayer + 1 && numTurns == rotationTurns ? numTurns : 0;
+    }
+
+    private static CubieCube randomCubies(int cs, SplittableRandom random) {
+        checkCubieSize(cs);
+        // the 2x2 leaves its DBL corner alone and picks the other seven
+        int numCorners = cs == 2 ? CubieGeometry.DBL_SLOT : CubieGeometry.NUM_CORNERS;
+        int[] corners = identity(CubieGeometry.NUM_CORNERS);
+        int cornerParity = shuffle(corners, numCorners, random);
+        long cornerWord = 0;
+        int twistSum = 0;
+        for (int slot = 0; slot < numCorners; slot++) {
+            int twist = slot == numCorners - 1 ? (3 - twistSum % 3) % 3 : random.nextInt(3);
+            twistSum += twist;
+            cornerWord |= (long) (corners[slot] | (twist << 3)) << (CORNER_BITS * slot);
+        }
+        for (int slot = numCorners; slot < CubieGeometry.NUM_CORNERS; slot++) {
+            cornerWord |= (long) corners[slot] << (CORNER_BITS * slot);
+        }
+        if (cs == 2) {
+            return CubieCube.fromWords(cs, cornerWord, 0);
+        }
+
+        for (int side = 0; side < NUM_SIDES; side++) {
+            cornerWord |= (long) side << (CubieGeometry.NUM_CORNERS * CORNER_BITS + CENTER_BITS * side);
+        }
+        int[] edges = identity(CubieGeometry.NUM_EDGES);
+        int edgeParity = shuffle(edges, CubieGeometry.NUM_EDGES, random);
+        if (edgeParity != cornerParity) {
+            int temp = edges[0];
+            edges[0] = edges[1];
+            edges[1] = temp;
+        }
+        long edgeWord = 0;
+        int flipSum = 0;
+        for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+            int flip = slot == CubieGeometry.NUM_EDGES - 1 ? flipSum & 1 : random.nextInt(2);
+            flipSum += flip;
+            edgeWord |= (long) (edges[slot] | (flip << 4)) << (EDGE_BITS * slot);
+        }
+        return CubieCube.fromWords(cs, cornerWord, edgeWord);
+    }
+
+    private static int[] identity(int length) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    /**
+     * Shuffles the first count values in place (Fisher-Yates)
+     * @return int 1 if the shuffle was an odd permutation, 0 if even
+     */
+    private static int shuffle(int[] values, int count, SplittableRandom random) {
+        int parity = 0;
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            if (j != i) {
+                int temp = values[i];
+                values[i] = values[j];
+                values[j] = temp;
+                parity ^= 1;
+            }
+        }
+        return parity;
+    }
+
+    private static void checkCubieSize(int cs) {
+        if (cs != 2 && cs != 3) {
+            throw new IllegalArgumentException("Random states can only be made for a 2x2 or 3x3");
+        }
+    }
+
+    private static RubiksCube toCube(CubieCube cubies) {
+        try {
+            return cubies.toCube();
+        } catch (Exception e) {
+            // every state made here is a real one
+            throw new IllegalStateException("Made an impossible cube state", e);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+import java.util.HashMap;
+import java.util.Stack;
+
+/**
+ * Remembers solutions so a state that's been solved before, in any orientation, mirror image
+ * or color scheme, gets its solution back without searching again.
+ *
+ * States are keyed on CubeSymmetry.canonicalKey, and solutions are stored as the moves that
+ * solve the canonical form of the state. Handing one back translates every move through the
+ * symmetry between the canonical form and the caller's cube (CubeSymmetry.conjugateMove), so
+ * the moves are right for the way the caller's cube is facing. Colors don't need
+ * translating, moves don't care what color anything is. Every solution handed back is made
+ * on a copy of the cube first and dropped if it doesn't solve it, so even two states that
+ * happen to share a 64 bit key can't give a wrong answer.
+ *
+ * Size is bounded the W-TinyLFU way. New entries go into a small window kept in least
+ * recently used order. What falls out of the window only makes it into the main part of
+ * the cache if it's been asked for more often than what it would push out, going by a
+ * count-min sketch of how often every key has been asked for lately (4 bit counters that
+ * are all halved every 10 * maxEntries requests, so old popularity fades). A burst of
+ * one-off states can't push out the scrambles that keep coming back. Entries also expire a
+ * fixed time after they were put in.
+ *
+ * Thread safe: the canonical keys are worked out outside of the lock and only the table
+ * updates are synchronized, so one cache can sit in front of every solver thread.
+ */
+public class SolutionCache {
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private static final int WINDOW_REGION = 0;
+    private static final int MAIN_REGION = 1;
+    // count-min sketch: 4 rows of 4 bit counters, 16 counters to a long
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final long[] SKETCH_SEEDS = {
+        0x97CB3127F7B5C4E3L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private int maxEntries;
+    private long ttlNanos;
+    private int numSymmetries;
+
+    private HashMap<Long, Entry> entries;
+    // most recently used at the head of each region, evicted from the tail
+    private Entry[] heads = new Entry[2];
+    private Entry[] tails = new Entry[2];
+    private int[] regionSizes = new int[2];
+    private int maxWindowSize;
+
+    private long[] sketch;
+    private int sketchMask;
+    private int sampleSize;
+    private int numSampled;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Creates a cache that knows all 48 symmetries
+     * @param int maxEntries most solutions to hold
+     * @param long ttlMillis how long a solution is kept after it's put in, NO_EXPIRY for
+     * until it's evicted
+     */
+    public SolutionCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, CubeSymmetry.ROTATIONS_AND_REFLECTIONS);
+    }
+
+    /**
+     * @param int numSymmetries which states count as the same, CubeSymmetry.IDENTITY_ONLY,
+     * ROTATIONS or ROTATIONS_AND_REFLECTIONS. Fewer makes keys cheaper to work out and hits
+     * rarer.
+     */
+    public SolutionCache(int maxEntries, long ttlMillis, int numSymmetries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A cache has to hold at least one solution");
+        }
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("Time to live must be at least a millisecond");
+        }
+        CubeSymmetry.forSize(1, numSymmetries);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMillis == NO_EXPIRY || ttlMillis >= Long.MAX_VALUE / 1000000
+                      ? NO_EXPIRY : ttlMillis * 1000000;
+        this.numSymmetries = numSymmetries;
+        this.entries = new HashMap<Long, Entry>();
+        this.maxWindowSize = Math.max(1, maxEntries / 100);
+
+        // a long of counters per entry, so keys seldom share all their counters
+        int numWords = Integer.highestOneBit(Math.max(2, Math.min(maxEntries, 1 << 24)) - 1) << 1;
+        this.sketch = new long[numWords];
+        this.sketchMask = numWords * 16 - 1;
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * maxEntries);
+    }
+
+    /**
+     * Returns a solution for cube if one is cached, translated to the way cube is facing
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if there isn't one
+     */
+    public Stack<int[]> get(RubiksCube cube) {
+        return this.get(cube, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a solution for cube if one of at most maxLength moves is cached. A longer one
+     * counts as a miss but stays cached.
+     */
+    public Stack<int[]> get(RubiksCube cube, int maxLength) {
+        CubeSymmetry symmetry = CubeSymmetry.forSize(cube.getCubeSize(), this.numSymmetries);
+        byte[] stickers = new byte[6 * cube.getCubeSize() * cube.getCubeSize()];
+        cube.copyStickersTo(stickers, 0);
+        int canonical = symmetry.canonicalSymmetry(stickers);
+        long key = cacheKey(symmetry.key(stickers, canonical), cube.getCubeSize());
+
+        int[] canonicalMoves = this.lookUp(key, cube.getCubeSize());
+        if (canonicalMoves == null || canonicalMoves.length > maxLength) {
+            this.countLookup(false);
+            return null;
+        }
+        MoveTable moveTable = MoveTable.forSize(cube.getCubeSize());
+        int back = symmetry.getInverse(canonical);
+        Stack<int[]> solution = new Stack<int[]>();
+        RubiksCube check = new RubiksCube(cube);
+        for (int canonicalMove : canonicalMoves) {
+            int move = symmetry.conjugateMove(back, canonicalMove);
+            int axis = moveTable.getAxis(move);
+            int layer = moveTable.getLayer(move);
+            int numTurns = moveTable.getNumTurns(move);
+            check.makeMove(axis, layer, numTurns);
+            solution.push(new int[] {axis, layer, numTurns});
+        }
+        if (!check.isSolved()) {
+            // a different state with the same key, which is as good as not having it
+            this.forget(key);
+            this.countLookup(false);
+            return null;
+        }
+        this.countLookup(true);
+        return solution;
+    }
+
+    /**
+     * Remembers solution as the way to solve cube, replacing what's there for it
+     * @param Stack<int[]> solution {axis, layer, numTurns} moves with the first move at the
+     * bottom, that solve cube
+     */
+    public void put(RubiksCube cube, Stack<int[]> solution) {
+        int cs = cube.getCubeSize();
+        CubeSymmetry symmetry = CubeSymmetry.forSize(cs, this.numSymmetries);
+        byte[] stickers = new byte[6 * cs * cs];
+        cube.copyStickersTo(stickers, 0);
+        int canonical = symmetry.canonicalSymmetry(stickers);
+        long key = cacheKey(symmetry.key(stickers, canonical), cs);
+
+        MoveTable moveTable = MoveTable.forSize(cs);
+        int[] canonicalMoves = new int[solution.size()];
+        for (int i = 0; i < canonicalMoves.length; i++) {
+            int[] move = solution.get(i);
+            canonicalMoves[i] = symmetry.conjugateMove(canonical, moveTable.getMoveIndex(move[0], move[1], move[2]));
+        }
+        this.store(key, cs, canonicalMoves);
+    }
+
+    /**
+     * Returns how many solutions are cached, counting ones that have expired but haven't
+     * been noticed yet
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the share of gets that handed back a solution, 0 before any
+     */
+    public synchronized double getHitRate() {
+        long requests = this.hits + this.misses;
+        return requests == 0 ? 0 : (double) this.hits / requests;
+    }
+
+    /**
+     * Returns how many solutions were dropped to make room, or never let in
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    public synchronized long getExpirations() {
+        return this.expirations;
+    }
+
+    /**
+     * Empties the cache, keeping the counts
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        for (int region = 0; region < 2; region++) {
+            this.heads[region] = null;
+            this.tails[region] = null;
+            this.regionSizes[region] = 0;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d solutions, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d expirations",
+                             this.entries.size(), this.hits, this.misses, 100 * this.getHitRate(),
+                             this.evictions, this.expirations);
+    }
+
+    /**
+     * Returns the canonical moves cached for key, without counting a hit or a miss since the
+     * caller may still turn them down
+     */
+    private synchronized int[] lookUp(long key, int cubeSize) {
+        this.recordAccess(key);
+        Entry entry = this.entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() < 0) {
+            this.remove(entry);
+            this.expirations++;
+            entry = null;
+        }
+        if (entry == null || entry.cubeSize != cubeSize) {
+            return null;
+        }
+        this.unlink(entry);
+        this.pushHead(entry);
+        return entry.moves;
+    }
+
+    private synchronized void countLookup(boolean hit) {
+        if (hit) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+    }
+
+    private synchronized void store(long key, int cubeSize, int[] moves) {
+        long expiresAt = this.ttlNanos == NO_EXPIRY ? Long.MAX_VALUE : System.nanoTime() + this.ttlNanos;
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            entry.cubeSize = cubeSize;
+            entry.moves = moves;
+            entry.expiresAt = expiresAt;
+            this.unlink(entry);
+            this.pushHead(entry);
+            return;
+        }
+
+        entry = new Entry(key, cubeSize, moves, expiresAt);
+        entry.region = WINDOW_REGION;
+        this.entries.put(key, entry);
+        this.pushHead(entry);
+        if (this.regionSizes[WINDOW_REGION] <= this.maxWindowSize) {
+            return;
+        }
+
+        // the window's oldest moves on to main if there's room, or if it's wanted more
+        // than main's oldest
+        Entry candidate = this.tails[WINDOW_REGION];
+        this.unlink(candidate);
+        int maxMainSize = this.maxEntries - this.maxWindowSize;
+        if (this.regionSizes[MAIN_REGION] < maxMainSize) {
+            candidate.region = MAIN_REGION;
+            this.pushHead(candidate);
+            return;
+        }
+        Entry victim = this.tails[MAIN_REGION];
+        if (victim == null) {
+            this.entries.remove(candidate.key);
+            this.evictions++;
+            return;
+        }
+        boolean victimExpired = victim.expiresAt - System.nanoTime() < 0;
+        if (victimExpired || this.frequency(candidate.key) > this.frequency(victim.key)) {
+            this.remove(victim);
+            if (victimExpired) {
+                this.expirations++;
+            } else {
+                this.evictions++;
+            }
+            candidate.region = MAIN_REGION;
+            this.pushHead(candidate);
+        } else {
+            this.entries.remove(candidate.key);
+            this.evictions++;
+        }
+    }
+
+    private synchronized void forget(long key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            this.remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        this.unlink(entry);
+        this.entries.remove(entry.key);
+    }
+
+    private void pushHead(Entry entry) {
+        int region = entry.region;
+        entry.previous = null;
+        entry.next = this.heads[region];
+        if (this.heads[region] != null) {
+            this.heads[region].previous = entry;
+        } else {
+            this.tails[region] = entry;
+        }
+        this.heads[region] = entry;
+        this.regionSizes[region]++;
+    }
+
+    private void unlink(Entry entry) {
+        int region = entry.region;
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            this.heads[region] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else {
+            this.tails[region] = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        this.regionSizes[region]--;
+    }
+
+    /**
+     * Counts a request for key in the sketch, halving every counter once enough have been
+     * counted
+     */
+    private void recordAccess(long key) {
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int counter = this.counterIndex(key, row);
+            int shift = (counter & 15) << 2;
+            long word = this.sketch[counter >>> 4];
+            if (((word >>> shift) & MAX_FREQUENCY) < MAX_FREQUENCY) {
+                this.sketch[counter >>> 4] = word + (1L << shift);
+            }
+        }
+        if (++this.numSampled >= this.sampleSize) {
+            for (int i = 0; i < this.sketch.length; i++) {
+                this.sketch[i] = (this.sketch[i] >>> 1) & 0x7777777777777777L;
+            }
+            this.numSampled /= 2;
+        }
+    }
+
+    /**
+     * Returns about how often key has been asked for lately, the smallest of its counters
+     */
+    private int frequency(long key) {
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            int counter = this.counterIndex(key, row);
+            frequency = Math.min(frequency, (int) (this.sketch[counter >>> 4] >>> ((counter & 15) << 2)) & MAX_FREQUENCY);
+        }
+        return frequency;
+    }
+
+    private int counterIndex(long key, int row) {
+        return (int) LongHashSet.mix(key ^ SKETCH_SEEDS[row]) & this.sketchMask;
+    }
+
+    private static long cacheKey(long canonicalKey, int cubeSize) {
+        return canonicalKey ^ LongHashSet.mix(cubeSize);
+    }
+
+    private static class Entry {
+        long key;
+        int cubeSize;
+        int[] moves;
+        long expiresAt;
+        int region;
+        Entry previous;
+        Entry next;
+
+        Entry(long key, int cubeSize, int[] moves, long expiresAt) {
+            this.key = key;
+            this.cubeSize = cubeSize;
+            this.moves = moves;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
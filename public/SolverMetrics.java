@@ -0,0 +1,258 @@
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters for what solvers are doing, so a slow solve shows where its time went: how many
+ * nodes got expanded (and how fast), how deep, how many got cut off by the heuristic or as
+ * duplicates, how often tables knew something about a state and how long each phase took.
+ *
+ * Give one to a solver with CubeSolver.setMetrics. Any number of solvers on any number of
+ * threads can share one. Solvers without one skip every bit of this, so leaving it off costs
+ * nothing but a null check here and there.
+ *
+ * A solver doesn't touch the shared counters for every node, that would be too slow. Each
+ * search counts into its own Recorder with plain longs and adds them to the shared LongAdders
+ * every FLUSH_INTERVAL nodes and when it finishes, so the counters can lag a running search a
+ * little. The numbers can be read with the getters, over JMX after register, or pushed to a
+ * Listener at the end of every solve.
+ *
+ * What counts as what:
+ *   node expanded     a state whose moves got tried
+ *   heuristic prune   a state cut off because the heuristic says it's too far from solved
+ *   duplicate prune   a state cut off because it's been searched before, through the
+ *                     transposition table or a seen set, or a phase 2 start that phase 1
+ *                     already covered
+ *   table probe/hit   a lookup in a transposition table or the other side's seen set, and
+ *                     one that knew something
+ */
+public class SolverMetrics implements SolverMetricsMXBean {
+    // nodes deeper than this all land in the last bucket
+    public static final int MAX_TRACKED_DEPTH = 64;
+
+    // how many nodes a recorder counts before adding them to the shared counters
+    private static final int FLUSH_INTERVAL = 1 << 14;
+
+    private LongAdder solves = new LongAdder();
+    private LongAdder solveNanos = new LongAdder();
+    private LongAdder nodesExpanded = new LongAdder();
+    private LongAdder heuristicPrunes = new LongAdder();
+    private LongAdder duplicatePrunes = new LongAdder();
+    private LongAdder tableProbes = new LongAdder();
+    private LongAdder tableHits = new LongAdder();
+    private LongAdder[] depthHistogram = new LongAdder[MAX_TRACKED_DEPTH];
+    private Map<String, LongAdder> phaseNanos = new ConcurrentHashMap<String, LongAdder>();
+    private List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * Gets told whenever a solve using the metrics finishes
+     */
+    public interface Listener {
+
+        /**
+         * Called on the thread that ran the solve, after its counts have been added in
+         * @param String solverName which solver it was, like "ida" or "twophase"
+         * @param long elapsedNanos how long the solve took
+         * @param SolverMetrics metrics the metrics the solve counted into
+         */
+        void solveFinished(String solverName, long elapsedNanos, SolverMetrics metrics);
+    }
+
+    public SolverMetrics() {
+        for (int i = 0; i < MAX_TRACKED_DEPTH; i++) {
+            this.depthHistogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBeanServer as
+     * RubiksCube:type=SolverMetrics,name=name
+     * @throws JMException if the name isn't valid or is already taken
+     */
+    public void register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("RubiksCube:type=SolverMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    public long getSolves() {
+        return this.solves.sum();
+    }
+
+    public long getNodesExpanded() {
+        return this.nodesExpanded.sum();
+    }
+
+    public double getNodesPerSecond() {
+        long nanos = this.solveNanos.sum();
+        return nanos == 0 ? 0 : this.nodesExpanded.sum() * 1e9 / nanos;
+    }
+
+    public long[] getDepthHistogram() {
+        long[] histogram = new long[MAX_TRACKED_DEPTH];
+        for (int i = 0; i < MAX_TRACKED_DEPTH; i++) {
+            histogram[i] = this.depthHistogram[i].sum();
+        }
+        return histogram;
+    }
+
+    public long getHeuristicPrunes() {
+        return this.heuristicPrunes.sum();
+    }
+
+    public long getDuplicatePrunes() {
+        return this.duplicatePrunes.sum();
+    }
+
+    public long getTableProbes() {
+        return this.tableProbes.sum();
+    }
+
+    public long getTableHits() {
+        return this.tableHits.sum();
+    }
+
+    public double getTableHitRate() {
+        long probes = this.tableProbes.sum();
+        return probes == 0 ? 0 : (double) this.tableHits.sum() / probes;
+    }
+
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> entry : this.phaseNanos.entrySet()) {
+            millis.put(entry.getKey(), entry.getValue().sum() / 1_000_000L);
+        }
+        return millis;
+    }
+
+    /**
+     * Zeroes every counter. Counts from searches still running when it's called can land on
+     * either side of it.
+     */
+    public void reset() {
+        this.solves.reset();
+        this.solveNanos.reset();
+        this.nodesExpanded.reset();
+        this.heuristicPrunes.reset();
+        this.duplicatePrunes.reset();
+        this.tableProbes.reset();
+        this.tableHits.reset();
+        for (LongAdder adder : this.depthHistogram) {
+            adder.reset();
+        }
+        for (LongAdder adder : this.phaseNanos.values()) {
+            adder.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("solves=%d nodes=%d nodes/s=%.0f heuristicPrunes=%d duplicatePrunes=%d "
+                             + "tableHitRate=%.3f phaseMillis=%s", this.getSolves(), this.getNodesExpanded(),
+                             this.getNodesPerSecond(), this.getHeuristicPrunes(), this.getDuplicatePrunes(),
+                             this.getTableHitRate(), this.getPhaseMillis());
+    }
+
+    /**
+     * Returns a recorder for one search to count into. Recorders aren't thread safe, each
+     * thread needs its own.
+     */
+    Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Adds time to a phase, straight to the shared counters since phases are few and long
+     */
+    void addPhaseNanos(String phase, long nanos) {
+        this.phaseNanos.computeIfAbsent(phase, name -> new LongAdder()).add(nanos);
+    }
+
+    /**
+     * Counts a finished solve and tells the listeners
+     */
+    void solveFinished(String solverName, long elapsedNanos) {
+        this.solves.increment();
+        this.solveNanos.add(elapsedNanos);
+        for (Listener listener : this.listeners) {
+            listener.solveFinished(solverName, elapsedNanos, this);
+        }
+    }
+
+    /**
+     * Counts for one search, kept in plain fields and added to the shared counters in batches.
+     * Expanding a node is one increment of its depth's bucket and one countdown, the node
+     * count is the histogram's total worked out when it's flushed.
+     */
+    class Recorder {
+        private long heuristicPrunes;
+        private long duplicatePrunes;
+        private long tableProbes;
+        private long tableHits;
+        private long[] depthHistogram = new long[MAX_TRACKED_DEPTH];
+        private int untilFlush = FLUSH_INTERVAL;
+
+        private Recorder() {
+        }
+
+        void expanded(int depth) {
+            this.depthHistogram[Math.min(depth, MAX_TRACKED_DEPTH - 1)]++;
+            if (--this.untilFlush == 0) {
+                this.flush();
+            }
+        }
+
+        void heuristicPrune() {
+            this.heuristicPrunes++;
+        }
+
+        void duplicatePrune() {
+            this.duplicatePrunes++;
+        }
+
+        void tableProbe(boolean hit) {
+            this.tableProbes++;
+            if (hit) {
+                this.tableHits++;
+            }
+        }
+
+        /**
+         * Adds everything counted since the last flush to the shared counters
+         */
+        void flush() {
+            SolverMetrics metrics = SolverMetrics.this;
+            metrics.heuristicPrunes.add(this.heuristicPrunes);
+            metrics.duplicatePrunes.add(this.duplicatePrunes);
+            metrics.tableProbes.add(this.tableProbes);
+            metrics.tableHits.add(this.tableHits);
+            long nodesExpanded = 0;
+            for (int i = 0; i < MAX_TRACKED_DEPTH; i++) {
+                if (this.depthHistogram[i] != 0) {
+                    nodesExpanded += this.depthHistogram[i];
+                    metrics.depthHistogram[i].add(this.depthHistogram[i]);
+                    this.depthHistogram[i] = 0;
+                }
+            }
+            metrics.nodesExpanded.add(nodesExpanded);
+            this.heuristicPrunes = 0;
+            this.duplicatePrunes = 0;
+            this.tableProbes = 0;
+            this.tableHits = 0;
+            this.untilFlush = FLUSH_INTERVAL;
+        }
+    }
+}
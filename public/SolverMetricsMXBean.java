@@ -0,0 +1,43 @@
+import java.util.Map;
+
+/**
+ * What a SolverMetrics shows over JMX (see SolverMetrics.register)
+ */
+public interface SolverMetricsMXBean {
+
+    long getSolves();
+
+    long getNodesExpanded();
+
+    /**
+     * Nodes expanded per second of solving, with the solving time of every solve added up
+     * even when they ran at the same time on different threads
+     */
+    double getNodesPerSecond();
+
+    /**
+     * Index i is how many nodes were expanded i moves into a search, the last index counts
+     * everything at least that deep
+     */
+    long[] getDepthHistogram();
+
+    long getHeuristicPrunes();
+
+    long getDuplicatePrunes();
+
+    long getTableProbes();
+
+    long getTableHits();
+
+    /**
+     * Fraction of table probes that knew something about the state, 0 if there weren't any
+     */
+    double getTableHitRate();
+
+    /**
+     * Milliseconds spent in each phase of the solvers, by phase name
+     */
+    Map<String, Long> getPhaseMillis();
+
+    void reset();
+}
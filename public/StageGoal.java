@@ -0,0 +1,267 @@
+import java.util.Arrays;
+
+/**
+ * The usual stages of a layer by layer solve as goals: centers, the cross, the first layer
+ * and the first two layers, all built on whichever side is picked as the first one.
+ *
+ * A stage is a set of stickers split up by side, and it's reached when the stickers each
+ * side has in the set are all one color. That's the same thing as "solved relative to the
+ * centers" on a 3x3, without caring which color the first side is, and it works the same
+ * on every size: the cross is every cubie touching the first side but its corners, and the
+ * stages all include every side's centers so their pieces line up with them. The stages
+ * built on a first side are tied to that side, so searching for them on a 2x2 takes all 18
+ * moves (see CubeGoal.isOrientationInvariant).
+ *
+ * The estimate is the StickerHeuristic idea over just the stage's stickers. A side's
+ * mismatch is how many of its stage stickers don't share their most common color, and a
+ * move can only fix as many as it moves, so dividing by the most stage stickers any move
+ * moves (in total, or of one side) can't overestimate.
+ *
+ * Goals are immutable and thread safe.
+ */
+public class StageGoal implements CubeGoal {
+    private static final int NUM_SIDES = 6;
+    private static final int NUM_COLORS = 6;
+
+    private int cubeSize;
+    // whether the stage is on every side alike, so the cube facing another way doesn't matter
+    private boolean anyOrientation;
+    // the stage's stickers, side by side: side s has positions[sideStart[s]] up to
+    // positions[sideStart[s + 1] - 1]
+    private int[] positions;
+    private int[] sideStart = new int[NUM_SIDES + 1];
+    // the most stage stickers one move moves, in total and on each side
+    private int maxMoved;
+    private int[] maxMovedOnSide = new int[NUM_SIDES];
+
+    /**
+     * @param int cubeSize size of the cubes the goal is for
+     * @param boolean[] inStage which packed stickers are part of the stage
+     * @param boolean anyOrientation whether inStage is the same on every side
+     */
+    private StageGoal(int cubeSize, boolean[] inStage, boolean anyOrientation) {
+        this.cubeSize = cubeSize;
+        this.anyOrientation = anyOrientation;
+        int sideLength = cubeSize * cubeSize;
+        int count = 0;
+        for (boolean in : inStage) {
+            if (in) {
+                count++;
+            }
+        }
+        this.positions = new int[count];
+        count = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            this.sideStart[side] = count;
+            for (int i = side * sideLength; i < (side + 1) * sideLength; i++) {
+                if (inStage[i]) {
+                    this.positions[count++] = i;
+                }
+            }
+        }
+        this.sideStart[NUM_SIDES] = count;
+
+        MoveTable moveTable = MoveTable.forSize(cubeSize);
+        for (int move = 0; move < moveTable.getNumMoves(); move++) {
+            int[] src = moveTable.getSources(move);
+            int moved = 0;
+            for (int side = 0; side < NUM_SIDES; side++) {
+                int movedOnSide = 0;
+                for (int k = this.sideStart[side]; k < this.sideStart[side + 1]; k++) {
+                    if (src[this.positions[k]] != this.positions[k]) {
+                        movedOnSide++;
+                    }
+                }
+                moved += movedOnSide;
+                this.maxMovedOnSide[side] = Math.max(this.maxMovedOnSide[side], movedOnSide);
+            }
+            this.maxMoved = Math.max(this.maxMoved, moved);
+        }
+    }
+
+    /**
+     * Returns the goal of every side being one color, the same as RubiksCube.isSolved but
+     * with an estimate
+     */
+    public static StageGoal solved(int cubeSize) {
+        return new StageGoal(cubeSize, select(cubeSize, -1, -1, true), true);
+    }
+
+    /**
+     * Returns the goal of every side's centers being one color, the stickers that aren't
+     * on an edge of their side. It's always reached on a 2x2, which has no centers, and on a
+     * 3x3, whose sides each have one center sticker, even though slice moves move them.
+     */
+    public static StageGoal centers(int cubeSize) {
+        return new StageGoal(cubeSize, select(cubeSize, -1, -1, false), true);
+    }
+
+    /**
+     * Returns the goal of the cross on firstSide: every cubie touching it except the
+     * corners, lined up with the centers
+     * @param int firstSide side the cross is on, 0 to 5 like the gameStateArr constructor
+     */
+    public static StageGoal cross(int cubeSize, int firstSide) {
+        return new StageGoal(cubeSize, select(cubeSize, firstSide, 0, false), false);
+    }
+
+    /**
+     * Returns the goal of the whole layer on firstSide being solved
+     * @param int firstSide side the layer is on, 0 to 5 like the gameStateArr constructor
+     */
+    public static StageGoal firstLayer(int cubeSize, int firstSide) {
+        return new StageGoal(cubeSize, select(cubeSize, firstSide, 0, true), false);
+    }
+
+    /**
+     * Returns the goal of every layer but the one across from firstSide being solved (F2L
+     * on a 3x3)
+     * @param int firstSide side the first layer is on, 0 to 5 like the gameStateArr
+     * constructor
+     */
+    public static StageGoal firstTwoLayers(int cubeSize, int firstSide) {
+        return new StageGoal(cubeSize, select(cubeSize, firstSide, cubeSize - 2, true), false);
+    }
+
+    public int getCubeSize() {
+        return this.cubeSize;
+    }
+
+    /**
+     * Returns how many stickers the stage is made of
+     */
+    public int getNumStickers() {
+        return this.positions.length;
+    }
+
+    /**
+     * @throws IllegalArgumentException if cube isn't the size the goal is for
+     */
+    public boolean isReached(RubiksCube cube) {
+        this.checkSize(cube);
+        for (int side = 0; side < NUM_SIDES; side++) {
+            int start = this.sideStart[side];
+            int end = this.sideStart[side + 1];
+            if (start == end) {
+                continue;
+            }
+            int color = cube.getPackedSticker(this.positions[start]);
+            for (int k = start + 1; k < end; k++) {
+                if (cube.getPackedSticker(this.positions[k]) != color) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true for solved and centers, which are the same on every side, and false for
+     * the stages built on a first side
+     */
+    public boolean isOrientationInvariant() {
+        return this.anyOrientation;
+    }
+
+    /**
+     * @throws IllegalArgumentException if cube isn't the size the goal is for
+     */
+    public int estimate(RubiksCube cube) {
+        this.checkSize(cube);
+        int[] colorCount = new int[NUM_COLORS];
+        int totalMismatch = 0;
+        int sideBound = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            int start = this.sideStart[side];
+            int end = this.sideStart[side + 1];
+            if (start == end) {
+                continue;
+            }
+            for (int color = 0; color < NUM_COLORS; color++) {
+                colorCount[color] = 0;
+            }
+            int mostCommon = 0;
+            for (int k = start; k < end; k++) {
+                int count = ++colorCount[cube.getPackedSticker(this.positions[k])];
+                if (count > mostCommon) {
+                    mostCommon = count;
+                }
+            }
+            int sideMismatch = end - start - mostCommon;
+            totalMismatch += sideMismatch;
+            if (sideMismatch > 0) {
+                sideBound = Math.max(sideBound, ceilDiv(sideMismatch, this.maxMovedOnSide[side]));
+            }
+        }
+        if (totalMismatch == 0) {
+            return 0;
+        }
+        return Math.max(sideBound, ceilDiv(totalMismatch, this.maxMoved));
+    }
+
+    private void checkSize(RubiksCube cube) {
+        if (cube.getCubeSize() != this.cubeSize) {
+            throw new IllegalArgumentException("Goal is for cubes of size " + this.cubeSize);
+        }
+    }
+
+    /**
+     * Picks out the stickers of a stage: every side's centers, plus every sticker of the
+     * cubies at most maxDepth layers in from firstSide, leaving out the ones on firstSide's
+     * corners unless withCorners. A firstSide of -1 means no cubies, unless withCorners,
+     * which then means every sticker.
+     */
+    private static boolean[] select(int cs, int firstSide, int maxDepth, boolean withCorners) {
+        if (cs < 1) {
+            throw new IllegalArgumentException("Cube size must be at least 1");
+        }
+        if (firstSide < -1 || firstSide >= NUM_SIDES) {
+            throw new IllegalArgumentException("There is no side " + firstSide);
+        }
+        boolean[] inStage = new boolean[NUM_SIDES * cs * cs];
+        if (firstSide == -1 && withCorners) {
+            Arrays.fill(inStage, true);
+            return inStage;
+        }
+
+        // the coordinate that counts layers in from firstSide, and the other two
+        int depthAxis = -1;
+        boolean fromFar = false;
+        if (firstSide != -1) {
+            int[] normal = MoveTable.normal(firstSide);
+            for (int axis = 0; axis < 3; axis++) {
+                if (normal[axis] != 0) {
+                    depthAxis = axis;
+                    fromFar = normal[axis] > 0;
+                }
+            }
+        }
+
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    int index = side * cs * cs + row * cs + col;
+                    boolean isCenter = row > 0 && row < cs - 1 && col > 0 && col < cs - 1;
+                    if (isCenter || depthAxis == -1) {
+                        inStage[index] = isCenter;
+                        continue;
+                    }
+                    int[] pos = MoveTable.cubiePosition(cs, side, row, col);
+                    int depth = fromFar ? cs - 1 - pos[depthAxis] : pos[depthAxis];
+                    int outerCoords = 0;
+                    for (int axis = 0; axis < 3; axis++) {
+                        if (axis != depthAxis && (pos[axis] == 0 || pos[axis] == cs - 1)) {
+                            outerCoords++;
+                        }
+                    }
+                    inStage[index] = depth <= maxDepth && (withCorners || outerCoords < 2);
+                }
+            }
+        }
+        return inStage;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
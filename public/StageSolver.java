@@ -0,0 +1,90 @@
+import java.util.Stack;
+
+/**
+ * Solves a cube one goal at a time, the way it's taught: say the cross, then the first
+ * layer, then the first two layers. Each stage is its own IDAStarSolver search from where
+ * the last one left off, so it only has to go as deep as that stage needs instead of as
+ * deep as the whole solve would.
+ *
+ * Stages are searched for exactly as given, so each one should include the ones before it
+ * (the StageGoals do) or a later stage is free to undo an earlier one. Every stage's
+ * solution is a shortest one for that stage if its estimate is admissible, but the whole
+ * thing usually isn't the shortest solution to the last goal.
+ *
+ * A solver instance is not thread safe, use one per thread, but cancel() can be called
+ * from any thread.
+ */
+public class StageSolver implements CubeSolver {
+    private CubeGoal[] stages;
+
+    private volatile boolean cancelled;
+    // the stage being searched, so cancel() can stop it
+    private volatile IDAStarSolver current;
+    private SolverMetrics metrics;
+
+    /**
+     * @param CubeGoal... stages goals to reach in order
+     */
+    public StageSolver(CubeGoal... stages) {
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("There has to be at least one stage");
+        }
+        this.stages = stages.clone();
+    }
+
+    /**
+     * Reaches every stage in turn.
+     * @param RubiksCube cube The cube to solve
+     * @param int depthLimit Max number of moves all the stages together can take
+     * @param boolean leaveCubeSolved whether the cube should be left at the last stage or
+     * put back the way it was
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if a stage couldn't be reached within what's left of depthLimit or the solver
+     * got cancelled.
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        RubiksCube work = new RubiksCube(cube);
+        Stack<int[]> moveStack = new Stack<int[]>();
+        for (CubeGoal stage : this.stages) {
+            IDAStarSolver solver = new IDAStarSolver(stage);
+            solver.setMetrics(this.metrics);
+            this.current = solver;
+            if (this.cancelled) {
+                return null;
+            }
+            Stack<int[]> stageMoves = solver.solve(work, depthLimit - moveStack.size(), true);
+            if (stageMoves == null) {
+                return null;
+            }
+            moveStack.addAll(stageMoves);
+        }
+        this.current = null;
+
+        if (leaveCubeSolved) {
+            for (int[] move : moveStack) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return moveStack;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can and return no solution. The cube is left the
+     * way it was.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        IDAStarSolver solver = this.current;
+        if (solver != null) {
+            solver.cancel();
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+}
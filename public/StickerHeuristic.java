@@ -0,0 +1,53 @@
+/**
+ * Admissible heuristic based on misplaced stickers.
+ *
+ * A side's "mismatch" is the number of stickers that don't share the side's most common
+ * color. A single move only carries one strip of cubeSize stickers onto or off of any side
+ * (a side that gets turned as a whole keeps its colors), and only 4 sides change at all.
+ * So one move lowers a side's mismatch by at most cubeSize and the total mismatch by at
+ * most 4 * cubeSize, which gives us two lower bounds. We return the larger one.
+ *
+ * This works for every cube size, but it is pretty weak on its own. It is mostly useful as
+ * a fallback and to combine with stronger heuristics.
+ */
+public class StickerHeuristic implements CubeHeuristic {
+    private static final int NUM_SIDES = 6;
+    private static final int NUM_COLORS = 6;
+
+    public int estimate(RubiksCube cube) {
+        int cs = cube.getCubeSize();
+        int[] colorCount = new int[NUM_COLORS];
+
+        int totalMismatch = 0;
+        int worstSideMismatch = 0;
+        for (int side = 0; side < NUM_SIDES; side++) {
+            for (int color = 0; color < NUM_COLORS; color++) {
+                colorCount[color] = 0;
+            }
+
+            int mostCommon = 0;
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    int count = ++colorCount[cube.getSticker(side, row, col)];
+                    if (count > mostCommon) {
+                        mostCommon = count;
+                    }
+                }
+            }
+
+            int sideMismatch = cs * cs - mostCommon;
+            totalMismatch += sideMismatch;
+            if (sideMismatch > worstSideMismatch) {
+                worstSideMismatch = sideMismatch;
+            }
+        }
+
+        int sideBound = ceilDiv(worstSideMismatch, cs);
+        int totalBound = ceilDiv(totalMismatch, 4 * cs);
+        return Math.max(sideBound, totalBound);
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+}
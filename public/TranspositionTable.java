@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * Fixed size table of lower bounds on how many moves states need, learned while searching.
+ *
+ * When a search from some state comes back without a solution it has proven the state needs
+ * more moves than it had left, and storing that lets the next visit to the same state (from
+ * a different move order, or in the next IDA* pass) get cut off straight away instead of
+ * searching the whole subtree again. Every stored bound is a proven fact, so using them
+ * never makes a solver miss a shortest solution (short of two states sharing a 64 bit key).
+ *
+ * The size is fixed by a byte budget up front and never grows. Entries sit in buckets of
+ * two: the first keeps whichever state has the biggest bound (the most expensive subtree to
+ * search again), the second always takes the newest state that didn't fit in the first.
+ *
+ * Lock free: each entry is a key word and a data word, and the key word is stored XORed with
+ * the data word. A read only counts if the two still XOR back to the key, so entries torn by
+ * two threads writing at once just read as missing. One table can be shared by any number
+ * of solver threads.
+ */
+public class TranspositionTable {
+    public static final long DEFAULT_BYTE_BUDGET = 64L << 20;
+
+    // a long for the key and one for the data
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final int MAX_BOUND = 0xFF;
+
+    private long[] keys;
+    private long[] data;
+    private int bucketMask;
+
+    /**
+     * @param long byteBudget how many bytes the table may take. It's rounded down to a power
+     * of two number of entries.
+     */
+    public TranspositionTable(long byteBudget) {
+        long maxEntries = byteBudget / BYTES_PER_ENTRY;
+        if (maxEntries < ENTRIES_PER_BUCKET) {
+            throw new IllegalArgumentException("Byte budget must be at least " + BYTES_PER_ENTRY * ENTRIES_PER_BUCKET);
+        }
+        // arrays top out a little under 2^31
+        long numEntries = Long.highestOneBit(Math.min(maxEntries, 1L << 30));
+        this.keys = new long[(int) numEntries];
+        this.data = new long[(int) numEntries];
+        this.bucketMask = (int) (numEntries / ENTRIES_PER_BUCKET) - 1;
+    }
+
+    /**
+     * Returns the key a search should use for a state. Move ordering (see MoveOrdering) means
+     * what can be searched from a state depends on the move that led to it, so that move's
+     * axis and layer are part of the key. Use -1 for both at the start of a search.
+     * @param long stateHash from RubiksCube.getZobristHash
+     */
+    public static long key(long stateHash, int lastAxis, int lastLayer) {
+        return stateHash ^ LongHashSet.mix(((lastAxis + 1L) << 32) | (lastLayer + 1L));
+    }
+
+    /**
+     * Returns the most moves the state with key has been proven to need, 0 if nothing is
+     * known about it
+     */
+    public int getLowerBound(long key) {
+        int slot = this.bucketOf(key);
+        for (int i = slot; i < slot + ENTRIES_PER_BUCKET; i++) {
+            long entryData = this.data[i];
+            if ((this.keys[i] ^ entryData) == key) {
+                return (int) entryData;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Records that the state with key needs at least lowerBound moves. A bound that's lower
+     * than the one already stored for the state is ignored.
+     */
+    public void store(long key, int lowerBound) {
+        long newData = Math.min(lowerBound, MAX_BOUND);
+        int slot = this.bucketOf(key);
+        for (int i = slot; i < slot + ENTRIES_PER_BUCKET; i++) {
+            long entryData = this.data[i];
+            if ((this.keys[i] ^ entryData) == key) {
+                if (newData > entryData) {
+                    this.write(i, key, newData);
+                }
+                return;
+            }
+        }
+
+        if (newData >= (this.data[slot] & MAX_BOUND)) {
+            this.write(slot, key, newData);
+        } else {
+            this.write(slot + 1, key, newData);
+        }
+    }
+
+    /**
+     * Forgets everything. Not safe to call while a search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0);
+        Arrays.fill(this.data, 0);
+    }
+
+    /**
+     * Returns how many bytes the table's entries take
+     */
+    public long getByteSize() {
+        return (long) this.keys.length * BYTES_PER_ENTRY;
+    }
+
+    private void write(int slot, long key, long newData) {
+        this.data[slot] = newData;
+        this.keys[slot] = key ^ newData;
+    }
+
+    private int bucketOf(long key) {
+        return ((int) LongHashSet.mix(key) & this.bucketMask) * ENTRIES_PER_BUCKET;
+    }
+}
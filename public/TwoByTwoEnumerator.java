@@ -0,0 +1,296 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Goes through every state of the 2x2 with a breadth first search out from solved, to get
+ * how many states there are at each distance and the exact distance of every one of them.
+ *
+ * States are the 3,674,160 corner positions of the DBL-normalized frame (see CubieGeometry),
+ * ranked the same way as PatternDatabase's corner table, so the rank is a perfect index: every
+ * 2x2 state has one and no two share one. Moves are the 9 turns of the layers away from the
+ * DBL corner, so distances are in the usual face turn metric.
+ *
+ * Which states have been seen is one bit per rank (459KB). Each level's frontier is a list of
+ * ranks, kept in memory up to a limit and written out to a temp file past it, so the search
+ * runs in a fixed amount of memory. The distances end up in a corner PatternDatabase, which
+ * can be saved and loaded like any other and turns every 2x2 solve into a table lookup (see
+ * LookupSolver).
+ *
+ * Not thread safe.
+ */
+public class TwoByTwoEnumerator {
+    // the most frontier ranks kept in memory if nothing else is said, 16MB
+    public static final int DEFAULT_FRONTIER_LIMIT = 1 << 22;
+
+    private Path spillDirectory;
+    private int frontierLimit;
+
+    private long[] distribution;
+    private PatternDatabase distances;
+
+    /**
+     * Creates an enumerator that keeps frontiers in memory up to DEFAULT_FRONTIER_LIMIT ranks
+     * and spills to the default temp directory past that
+     */
+    public TwoByTwoEnumerator() {
+        this(null, DEFAULT_FRONTIER_LIMIT);
+    }
+
+    /**
+     * @param Path spillDirectory where to write frontiers that go past frontierLimit, null
+     * for the default temp directory
+     * @param int frontierLimit how many ranks a frontier can keep in memory before the rest
+     * goes to disk
+     */
+    public TwoByTwoEnumerator(Path spillDirectory, int frontierLimit) {
+        if (frontierLimit < 1) {
+            throw new IllegalArgumentException("Frontier limit must be at least 1");
+        }
+        this.spillDirectory = spillDirectory;
+        this.frontierLimit = frontierLimit;
+    }
+
+    /**
+     * Runs the search. Takes well under a second.
+     * @return long[] how many states are at each distance, index 0 being the solved state
+     * @throws IOException if a frontier can't be spilled to disk
+     */
+    public long[] enumerate() throws IOException {
+        int numMoves = PatternDatabase.NUM_CORNER_MOVES;
+        int numTwists = PatternDatabase.NUM_CORNER_TWISTS;
+        int numStates = PatternDatabase.NUM_CORNER_PERMS * numTwists;
+        int[][] transitions = PatternDatabase.cornerTransitions();
+        int[] permMove = transitions[0];
+        int[] twistMove = transitions[1];
+
+        long[] visited = new long[(numStates + 63) >>> 6];
+        byte[] packed = PatternDatabase.newPackedTable(numStates);
+        long[] counts = new long[PatternDatabase.UNVISITED];
+
+        visited[0] |= 1L;
+        PatternDatabase.setPacked(packed, 0, 0);
+        Frontier frontier = new Frontier(this.spillDirectory, this.frontierLimit);
+        frontier.add(0);
+        int depth = 0;
+        try {
+            while (frontier.size() > 0) {
+                counts[depth] = frontier.size();
+                Frontier next = new Frontier(this.spillDirectory, this.frontierLimit);
+                try {
+                    frontier.startReading();
+                    for (int rank = frontier.next(); rank >= 0; rank = frontier.next()) {
+                        int permRank = rank / numTwists;
+                        int twistRank = rank % numTwists;
+                        for (int move = 0; move < numMoves; move++) {
+                            int neighbor = permMove[permRank * numMoves + move] * numTwists
+                                         + twistMove[twistRank * numMoves + move];
+                            long bit = 1L << neighbor;
+                            if ((visited[neighbor >>> 6] & bit) == 0) {
+                                visited[neighbor >>> 6] |= bit;
+                                PatternDatabase.setPacked(packed, neighbor, depth + 1);
+                                next.add(neighbor);
+                            }
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    next.close();
+                    throw e;
+                }
+                frontier.close();
+                frontier = next;
+                depth++;
+            }
+        } finally {
+            frontier.close();
+        }
+
+        this.distribution = Arrays.copyOf(counts, depth);
+        this.distances = PatternDatabase.ofCorners(packed);
+        return this.distribution.clone();
+    }
+
+    /**
+     * Returns how many states are at each distance from the last enumerate, null before
+     */
+    public long[] getDistribution() {
+        return this.distribution == null ? null : this.distribution.clone();
+    }
+
+    /**
+     * Returns the distance of every state from the last enumerate as a corner table, null
+     * before. Since a 2x2 is nothing but its corners, its distances are exact.
+     */
+    public PatternDatabase getDistanceTable() {
+        return this.distances;
+    }
+
+    /**
+     * Returns God's number for the 2x2, the distance of the farthest states, or -1 before
+     * enumerate
+     */
+    public int getMaxDistance() {
+        return this.distribution == null ? -1 : this.distribution.length - 1;
+    }
+
+    /**
+     * Writes the distance table to path, see PatternDatabase.save
+     * @throws IllegalStateException if enumerate hasn't been run
+     */
+    public void writeDistanceTable(Path path) throws IOException {
+        if (this.distances == null) {
+            throw new IllegalStateException("Nothing has been enumerated yet");
+        }
+        this.distances.save(path);
+    }
+
+    /**
+     * Prints the distance distribution and writes the table to args[0] if it's given
+     */
+    public static void main(String[] args) throws IOException {
+        TwoByTwoEnumerator enumerator = new TwoByTwoEnumerator();
+        long startNanos = System.nanoTime();
+        long[] distribution = enumerator.enumerate();
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1000000;
+
+        long total = 0;
+        System.out.println("distance      states");
+        for (int depth = 0; depth < distribution.length; depth++) {
+            System.out.printf("%8d %11d%n", depth, distribution[depth]);
+            total += distribution[depth];
+        }
+        System.out.printf("   total %11d in %d ms%n", total, elapsedMillis);
+        if (args.length > 0) {
+            enumerator.writeDistanceTable(Paths.get(args[0]));
+        }
+    }
+
+    /**
+     * A list of ranks that's added to and then read back once in order. The first limit of
+     * them stay in memory and the rest go to a temp file that's deleted on close.
+     */
+    private static class Frontier implements Closeable {
+        // ranks written to or read from the file per FileChannel call
+        private static final int CHUNK_SIZE = 1 << 14;
+
+        private Path spillDirectory;
+        private int limit;
+        private int[] inMemory;
+        private int numInMemory;
+        private long size;
+
+        private Path spillPath;
+        private FileChannel spill;
+        private ByteBuffer chunk;
+        private IntBuffer chunkInts;
+
+        private long numRead;
+
+        Frontier(Path spillDirectory, int limit) {
+            this.spillDirectory = spillDirectory;
+            this.inMemory = new int[Math.min(limit, 1 << 10)];
+            this.limit = limit;
+        }
+
+        long size() {
+            return this.size;
+        }
+
+        void add(int rank) throws IOException {
+            this.size++;
+            if (this.numInMemory < this.limit) {
+                if (this.numInMemory == this.inMemory.length) {
+                    this.inMemory = Arrays.copyOf(this.inMemory,
+                            (int) Math.min(this.limit, 2L * this.inMemory.length));
+                }
+                this.inMemory[this.numInMemory++] = rank;
+                return;
+            }
+            if (this.spill == null) {
+                this.openSpill();
+            }
+            if (!this.chunkInts.hasRemaining()) {
+                this.writeChunk();
+            }
+            this.chunkInts.put(rank);
+        }
+
+        /**
+         * Switches from adding to reading, from the first rank added
+         */
+        void startReading() throws IOException {
+            this.numRead = 0;
+            if (this.spill != null) {
+                this.writeChunk();
+                this.spill.position(0);
+                this.chunk.clear().limit(0);
+            }
+        }
+
+        /**
+         * Returns the next rank, or -1 once they've all been read
+         */
+        int next() throws IOException {
+            if (this.numRead >= this.size) {
+                return -1;
+            }
+            long index = this.numRead++;
+            if (index < this.numInMemory) {
+                return this.inMemory[(int) index];
+            }
+            if (!this.chunk.hasRemaining()) {
+                // the file and the chunk are both whole ranks, so filling the chunk or
+                // reaching the end always leaves whole ranks in it
+                this.chunk.clear();
+                while (this.chunk.hasRemaining() && this.spill.read(this.chunk) >= 0) {
+                }
+                this.chunk.flip();
+                if (this.chunk.remaining() < Integer.BYTES) {
+                    throw new IOException(this.spillPath + " ended early");
+                }
+            }
+            return this.chunk.getInt();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.spill == null) {
+                return;
+            }
+            try {
+                this.spill.close();
+            } finally {
+                Files.deleteIfExists(this.spillPath);
+                this.spill = null;
+            }
+        }
+
+        private void openSpill() throws IOException {
+            this.spillPath = this.spillDirectory == null
+                           ? Files.createTempFile("frontier", ".ranks")
+                           : Files.createTempFile(this.spillDirectory, "frontier", ".ranks");
+            this.spill = FileChannel.open(this.spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.chunk = ByteBuffer.allocateDirect(CHUNK_SIZE * Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+            this.chunkInts = this.chunk.asIntBuffer();
+        }
+
+        /**
+         * Writes out the ranks put in chunkInts since the last write
+         */
+        private void writeChunk() throws IOException {
+            this.chunk.clear().limit(this.chunkInts.position() * Integer.BYTES);
+            while (this.chunk.hasRemaining()) {
+                this.spill.write(this.chunk);
+            }
+            this.chunkInts.clear();
+        }
+    }
+}
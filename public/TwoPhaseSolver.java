@@ -0,0 +1,701 @@
+import java.util.Arrays;
+import java.util.Stack;
+
+/**
+ * Fast 3x3 solver that trades a few extra moves for speed, using Kociemba's two-phase
+ * algorithm.
+ *
+ * Phase 1 gets the cube into the group G1 where every corner and edge is oriented and the
+ * four middle layer edges of the x axis are in the middle layer. Phase 2 solves the rest
+ * using only the moves that stay in G1: any turn of the top and bottom layers and half turns
+ * of the other four sides. Both phases are IDA* searches over small coordinates (numbers
+ * that describe one part of the cube) instead of stickers, so a move is a couple of table
+ * lookups and the pruning tables give tight lower bounds for each phase.
+ *
+ * The first solution usually turns up in a few milliseconds and is somewhere in the mid
+ * twenties. The search then keeps trying longer phase 1 solutions with shorter phase 2s
+ * until it finds one of at most targetLength moves or runs out of time, and returns the
+ * shortest one it found. Given enough time it finds a shortest solution.
+ *
+ * Only outer layers are turned, and the cube is read relative to its centers, so a cube
+ * that had slice moves made on it is fine. The move and pruning tables take about a second
+ * to build, once, the first time any solver needs them (or on prepareTables) and are shared
+ * by every solver after that. A solver instance is not thread safe, use one per thread, but
+ * cancel() can be called from any thread.
+ */
+public class TwoPhaseSolver implements CubeSolver {
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 100;
+    public static final int DEFAULT_TARGET_LENGTH = 21;
+    // the longest phase 1 needs is 12 moves and the longest phase 2 needs is 18
+    public static final int MAX_LENGTH = 30;
+    // long phase 2 searches are slow and rarely pay off, a longer phase 1 usually does better
+    private static final int MAX_PHASE2_LENGTH = 12;
+
+    private static final int NUM_TURNS = 3;
+    // outer layers only, layer 1 is the middle layer
+    private static final int[] FACE_LAYERS = {0, 2};
+    private static final int NUM_MOVES = CubieGeometry.NUM_AXES * 2 * NUM_TURNS;
+    private static final int UD_AXIS = 0;
+    private static final int NUM_SIDES = 6;
+
+    private static final int NUM_TWISTS = 2187; // 3^7, the 8th twist is implied
+    private static final int NUM_FLIPS = 2048; // 2^11, the 12th flip is implied
+    private static final int NUM_SLICE_EDGES = 4;
+    private static final int NUM_SLICE_SETS = 495; // 12 choose 4
+    private static final int NUM_SLICE_PERMS = 24; // 4!
+    private static final int NUM_SLICES = NUM_SLICE_SETS * NUM_SLICE_PERMS;
+    private static final int NUM_PERMS = 40320; // 8!
+    private static final int FIRST_SLICE_EDGE = 8;
+
+    // how many nodes to search between checks of the clock
+    private static final int CLOCK_CHECK_MASK = 0x3FF;
+
+    private long timeBudgetNanos;
+    private int targetLength;
+
+    private volatile boolean cancelled;
+
+    // the cube being solved, as cubies in the frame of its centers
+    private int[] startCorners = new int[CubieGeometry.NUM_CORNERS];
+    private int[] startTwists = new int[CubieGeometry.NUM_CORNERS];
+    private int[] startEdges = new int[CubieGeometry.NUM_EDGES];
+    private int[] startFlips = new int[CubieGeometry.NUM_EDGES];
+    private int[] corners = new int[CubieGeometry.NUM_CORNERS];
+    private int[] edges = new int[CubieGeometry.NUM_EDGES];
+    private int[] scratch = new int[CubieGeometry.NUM_EDGES];
+
+    private Tables tables;
+    private int[] path = new int[MAX_LENGTH];
+    private int[] bestPath = new int[MAX_LENGTH];
+    private int bestLength;
+    // the longest solution still worth finding
+    private int maxLength;
+    private long deadline;
+    private long numNodes;
+    private boolean stopped;
+
+    // both null unless metrics are being kept
+    private SolverMetrics metrics;
+    private SolverMetrics.Recorder recorder;
+    private long phase2Nanos;
+
+    /**
+     * Creates a solver that searches for up to DEFAULT_TIME_BUDGET_MILLIS for a solution of
+     * at most DEFAULT_TARGET_LENGTH moves
+     */
+    public TwoPhaseSolver() {
+        this(DEFAULT_TIME_BUDGET_MILLIS, DEFAULT_TARGET_LENGTH);
+    }
+
+    /**
+     * @param long timeBudgetMillis how long a solve may keep looking for shorter solutions,
+     * not counting building the tables the first time. When it runs out the shortest solution
+     * found so far is returned, or the first one found if there wasn't one yet.
+     * @param int targetLength stop as soon as a solution this short is found. 0 keeps going
+     * for the whole time budget, or until a shortest solution is proven.
+     */
+    public TwoPhaseSolver(long timeBudgetMillis, int targetLength) {
+        if (timeBudgetMillis < 0 || targetLength < 0) {
+            throw new IllegalArgumentException("Time budget and target length can't be negative");
+        }
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+        this.targetLength = targetLength;
+    }
+
+    /**
+     * Builds the shared move and pruning tables now instead of on the first solve
+     */
+    public static void prepareTables() {
+        Tables.get();
+    }
+
+    /**
+     * Searches for a short solution of at most depthLimit moves (capped at MAX_LENGTH, which
+     * is always enough), stopping once one of at most targetLength moves turns up or the
+     * time budget runs out. A depthLimit much under 20 can make finding any solution at all
+     * take a very long time, cancel() stops it.
+     * @param RubiksCube cube The 3x3 to solve
+     * @param int depthLimit Max number of moves the solution can have
+     * @param boolean leaveCubeSolved whether the cube should be left solved or the way it was
+     * @return Stack<int[]> of {axis, layer, numTurns} moves with the first move at the bottom,
+     * or null if the cube can't be solved, there's no solution within depthLimit or the
+     * solver got cancelled before finding anything
+     * @throws IllegalArgumentException if the cube isn't a 3x3
+     */
+    public Stack<int[]> solve(RubiksCube cube, int depthLimit, boolean leaveCubeSolved) {
+        if (cube.getCubeSize() != 3) {
+            throw new IllegalArgumentException("The two-phase solver only solves 3x3 cubes");
+        }
+        if (!this.readCube(cube)) {
+            return null;
+        }
+        long startNanos = System.nanoTime();
+        this.tables = Tables.get();
+        long searchStartNanos = System.nanoTime();
+        if (this.metrics != null) {
+            this.recorder = this.metrics.newRecorder();
+            this.phase2Nanos = 0;
+        }
+        this.deadline = System.nanoTime() + this.timeBudgetNanos;
+        this.numNodes = 0;
+        this.stopped = false;
+        this.bestLength = -1;
+        this.maxLength = Math.min(depthLimit, MAX_LENGTH);
+
+        int twist = twistCoord(this.startTwists);
+        int flip = flipCoord(this.startFlips);
+        int slice = sliceCoord(this.startEdges);
+        int phase1Estimate = this.tables.phase1Estimate(twist, flip, slice);
+        for (int depth1 = phase1Estimate; depth1 <= this.maxLength; depth1++) {
+            if (this.searchPhase1(twist, flip, slice, 0, depth1) || this.stopped) {
+                break;
+            }
+        }
+        this.tables = null;
+        if (this.recorder != null) {
+            long endNanos = System.nanoTime();
+            this.recorder.flush();
+            this.recorder = null;
+            this.metrics.addPhaseNanos("twophase.tables", searchStartNanos - startNanos);
+            this.metrics.addPhaseNanos("twophase.phase1", endNanos - searchStartNanos - this.phase2Nanos);
+            this.metrics.addPhaseNanos("twophase.phase2", this.phase2Nanos);
+            this.metrics.solveFinished("twophase", endNanos - startNanos);
+        }
+
+        if (this.bestLength < 0) {
+            return null;
+        }
+        Stack<int[]> moveStack = new Stack<int[]>();
+        for (int i = 0; i < this.bestLength; i++) {
+            int[] move = toMove(this.bestPath[i]);
+            moveStack.push(move);
+            if (leaveCubeSolved) {
+                cube.makeMove(move[0], move[1], move[2]);
+            }
+        }
+        return moveStack;
+    }
+
+    /**
+     * Makes the solver stop as soon as it can and return the shortest solution it has found
+     * so far, if any.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * IDA* pass of phase 1 that looks for every way into G1 in exactly togo more moves, and
+     * runs phase 2 from each.
+     * @return true if the search is over, because a short enough solution was found
+     */
+    private boolean searchPhase1(int twist, int flip, int slice, int depth, int togo) {
+        if (togo == 0) {
+            // a G1 state reached with a G1 move was already reached one move sooner
+            if (depth > 0 && isPhase2Move(this.path[depth - 1])) {
+                if (this.recorder != null) {
+                    this.recorder.duplicatePrune();
+                }
+                return false;
+            }
+            if (this.recorder == null) {
+                return this.startPhase2(depth);
+            }
+            long phase2StartNanos = System.nanoTime();
+            boolean over = this.startPhase2(depth);
+            this.phase2Nanos += System.nanoTime() - phase2StartNanos;
+            return over;
+        }
+        if (this.outOfTime()) {
+            return false;
+        }
+        if (this.recorder != null) {
+            this.recorder.expanded(depth);
+        }
+
+        Tables t = this.tables;
+        for (int move = 0; move < NUM_MOVES; move++) {
+            if (depth > 0 && !canFollow(this.path[depth - 1], move)) {
+                continue;
+            }
+            int newTwist = t.twistMove[twist * NUM_MOVES + move];
+            int newFlip = t.flipMove[flip * NUM_MOVES + move];
+            int newSlice = t.sliceMove[slice * NUM_MOVES + move];
+            if (t.phase1Estimate(newTwist, newFlip, newSlice) >= togo) {
+                if (this.recorder != null) {
+                    this.recorder.heuristicPrune();
+                }
+                continue;
+            }
+            this.path[depth] = move;
+            if (this.searchPhase1(newTwist, newFlip, newSlice, depth + 1, togo - 1)) {
+                return true;
+            }
+            if (this.stopped) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs phase 2 from the G1 state the first depth1 moves of path lead to, looking for
+     * anything shorter than the best solution so far.
+     * @return true if the search is over, because a short enough solution was found
+     */
+    private boolean startPhase2(int depth1) {
+        int limit = Math.min(this.maxLength - depth1, MAX_PHASE2_LENGTH);
+        if (limit < 0) {
+            return false;
+        }
+
+        // phase 2 needs the actual permutations, so play phase 1 out on the cubies
+        System.arraycopy(this.startCorners, 0, this.corners, 0, CubieGeometry.NUM_CORNERS);
+        System.arraycopy(this.startEdges, 0, this.edges, 0, CubieGeometry.NUM_EDGES);
+        for (int i = 0; i < depth1; i++) {
+            this.tables.permute(this.corners, this.tables.cornerSources[this.path[i]], this.scratch);
+            this.tables.permute(this.edges, this.tables.edgeSources[this.path[i]], this.scratch);
+        }
+        int cornerPerm = PatternDatabase.rankPartial(this.corners, CubieGeometry.NUM_CORNERS,
+                                                     CubieGeometry.NUM_CORNERS);
+        int edgePerm = PatternDatabase.rankPartial(this.edges, FIRST_SLICE_EDGE, FIRST_SLICE_EDGE);
+        int slicePerm = slicePermCoord(this.edges);
+
+        int estimate = this.tables.phase2Estimate(cornerPerm, edgePerm, slicePerm);
+        for (int depth2 = estimate; depth2 <= limit; depth2++) {
+            if (this.searchPhase2(cornerPerm, edgePerm, slicePerm, depth1, depth2)) {
+                int length = depth1 + depth2;
+                System.arraycopy(this.path, 0, this.bestPath, 0, length);
+                this.bestLength = length;
+                this.maxLength = length - 1;
+                return length <= this.targetLength;
+            }
+            if (this.stopped) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * IDA* pass of phase 2 that only uses G1 moves and looks exactly togo moves deep
+     * @return true if the cube got solved, the moves are left on path
+     */
+    private boolean searchPhase2(int cornerPerm, int edgePerm, int slicePerm, int depth, int togo) {
+        if (togo == 0) {
+            return cornerPerm == 0 && edgePerm == 0 && slicePerm == 0;
+        }
+        if (this.outOfTime()) {
+            return false;
+        }
+        if (this.recorder != null) {
+            this.recorder.expanded(depth);
+        }
+
+        Tables t = this.tables;
+        for (int move : t.phase2Moves) {
+            if (depth > 0 && !canFollow(this.path[depth - 1], move)) {
+                continue;
+            }
+            int newCornerPerm = t.cornerPermMove[cornerPerm * NUM_MOVES + move];
+            int newEdgePerm = t.edgePermMove[edgePerm * NUM_MOVES + move];
+            int newSlicePerm = t.slicePermMove[slicePerm * NUM_MOVES + move];
+            if (t.phase2Estimate(newCornerPerm, newEdgePerm, newSlicePerm) >= togo) {
+                if (this.recorder != null) {
+                    this.recorder.heuristicPrune();
+                }
+                continue;
+            }
+            this.path[depth] = move;
+            if (this.searchPhase2(newCornerPerm, newEdgePerm, newSlicePerm, depth + 1, togo - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts a node, and every so often checks whether cancel() was called or time is up.
+     * Time is only up once there's a solution to return.
+     */
+    private boolean outOfTime() {
+        if (!this.stopped && (++this.numNodes & CLOCK_CHECK_MASK) == 0) {
+            boolean timeUp = this.bestLength >= 0 && System.nanoTime() - this.deadline > 0;
+            this.stopped = this.cancelled || timeUp;
+        }
+        return this.stopped;
+    }
+
+    /**
+     * Reads the cube's cubies relative to its centers. Slice moves only move the centers
+     * along with everything else, so recoloring the stickers to match the centers gives a
+     * cube with the centers at home that the same outer layer moves solve.
+     * @return false if the stickers don't make a cube that can be solved
+     */
+    private boolean readCube(RubiksCube cube) {
+        int[] relabel = new int[NUM_SIDES];
+        Arrays.fill(relabel, -1);
+        for (int side = 0; side < NUM_SIDES; side++) {
+            int color = cube.getSticker(side, 1, 1);
+            if (relabel[color] != -1) {
+                return false;
+            }
+            relabel[color] = side;
+        }
+        if (!CubieGeometry.readCorners(cube, relabel, this.startCorners, this.startTwists)
+                || !CubieGeometry.readEdges(cube, relabel, this.startEdges, this.startFlips)) {
+            return false;
+        }
+
+        int cornerParity = parity(this.startCorners);
+        int edgeParity = parity(this.startEdges);
+        int twistSum = 0;
+        for (int twist : this.startTwists) {
+            twistSum += twist;
+        }
+        int flipSum = 0;
+        for (int flip : this.startFlips) {
+            flipSum += flip;
+        }
+        return cornerParity >= 0 && cornerParity == edgeParity && twistSum % 3 == 0 && flipSum % 2 == 0;
+    }
+
+    /**
+     * Returns 0 or 1 for an even or odd permutation, -1 if values isn't a permutation
+     */
+    private static int parity(int[] values) {
+        int seen = 0;
+        int parity = 0;
+        for (int i = 0; i < values.length; i++) {
+            if ((seen & (1 << values[i])) != 0) {
+                return -1;
+            }
+            seen |= 1 << values[i];
+            for (int j = i + 1; j < values.length; j++) {
+                if (values[j] < values[i]) {
+                    parity ^= 1;
+                }
+            }
+        }
+        return parity;
+    }
+
+    private static boolean canFollow(int lastMove, int move) {
+        return MoveOrdering.canFollow(3, axisOf(lastMove), layerOf(lastMove), axisOf(move), layerOf(move));
+    }
+
+    private static boolean isPhase2Move(int move) {
+        return axisOf(move) == UD_AXIS || move % NUM_TURNS == 1;
+    }
+
+    private static int moveIndex(int axis, int face, int numTurns) {
+        return (axis * 2 + face) * NUM_TURNS + numTurns - 1;
+    }
+
+    private static int axisOf(int move) {
+        return move / (2 * NUM_TURNS);
+    }
+
+    private static int layerOf(int move) {
+        return FACE_LAYERS[(move / NUM_TURNS) % 2];
+    }
+
+    private static int[] toMove(int move) {
+        return new int[] {axisOf(move), layerOf(move), move % NUM_TURNS + 1};
+    }
+
+    private static int twistCoord(int[] twists) {
+        int coord = 0;
+        for (int slot = 0; slot < CubieGeometry.NUM_CORNERS - 1; slot++) {
+            coord = coord * 3 + twists[slot];
+        }
+        return coord;
+    }
+
+    private static int flipCoord(int[] flips) {
+        int coord = 0;
+        for (int slot = 0; slot < CubieGeometry.NUM_EDGES - 1; slot++) {
+            coord = coord * 2 + flips[slot];
+        }
+        return coord;
+    }
+
+    /**
+     * Which four slots hold the middle layer edges (0 when it's the middle layer) times 24,
+     * plus the order they're in. Phase 1 only cares about the slots, which is coord / 24.
+     */
+    private static int sliceCoord(int[] edges) {
+        int set = 0;
+        int found = 0;
+        int[] order = new int[NUM_SLICE_EDGES];
+        for (int slot = CubieGeometry.NUM_EDGES - 1; slot >= 0; slot--) {
+            if (edges[slot] >= FIRST_SLICE_EDGE) {
+                found++;
+                set += choose(CubieGeometry.NUM_EDGES - 1 - slot, found);
+                order[order.length - found] = edges[slot] - FIRST_SLICE_EDGE;
+            }
+        }
+        return set * NUM_SLICE_PERMS + PatternDatabase.rankPartial(order, order.length, order.length);
+    }
+
+    /**
+     * The order of the middle layer edges, for a cube where they're all in the middle layer
+     */
+    private static int slicePermCoord(int[] edges) {
+        int[] order = new int[CubieGeometry.NUM_EDGES - FIRST_SLICE_EDGE];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = edges[FIRST_SLICE_EDGE + i] - FIRST_SLICE_EDGE;
+        }
+        return PatternDatabase.rankPartial(order, order.length, order.length);
+    }
+
+    private static int choose(int n, int k) {
+        if (k > n) {
+            return 0;
+        }
+        int result = 1;
+        for (int i = 0; i < k; i++) {
+            result = result * (n - i) / (i + 1);
+        }
+        return result;
+    }
+
+    /**
+     * The coordinate move tables and pruning tables, built once and never changed after that.
+     * Move tables are indexed coord * NUM_MOVES + move. Pruning tables hold the exact number of
+     * moves (in that phase's move set) needed to solve a pair of coordinates, a byte each.
+     */
+    private static class Tables {
+        // built the first time get() is called
+        private static final Tables INSTANCE = new Tables();
+
+        // sources[move][slot] is the slot the cubie came from, like MoveTable's sources
+        int[][] cornerSources = new int[NUM_MOVES][CubieGeometry.NUM_CORNERS];
+        int[][] cornerTwists = new int[NUM_MOVES][CubieGeometry.NUM_CORNERS];
+        int[][] edgeSources = new int[NUM_MOVES][CubieGeometry.NUM_EDGES];
+        int[][] edgeFlips = new int[NUM_MOVES][CubieGeometry.NUM_EDGES];
+        int[] phase2Moves;
+
+        int[] twistMove = new int[NUM_TWISTS * NUM_MOVES];
+        int[] flipMove = new int[NUM_FLIPS * NUM_MOVES];
+        int[] sliceMove = new int[NUM_SLICES * NUM_MOVES];
+        // only filled in for phase 2 moves, the others would take cubies out of G1
+        int[] cornerPermMove = new int[NUM_PERMS * NUM_MOVES];
+        int[] edgePermMove = new int[NUM_PERMS * NUM_MOVES];
+        int[] slicePermMove = new int[NUM_SLICE_PERMS * NUM_MOVES];
+
+        // indexed slice set * NUM_TWISTS + twist and slice set * NUM_FLIPS + flip
+        byte[] sliceTwistDepth;
+        byte[] sliceFlipDepth;
+        // indexed slice perm * NUM_PERMS + corner or edge perm
+        byte[] cornerPermDepth;
+        byte[] edgePermDepth;
+
+        private Tables() {
+            this.readMoves();
+            this.buildMoveTables();
+
+            int[] allMoves = new int[NUM_MOVES];
+            for (int move = 0; move < NUM_MOVES; move++) {
+                allMoves[move] = move;
+            }
+            this.sliceTwistDepth = buildPruning(NUM_SLICE_SETS, NUM_TWISTS, this.sliceMove, NUM_SLICE_PERMS,
+                                                this.twistMove, allMoves);
+            this.sliceFlipDepth = buildPruning(NUM_SLICE_SETS, NUM_FLIPS, this.sliceMove, NUM_SLICE_PERMS,
+                                               this.flipMove, allMoves);
+            this.cornerPermDepth = buildPruning(NUM_SLICE_PERMS, NUM_PERMS, this.slicePermMove, 1,
+                                                this.cornerPermMove, this.phase2Moves);
+            this.edgePermDepth = buildPruning(NUM_SLICE_PERMS, NUM_PERMS, this.slicePermMove, 1,
+                                              this.edgePermMove, this.phase2Moves);
+        }
+
+        static Tables get() {
+            return INSTANCE;
+        }
+
+        int phase1Estimate(int twist, int flip, int slice) {
+            int sliceSet = slice / NUM_SLICE_PERMS;
+            return Math.max(this.sliceTwistDepth[sliceSet * NUM_TWISTS + twist],
+                            this.sliceFlipDepth[sliceSet * NUM_FLIPS + flip]);
+        }
+
+        int phase2Estimate(int cornerPerm, int edgePerm, int slicePerm) {
+            return Math.max(this.cornerPermDepth[slicePerm * NUM_PERMS + cornerPerm],
+                            this.edgePermDepth[slicePerm * NUM_PERMS + edgePerm]);
+        }
+
+        /**
+         * Moves cubies the way a move does. scratch must be at least as long as cubies.
+         */
+        void permute(int[] cubies, int[] sources, int[] scratch) {
+            for (int slot = 0; slot < sources.length; slot++) {
+                scratch[slot] = cubies[sources[slot]];
+            }
+            System.arraycopy(scratch, 0, cubies, 0, sources.length);
+        }
+
+        /**
+         * Finds what each outer layer move does to the cubies by making it on a solved 3x3
+         */
+        private void readMoves() {
+            int[] relabel = {0, 1, 2, 3, 4, 5};
+            int numPhase2Moves = 0;
+            int[] phase2 = new int[NUM_MOVES];
+            for (int axis = 0; axis < CubieGeometry.NUM_AXES; axis++) {
+                for (int face = 0; face < 2; face++) {
+                    for (int numTurns = 1; numTurns <= NUM_TURNS; numTurns++) {
+                        int move = moveIndex(axis, face, numTurns);
+                        RubiksCube cube = new RubiksCube(3, false);
+                        cube.makeMove(axis, FACE_LAYERS[face], numTurns);
+                        CubieGeometry.readCorners(cube, relabel, this.cornerSources[move], this.cornerTwists[move]);
+                        CubieGeometry.readEdges(cube, relabel, this.edgeSources[move], this.edgeFlips[move]);
+                        if (isPhase2Move(move)) {
+                            phase2[numPhase2Moves++] = move;
+                        }
+                    }
+                }
+            }
+            this.phase2Moves = Arrays.copyOf(phase2, numPhase2Moves);
+        }
+
+        private void buildMoveTables() {
+            int[] values = new int[CubieGeometry.NUM_EDGES];
+            int[] scratch = new int[CubieGeometry.NUM_EDGES];
+
+            for (int coord = 0; coord < NUM_TWISTS; coord++) {
+                int sum = 0;
+                for (int slot = CubieGeometry.NUM_CORNERS - 2, rest = coord; slot >= 0; slot--, rest /= 3) {
+                    values[slot] = rest % 3;
+                    sum += values[slot];
+                }
+                values[CubieGeometry.NUM_CORNERS - 1] = (3 - sum % 3) % 3;
+                for (int move = 0; move < NUM_MOVES; move++) {
+                    for (int slot = 0; slot < CubieGeometry.NUM_CORNERS; slot++) {
+                        scratch[slot] = (values[this.cornerSources[move][slot]] + this.cornerTwists[move][slot]) % 3;
+                    }
+                    this.twistMove[coord * NUM_MOVES + move] = twistCoord(scratch);
+                }
+            }
+
+            for (int coord = 0; coord < NUM_FLIPS; coord++) {
+                int sum = 0;
+                for (int slot = CubieGeometry.NUM_EDGES - 2, rest = coord; slot >= 0; slot--, rest /= 2) {
+                    values[slot] = rest % 2;
+                    sum += values[slot];
+                }
+                values[CubieGeometry.NUM_EDGES - 1] = sum % 2;
+                for (int move = 0; move < NUM_MOVES; move++) {
+                    for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                        scratch[slot] = values[this.edgeSources[move][slot]] ^ this.edgeFlips[move][slot];
+                    }
+                    this.flipMove[coord * NUM_MOVES + move] = flipCoord(scratch);
+                }
+            }
+
+            // there's no need to unrank slice coords, just go through every way of putting
+            // the four middle layer edges in four slots
+            int[] order = new int[NUM_SLICE_EDGES];
+            int[] edges = new int[CubieGeometry.NUM_EDGES];
+            for (int slots = 0; slots < 1 << CubieGeometry.NUM_EDGES; slots++) {
+                if (Integer.bitCount(slots) != order.length) {
+                    continue;
+                }
+                for (int perm = 0; perm < NUM_SLICE_PERMS; perm++) {
+                    PatternDatabase.unrankPartial(perm, order.length, order.length, order);
+                    int sliceEdge = 0;
+                    int otherEdge = 0;
+                    for (int slot = 0; slot < CubieGeometry.NUM_EDGES; slot++) {
+                        if ((slots & (1 << slot)) != 0) {
+                            edges[slot] = FIRST_SLICE_EDGE + order[sliceEdge++];
+                        } else {
+                            edges[slot] = otherEdge++;
+                        }
+                    }
+                    int coord = sliceCoord(edges);
+                    for (int move = 0; move < NUM_MOVES; move++) {
+                        System.arraycopy(edges, 0, values, 0, CubieGeometry.NUM_EDGES);
+                        this.permute(values, this.edgeSources[move], scratch);
+                        this.sliceMove[coord * NUM_MOVES + move] = sliceCoord(values);
+                    }
+                }
+            }
+
+            for (int coord = 0; coord < NUM_PERMS; coord++) {
+                for (int move = 0; move < NUM_MOVES; move++) {
+                    PatternDatabase.unrankPartial(coord, CubieGeometry.NUM_CORNERS, CubieGeometry.NUM_CORNERS, values);
+                    this.permute(values, this.cornerSources[move], scratch);
+                    this.cornerPermMove[coord * NUM_MOVES + move] =
+                        PatternDatabase.rankPartial(values, CubieGeometry.NUM_CORNERS, CubieGeometry.NUM_CORNERS);
+                }
+                for (int move : this.phase2Moves) {
+                    PatternDatabase.unrankPartial(coord, FIRST_SLICE_EDGE, FIRST_SLICE_EDGE, values);
+                    for (int slot = FIRST_SLICE_EDGE; slot < CubieGeometry.NUM_EDGES; slot++) {
+                        values[slot] = slot;
+                    }
+                    this.permute(values, this.edgeSources[move], scratch);
+                    this.edgePermMove[coord * NUM_MOVES + move] =
+                        PatternDatabase.rankPartial(values, FIRST_SLICE_EDGE, FIRST_SLICE_EDGE);
+                }
+            }
+
+            for (int coord = 0; coord < NUM_SLICE_PERMS; coord++) {
+                for (int move : this.phase2Moves) {
+                    for (int slot = 0; slot < FIRST_SLICE_EDGE; slot++) {
+                        values[slot] = slot;
+                    }
+                    PatternDatabase.unrankPartial(coord, order.length, order.length, order);
+                    for (int i = 0; i < order.length; i++) {
+                        values[FIRST_SLICE_EDGE + i] = FIRST_SLICE_EDGE + order[i];
+                    }
+                    this.permute(values, this.edgeSources[move], scratch);
+                    this.slicePermMove[coord * NUM_MOVES + move] = slicePermCoord(values);
+                }
+            }
+        }
+
+        /**
+         * Breadth first search out from the solved state over pairs of coordinates, the
+         * same way PatternDatabase builds its tables.
+         * @param int[] outerMove move table of the outer coordinate, which is divided by
+         * outerDivisor before it's used (the slice move table holds the order too)
+         */
+        private static byte[] buildPruning(int numOuter, int numInner, int[] outerMove, int outerDivisor,
+                                           int[] innerMove, int[] moves) {
+            int numEntries = numOuter * numInner;
+            byte[] depths = new byte[numEntries];
+            Arrays.fill(depths, (byte) -1);
+            depths[0] = 0;
+
+            int depth = 0;
+            int frontierSize = 1;
+            while (frontierSize > 0) {
+                frontierSize = 0;
+                for (int index = 0; index < numEntries; index++) {
+                    if (depths[index] != depth) {
+                        continue;
+                    }
+                    int outer = (index / numInner) * outerDivisor;
+                    int inner = index % numInner;
+                    for (int move : moves) {
+                        int next = (outerMove[outer * NUM_MOVES + move] / outerDivisor) * numInner
+                                 + innerMove[inner * NUM_MOVES + move];
+                        if (depths[next] == -1) {
+                            depths[next] = (byte) (depth + 1);
+                            frontierSize++;
+                        }
+                    }
+                }
+                depth++;
+            }
+            return depths;
+        }
+    }
+}
@@ -1,3 +1,19 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 public class rubiksCubeTest {
     public static void main(String[] args) throws Exception {
         int cs = 2;
@@ -19,5 +35,1044 @@ public class rubiksCubeTest {
         System.out.print(cube.toString());
         cube.solveDFS(6, false);
         System.out.print(cube.toString());
+
+        // stage goals are tied to their sides, so on a 2x2 they can need a DBL layer turn
+        for (int side = 0; side < 6; side++) {
+            StageGoal goal = StageGoal.firstLayer(cs, side);
+            int found = new IDAStarSolver(goal).solve(cube, 6, false).size();
+            int shortest = shortestToGoal(cube, goal, 6);
+            if (found != shortest) {
+                throw new Exception("First layer on side " + side + " took " + found + " moves, not " + shortest);
+            }
+        }
+        System.out.println("2x2 first layers are shortest");
+
+        // the move tables against the rotate methods they replaced, every move on sizes 1-7
+        for (int size = 1; size <= 7; size++) {
+            MoveTable moveTable = MoveTable.forSize(size);
+            for (int axis = 0; axis < 3; axis++) {
+                for (int layer = 0; layer < size; layer++) {
+                    int[][][] sides = numberedSides(size);
+                    for (int numTurns = 1; numTurns <= 3; numTurns++) {
+                        rotateQuarter(sides, axis, layer);
+                        int[] src = moveTable.getSources(moveTable.getMoveIndex(axis, layer, numTurns));
+                        for (int i = 0; i < src.length; i++) {
+                            if (sides[i / (size * size)][i / size % size][i % size] != src[i]) {
+                                throw new Exception("Move " + axis + "," + layer + "," + numTurns + " on a "
+                                                    + size + "x" + size + " moves sticker " + i + " wrong");
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Move tables match the rotate methods");
+
+        // IDA* finds shortest solutions: random 2x2 states against lookups with the default
+        // heuristic and shallow scrambles with the sticker heuristic, and seeded 3x3
+        // scrambles against bidirectional search
+        LookupSolver lookupSolver = new LookupSolver(PatternDatabase.sharedCorners());
+        ScrambleGenerator idaGenerator = new ScrambleGenerator(2, 1);
+        for (int i = 0; i < 10; i++) {
+            RubiksCube state = i < 5 ? idaGenerator.nextRandomState() : idaGenerator.nextScrambledCube(7);
+            Stack<int[]> solution = i < 5 ? state.solveIDAStar(14, false)
+                                          : state.solveIDAStar(14, false, new StickerHeuristic());
+            int shortest = lookupSolver.getDistance(state);
+            checkSolution(state, solution, shortest, "2x2 IDA* solve " + i);
+            if (solution.size() != shortest) {
+                throw new Exception("2x2 IDA* solve " + i + " took " + solution.size() + " moves, not " + shortest);
+            }
+        }
+        idaGenerator = new ScrambleGenerator(3, 1);
+        for (int i = 0; i < 4; i++) {
+            RubiksCube scrambled = idaGenerator.nextScrambledCube(6);
+            Stack<int[]> solution = scrambled.solveIDAStar(6, false);
+            int shortest = scrambled.solveBidirectional(6, false).size();
+            checkSolution(scrambled, solution, shortest, "3x3 IDA* solve " + i);
+            if (solution.size() != shortest) {
+                throw new Exception("3x3 IDA* solve " + i + " took " + solution.size() + " moves, not " + shortest);
+            }
+        }
+        System.out.println("IDA* solutions are shortest");
+
+        // parallel IDA* against sequential IDA* on seeded scrambles, and cancelled part way
+        for (int size = 2; size <= 3; size++) {
+            ScrambleGenerator parallelGenerator = new ScrambleGenerator(size, 6);
+            for (int i = 0; i < 3; i++) {
+                RubiksCube scrambled = parallelGenerator.nextScrambledCube(6);
+                Stack<int[]> sequential = new IDAStarSolver().solve(scrambled, 6, false);
+                Stack<int[]> parallel = scrambled.solveParallel(6, false);
+                checkSolution(scrambled, parallel, sequential.size(), size + "x" + size + " parallel solve " + i);
+                if (parallel.size() != sequential.size()) {
+                    throw new Exception(size + "x" + size + " parallel solve " + i + " took " + parallel.size()
+                                        + " moves, not " + sequential.size());
+                }
+            }
+        }
+        ParallelSolver cancelledSolver = new ParallelSolver();
+        // a random state needs far more moves than the sticker heuristic can search in time
+        RubiksCube deep = new ScrambleGenerator(3, 6).nextRandomState();
+        CompletableFuture<Stack<int[]>> running = AsyncSolver.solve(cancelledSolver, deep, 20,
+                                                                    AsyncSolver.NO_DEADLINE);
+        Thread.sleep(200);
+        cancelledSolver.cancel();
+        if (running.get(10, TimeUnit.SECONDS) != null) {
+            throw new Exception("A cancelled parallel solve of a random 3x3 returned a solution");
+        }
+        System.out.println("Parallel solutions are as short as sequential ones and cancel stops them");
+
+        // bidirectional solves of random 2x2 states are shortest whatever they're reduced by,
+        // and one that's out of memory fails cleanly
+        ScrambleGenerator bidirectionalGenerator = new ScrambleGenerator(2, 7);
+        for (int numSymmetries : new int[] {CubeSymmetry.IDENTITY_ONLY, CubeSymmetry.ROTATIONS,
+                                            CubeSymmetry.ROTATIONS_AND_REFLECTIONS}) {
+            for (int i = 0; i < 4; i++) {
+                RubiksCube state = bidirectionalGenerator.nextRandomState();
+                int shortest = lookupSolver.getDistance(state);
+                Stack<int[]> solution = new BidirectionalSolver(numSymmetries).solve(state, 14, false);
+                checkSolution(state, solution, shortest, "Bidirectional solve " + i + " by " + numSymmetries
+                              + " symmetries");
+                if (solution.size() != shortest) {
+                    throw new Exception("Bidirectional solve " + i + " by " + numSymmetries + " symmetries took "
+                                        + solution.size() + " moves, not " + shortest);
+                }
+            }
+        }
+        RubiksCube outOfMemory = bidirectionalGenerator.nextRandomState();
+        RubiksCube before = new RubiksCube(outOfMemory);
+        try {
+            new BidirectionalSolver(CubeSymmetry.ROTATIONS_AND_REFLECTIONS, 4096).solve(outOfMemory, 14, true);
+            throw new Exception("A bidirectional solve with 4KB to work with didn't run out");
+        } catch (IllegalStateException e) {
+            if (!outOfMemory.equals(before)) {
+                throw new Exception("A bidirectional solve that ran out of memory changed the cube");
+            }
+        }
+        checkSolution(outOfMemory, new BidirectionalSolver(CubeSymmetry.ROTATIONS_AND_REFLECTIONS, 64L << 20)
+                      .solve(outOfMemory, 14, false), lookupSolver.getDistance(outOfMemory),
+                      "Bidirectional solve with 64MB to work with");
+        System.out.println("Bidirectional solutions are shortest and a memory limit stops them cleanly");
+
+        // every turned, mirrored and recolored image of a state shares its canonical key, and
+        // conjugated moves do to an image what the move does to the original
+        Random colorRandom = new Random(8);
+        for (int size = 2; size <= 5; size++) {
+            ScrambleGenerator symmetryGenerator = new ScrambleGenerator(size, 8);
+            RubiksCube scrambled = symmetryGenerator.nextScrambledCube(ScrambleGenerator.defaultLength(size));
+            MoveTable moveTable = MoveTable.forSize(size);
+            for (int numSymmetries : new int[] {CubeSymmetry.ROTATIONS, CubeSymmetry.ROTATIONS_AND_REFLECTIONS}) {
+                CubeSymmetry symmetries = CubeSymmetry.forSize(size, numSymmetries);
+                long key = symmetries.canonicalKey(scrambled);
+                if (key == symmetries.canonicalKey(new RubiksCube(size, false))) {
+                    throw new Exception(size + "x" + size + " scrambled and solved cubes share a key");
+                }
+                for (int symmetry = 0; symmetry < numSymmetries; symmetry++) {
+                    RubiksCube image = symmetries.transform(symmetry, scrambled);
+                    if (!symmetries.transform(symmetries.getInverse(symmetry), image).equals(scrambled)) {
+                        throw new Exception("Symmetry " + symmetry + "'s inverse doesn't undo it on a " + size + "x"
+                                            + size);
+                    }
+                    if (symmetries.canonicalKey(recolored(image, colorRandom)) != key) {
+                        throw new Exception("Symmetry " + symmetry + " of " + numSymmetries + " changes a " + size + "x"
+                                            + size + " canonical key");
+                    }
+                    for (int move = 0; move < moveTable.getNumMoves(); move++) {
+                        RubiksCube moved = new RubiksCube(scrambled);
+                        moved.makeMove(moveTable.getAxis(move), moveTable.getLayer(move), moveTable.getNumTurns(move));
+                        RubiksCube movedImage = new RubiksCube(image);
+                        int conjugate = symmetries.conjugateMove(symmetry, move);
+                        movedImage.makeMove(moveTable.getAxis(conjugate), moveTable.getLayer(conjugate),
+                                            moveTable.getNumTurns(conjugate));
+                        if (!symmetries.transform(symmetry, moved).equals(movedImage)) {
+                            throw new Exception("Symmetry " + symmetry + " conjugates move " + move + " on a " + size
+                                                + "x" + size + " wrong");
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Symmetric and recolored states share canonical keys and moves conjugate");
+
+        // a batch with comments, blank lines, bad records and good ones gives one result per
+        // record, under its own line number
+        RubiksCube stateRecord = new ScrambleGenerator(2, 9).nextScrambledCube(4);
+        StringBuilder stickers = new StringBuilder();
+        for (int side = 0; side < 6; side++) {
+            for (int row = 0; row < 2; row++) {
+                for (int col = 0; col < 2; col++) {
+                    stickers.append(stateRecord.getSticker(side, row, col));
+                }
+            }
+        }
+        String[] batch = {
+            "# a comment",
+            "",
+            "scramble 2 0,0,1 1,1,2",
+            "scramble 0 0,0,1",
+            "scramble 3 0,3,1",
+            "scramble 3 0,1,4",
+            "state 2 0123",
+            "  # an indented comment",
+            "state 2 " + stickers,
+            "scramble 3 2,2,3",
+            "shuffle 2",
+        };
+        String[] expected = {null, null, "solved", "error", "error", "error", "error", null, "solved", "solved",
+                             "error"};
+        StringWriter batchOutput = new StringWriter();
+        long numRecords = new BatchSolver(() -> new IDAStarSolver(), 8, 2)
+                              .run(new BufferedReader(new StringReader(String.join("\n", batch))), batchOutput);
+        String[] results = batchOutput.toString().split("\n");
+        if (numRecords != 8 || results.length != 8) {
+            throw new Exception("A batch of 8 records read " + numRecords + " and wrote " + results.length + " results");
+        }
+        boolean[] answered = new boolean[batch.length];
+        for (String result : results) {
+            String[] fields = result.split(" ");
+            int line = Integer.parseInt(fields[0]);
+            if (line < 1 || line > batch.length || expected[line - 1] == null || answered[line - 1]
+                    || !fields[1].equals(expected[line - 1])) {
+                throw new Exception("Unexpected batch result " + result);
+            }
+            answered[line - 1] = true;
+            if (fields[1].equals("solved")) {
+                List<int[]> moves = new ArrayList<int[]>();
+                for (int i = 3; i < fields.length; i++) {
+                    String[] parts = fields[i].split(",");
+                    moves.add(new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                                         Integer.parseInt(parts[2])});
+                }
+                if (moves.size() != Integer.parseInt(fields[2])) {
+                    throw new Exception("Batch result " + result + " miscounts its moves");
+                }
+                checkSolution(BatchSolver.parseRecord(batch[line - 1]), moves, moves.size(), "Batch result " + result);
+            }
+        }
+        System.out.println("Batches give one result per record, comments and bad records included");
+
+        // the hash kept up to date move by move against one worked out from scratch, through
+        // copies and the gameStateArr constructor, on sizes with and without per-move keys
+        Random hashRandom = new Random(10);
+        for (int size : new int[] {1, 2, 3, 4, 5, 6, 7, MoveTable.MAX_COUNTED_SIZE + 2}) {
+            MoveTable moveTable = MoveTable.forSize(size);
+            RubiksCube hashed = new RubiksCube(size, false);
+            byte[] packed = new byte[6 * size * size];
+            for (int step = 0; step < 40; step++) {
+                if (step % 10 == 9) {
+                    hashed.makeMoves(CompiledAlgorithm.compile(new ScrambleGenerator(size, step).nextMoves(5)));
+                } else {
+                    hashed.makeMove(hashRandom.nextInt(3), hashRandom.nextInt(size), hashRandom.nextInt(3) + 1);
+                }
+                hashed.copyStickersTo(packed, 0);
+                long hash = hashed.getZobristHash();
+                if (hash != moveTable.zobristHash(packed) || hashed.hashCode() != (int) (hash ^ (hash >>> 32))) {
+                    throw new Exception(size + "x" + size + " hash drifted from its stickers after " + step + " moves");
+                }
+                RubiksCube copy = new RubiksCube(hashed);
+                RubiksCube rebuilt = new RubiksCube(size, sidesOf(hashed));
+                if (copy.getZobristHash() != hash || !copy.equals(hashed) || copy.hashCode() != hashed.hashCode()
+                        || rebuilt.getZobristHash() != hash || !rebuilt.equals(hashed)) {
+                    throw new Exception(size + "x" + size + " copy or rebuilt cube hashes differently");
+                }
+                copy.makeMove(0, 0, 1);
+                if (copy.equals(hashed) || copy.getZobristHash() == hash) {
+                    throw new Exception(size + "x" + size + " cube still equals its copy after a move");
+                }
+            }
+        }
+        System.out.println("Zobrist hashes match a from scratch hash through moves, copies and game states");
+
+        // transposition tables take the biggest power of two number of entries that fits the
+        // budget, never overstate a bound when they're overflowing, and keep searches shortest
+        for (long budget : new long[] {32, 33, 100, 1000, 1 << 20, (1 << 20) + 5}) {
+            long byteSize = new TranspositionTable(budget).getByteSize();
+            if (byteSize > budget || byteSize * 2 <= budget || Long.bitCount(byteSize / 16) != 1) {
+                throw new Exception("A transposition table with a budget of " + budget + " bytes takes " + byteSize);
+            }
+        }
+        try {
+            new TranspositionTable(31);
+            throw new Exception("A transposition table too small for one bucket got made");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        TranspositionTable smallTable = new TranspositionTable(64);
+        Random keyRandom = new Random(11);
+        long expensiveKey = keyRandom.nextLong();
+        smallTable.store(expensiveKey, 5);
+        smallTable.store(expensiveKey, 3);
+        smallTable.store(expensiveKey, 9);
+        long[] cheapKeys = new long[1000];
+        for (int i = 0; i < cheapKeys.length; i++) {
+            cheapKeys[i] = keyRandom.nextLong();
+            smallTable.store(cheapKeys[i], 1 + i % 4);
+        }
+        int numKept = 0;
+        for (int i = 0; i < cheapKeys.length; i++) {
+            int bound = smallTable.getLowerBound(cheapKeys[i]);
+            if (bound != 0 && bound != 1 + i % 4) {
+                throw new Exception("A full transposition table gave a bound of " + bound + " for " + (1 + i % 4));
+            }
+            numKept += bound != 0 ? 1 : 0;
+        }
+        if (numKept > 3 || smallTable.getLowerBound(expensiveKey) != 9) {
+            throw new Exception("A 4 entry transposition table kept " + numKept + " cheap states and lost the "
+                                + "most expensive one");
+        }
+        TranspositionTable sharedTable = new TranspositionTable(1024);
+        for (int size = 2; size <= 3; size++) {
+            ScrambleGenerator tableGenerator = new ScrambleGenerator(size, 11);
+            for (int i = 0; i < 3; i++) {
+                RubiksCube scrambled = tableGenerator.nextScrambledCube(6);
+                int shortest = new IDAStarSolver().solve(scrambled, 6, false).size();
+                sharedTable.clear();
+                Stack<int[]> solution = new IDAStarSolver(new StickerHeuristic(), sharedTable).solve(scrambled, 6, false);
+                checkSolution(scrambled, solution, shortest, size + "x" + size + " solve with a 64 entry table " + i);
+                if (solution.size() != shortest) {
+                    throw new Exception(size + "x" + size + " solve with a 64 entry table " + i + " took "
+                                        + solution.size() + " moves, not " + shortest);
+                }
+            }
+        }
+        System.out.println("Transposition tables fit their budget and small ones keep solutions shortest");
+
+        // facelets match the usual strings for single face turns and read back after slice
+        // moves, and the template picture matches drawing it sticker by sticker
+        String[][] faceTurns = {
+            {"U", "UUUUUUUUUBBBRRRRRRRRRFFFFFFDDDDDDDDDFFFLLLLLLLLLBBBBBB"},
+            {"R", "UUFUUFUUFRRRRRRRRRFFDFFDFFDDDBDDBDDBLLLLLLLLLUBBUBBUBB"},
+            {"F", "UUUUUULLLURRURRURRFFFFFFFFFRRRDDDDDDLLDLLDLLDBBBBBBBBB"},
+        };
+        for (String[] faceTurn : faceTurns) {
+            RubiksCube turned = new RubiksCube(3, false);
+            applyMoves(turned, MoveNotation.parse(3, faceTurn[0]));
+            if (!CubeRenderer.facelets(turned).equals(faceTurn[1])) {
+                throw new Exception(faceTurn[0] + " gave facelets " + CubeRenderer.facelets(turned));
+            }
+        }
+        for (int size = 1; size <= 8; size++) {
+            RubiksCube sliced = new RubiksCube(size, false);
+            for (int layer = 1; layer < size - 1; layer++) {
+                sliced.makeMove(layer % 3, layer, 1);
+            }
+            for (RubiksCube drawn : new RubiksCube[] {new RubiksCube(size, false), sliced,
+                                                      new ScrambleGenerator(size, 19).nextScrambledCube(30)}) {
+                if (!CubeRenderer.parseFacelets(drawn.toFaceletString()).equals(drawn)) {
+                    throw new Exception(size + "x" + size + " facelets didn't read back: " + drawn.toFaceletString());
+                }
+                if (!CubeRenderer.forSize(size).render(drawn).equals(drawnBySticker(drawn))) {
+                    throw new Exception(size + "x" + size + " picture doesn't match its stickers:\n" + drawn);
+                }
+            }
+        }
+        System.out.println("Facelets match the usual strings and read back, and pictures match their stickers");
+
+        // isSolved and the per side counts through moves and their undos, on sizes small
+        // enough to keep packed counts and on ones too big that count stickers instead
+        for (int size : new int[] {1, 2, 3, 4, 5, 31, 32, 33}) {
+            RubiksCube counted = new RubiksCube(size, false);
+            counted.makeMove(0, 0, 1);
+            int totalProgress = 0;
+            for (int side = 0; side < 6; side++) {
+                totalProgress += counted.getSideProgress(side);
+            }
+            if (size > 1 && (counted.isSolved() || counted.getNumSolvedSides() != 2
+                             || totalProgress != 6 * size * size - 4 * size)) {
+                throw new Exception(size + "x" + size + " one turn from solved has " + counted.getNumSolvedSides()
+                                    + " solved sides and a total progress of " + totalProgress);
+            }
+            counted.makeMove(0, 0, 3);
+            MovePath countedMoves = new ScrambleGenerator(size, 29).nextMoves(40);
+            for (int i = 0; i < countedMoves.getLength(); i++) {
+                counted.makeMove(countedMoves.getAxis(i), countedMoves.getLayer(i), countedMoves.getNumTurns(i));
+                checkColorCounts(counted, size + "x" + size + " after move " + i);
+            }
+            for (int i = countedMoves.getLength() - 1; i >= 0; i--) {
+                counted.makeMove(countedMoves.getAxis(i), countedMoves.getLayer(i), 4 - countedMoves.getNumTurns(i));
+                checkColorCounts(counted, size + "x" + size + " after undoing move " + i);
+            }
+            if (!counted.isSolved() || counted.getNumSolvedSides() != 6) {
+                throw new Exception(size + "x" + size + " isn't solved after undoing its moves");
+            }
+        }
+        System.out.println("Solved sides and color counts follow moves and undos, past packed counts too");
+
+        // the whole 2x2 enumerated with frontiers small enough that most levels spill to disk,
+        // which gives the known distribution and leaves no spill files behind
+        Path spillDirectory = Files.createTempDirectory("rubiksCubeTest");
+        try {
+            TwoByTwoEnumerator enumerator = new TwoByTwoEnumerator(spillDirectory, 1000);
+            long[] distribution = enumerator.enumerate();
+            long[] knownDistribution = {1, 9, 54, 321, 1847, 9992, 50136, 227536, 870072, 1887748, 623800, 2644};
+            if (!Arrays.equals(distribution, knownDistribution) || enumerator.getMaxDistance() != 11
+                    || Arrays.stream(distribution).sum() != 3674160) {
+                throw new Exception("2x2 distances are spread " + Arrays.toString(distribution));
+            }
+            try (Stream<Path> leftOver = Files.list(spillDirectory)) {
+                if (leftOver.findAny().isPresent()) {
+                    throw new Exception("Enumerating the 2x2 left spill files behind");
+                }
+            }
+            checkSameDistances(enumerator.getDistanceTable(), PatternDatabase.sharedCorners(), "Enumerated 2x2 table");
+        } finally {
+            try (Stream<Path> leftOver = Files.list(spillDirectory)) {
+                for (Path file : leftOver.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(spillDirectory);
+        }
+        System.out.println("The 2x2 enumerates to its known distribution through spilled frontiers");
+
+        // pattern databases saved and mapped back in, and headers that don't add up turned down
+        Path tableFile = Files.createTempFile("rubiksCubeTest", ".pdb");
+        try {
+            PatternDatabase.sharedCorners().save(tableFile);
+            checkSameDistances(PatternDatabase.load(tableFile), PatternDatabase.buildCorners(), "Loaded corner table");
+            PatternDatabase edges = PatternDatabase.buildEdges(new int[] {3, 7});
+            edges.save(tableFile);
+            checkSameDistances(PatternDatabase.load(tableFile), edges, "Loaded edge table");
+            byte[] saved = Files.readAllBytes(tableFile);
+            // kind, edge subset and entry count are the ints at 8, 12 and 16
+            checkLoadFails(tableFile, saved, 8, 2, "an unknown kind");
+            checkLoadFails(tableFile, saved, 8, PatternDatabase.KIND_CORNERS, "a corner kind with an edge subset");
+            checkLoadFails(tableFile, saved, 12, 0, "an empty edge subset");
+            checkLoadFails(tableFile, saved, 12, 1 << 12, "an edge that isn't on the cube");
+            checkLoadFails(tableFile, saved, 12, 0xFF, "an edge subset of the wrong size");
+            checkLoadFails(tableFile, saved, 16, edges.getNumEntries() + 2, "too many entries");
+            checkLoadFails(tableFile, saved, 16, edges.getNumEntries() - 2, "too few entries");
+            Files.write(tableFile, Arrays.copyOf(saved, saved.length - 1));
+            checkLoadFails(tableFile, "a truncated table");
+        } finally {
+            Files.delete(tableFile);
+        }
+        System.out.println("Pattern databases load back and damaged headers are rejected");
+
+        // two-phase solves of random 3x3 states, and the best so far when the time is up
+        ScrambleGenerator generator = new ScrambleGenerator(3, 12);
+        for (int i = 0; i < 20; i++) {
+            RubiksCube random = generator.nextRandomState();
+            Stack<int[]> solution = new TwoPhaseSolver().solve(random, TwoPhaseSolver.MAX_LENGTH, false);
+            checkSolution(random, solution, TwoPhaseSolver.MAX_LENGTH, "Two-phase solve " + i);
+        }
+        RubiksCube random = generator.nextRandomState();
+        checkSolution(random, new TwoPhaseSolver(0, 0).solve(random, TwoPhaseSolver.MAX_LENGTH, false),
+                      TwoPhaseSolver.MAX_LENGTH, "Two-phase solve with no time");
+        // a target of 0 keeps searching, so only the deadline stops it
+        Stack<int[]> bestSoFar = AsyncSolver.solve(new TwoPhaseSolver(TimeUnit.MINUTES.toMillis(10), 0), random,
+                                                   TwoPhaseSolver.MAX_LENGTH, 50).get(10, TimeUnit.SECONDS);
+        checkSolution(random, bestSoFar, TwoPhaseSolver.MAX_LENGTH, "Two-phase solve cut off by its deadline");
+        System.out.println("Two-phase solutions solve random states");
+
+        // scrambles repeat with their seed, streams give the same ones in parallel, and random
+        // states are always ones a real cube can reach
+        for (int size = 2; size <= 4; size++) {
+            ScrambleGenerator first = new ScrambleGenerator(size, 99);
+            ScrambleGenerator second = new ScrambleGenerator(size, 99);
+            for (int i = 0; i < 5; i++) {
+                int length = ScrambleGenerator.defaultLength(size);
+                if (!first.nextMoves(length).toString().equals(second.nextMoves(length).toString())
+                    || !first.nextScrambledCube(length).equals(second.nextScrambledCube(length))
+                    || size <= 3 && !first.nextRandomState().equals(second.nextRandomState())) {
+                    throw new Exception(size + "x" + size + " scramble " + i + " changed with the same seed");
+                }
+            }
+            List<String> sequentialScrambles = new ScrambleGenerator(size, 5).scrambles(200, 30)
+                .map(MovePath::toString).toList();
+            List<String> parallelScrambles = new ScrambleGenerator(size, 5).scrambles(200, 30).parallel()
+                .map(MovePath::toString).toList();
+            if (!sequentialScrambles.equals(parallelScrambles)) {
+                throw new Exception(size + "x" + size + " scrambles changed when streamed in parallel");
+            }
+        }
+        for (int size = 2; size <= 3; size++) {
+            List<RubiksCube> sequentialStates = new ScrambleGenerator(size, 5).randomStates(100).toList();
+            List<RubiksCube> parallelStates = new ScrambleGenerator(size, 5).randomStates(100).parallel().toList();
+            if (!sequentialStates.equals(parallelStates)) {
+                throw new Exception(size + "x" + size + " random states changed when streamed in parallel");
+            }
+        }
+        List<RubiksCube> randomCorners = new ScrambleGenerator(2, 6).randomStates(500).parallel().toList();
+        for (int i = 0; i < randomCorners.size(); i++) {
+            if (lookupSolver.getDistance(randomCorners.get(i)) < 0) {
+                throw new Exception("Random 2x2 state " + i + " can't be solved");
+            }
+        }
+        List<RubiksCube> randomStates = new ScrambleGenerator(3, 6).randomStates(30).parallel().toList();
+        for (int i = 0; i < randomStates.size(); i++) {
+            RubiksCube state = randomStates.get(i);
+            checkSolution(state, new TwoPhaseSolver().solve(state, TwoPhaseSolver.MAX_LENGTH, false),
+                          TwoPhaseSolver.MAX_LENGTH, "Two-phase solve of streamed random state " + i);
+        }
+        System.out.println("Scrambles repeat with their seed, in parallel too, and random states are solvable");
+
+        // reduction on big cubes, from seeded scrambles and from one inner slice quarter turn,
+        // which leaves a set of wings an odd permutation away so only the parity fix solves it
+        for (int size = 4; size <= 5; size++) {
+            ScrambleGenerator bigGenerator = new ScrambleGenerator(size, size);
+            for (int i = 0; i < 3; i++) {
+                RubiksCube scrambled = bigGenerator.nextScrambledCube(ScrambleGenerator.defaultLength(size));
+                checkSolution(scrambled, new ReductionSolver().solve(scrambled, Integer.MAX_VALUE, false),
+                              Integer.MAX_VALUE, size + "x" + size + " reduction " + i);
+            }
+            RubiksCube parity = new RubiksCube(size, false);
+            parity.makeMove(0, 1, 1);
+            checkSolution(parity, new ReductionSolver().solve(parity, Integer.MAX_VALUE, false), Integer.MAX_VALUE,
+                          size + "x" + size + " reduction of an inner slice turn");
+        }
+        System.out.println("Reductions solve 4x4s and 5x5s, parity included");
+
+        // notation round trips. Every run of moves on one axis turns each of its layers at most
+        // once and is followed by another axis, so no run adds up to nothing and the notation
+        // comes back exactly. Runs often turn every layer alike, for wide moves and rotations.
+        Random moveRandom = new Random(16);
+        for (int size = 1; size <= 7; size++) {
+            for (int i = 0; i < 50; i++) {
+                List<int[]> moves = new ArrayList<int[]>();
+                int lastAxis = -1;
+                for (int run = 0; run < 10; run++) {
+                    int axis = (lastAxis + 1 + moveRandom.nextInt(2)) % 3;
+                    int sharedTurns = moveRandom.nextBoolean() ? moveRandom.nextInt(3) + 1 : 0;
+                    int runStart = moves.size();
+                    for (int layer = 0; layer < size; layer++) {
+                        if (moveRandom.nextInt(3) > 0 || (layer == size - 1 && moves.size() == runStart)) {
+                            int numTurns = sharedTurns != 0 ? sharedTurns : moveRandom.nextInt(3) + 1;
+                            moves.add(new int[] {axis, layer, numTurns});
+                        }
+                    }
+                    lastAxis = axis;
+                }
+                String notation = MoveNotation.format(size, moves);
+                List<int[]> parsed = MoveNotation.parse(size, notation);
+                if (!applyMoves(new RubiksCube(size, false), moves).equals(applyMoves(new RubiksCube(size, false), parsed))
+                        || !MoveNotation.format(size, parsed).equals(notation)) {
+                    throw new Exception("Notation " + notation + " on a " + size + "x" + size + " doesn't round trip");
+                }
+            }
+        }
+        System.out.println("Move notation round trips");
+
+        // compiled algorithms against making their moves one at a time, hash and color counts
+        // included, and their inverses against where the cube started
+        for (int size = 1; size <= 7; size++) {
+            ScrambleGenerator algorithmGenerator = new ScrambleGenerator(size, 17);
+            for (int i = 0; i < 20; i++) {
+                RubiksCube start = algorithmGenerator.nextScrambledCube(ScrambleGenerator.defaultLength(size));
+                List<int[]> moves = new ArrayList<int[]>();
+                int numMoves = 1 + moveRandom.nextInt(20);
+                for (int j = 0; j < numMoves; j++) {
+                    moves.add(new int[] {moveRandom.nextInt(3), moveRandom.nextInt(size), moveRandom.nextInt(3) + 1});
+                }
+                CompiledAlgorithm algorithm = CompiledAlgorithm.compile(size, moves);
+                RubiksCube compiled = new RubiksCube(start);
+                compiled.makeMoves(algorithm);
+                RubiksCube replayed = applyMoves(new RubiksCube(start), moves);
+                if (!compiled.equals(replayed) || compiled.getZobristHash() != replayed.getZobristHash()
+                        || !sameColorCounts(compiled, replayed)) {
+                    throw new Exception("Compiled " + algorithm + " on a " + size + "x" + size
+                                        + " doesn't match making its moves");
+                }
+                compiled.makeMoves(algorithm.inverse());
+                if (!compiled.equals(start) || !sameColorCounts(compiled, start)) {
+                    throw new Exception("Inverse of " + algorithm + " on a " + size + "x" + size
+                                        + " doesn't undo it");
+                }
+            }
+        }
+        System.out.println("Compiled algorithms match their moves");
+
+        // cubes encoded and decoded, on their own and through a state file, in both encodings
+        Path stateFile = Files.createTempFile("rubiksCubeTest", ".states");
+        try {
+            for (int size = 1; size <= 5; size++) {
+                checkStateRoundTrip(stateFile, size, CubeStateCodec.ENCODING_STICKERS);
+                if (size == 2 || size == 3) {
+                    checkStateRoundTrip(stateFile, size, CubeStateCodec.ENCODING_CUBIES);
+                }
+            }
+        } finally {
+            Files.delete(stateFile);
+        }
+        System.out.println("Cube states round trip through the codec and state files");
+
+        // a population against the same cubes moved one at a time, whole population moves,
+        // moves on a range of it and compiled algorithms mixed together
+        for (int size = 1; size <= 5; size++) {
+            ScrambleGenerator populationGenerator = new ScrambleGenerator(size, 23);
+            RubiksCube[] cubes = new RubiksCube[10];
+            cubes[0] = new RubiksCube(size, false);
+            for (int i = 1; i < cubes.length; i++) {
+                cubes[i] = populationGenerator.nextScrambledCube(ScrambleGenerator.defaultLength(size));
+            }
+            CubePopulation population = CubePopulation.of(cubes);
+            checkPopulation(population, cubes);
+            MoveTable moveTable = MoveTable.forSize(size);
+            for (int step = 0; step < 30; step++) {
+                int[] move = {moveRandom.nextInt(3), moveRandom.nextInt(size), moveRandom.nextInt(3) + 1};
+                int kind = moveRandom.nextInt(3);
+                if (kind == 0) {
+                    population.makeMove(move[0], move[1], move[2]);
+                    for (RubiksCube member : cubes) {
+                        member.makeMove(move[0], move[1], move[2]);
+                    }
+                } else if (kind == 1) {
+                    int from = moveRandom.nextInt(cubes.length);
+                    int to = from + moveRandom.nextInt(cubes.length - from + 1);
+                    population.apply(moveTable.getMoveIndex(move[0], move[1], move[2]), from, to);
+                    for (int i = from; i < to; i++) {
+                        cubes[i].makeMove(move[0], move[1], move[2]);
+                    }
+                } else {
+                    CompiledAlgorithm algorithm = CompiledAlgorithm.compile(populationGenerator.nextMoves(5));
+                    population.apply(algorithm);
+                    for (RubiksCube member : cubes) {
+                        member.makeMoves(algorithm);
+                    }
+                }
+            }
+            checkPopulation(population, cubes);
+        }
+        System.out.println("Cube populations match moving their cubes one at a time");
+
+        // the cache hands back a checked solution for every symmetry of a state it has solved,
+        // and a hot state outlasts a flood of one-off states in a cache with room for four
+        CachingSolver cachingSolver = new CachingSolver(new TwoPhaseSolver(),
+                                                        new SolutionCache(100, SolutionCache.NO_EXPIRY));
+        RubiksCube cached = generator.nextRandomState();
+        checkSolution(cached, cachingSolver.solve(cached, TwoPhaseSolver.MAX_LENGTH, false), TwoPhaseSolver.MAX_LENGTH,
+                      "Caching solve");
+        CubeSymmetry symmetries = CubeSymmetry.forSize(3, CubeSymmetry.ROTATIONS_AND_REFLECTIONS);
+        for (int symmetry = 1; symmetry < symmetries.getNumSymmetries(); symmetry++) {
+            RubiksCube symmetric = symmetries.transform(symmetry, cached);
+            checkSolution(symmetric, cachingSolver.solve(symmetric, TwoPhaseSolver.MAX_LENGTH, false),
+                          TwoPhaseSolver.MAX_LENGTH, "Cached solve of symmetry " + symmetry);
+        }
+        if (cachingSolver.getCache().getMisses() != 1
+                || cachingSolver.getCache().getHits() != symmetries.getNumSymmetries() - 1) {
+            throw new Exception("Symmetric states missed the cache: " + cachingSolver.getCache());
+        }
+        RubiksCube leftSolved = symmetries.transform(5, cached);
+        cachingSolver.solve(leftSolved, TwoPhaseSolver.MAX_LENGTH, true);
+        if (!leftSolved.isSolved()) {
+            throw new Exception("A cached solve didn't leave the cube solved");
+        }
+
+        SolutionCache smallCache = new SolutionCache(4, SolutionCache.NO_EXPIRY);
+        ScrambleGenerator cacheGenerator = new ScrambleGenerator(3, 25);
+        MovePath hotScramble = cacheGenerator.nextMoves(12);
+        RubiksCube hot = scrambledBy(hotScramble);
+        smallCache.put(hot, inverseOf(hotScramble));
+        for (int i = 0; i < 5; i++) {
+            checkSolution(hot, smallCache.get(hot), Integer.MAX_VALUE, "Hot cache entry");
+        }
+        for (int i = 0; i < 20; i++) {
+            MovePath scramble = cacheGenerator.nextMoves(12);
+            smallCache.put(scrambledBy(scramble), inverseOf(scramble));
+            if (smallCache.size() > 4) {
+                throw new Exception("A cache for 4 solutions holds " + smallCache.size());
+            }
+        }
+        if (smallCache.getEvictions() == 0) {
+            throw new Exception("A full cache evicted nothing: " + smallCache);
+        }
+        checkSolution(hot, smallCache.get(hot), Integer.MAX_VALUE, "Hot cache entry after a flood of one-off states");
+        System.out.println("Cached solutions solve symmetric states and full caches evict");
+
+        // metrics count every expanded node once, in the histogram and the total, without
+        // changing what the search finds
+        ScrambleGenerator metricsGenerator = new ScrambleGenerator(2, 14);
+        SolverMetrics metrics = new SolverMetrics();
+        for (int i = 0; i < 5; i++) {
+            RubiksCube scrambled = metricsGenerator.nextScrambledCube(6);
+            IDAStarSolver measured = new IDAStarSolver();
+            measured.setMetrics(metrics);
+            int withMetrics = measured.solve(scrambled, 6, false).size();
+            if (withMetrics != new IDAStarSolver().solve(scrambled, 6, false).size()) {
+                throw new Exception("Keeping metrics changed IDA*'s solution length");
+            }
+        }
+        long histogramTotal = 0;
+        for (long nodes : metrics.getDepthHistogram()) {
+            histogramTotal += nodes;
+        }
+        if (metrics.getSolves() != 5 || metrics.getNodesExpanded() == 0 || metrics.getNodesExpanded() != histogramTotal) {
+            throw new Exception("Metrics counted " + metrics.getNodesExpanded() + " nodes but " + histogramTotal
+                                + " in the depth histogram over " + metrics.getSolves() + " solves");
+        }
+        System.out.println("Solver metrics count expanded nodes once");
+    }
+
+    /**
+     * Encodes and decodes scrambled cubes one at a time and writes and reads them back
+     * through stateFile, throwing if any comes back different
+     */
+    private static void checkStateRoundTrip(Path stateFile, int size, int encoding) throws Exception {
+        ScrambleGenerator stateGenerator = new ScrambleGenerator(size, 20);
+        // enough that the bigger cubes go past a writer and reader buffer
+        RubiksCube[] cubes = new RubiksCube[2000];
+        CubeStateCodec codec = new CubeStateCodec(size, encoding);
+        ByteBuffer buffer = ByteBuffer.allocate(codec.getRecordSize());
+        for (int i = 0; i < cubes.length; i++) {
+            cubes[i] = stateGenerator.nextScrambledCube(ScrambleGenerator.defaultLength(size));
+            buffer.clear();
+            codec.encode(cubes[i], buffer);
+            buffer.flip();
+            if (!codec.decode(buffer).equals(cubes[i])) {
+                throw new Exception(size + "x" + size + " cube " + i + " doesn't decode to itself in encoding "
+                                    + encoding);
+            }
+        }
+
+        try (CubeStateWriter writer = new CubeStateWriter(stateFile, size, encoding)) {
+            writer.write(cubes, 0, cubes.length);
+        }
+        try (CubeStateReader reader = new CubeStateReader(stateFile)) {
+            RubiksCube read = new RubiksCube(size, false);
+            for (int i = 0; i < cubes.length; i++) {
+                if (!reader.next(read) || !read.equals(cubes[i])) {
+                    throw new Exception(size + "x" + size + " cube " + i + " doesn't read back from a state file"
+                                        + " in encoding " + encoding);
+                }
+            }
+            if (reader.next(read)) {
+                throw new Exception("State file of " + size + "x" + size + " cubes has extra states");
+            }
+        }
+    }
+
+    /**
+     * Throws if the two tables don't hold the same distances for the same kind of table
+     */
+    private static void checkSameDistances(PatternDatabase table, PatternDatabase expected, String what)
+            throws Exception {
+        if (table.getKind() != expected.getKind() || table.getNumEntries() != expected.getNumEntries()
+                || !Arrays.equals(table.getEdgeSubset(), expected.getEdgeSubset())) {
+            throw new Exception(what + " isn't the same table");
+        }
+        for (int i = 0; i < table.getNumEntries(); i++) {
+            if (table.getDistance(i) != expected.getDistance(i)) {
+                throw new Exception(what + " has distance " + table.getDistance(i) + " at " + i + ", not "
+                                    + expected.getDistance(i));
+            }
+        }
+    }
+
+    /**
+     * Writes saved to tableFile with the int at offset replaced by value and throws if it
+     * loads anyway
+     */
+    private static void checkLoadFails(Path tableFile, byte[] saved, int offset, int value, String what)
+            throws Exception {
+        byte[] damaged = saved.clone();
+        ByteBuffer.wrap(damaged).putInt(offset, value);
+        Files.write(tableFile, damaged);
+        checkLoadFails(tableFile, what);
+    }
+
+    private static void checkLoadFails(Path tableFile, String what) throws Exception {
+        try {
+            PatternDatabase.load(tableFile);
+        } catch (IOException e) {
+            return;
+        }
+        throw new Exception("A pattern database with " + what + " loaded");
+    }
+
+    /**
+     * Draws cube's unfolded picture a sticker at a time, to check the renderer's template
+     */
+    private static String drawnBySticker(RubiksCube cube) {
+        char[] colorChars = {'R', 'O', 'B', 'G', 'Y', 'W'};
+        int cs = cube.getCubeSize();
+        StringBuilder picture = new StringBuilder();
+        picture.append(" ".repeat(cs * 4)).append("_".repeat(cs * 4 + 1));
+        for (int row = 0; row < cs; row++) {
+            picture.append('\n').append((row < cs - 1 ? " " : "_").repeat(cs * 4));
+            for (int col = 0; col < cs; col++) {
+                picture.append("|_").append(colorChars[cube.getSticker(4, row, col)]).append('_');
+            }
+            picture.append('|');
+        }
+        picture.append("_".repeat(cs * 8));
+        for (int row = 0; row < cs; row++) {
+            picture.append('\n');
+            for (int side : new int[] {2, 0, 3, 1}) {
+                for (int col = 0; col < cs; col++) {
+                    picture.append("|_").append(colorChars[cube.getSticker(side, row, col)]).append('_');
+                }
+            }
+            picture.append('|');
+        }
+        for (int row = 0; row < cs; row++) {
+            picture.append('\n').append(" ".repeat(cs * 4));
+            for (int col = 0; col < cs; col++) {
+                picture.append("|_").append(colorChars[cube.getSticker(5, row, col)]).append('_');
+            }
+            picture.append('|');
+        }
+        return picture.append('\n').toString();
+    }
+
+    /**
+     * Returns the cube's stickers in the gameStateArr constructor's layout
+     */
+    private static int[][][] sidesOf(RubiksCube cube) {
+        int cs = cube.getCubeSize();
+        int[][][] sides = new int[6][cs][cs];
+        for (int side = 0; side < 6; side++) {
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    sides[side][row][col] = cube.getSticker(side, row, col);
+                }
+            }
+        }
+        return sides;
+    }
+
+    /**
+     * Returns a copy of cube with its colors swapped around at random
+     */
+    private static RubiksCube recolored(RubiksCube cube, Random random) {
+        int[] colors = {0, 1, 2, 3, 4, 5};
+        for (int i = colors.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = colors[i];
+            colors[i] = colors[j];
+            colors[j] = swap;
+        }
+        byte[] stickers = new byte[6 * cube.getCubeSize() * cube.getCubeSize()];
+        cube.copyStickersTo(stickers, 0);
+        for (int i = 0; i < stickers.length; i++) {
+            stickers[i] = (byte) colors[stickers[i]];
+        }
+        RubiksCube recolored = new RubiksCube(cube);
+        recolored.copyStickersFrom(stickers, 0);
+        return recolored;
+    }
+
+    /**
+     * Returns a solved cube with scramble made on it
+     */
+    private static RubiksCube scrambledBy(MovePath scramble) {
+        RubiksCube cube = new RubiksCube(scramble.getCubeSize(), false);
+        scramble.apply(cube);
+        return cube;
+    }
+
+    /**
+     * Returns the moves that undo scramble, with the first move at the bottom
+     */
+    private static Stack<int[]> inverseOf(MovePath scramble) {
+        Stack<int[]> inverse = new Stack<int[]>();
+        for (int i = scramble.getLength() - 1; i >= 0; i--) {
+            inverse.push(new int[] {scramble.getAxis(i), scramble.getLayer(i), 4 - scramble.getNumTurns(i)});
+        }
+        return inverse;
+    }
+
+    /**
+     * Throws if the population's cubes, solved flags or hashes don't match cubes'
+     */
+    private static void checkPopulation(CubePopulation population, RubiksCube[] cubes) throws Exception {
+        int size = population.getCubeSize();
+        boolean[] solved = new boolean[cubes.length];
+        long[] hashes = new long[cubes.length];
+        int numSolved = population.isSolved(solved);
+        population.zobristHashes(hashes);
+        RubiksCube copy = new RubiksCube(size, false);
+        int expectedSolved = 0;
+        for (int i = 0; i < cubes.length; i++) {
+            population.get(i, copy);
+            if (!population.get(i).equals(cubes[i]) || !copy.equals(cubes[i])) {
+                throw new Exception("Cube " + i + " of a " + size + "x" + size + " population doesn't match");
+            }
+            if (solved[i] != cubes[i].isSolved() || hashes[i] != cubes[i].getZobristHash()) {
+                throw new Exception("Cube " + i + " of a " + size + "x" + size + " population has the wrong"
+                                    + " solved flag or hash");
+            }
+            expectedSolved += cubes[i].isSolved() ? 1 : 0;
+        }
+        if (numSolved != expectedSolved) {
+            throw new Exception(size + "x" + size + " population counts " + numSolved + " solved, not " + expectedSolved);
+        }
+    }
+
+    /**
+     * Returns whether every side of both cubes has the same number of stickers of every color
+     */
+    /**
+     * Throws if cube's color counts, side progress or solved sides don't match its stickers
+     */
+    private static void checkColorCounts(RubiksCube cube, String what) throws Exception {
+        int cs = cube.getCubeSize();
+        int numSolved = 0;
+        for (int side = 0; side < 6; side++) {
+            int[] counts = new int[6];
+            for (int row = 0; row < cs; row++) {
+                for (int col = 0; col < cs; col++) {
+                    counts[cube.getSticker(side, row, col)]++;
+                }
+            }
+            int progress = Arrays.stream(counts).max().getAsInt();
+            for (int color = 0; color < 6; color++) {
+                if (cube.getColorCount(side, color) != counts[color]) {
+                    throw new Exception(what + " counts " + cube.getColorCount(side, color) + " of color " + color
+                                        + " on side " + side + ", not " + counts[color]);
+                }
+            }
+            if (cube.getSideProgress(side) != progress || cube.isSideSolved(side) != (progress == cs * cs)) {
+                throw new Exception(what + " gets the progress of side " + side + " wrong");
+            }
+            numSolved += progress == cs * cs ? 1 : 0;
+        }
+        if (cube.getNumSolvedSides() != numSolved || cube.isSolved() != (numSolved == 6)) {
+            throw new Exception(what + " has " + cube.getNumSolvedSides() + " solved sides, not " + numSolved);
+        }
+    }
+
+    private static boolean sameColorCounts(RubiksCube cube, RubiksCube other) {
+        for (int side = 0; side < 6; side++) {
+            for (int color = 0; color < 6; color++) {
+                if (cube.getColorCount(side, color) != other.getColorCount(side, color)) {
+                    return false;
+                }
+            }
+        }
+        return cube.isSolved() == other.isSolved();
+    }
+
+    private static RubiksCube applyMoves(RubiksCube cube, List<int[]> moves) {
+        for (int[] move : moves) {
+            cube.makeMove(move[0], move[1], move[2]);
+        }
+        return cube;
+    }
+
+    /**
+     * Throws if solution is missing, longer than maxLength or doesn't solve a copy of cube
+     */
+    private static void checkSolution(RubiksCube cube, List<int[]> solution, int maxLength, String what)
+            throws Exception {
+        if (solution == null) {
+            throw new Exception(what + " found no solution");
+        }
+        if (solution.size() > maxLength) {
+            throw new Exception(what + " took " + solution.size() + " moves, more than " + maxLength);
+        }
+        RubiksCube copy = new RubiksCube(cube);
+        for (int[] move : solution) {
+            copy.makeMove(move[0], move[1], move[2]);
+        }
+        if (!copy.isSolved()) {
+            throw new Exception(what + " doesn't solve the cube");
+        }
+    }
+
+    /**
+     * Returns sides where every sticker holds its own packed index
+     */
+    private static int[][][] numberedSides(int cs) {
+        int[][][] sides = new int[6][cs][cs];
+        for (int i = 0; i < 6 * cs * cs; i++) {
+            sides[i / (cs * cs)][i / cs % cs][i % cs] = i;
+        }
+        return sides;
+    }
+
+    /**
+     * Turns a layer a quarter turn the way RubiksCube's rotateXRight, rotateYUp and rotateZUp
+     * did on the int arrays per side, sides in gameStateArr order
+     */
+    private static void rotateQuarter(int[][][] sides, int axis, int layer) {
+        int cs = sides[0].length;
+        int[][] front = sides[0];
+        int[][] back = sides[1];
+        int[][] left = sides[2];
+        int[][] right = sides[3];
+        int[][] top = sides[4];
+        int[][] bottom = sides[5];
+        if (axis == 0) {
+            int[] tempRow = front[layer];
+            front[layer] = left[layer];
+            left[layer] = back[layer];
+            back[layer] = right[layer];
+            right[layer] = tempRow;
+            if (layer == 0) {
+                sides[4] = rotateSide(top, false);
+            } else if (layer == cs - 1) {
+                sides[5] = rotateSide(bottom, true);
+            }
+        } else if (axis == 1) {
+            for (int i = 0; i < cs; i++) {
+                int temp = front[i][layer];
+                front[i][layer] = bottom[i][layer];
+                bottom[i][layer] = back[cs - i - 1][cs - layer - 1];
+                back[cs - i - 1][cs - layer - 1] = top[i][layer];
+                top[i][layer] = temp;
+            }
+            if (layer == 0) {
+                sides[2] = rotateSide(left, false);
+            } else if (layer == cs - 1) {
+                sides[3] = rotateSide(right, true);
+            }
+        } else {
+            for (int i = 0; i < cs; i++) {
+                int temp = right[i][layer];
+                right[i][layer] = bottom[layer][cs - i - 1];
+                bottom[layer][cs - i - 1] = left[cs - i - 1][cs - layer - 1];
+                left[cs - i - 1][cs - layer - 1] = top[cs - layer - 1][i];
+                top[cs - layer - 1][i] = temp;
+            }
+            if (layer == 0) {
+                sides[0] = rotateSide(front, false);
+            } else if (layer == cs - 1) {
+                sides[1] = rotateSide(back, true);
+            }
+        }
+    }
+
+    private static int[][] rotateSide(int[][] side, boolean clockwise) {
+        int cs = side.length;
+        int[][] newSide = new int[cs][cs];
+        for (int row = 0; row < cs; row++) {
+            for (int col = 0; col < cs; col++) {
+                newSide[row][col] = clockwise ? side[cs - col - 1][row] : side[col][cs - row - 1];
+            }
+        }
+        return newSide;
+    }
+
+    /**
+     * Returns the fewest moves that reach goal, trying every layer
+     */
+    private static int shortestToGoal(RubiksCube cube, CubeGoal goal, int depthLimit) {
+        for (int depth = 0; depth <= depthLimit; depth++) {
+            if (reachesGoal(cube, goal, depth)) {
+                return depth;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean reachesGoal(RubiksCube cube, CubeGoal goal, int depth) {
+        if (goal.isReached(cube)) {
+            return true;
+        }
+        if (depth == 0) {
+            return false;
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            for (int layer = 0; layer < cube.getCubeSize(); layer++) {
+                for (int numTurns = 1; numTurns <= 3; numTurns++) {
+                    cube.makeMove(axis, layer, numTurns);
+                    boolean reached = reachesGoal(cube, goal, depth - 1);
+                    cube.makeMove(axis, layer, 4 - numTurns);
+                    if (reached) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
     }
 }